@@ -0,0 +1,20 @@
+// counts to 100 million, once in main and once in a loop with a return in it
+int count(int n) {
+	int i;
+	i = 0;
+	while (i < n) {
+		i = i + 1;
+		if (i == n)
+			return i;
+	}
+	return 0;
+}
+
+int main() {
+	int i, n, c;
+	n = 100000000;
+	i = 0;
+	while (i < n)
+		i = i + 1;
+	c = count(n);
+}
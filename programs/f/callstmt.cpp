@@ -0,0 +1,20 @@
+int g;
+bool seen;
+
+// called as statements, so their results get thrown away
+float half(int x) {
+	g = x;
+	return float(x) / 2.0;
+}
+
+bool mark(bool b) {
+	seen = b;
+	return !b;
+}
+
+int main() {
+	int a;
+	half(4);
+	mark(true);
+	a = g;
+}
\ No newline at end of file
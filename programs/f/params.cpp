@@ -0,0 +1,14 @@
+int a;
+
+// parameters of different types, with one named the same as a global
+float scale(float z, int a, char c) {
+	return z * float(a) + float(int(c) - 48);
+}
+
+int main() {
+	float r;
+	char digit;
+	digit = '7';
+	r = scale(1.5, 2, digit);
+	a = 3;
+}
\ No newline at end of file
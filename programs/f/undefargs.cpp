@@ -0,0 +1,26 @@
+int g;
+int h;
+
+// undefined values passed in, handed back and stored by the callees
+int id(int x) {
+	return x;
+}
+
+void setg(int v) {
+	g = v;
+}
+
+float fresh() {
+	float y;
+	return y;
+}
+
+int main() {
+	int a, b, c, d;
+	float e;
+	c = id(b);
+	setg(a);
+	d = id(id(b));
+	e = fresh();
+	h = id(3);
+}
\ No newline at end of file
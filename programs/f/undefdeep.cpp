@@ -0,0 +1,21 @@
+int g;
+char k;
+
+// undefined values carried down a recursion deep enough to outgrow the
+// register file, and an undefined char cast to an int on the way back
+int down(int n, int carry) {
+	if (n > 0)
+		carry = down(n - 1, carry);
+	return carry;
+}
+
+int code(char c) {
+	return int(c);
+}
+
+int main() {
+	int u, r, i;
+	r = down(400, u);
+	g = down(400, 7);
+	i = code(k);
+}
\ No newline at end of file
@@ -1,13 +1,28 @@
 package clite;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
+import clite.cache.ProgramCache;
+import clite.closure.ClosureInterpreter;
+import clite.compiler.Compiler;
 import clite.interpreter.Interpreter;
+import clite.interpreter.LazyFunctions;
+import clite.interpreter.Resolver;
 import clite.interpreter.State;
+import clite.nodes.NodeInterpreter;
+import clite.parser.BufferLexer;
+import clite.parser.DfaScanner;
 import clite.parser.Lexer;
 import clite.parser.Parser;
+import clite.parser.TokenStream;
 import clite.syntax.Program;
 import clite.typing.StaticTypeCheck;
-import clite.typing.TypeTransformer;
+import clite.typing.TypeCheckTransformer;
+import clite.vm.VirtualMachine;
 
 /**
  * Parses and interprets a given file
@@ -15,38 +30,143 @@ import clite.typing.TypeTransformer;
 public class Runner {
 	/**
 	 * Main method
-	 * @param args Name of file to interpret
+	 * @param args Name of file to interpret, optionally preceded by flags:
+	 *             -compile to compile the program to JVM bytecode instead of interpreting it
+	 *             -vm to run the program on the register VM instead of interpreting it
+	 *             -nodes to run the program as a tree of self-specializing nodes
+	 *             -interpret to walk the syntax tree with the original interpreter
+	 *             (by default, the program is linked into closures and run)
+	 *             -mmap to memory-map the file and lex it without copying it
+	 *             -dfa to memory-map the file and lex it with the table-driven scanner
+	 *             -deep to parse with an explicit stack, so nesting is only limited by memory
+	 *             -parallel to parse, type check and transform function bodies in parallel
+	 *             -lazy to interpret the program, only parsing and checking each function when it's first called
+	 *             -cache to keep the type transformed program in .clite-cache, and load it from there while the file is unchanged
 	 */
 	public static void main(String args[]) {
-		if(args.length < 1){
+		boolean compile = false;
+		boolean vm = false;
+		boolean nodes = false;
+		boolean interpret = false;
+		boolean mmap = false;
+		boolean dfa = false;
+		boolean deep = false;
+		boolean parallel = false;
+		boolean lazy = false;
+		boolean cache = false;
+		String file = null;
+		for(String arg : args){
+			if(arg.equals("-compile"))
+				compile = true;
+			else if(arg.equals("-vm"))
+				vm = true;
+			else if(arg.equals("-nodes"))
+				nodes = true;
+			else if(arg.equals("-interpret"))
+				interpret = true;
+			else if(arg.equals("-mmap"))
+				mmap = true;
+			else if(arg.equals("-dfa"))
+				dfa = true;
+			else if(arg.equals("-deep"))
+				deep = true;
+			else if(arg.equals("-parallel"))
+				parallel = true;
+			else if(arg.equals("-lazy"))
+				lazy = true;
+			else if(arg.equals("-cache"))
+				cache = true;
+			else
+				file = arg;
+		}
+		
+		if(file == null){
 			System.out.println("No args given, need file");
 			return;
 		}
 		
 		System.out.println("-------------------------------");
 		
-		Parser parser = new Parser(new Lexer(args[0]));
-		Program prog = parser.program();
-		System.out.println("Initial abstract syntax tree:");
-		prog.display();
-		
-		System.out.println("\n-------------------------------");
-		
-		System.out.println("\nAfter static type check and type transform:");
-		StaticTypeCheck.validate(prog);
-		Program transformed = TypeTransformer.transform(prog);
-		transformed.display();
-		
-		System.out.println("\n-------------------------------");
+		TokenStream lexer;
+		if(dfa)
+			lexer = DfaScanner.map(file);
+		else if(mmap)
+			lexer = BufferLexer.map(file);
+		else
+			lexer = new Lexer(file);
 		
-		System.out.println("\nFinal State:");
-		State state = Interpreter.interpret(transformed);
+		State state;
+		if(lazy){
+			// the bodies haven't been parsed yet, so there's no syntax tree to show
+			System.out.println("Function bodies are parsed, type checked and transformed when they're first called");
+			
+			System.out.println("\n-------------------------------");
+			
+			System.out.println("\nFinal State:");
+			state = Interpreter.interpret(LazyFunctions.program(Parser.lazy(lexer, deep)));
+		} else {
+			// the cache is keyed by the file's contents
+			ProgramCache programCache = cache ? new ProgramCache(new File(".clite-cache")) : null;
+			byte[] source = cache ? source(file) : null;
+			Program transformed = cache ? programCache.load(source) : null;
+			
+			if(transformed != null){
+				System.out.println("Loaded from cache; the file hasn't changed since it was last type checked");
+				
+				System.out.println("\n-------------------------------");
+				
+				System.out.println("\nAfter static type check and type transform:");
+			} else {
+				Parser parser = parallel ? Parser.parallel(lexer, deep, ForkJoinPool.commonPool()) : new Parser(lexer, deep);
+				Program prog = parser.program();
+				System.out.println("Initial abstract syntax tree:");
+				prog.display();
+				
+				System.out.println("\n-------------------------------");
+				
+				System.out.println("\nAfter static type check and type transform:");
+				transformed = parallel ? TypeCheckTransformer.transform(prog, StaticTypeCheck.typing(prog.globals()), ForkJoinPool.commonPool()) : TypeCheckTransformer.transform(prog);
+				if(cache)
+					programCache.store(source, transformed);
+			}
+			transformed.display();
+			
+			System.out.println("\n-------------------------------");
+			
+			System.out.println("\nFinal State:");
+			Program resolved = Resolver.resolve(transformed);
+			if(compile)
+				state = Compiler.compile(resolved).run();
+			else if(vm)
+				state = VirtualMachine.run(resolved);
+			else if(nodes)
+				state = NodeInterpreter.interpret(resolved);
+			else if(interpret)
+				state = Interpreter.interpret(resolved);
+			else
+				state = ClosureInterpreter.interpret(resolved);
+		}
 		state.display( );
 		
 		System.out.println("\n-------------------------------");
 		System.out.println(goodbye());
 	}
 	
+	/**
+	 * Read a whole source file
+	 * @param file Name of file
+	 * @return Bytes of the file
+	 */
+	private static byte[] source(String file){
+		try {
+			return Files.readAllBytes(Paths.get(file));
+		} catch (IOException e) {
+			System.out.println("File not found: " + file);
+			System.exit(1);
+			return null;
+		}
+	}
+	
 	/**
 	 * This is a secret method that does secret things
 	 * @return None of your business
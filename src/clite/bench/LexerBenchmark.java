@@ -0,0 +1,75 @@
+package clite.bench;
+import java.io.File;
+
+import clite.parser.BufferLexer;
+import clite.parser.DfaScanner;
+import clite.parser.Lexer;
+import clite.parser.Token;
+import clite.parser.TokenStream;
+
+/**
+ * Benchmark for the lexers.
+ *
+ * Lexes a file over and over with each lexer and reports how many
+ * characters per second each one gets through. Every lexer is given the
+ * file name and opens the file itself, the same way Runner uses it.
+ */
+public class LexerBenchmark {
+	/** How long to keep lexing with each lexer, in nanoseconds */
+	private static final long DURATION = 2000L * 1000 * 1000;
+
+	/**
+	 * Main method
+	 * @param args Name of file to lex (defaults to programs/newton.cpp)
+	 */
+	public static void main(String args[]) {
+		String file = args.length > 0 ? args[0] : "programs/newton.cpp";
+		long chars = new File(file).length();
+
+		// run everything twice and only report the second run, so the JIT has warmed up
+		for (int round = 0; round < 2; round++) {
+			boolean report = round == 1;
+			run("Lexer", file, chars, report);
+			run("BufferLexer", file, chars, report);
+			run("DfaScanner", file, chars, report);
+		}
+	}
+
+	/**
+	 * Lex a file with one lexer until DURATION runs out
+	 * @param name Name of lexer to use
+	 * @param file File to lex
+	 * @param chars Number of characters in file
+	 * @param report Whether or not to print the result
+	 */
+	private static void run(String name, String file, long chars, boolean report) {
+		long passes = 0;
+		long tokens = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			TokenStream lexer = open(name, file);
+			while (lexer.next().type() != Token.Type.Eof)
+				tokens++;
+			passes++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < DURATION);
+
+		if (report)
+			System.out.println(name + ": " + (long) (chars * passes / (elapsed / 1e9)) + " chars/sec ("
+					+ passes + " passes, " + (tokens / passes) + " tokens each)");
+	}
+
+	/**
+	 * @param name Name of lexer
+	 * @param file File to lex
+	 * @return New lexer for file
+	 */
+	private static TokenStream open(String name, String file) {
+		if (name.equals("Lexer"))
+			return new Lexer(file);
+		if (name.equals("BufferLexer"))
+			return BufferLexer.map(file);
+		return DfaScanner.map(file);
+	}
+}
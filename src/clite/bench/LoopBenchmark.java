@@ -0,0 +1,74 @@
+package clite.bench;
+import java.lang.management.ManagementFactory;
+
+import clite.interpreter.Interpreter;
+import clite.interpreter.Resolver;
+import clite.interpreter.State;
+import clite.parser.Lexer;
+import clite.parser.Parser;
+import clite.syntax.Program;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeTransformer;
+
+/**
+ * Regression benchmark for loop execution.
+ *
+ * Interprets a program with a very long loop (programs/bigloop.cpp runs
+ * 100 million iterations, both in main and in a loop with a return in it)
+ * on a thread with a tiny stack. If running a loop ever goes back to
+ * growing the Java stack on each iteration, this dies with a StackOverflowError.
+ *
+ * Also reports how many bytes the interpreter allocated, when the JVM can tell.
+ */
+public class LoopBenchmark {
+	/** Stack size of the thread the program is run on, in bytes */
+	private static final long STACK_SIZE = 256 * 1024;
+
+	/**
+	 * Main method
+	 * @param args Name of file to interpret (defaults to programs/bigloop.cpp)
+	 */
+	public static void main(String args[]) throws InterruptedException {
+		final String file = args.length > 0 ? args[0] : "programs/bigloop.cpp";
+
+		Parser parser = new Parser(new Lexer(file));
+		Program prog = parser.program();
+		StaticTypeCheck.validate(prog);
+		final Program resolved = Resolver.resolve(TypeTransformer.transform(prog));
+
+		final boolean[] passed = { false };
+		Thread runner = new Thread(null, new Runnable() {
+			public void run() {
+				long allocatedBefore = allocatedBytes();
+				long start = System.nanoTime();
+				State state = Interpreter.interpret(resolved);
+				long elapsed = System.nanoTime() - start;
+				long allocated = allocatedBytes() - allocatedBefore;
+
+				state.display();
+				System.out.println("Interpreted " + file + " in " + (elapsed / 1000000) + " ms with a " + (STACK_SIZE / 1024) + "K stack");
+				if (allocatedBefore >= 0)
+					System.out.println("Allocated " + (allocated / (1024 * 1024)) + " MB");
+				passed[0] = true;
+			}
+		}, "loop-benchmark", STACK_SIZE);
+
+		runner.start();
+		runner.join();
+
+		if(!passed[0]){
+			System.err.println("Loop benchmark failed!");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return Number of bytes allocated by the current thread so far, or -1 if the JVM can't tell
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
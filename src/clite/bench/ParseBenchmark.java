@@ -0,0 +1,73 @@
+package clite.bench;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import clite.parser.DfaScanner;
+import clite.parser.Parser;
+
+/**
+ * Benchmark for parsing function bodies in parallel.
+ *
+ * Reads a file once, then parses it over and over, with every body parsed in
+ * place and with every body handed to a pool, and reports the median time of
+ * each. Both include lexing the file. Files with too few tokens, or a pool
+ * with only one thread, get parsed in place either way.
+ */
+public class ParseBenchmark {
+	/** Number of times to parse each way (after as many more to warm up) */
+	private static final int PASSES = 200;
+
+	/**
+	 * Main method
+	 * @param args Name of file to parse, or a number of functions to generate a file with
+	 *             (defaults to 4,000), then the number of threads in the pool (defaults to
+	 *             the number of processors)
+	 * @throws IOException if the file can't be read
+	 */
+	public static void main(String args[]) throws IOException {
+		byte[] source;
+		if (args.length == 0)
+			source = TypeCheckBenchmark.generate(4000);
+		else if (args[0].matches("[0-9]+"))
+			source = TypeCheckBenchmark.generate(Integer.parseInt(args[0]));
+		else
+			source = Files.readAllBytes(Paths.get(args[0]));
+
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+
+		long[] sequential = new long[PASSES];
+		long[] parallel = new long[PASSES];
+		int functions = 0;
+		// alternate between the two so neither one gets all the warm caches (or all the garbage collections)
+		for (int i = 0; i < 2 * PASSES; i++) {
+			long start = System.nanoTime();
+			functions = new Parser(new DfaScanner(source)).program().functions().size();
+			long middle = System.nanoTime();
+			Parser.parallel(new DfaScanner(source), false, pool).program();
+			long end = System.nanoTime();
+			if (i >= PASSES) {
+				sequential[i - PASSES] = middle - start;
+				parallel[i - PASSES] = end - middle;
+			}
+		}
+		pool.shutdown();
+
+		System.out.println(functions + " functions, " + source.length + " bytes, " + threads + " threads, "
+				+ Runtime.getRuntime().availableProcessors() + " processors");
+		System.out.println("In place: " + median(sequential) + " us");
+		System.out.println("In parallel: " + median(parallel) + " us");
+	}
+
+	/**
+	 * @param times Times in nanoseconds
+	 * @return Median time in microseconds
+	 */
+	private static long median(long[] times) {
+		Arrays.sort(times);
+		return times[times.length / 2] / 1000;
+	}
+}
@@ -0,0 +1,116 @@
+package clite.bench;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import clite.cache.CompileSession;
+import clite.parser.DfaScanner;
+import clite.parser.Parser;
+import clite.typing.TypeCheckTransformer;
+
+/**
+ * Benchmark for CompileSession.
+ *
+ * Makes a one character edit in the middle of a file (changing a digit of a
+ * number back and forth) and reports how long it takes to compile the file
+ * again from scratch, and how long it takes a CompileSession that has already
+ * compiled the version before the edit (the median of each).
+ */
+public class RecompileBenchmark {
+	/** Number of times to compile the whole file (after as many more to warm up) */
+	private static final int FULL_PASSES = 100;
+
+	/** Number of times to compile with the session (after as many more to warm up) */
+	private static final int PASSES = 1000;
+
+	/**
+	 * Main method
+	 * @param args Name of file to compile (defaults to a generated file about 50,000 lines long)
+	 */
+	public static void main(String args[]) throws IOException {
+		byte[] before = args.length > 0 ? Files.readAllBytes(Paths.get(args[0])) : generate(5000);
+		byte[] after = before.clone();
+		int digit = digit(before);
+		if (digit < 0) {
+			System.err.println("No number to edit in the middle of the file!");
+			return;
+		}
+		after[digit] = (byte) (before[digit] == '1' ? '2' : '1');
+		byte[][] versions = { before, after };
+
+		long[] full = new long[FULL_PASSES];
+		for (int i = 0; i < 2 * FULL_PASSES; i++) {
+			long start = System.nanoTime();
+			TypeCheckTransformer.transform(new Parser(new DfaScanner(versions[i % 2])).program());
+			if (i >= FULL_PASSES)
+				full[i - FULL_PASSES] = System.nanoTime() - start;
+		}
+
+		CompileSession session = new CompileSession();
+		session.compile(before);
+		long[] incremental = new long[PASSES];
+		for (int i = 0; i < 2 * PASSES; i++) {
+			long start = System.nanoTime();
+			session.compile(versions[(i + 1) % 2]);
+			if (i >= PASSES)
+				incremental[i - PASSES] = System.nanoTime() - start;
+		}
+
+		int lines = 1;
+		for (byte b : before)
+			if (b == '\n')
+				lines++;
+		System.out.println(lines + " lines, editing the number at offset " + digit);
+		System.out.println("Full compile: " + median(full) + " us");
+		System.out.println("CompileSession: " + median(incremental) + " us");
+	}
+
+	/**
+	 * @param times Times in nanoseconds
+	 * @return Median time in microseconds (the middle one isn't thrown off by the odd garbage collection)
+	 */
+	private static long median(long[] times) {
+		Arrays.sort(times);
+		return times[times.length / 2] / 1000;
+	}
+
+	/**
+	 * @param source Source of a program
+	 * @return Offset of the first digit of a number starting in the middle of the file or after it (-1 if there isn't one)
+	 */
+	private static int digit(byte[] source) {
+		for (int i = source.length / 2; i < source.length; i++) {
+			boolean number = source[i] >= '0' && source[i] <= '9';
+			boolean name = i > 0 && (Character.isLetterOrDigit(source[i - 1]) || source[i - 1] == '.');
+			if (number && !name)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Make up a program with lots of functions, each calling the one before it
+	 * @param functions Number of functions
+	 * @return Source of program
+	 */
+	private static byte[] generate(int functions) {
+		StringBuilder out = new StringBuilder();
+		out.append("int total;\n\n");
+		out.append("int f0(int x) {\n\treturn x;\n}\n\n");
+		for (int i = 1; i < functions; i++) {
+			out.append("int f").append(i).append("(int x) {\n");
+			out.append("\tint y, z;\n");
+			out.append("\ty = x * 3 + ").append(i % 97).append(";\n");
+			out.append("\tz = 0;\n");
+			out.append("\twhile (y > 10) {\n");
+			out.append("\t\ty = y / 2;\n");
+			out.append("\t\tz = z + 1;\n");
+			out.append("\t}\n");
+			out.append("\treturn f").append(i - 1).append("(y + z);\n");
+			out.append("}\n\n");
+		}
+		out.append("int main() {\n\ttotal = f").append(functions - 1).append("(7);\n}\n");
+		return out.toString().getBytes();
+	}
+}
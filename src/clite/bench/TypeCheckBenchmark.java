@@ -0,0 +1,103 @@
+package clite.bench;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import clite.parser.DfaScanner;
+import clite.parser.Parser;
+import clite.syntax.Program;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeCheckTransformer;
+import clite.typing.TypeMap;
+
+/**
+ * Benchmark for type checking and transforming functions in parallel.
+ *
+ * Parses a file once, then type checks and transforms it over and over, one
+ * function at a time on this thread and with every function as its own task
+ * on a pool, and reports the median time of each. Only the type checking is
+ * timed, not the parsing. Programs with too few functions, or a pool with only
+ * one thread, get checked one function at a time either way.
+ */
+public class TypeCheckBenchmark {
+	/** Number of times to type check each way (after as many more to warm up) */
+	private static final int PASSES = 200;
+
+	/**
+	 * Main method
+	 * @param args Name of file to check, or a number of functions to generate a file with
+	 *             (defaults to 4,000), then the number of threads in the pool (defaults to
+	 *             the number of processors)
+	 */
+	public static void main(String args[]) {
+		DfaScanner lexer;
+		if (args.length == 0)
+			lexer = new DfaScanner(generate(4000));
+		else if (args[0].matches("[0-9]+"))
+			lexer = new DfaScanner(generate(Integer.parseInt(args[0])));
+		else
+			lexer = DfaScanner.map(args[0]);
+		Program p = new Parser(lexer).program();
+		TypeMap globals = StaticTypeCheck.typing(p.globals());
+
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+
+		long[] sequential = new long[PASSES];
+		long[] parallel = new long[PASSES];
+		// alternate between the two so neither one gets all the warm caches (or all the garbage collections)
+		for (int i = 0; i < 2 * PASSES; i++) {
+			long start = System.nanoTime();
+			TypeCheckTransformer.transform(p, globals, null);
+			long middle = System.nanoTime();
+			TypeCheckTransformer.transform(p, globals, pool);
+			long end = System.nanoTime();
+			if (i >= PASSES) {
+				sequential[i - PASSES] = middle - start;
+				parallel[i - PASSES] = end - middle;
+			}
+		}
+		pool.shutdown();
+
+		System.out.println(p.functions().size() + " functions, " + threads + " threads, "
+				+ Runtime.getRuntime().availableProcessors() + " processors");
+		System.out.println("One at a time: " + median(sequential) + " us");
+		System.out.println("In parallel: " + median(parallel) + " us");
+	}
+
+	/**
+	 * @param times Times in nanoseconds
+	 * @return Median time in microseconds
+	 */
+	private static long median(long[] times) {
+		Arrays.sort(times);
+		return times[times.length / 2] / 1000;
+	}
+
+	/**
+	 * Make up a program with lots of functions that have a bit of arithmetic to check
+	 * @param functions Number of functions
+	 * @return Source of program
+	 */
+	static byte[] generate(int functions) {
+		StringBuilder out = new StringBuilder();
+		out.append("int total;\nfloat scale;\n\n");
+		out.append("int f0(int x, float y) {\n\treturn x;\n}\n\n");
+		for (int i = 1; i < functions; i++) {
+			out.append("int f").append(i).append("(int x, float y) {\n");
+			out.append("\tint a, b;\n\tfloat c;\n");
+			out.append("\ta = x * 3 + ").append(i % 97).append(";\n");
+			out.append("\tc = y * scale + float(a) / 2.0;\n");
+			out.append("\tb = 0;\n");
+			out.append("\twhile (a > 10 && c > 0.5) {\n");
+			out.append("\t\ta = a / 2 - b;\n");
+			out.append("\t\tc = c / 2.0;\n");
+			out.append("\t\tif (a / 2 * 2 == a || !(b < 3))\n\t\t\tb = b + 1;\n");
+			out.append("\t\telse\n\t\t\tb = b - int(c);\n");
+			out.append("\t}\n");
+			out.append("\treturn f").append(i - 1).append("(a + b, c);\n");
+			out.append("}\n\n");
+		}
+		out.append("int main() {\n\tscale = 1.5;\n\ttotal = f").append(functions - 1).append("(7, 2.0);\n}\n");
+		return out.toString().getBytes();
+	}
+}
@@ -0,0 +1,389 @@
+package clite.cache;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import clite.parser.Parser;
+import clite.parser.UnitScanner;
+import clite.syntax.Program;
+import clite.syntax.SymbolTable;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.declaration.Declarations;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Functions;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Statement;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeCheckTransformer;
+import clite.typing.TypeMap;
+
+
+/**
+ * Compiles the same source file over and over as it gets edited, redoing
+ * only what the edit could have changed.
+ *
+ * The source is kept split into units (see UnitScanner), each with what it
+ * parsed to. When a new version comes in, the units before the first changed
+ * byte are kept, and units are parsed again from there until one ends right
+ * where an old unit after the last changed byte starts; the rest of the old
+ * units are kept too. Then the only functions type checked and transformed
+ * again are the ones that were parsed again, plus the callers of any function
+ * whose signature changed (or that was added or removed), which are looked up
+ * in an index of who calls what. Everything else is reused from the last
+ * compile. If a global changes, every function gets checked again.
+ *
+ * Errors are thrown rather than printed, as a Parser.ParseError or a
+ * TypeCheckTransformer.TypeError holding the message a full compile prints,
+ * and leave the session as it was, so the next version is compared with the
+ * last one that compiled. When a unit has a syntax error (or two units define
+ * the same thing), the whole file goes through the Parser to get its error.
+ */
+public class CompileSession {
+	/** Table every unit's identifiers are interned in, so units parsed at different times share symbols */
+	private SymbolTable symbols = new SymbolTable();
+
+	/** Source the last program was compiled from */
+	private byte[] source = new byte[0];
+
+	/** Units of the source, in order */
+	private ArrayList<Unit> units = new ArrayList<Unit>();
+
+	/** Globals of every unit */
+	private Declarations globals = new Declarations();
+
+	/** Types of the globals */
+	private TypeMap globalTypes = StaticTypeCheck.typing(globals);
+
+	/** Every function as it was parsed, in order */
+	private Functions parsed = new Functions();
+
+	/** Every function as it was type checked and transformed, by name */
+	private Functions checked = new Functions();
+
+	/** Names of the functions each function calls */
+	private final HashMap<String, HashSet<String>> callees = new HashMap<String, HashSet<String>>();
+
+	/** Names of the functions that call each function */
+	private final HashMap<String, HashSet<String>> callers = new HashMap<String, HashSet<String>>();
+
+	/** Program from the last compile */
+	private Program program;
+
+	/**
+	 * Compile a new version of the source
+	 * @param text Bytes of the source file
+	 * @return Type transformed program
+	 * @throws Parser.ParseError if there's a syntax error
+	 * @throws TypeCheckTransformer.TypeError if there's a type error
+	 */
+	public Program compile(byte[] text) {
+		int n = units.size();
+		int delta = text.length - source.length;
+
+		// longest stretches at the start and at the end that didn't change
+		int prefix = prefix(source, text);
+		int suffix = suffix(source, text, Math.min(source.length, text.length) - prefix);
+		int changed = source.length - suffix;
+
+		// units that end before the first change are kept as they are
+		int first = 0;
+		while (first < n && units.get(first).end <= prefix)
+			first++;
+
+		// parse units from there until one ends where an old unit past the change starts
+		UnitScanner scanner = new UnitScanner(text, begin(first), symbols);
+		ArrayList<Unit> middle = new ArrayList<Unit>();
+		int last = first;
+		boolean synced = false;
+		while (!synced && !scanner.done()) {
+			Program p = scanner.unit();
+			if (p == null)
+				return full(text);
+			middle.add(new Unit(scanner.end(), p));
+
+			while (last < n && begin(last) + delta < scanner.end())
+				last++;
+			synced = last < n && begin(last) >= changed && begin(last) + delta == scanner.end();
+		}
+		if (!synced)
+			last = n;
+
+		if (middle.isEmpty() && first == last && program != null) {
+			source = text;
+			for (int i = first; i < n; i++)
+				units.set(i, units.get(i).shift(delta));
+			return program;
+		}
+
+		ArrayList<Unit> removed = new ArrayList<Unit>(units.subList(first, last));
+		ArrayList<Unit> next = new ArrayList<Unit>(n - removed.size() + middle.size());
+		next.addAll(units.subList(0, first));
+		next.addAll(middle);
+		for (int i = last; i < n; i++)
+			next.add(units.get(i).shift(delta));
+
+		// the globals only get put back together if the units that changed declare different ones
+		Declarations globals = this.globals;
+		TypeMap globalTypes = this.globalTypes;
+		boolean globalsChanged = !declarations(removed).equals(declarations(middle));
+		if (globalsChanged) {
+			globals = new Declarations();
+			for (Unit u : next)
+				for (Declaration d : u.program.globals().values())
+					if (globals.put(d.variable().symbol(), d) != null)
+						return full(text);
+			globalTypes = StaticTypeCheck.typing(globals);
+		}
+
+		Functions functions = new Functions();
+		for (Unit u : next)
+			for (Function f : u.program.functions().values())
+				if (functions.put(f.id(), f) != null)
+					return full(text);
+
+		// functions that were parsed again, and the callers of any function whose signature is different now
+		HashSet<String> dirty = new HashSet<String>();
+		for (Unit u : removed)
+			for (Function f : u.program.functions().values())
+				if (!sameSignature(f, functions.get(f.id())))
+					dirty.addAll(callers(f.id()));
+		for (Unit u : middle)
+			for (Function f : u.program.functions().values()) {
+				dirty.add(f.id());
+				if (!sameSignature(f, parsed.get(f.id())))
+					dirty.addAll(callers(f.id()));
+			}
+
+		// same checks in the same order as TypeCheckTransformer, so the same error comes out first
+		if (!functions.containsKey("main"))
+			throw new TypeCheckTransformer.TypeError("Error! Main function not found!");
+		Functions checked = new Functions();
+		for (Function f : functions.values()) {
+			Function c = globalsChanged || dirty.contains(f.id()) ? null : this.checked.get(f.id());
+			if (c == null)
+				c = TypeCheckTransformer.checked(f, functions, StaticTypeCheck.typing(f, globalTypes));
+			checked.put(f.id(), c);
+		}
+
+		// move the index over from the old functions to the new ones (not until the checks pass, so an error leaves the session as it was)
+		for (Unit u : removed)
+			for (String name : u.program.functions().keySet())
+				for (String callee : callees.remove(name))
+					callers.get(callee).remove(name);
+		for (Unit u : middle)
+			for (Function f : u.program.functions().values()) {
+				HashSet<String> calls = new HashSet<String>();
+				calls(f.body(), calls);
+				callees.put(f.id(), calls);
+				for (String callee : calls)
+					callers(callee).add(f.id());
+			}
+
+		this.source = text;
+		this.units = next;
+		this.globals = globals;
+		this.globalTypes = globalTypes;
+		this.parsed = functions;
+		this.checked = checked;
+		this.program = new Program(globals, checked);
+		return program;
+	}
+
+	/**
+	 * @return Program from the last compile (null if nothing has been compiled yet)
+	 */
+	public Program program() {
+		return program;
+	}
+
+	/**
+	 * Compile the whole file from scratch. If that works, the next compile starts over from nothing.
+	 * @param text Bytes of the source file
+	 * @return Type transformed program
+	 * @throws Parser.ParseError if there's a syntax error
+	 * @throws TypeCheckTransformer.TypeError if there's a type error
+	 */
+	private Program full(byte[] text) {
+		// a unit can fail to parse on its own where the file doesn't (the parser stops at the first thing that isn't a type)
+		SymbolTable symbols = new SymbolTable();
+		Program p = TypeCheckTransformer.checked(Parser.parse(text, symbols));
+
+		this.symbols = symbols;
+		source = new byte[0];
+		units = new ArrayList<Unit>();
+		globals = new Declarations();
+		globalTypes = StaticTypeCheck.typing(globals);
+		parsed = new Functions();
+		checked = new Functions();
+		callees.clear();
+		callers.clear();
+		program = p;
+		return p;
+	}
+
+	/**
+	 * @param a Bytes
+	 * @param b More bytes
+	 * @return Number of bytes at the start that are the same in both
+	 */
+	private static int prefix(byte[] a, byte[] b) {
+		int max = Math.min(a.length, b.length);
+		ByteBuffer x = ByteBuffer.wrap(a), y = ByteBuffer.wrap(b);
+		int i = 0;
+		// eight at a time until there's a difference, then one at a time
+		while (i + 8 <= max && x.getLong(i) == y.getLong(i))
+			i += 8;
+		while (i < max && a[i] == b[i])
+			i++;
+		return i;
+	}
+
+	/**
+	 * @param a Bytes
+	 * @param b More bytes
+	 * @param max Most bytes to count
+	 * @return Number of bytes at the end that are the same in both
+	 */
+	private static int suffix(byte[] a, byte[] b, int max) {
+		ByteBuffer x = ByteBuffer.wrap(a), y = ByteBuffer.wrap(b);
+		int i = 0;
+		while (i + 8 <= max && x.getLong(a.length - i - 8) == y.getLong(b.length - i - 8))
+			i += 8;
+		while (i < max && a[a.length - 1 - i] == b[b.length - 1 - i])
+			i++;
+		return i;
+	}
+
+	/**
+	 * @param i Index of a unit
+	 * @return Offset the unit starts at in the last source
+	 */
+	private int begin(int i) {
+		return i == 0 ? 0 : units.get(i - 1).end;
+	}
+
+	/**
+	 * @param name Name of a function
+	 * @return Names of the functions that call it
+	 */
+	private HashSet<String> callers(String name) {
+		HashSet<String> names = callers.get(name);
+		if (names == null) {
+			names = new HashSet<String>();
+			callers.put(name, names);
+		}
+		return names;
+	}
+
+	/**
+	 * @param units Units
+	 * @return Name and type of every global the units declare, in order
+	 */
+	private static ArrayList<String> declarations(ArrayList<Unit> units) {
+		ArrayList<String> ds = new ArrayList<String>();
+		for (Unit u : units)
+			for (Declaration d : u.program.globals().values())
+				ds.add(d.type() + " " + d.variable());
+		return ds;
+	}
+
+	/**
+	 * @param f Function
+	 * @param g Another function (or null)
+	 * @return Whether or not calls to one check the same way as calls to the other
+	 */
+	private static boolean sameSignature(Function f, Function g) {
+		if (g == null || f.type() != g.type() || f.params().size() != g.params().size())
+			return false;
+		Iterator<Declaration> ps = g.params().values().iterator();
+		for (Declaration p : f.params().values())
+			if (p.type() != ps.next().type())
+				return false;
+		return true;
+	}
+
+	/**
+	 * Collect the names of the functions a statement calls. A return counts as a call
+	 * to the function it returns from, since it's checked against that function's type.
+	 * @param s Statement
+	 * @param names Set to add the names to
+	 */
+	private static void calls(Statement s, HashSet<String> names) {
+		if (s instanceof Call)
+			expressionCalls((Expression) s, names);
+		else if (s instanceof Return) {
+			names.add(((Return) s).functionName().toString());
+			expressionCalls(((Return) s).result(), names);
+		} else if (s instanceof Assignment)
+			expressionCalls(((Assignment) s).source(), names);
+		else if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			expressionCalls(c.test(), names);
+			calls(c.thenBranch(), names);
+			calls(c.elseBranch(), names);
+		} else if (s instanceof Loop) {
+			expressionCalls(((Loop) s).test(), names);
+			calls(((Loop) s).body(), names);
+		} else if (s instanceof Block) {
+			Block b = (Block) s;
+			for (int i = 0; i < b.size(); i++)
+				calls(b.member(i), names);
+		}
+	}
+
+	/**
+	 * Collect the names of the functions an expression calls
+	 * @param e Expression
+	 * @param names Set to add the names to
+	 */
+	private static void expressionCalls(Expression e, HashSet<String> names) {
+		if (e instanceof Call) {
+			Call c = (Call) e;
+			names.add(c.identifier().toString());
+			for (int i = 0; i < c.argumentCount(); i++)
+				expressionCalls(c.argument(i), names);
+		} else if (e instanceof Binary) {
+			expressionCalls(((Binary) e).term1(), names);
+			expressionCalls(((Binary) e).term2(), names);
+		} else if (e instanceof Unary)
+			expressionCalls(((Unary) e).term(), names);
+	}
+
+	/**
+	 * A stretch of the source that parses on its own
+	 */
+	private static class Unit {
+		/** Offset just past the end of the unit */
+		final int end;
+
+		/** Globals and functions declared in the unit, as parsed */
+		final Program program;
+
+		/**
+		 * @param end Offset just past the end of the unit
+		 * @param program Globals and functions declared in the unit
+		 */
+		Unit(int end, Program program) {
+			this.end = end;
+			this.program = program;
+		}
+
+		/**
+		 * @param delta How far the unit moved
+		 * @return Same unit, moved
+		 */
+		Unit shift(int delta) {
+			return delta == 0 ? this : new Unit(end + delta, program);
+		}
+	}
+}
@@ -0,0 +1,537 @@
+package clite.cache;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import clite.syntax.Operator;
+import clite.syntax.Program;
+import clite.syntax.Symbol;
+import clite.syntax.SymbolTable;
+import clite.syntax.Type;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.declaration.Declarations;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Functions;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.CharValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+
+
+/**
+ * On-disk cache of type transformed programs, so a source file that hasn't
+ * changed doesn't have to be lexed, parsed, type checked or transformed again.
+ *
+ * Each program is stored in its own file, named after a SHA-256 hash of the
+ * source it came from. The file is a header followed by the program written
+ * out node by node: a one byte tag saying what the node is, then its fields
+ * and children. Names are written out the first time they're used and
+ * referred to by number after that. The last four bytes are a CRC-32 of the
+ * program, so a file that's been damaged is a miss rather than some other
+ * program. Cache files are memory-mapped to read them.
+ *
+ * A hit is only about 4 to 8 times faster than parsing, type checking and
+ * transforming the source again (on a 3 MB file). Hashing the source, mapping
+ * the file and checking the CRC take about 3 ms of that; the rest is building
+ * the same nodes the parser would, and the garbage collections that copy them
+ * while they're being built.
+ */
+public class ProgramCache {
+	/** First bytes of every cache file */
+	private static final int MAGIC = 0x434c4954;
+
+	/** Version of the encoding; bump this whenever it changes so old files get ignored */
+	private static final int VERSION = 3;
+
+	/** Tags for each kind of node */
+	private static final byte
+	SKIP = 0, BLOCK = 1, ASSIGNMENT = 2, CONDITIONAL = 3, LOOP = 4, CALL = 5, RETURN = 6,
+	VARIABLE = 7, INT = 8, FLOAT = 9, CHAR = 10, TRUE = 11, FALSE = 12, BINARY = 13, UNARY = 14;
+
+	/** Every operator, by ordinal */
+	private static final Operator[] OPERATORS = Operator.values();
+
+	/** Every type, by ordinal */
+	private static final Type[] TYPES = Type.values();
+
+	/** Hash of the names of every operator and type, in ordinal order */
+	private static final int ORDINALS = ordinals();
+
+	/** Directory cache files go in */
+	private final File directory;
+
+	/**
+	 * @param directory Directory to keep cache files in (created when the first program is stored)
+	 */
+	public ProgramCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Operators and types are stored by ordinal, so a file written before an
+	 * operator or a type was added, removed or moved has to be ignored
+	 * @return Hash of the names of every operator and type, in ordinal order
+	 */
+	private static int ordinals() {
+		StringBuilder names = new StringBuilder();
+		for (Operator op : OPERATORS)
+			names.append(op.name()).append(',');
+		names.append(';');
+		for (Type t : TYPES)
+			names.append(t.name()).append(',');
+		return names.toString().hashCode();
+	}
+
+	/**
+	 * Look up the program for a source file
+	 * @param source Bytes of the source file
+	 * @return Type transformed program, or null if it isn't in the cache
+	 */
+	public Program load(byte[] source) {
+		File file = file(source);
+		if (!file.isFile())
+			return null;
+
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (in.remaining() < 16 || in.getInt() != MAGIC || in.getInt() != VERSION || in.getInt() != ORDINALS)
+					return null;
+
+				// the last four bytes are a checksum of everything between the header and them
+				int end = in.limit() - 4;
+				ByteBuffer body = in.duplicate();
+				body.limit(end);
+				CRC32 crc = new CRC32();
+				crc.update(body);
+				if ((int) crc.getValue() != in.getInt(end))
+					return null;
+
+				in.limit(end);
+				Program p = new Reader(in).program();
+				// bytes left over mean the file wasn't written by store()
+				return in.hasRemaining() ? null : p;
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {
+			// a file that was cut short or written by something else is just a miss
+			return null;
+		}
+	}
+
+	/**
+	 * Store the program for a source file. Failing to write the cache isn't an error;
+	 * the program just gets parsed again next time.
+	 * @param source Bytes of the source file
+	 * @param p Type transformed program
+	 */
+	public void store(byte[] source, Program p) {
+		File file = file(source);
+		File temp = new File(directory, file.getName() + ".tmp");
+		try {
+			directory.mkdirs();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(ORDINALS);
+				CRC32 crc = new CRC32();
+				DataOutputStream body = new DataOutputStream(new CheckedOutputStream(out, crc));
+				new Writer(body).program(p);
+				body.flush();
+				out.writeInt((int) crc.getValue());
+			} finally {
+				out.close();
+			}
+
+			// readers only ever see a whole file
+			if (!temp.renameTo(file))
+				temp.delete();
+		} catch (IOException e) {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * @param source Bytes of the source file
+	 * @return Cache file for the source
+	 */
+	private File file(byte[] source) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(source);
+			StringBuilder name = new StringBuilder();
+			for (byte b : hash)
+				name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			return new File(directory, name.append(".ast").toString());
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-256
+			throw new IllegalArgumentException("should never reach here");
+		}
+	}
+
+	/**
+	 * Writes a program out node by node
+	 */
+	private static class Writer {
+		/** Stream being written to */
+		private final DataOutputStream out;
+
+		/** Number of each name that's been written */
+		private final HashMap<String, Integer> names = new HashMap<String, Integer>();
+
+		/** @param out Stream to write to */
+		Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Program = Declarations globals; Functions functions
+		 * @param p Program to write
+		 */
+		void program(Program p) throws IOException {
+			declarations(p.globals());
+			number(p.functions().size());
+			for (Function f : p.functions().values()) {
+				out.writeByte(f.type().ordinal());
+				name(f.id());
+				declarations(f.params());
+				declarations(f.locals());
+				statement(f.body());
+			}
+		}
+
+		/**
+		 * @param ds Declarations to write
+		 */
+		void declarations(Declarations ds) throws IOException {
+			number(ds.size());
+			for (Declaration d : ds.values()) {
+				name(d.variable().toString());
+				out.writeByte(d.type().ordinal());
+			}
+		}
+
+		/**
+		 * @param s Statement to write
+		 */
+		void statement(Statement s) throws IOException {
+			if (s instanceof Skip) {
+				out.writeByte(SKIP);
+			} else if (s instanceof Block) {
+				Block b = (Block) s;
+				out.writeByte(BLOCK);
+				number(b.size());
+				for (int i = 0; i < b.size(); i++)
+					statement(b.member(i));
+			} else if (s instanceof Assignment) {
+				Assignment a = (Assignment) s;
+				out.writeByte(ASSIGNMENT);
+				name(a.target().toString());
+				expression(a.source());
+			} else if (s instanceof Conditional) {
+				Conditional c = (Conditional) s;
+				out.writeByte(CONDITIONAL);
+				expression(c.test());
+				statement(c.thenBranch());
+				statement(c.elseBranch());
+			} else if (s instanceof Loop) {
+				Loop l = (Loop) s;
+				out.writeByte(LOOP);
+				expression(l.test());
+				statement(l.body());
+			} else if (s instanceof Call) {
+				call((Call) s);
+			} else if (s instanceof Return) {
+				Return r = (Return) s;
+				out.writeByte(RETURN);
+				name(r.functionName().toString());
+				expression(r.result());
+			} else
+				throw new IllegalArgumentException("should never reach here");
+		}
+
+		/**
+		 * @param e Expression to write
+		 */
+		void expression(Expression e) throws IOException {
+			if (e instanceof Variable) {
+				out.writeByte(VARIABLE);
+				name(e.toString());
+			} else if (e instanceof Value) {
+				Value v = (Value) e;
+				if (v.type() == Type.INT) {
+					// zigzag, so small negative numbers stay small too
+					out.writeByte(INT);
+					number((v.intValue() << 1) ^ (v.intValue() >> 31));
+				} else if (v.type() == Type.FLOAT) {
+					out.writeByte(FLOAT);
+					out.writeFloat(v.floatValue());
+				} else if (v.type() == Type.CHAR) {
+					out.writeByte(CHAR);
+					out.writeChar(v.charValue());
+				} else
+					out.writeByte(v.boolValue() ? TRUE : FALSE);
+			} else if (e instanceof Binary) {
+				Binary b = (Binary) e;
+				out.writeByte(BINARY);
+				out.writeByte(b.operator().ordinal());
+				expression(b.term1());
+				expression(b.term2());
+			} else if (e instanceof Unary) {
+				Unary u = (Unary) e;
+				out.writeByte(UNARY);
+				out.writeByte(u.operator().ordinal());
+				expression(u.term());
+			} else if (e instanceof Call) {
+				call((Call) e);
+			} else
+				throw new IllegalArgumentException("should never reach here");
+		}
+
+		/**
+		 * @param c Call to write
+		 */
+		void call(Call c) throws IOException {
+			out.writeByte(CALL);
+			name(c.identifier().toString());
+			number(c.argumentCount());
+			for (int i = 0; i < c.argumentCount(); i++)
+				expression(c.argument(i));
+		}
+
+		/**
+		 * Write a name, or its number if it's already been written
+		 * @param name Name to write
+		 */
+		void name(String name) throws IOException {
+			Integer n = names.get(name);
+			if (n != null) {
+				number(n + 1);
+				return;
+			}
+			names.put(name, names.size());
+			number(0);
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			number(bytes.length);
+			out.write(bytes);
+		}
+
+		/**
+		 * Write a number in as few bytes as it fits in, seven bits at a time (negative numbers take five)
+		 * @param n Number to write
+		 */
+		void number(int n) throws IOException {
+			while ((n & ~0x7f) != 0) {
+				out.writeByte((n & 0x7f) | 0x80);
+				n >>>= 7;
+			}
+			out.writeByte(n);
+		}
+	}
+
+	/**
+	 * Reads a program back in from what Writer wrote
+	 */
+	private static class Reader {
+		/** Buffer being read */
+		private final ByteBuffer in;
+
+		/** Every name that's been read, by number (interned, so every use of a name shares one Variable) */
+		private final ArrayList<Symbol> names = new ArrayList<Symbol>();
+
+		/** Table the names are interned in */
+		private final SymbolTable symbols = new SymbolTable();
+
+		/** @param in Buffer to read */
+		Reader(ByteBuffer in) {
+			this.in = in;
+		}
+
+		/**
+		 * @return Program that was written
+		 */
+		Program program() {
+			Declarations globals = declarations();
+			Functions funcs = new Functions();
+			for (int n = number(); n > 0; n--) {
+				Type type = TYPES[in.get()];
+				String id = name();
+				Declarations params = declarations();
+				Declarations locals = declarations();
+				funcs.put(id, new Function(type, id, params, locals, (Block) statement()));
+			}
+			return new Program(globals, funcs);
+		}
+
+		/**
+		 * @return Declarations that were written
+		 */
+		Declarations declarations() {
+			Declarations ds = new Declarations();
+			for (int n = number(); n > 0; n--) {
+				Variable v = variable();
+				ds.put(v.symbol(), new Declaration(v, TYPES[in.get()]));
+			}
+			return ds;
+		}
+
+		/**
+		 * @return Statement that was written
+		 */
+		Statement statement() {
+			byte tag = in.get();
+			switch (tag) {
+			case SKIP:
+				return new Skip();
+			case BLOCK: {
+				Block.Builder b = new Block.Builder();
+				for (int n = number(); n > 0; n--)
+					b.add(statement());
+				return b.build();
+			}
+			case ASSIGNMENT: {
+				Variable target = variable();
+				return new Assignment(target, expression());
+			}
+			case CONDITIONAL: {
+				Expression test = expression();
+				Statement thenBranch = statement();
+				return new Conditional(test, thenBranch, statement());
+			}
+			case LOOP: {
+				Expression test = expression();
+				return new Loop(test, statement());
+			}
+			case CALL:
+				return call();
+			case RETURN: {
+				Variable function = variable();
+				return new Return(function, expression());
+			}
+			default:
+				throw new IllegalArgumentException("should never reach here");
+			}
+		}
+
+		/**
+		 * @return Expression that was written
+		 */
+		Expression expression() {
+			byte tag = in.get();
+			switch (tag) {
+			case VARIABLE:
+				return variable();
+			case INT: {
+				int n = number();
+				return IntValue.of((n >>> 1) ^ -(n & 1));
+			}
+			case FLOAT:
+				return FloatValue.of(in.getFloat());
+			case CHAR:
+				return CharValue.of(in.getChar());
+			case TRUE:
+				return BoolValue.TRUE;
+			case FALSE:
+				return BoolValue.FALSE;
+			case BINARY: {
+				Operator op = OPERATORS[in.get()];
+				Expression term1 = expression();
+				return new Binary(op, term1, expression());
+			}
+			case UNARY: {
+				Operator op = OPERATORS[in.get()];
+				return new Unary(op, expression());
+			}
+			case CALL:
+				return call();
+			default:
+				throw new IllegalArgumentException("should never reach here");
+			}
+		}
+
+		/**
+		 * @return Call that was written (after its tag)
+		 */
+		Call call() {
+			Variable id = variable();
+			Expression[] args = new Expression[number()];
+			for (int i = 0; i < args.length; i++)
+				args[i] = expression();
+			return new Call(id, args);
+		}
+
+		/**
+		 * @return Name that was written
+		 */
+		String name() {
+			return names.get(nameNumber()).name();
+		}
+
+		/**
+		 * @return Variable for the name that was written
+		 */
+		Variable variable() {
+			return names.get(nameNumber()).variable();
+		}
+
+		/**
+		 * Read a name, adding it to the list if it's new
+		 * @return Number of the name
+		 */
+		int nameNumber() {
+			int n = number();
+			if (n > 0)
+				return n - 1;
+
+			byte[] bytes = new byte[number()];
+			in.get(bytes);
+			names.add(symbols.intern(new String(bytes, StandardCharsets.UTF_8)));
+			return names.size() - 1;
+		}
+
+		/**
+		 * @return Number written by Writer.number()
+		 */
+		int number() {
+			int n = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = in.get();
+				n |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			return n;
+		}
+	}
+}
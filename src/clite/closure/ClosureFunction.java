@@ -0,0 +1,73 @@
+package clite.closure;
+
+import clite.interpreter.ControlFlow;
+import clite.syntax.function.Function;
+
+
+/**
+ * A function that's been linked into closures; calls to it point straight at this
+ */
+public class ClosureFunction {
+	/** Function this was linked from */
+	final Function function;
+
+	/** Number of slots in the function's frame */
+	final int frameSize;
+
+	/** Number of parameters (they take up the first slots) */
+	final int paramCount;
+
+	/** Whether or not the function's body always hits a return statement */
+	final boolean alwaysReturns;
+
+	/** Body of the function (set once it's linked, so recursive calls can point at the function first) */
+	Stmt body;
+
+	/** Frames that are free to be reused */
+	private Frame[] pool = new Frame[4];
+
+	/** Number of frames in the pool */
+	private int pooled = 0;
+
+	/**
+	 * @param function Function being linked
+	 * @param frameSize Number of slots in the function's frame
+	 */
+	ClosureFunction(Function function, int frameSize) {
+		this.function = function;
+		this.frameSize = frameSize;
+		this.paramCount = function.params().size();
+		this.alwaysReturns = ControlFlow.alwaysReturns(function.body());
+	}
+
+	/**
+	 * Get a frame for a call, reusing a released one if there is one
+	 * @return Frame whose locals are all 0
+	 */
+	Frame acquire() {
+		if (pooled == 0)
+			return new Frame(frameSize);
+
+		// parameters get overwritten by the arguments, so only locals need clearing
+		Frame f = pool[--pooled];
+		for (int slot = paramCount; slot < frameSize; slot++) {
+			f.ints[slot] = 0;
+			f.floats[slot] = 0.0f;
+			f.defined[slot] = false;
+		}
+		return f;
+	}
+
+	/**
+	 * Give a frame back once its call is done
+	 * @param f Frame acquired from this function
+	 */
+	void release(Frame f) {
+		if (pooled == pool.length) {
+			Frame[] bigger = new Frame[pool.length * 2];
+			System.arraycopy(pool, 0, bigger, 0, pool.length);
+			pool = bigger;
+		}
+		pool[pooled++] = f;
+	}
+}
@@ -0,0 +1,66 @@
+package clite.closure;
+
+import clite.interpreter.FrameLayout;
+import clite.interpreter.Interpreter;
+import clite.interpreter.State;
+import clite.syntax.Program;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.function.Function;
+
+
+/**
+ * Runs a program by linking it into closures and running main's closure.
+ * This is a drop-in replacement for Interpreter.interpret(Program).
+ */
+public class ClosureInterpreter {
+	/**
+	 * Interprets a program and returns the final state of the program
+	 * @param p Program to interpret (must already be transformed and resolved)
+	 * @return Final state of program
+	 */
+	public static State interpret(Program p) {
+		Linker linker = new Linker(p);
+		ClosureFunction main = linker.link();
+
+		// main's parameters never get arguments, but they still count as defined
+		Frame frame = main.acquire();
+		for (int slot = 0; slot < main.paramCount; slot++)
+			frame.defined[slot] = true;
+
+		main.body.execute(frame);
+		return finalState(p, linker.globals(), frame);
+	}
+
+	/**
+	 * Turn the unboxed globals and main's frame back into a State
+	 * @param p Program that was run
+	 * @param globals Frame holding the globals
+	 * @param frame Main's frame
+	 * @return Final state of program
+	 */
+	private static State finalState(Program p, Frame globals, Frame frame) {
+		Function main = p.functions().get("main");
+		State state = Interpreter.initialState(p.globals());
+		FrameLayout layout = state.layout(main);
+		state.push(layout.acquire());
+		state.nameFrame(layout.names());
+
+		int slot = 0;
+		for (Declaration d : p.globals().values()) {
+			state.onion(d.variable().at(slot, true), globals.value(slot, d.type()));
+			slot++;
+		}
+
+		slot = 0;
+		for (Declaration d : main.params().values()) {
+			state.onion(d.variable().at(slot, false), frame.value(slot, d.type()));
+			slot++;
+		}
+		for (Declaration d : main.locals().values()) {
+			state.onion(d.variable().at(slot, false), frame.value(slot, d.type()));
+			slot++;
+		}
+
+		return state;
+	}
+}
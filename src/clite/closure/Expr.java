@@ -0,0 +1,33 @@
+package clite.closure;
+
+
+/**
+ * An expression that's been linked into a closure.
+ * Each closure only implements the eval method for its own type;
+ * ints and chars are evaluated with evalInt.
+ */
+public abstract class Expr {
+	/**
+	 * @param f Frame of the function the expression is in
+	 * @return Value of an int or char expression
+	 */
+	public int evalInt(Frame f) {
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * @param f Frame of the function the expression is in
+	 * @return Value of a float expression
+	 */
+	public float evalFloat(Frame f) {
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * @param f Frame of the function the expression is in
+	 * @return Value of a bool expression
+	 */
+	public boolean evalBool(Frame f) {
+		throw new IllegalArgumentException("should never reach here");
+	}
+}
@@ -0,0 +1,68 @@
+package clite.closure;
+
+import clite.syntax.Type;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.CharValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+
+
+/**
+ * Unboxed storage for the variables of one function call (or the globals).
+ *
+ * Every variable has a slot in both arrays; ints, chars and bools (as 0 or 1)
+ * use the int array and floats use the float array. Undefined variables read as 0,
+ * but each one is flagged, so copying it somewhere else copies the flag too.
+ */
+public class Frame {
+	/** Int, char and bool variables, indexed by slot */
+	final int[] ints;
+
+	/** Float variables, indexed by slot */
+	final float[] floats;
+
+	/** Whether or not each variable has been defined */
+	final boolean[] defined;
+
+	/** Value returned by the last int, char or bool return statement run in this frame */
+	int returnInt;
+
+	/** Value returned by the last float return statement run in this frame */
+	float returnFloat;
+
+	/** Whether or not the value returned by the last return statement run in this frame is defined */
+	boolean returnDefined;
+
+	/** Whether or not the result of the last call made from this frame is defined */
+	boolean callDefined;
+
+	/**
+	 * @param size Number of slots
+	 */
+	Frame(int size) {
+		ints = new int[size];
+		floats = new float[size];
+		defined = new boolean[size];
+	}
+
+	/**
+	 * Get the value of a variable as a Value, or an undefined value if it was never defined
+	 * @param slot Slot of variable
+	 * @param t Type of variable
+	 * @return Value of variable
+	 */
+	Value value(int slot, Type t) {
+		if (!defined[slot])
+			return Value.mkValue(t);
+		if (t == Type.INT)
+			return IntValue.of(ints[slot]);
+		if (t == Type.FLOAT)
+			return FloatValue.of(floats[slot]);
+		if (t == Type.BOOL)
+			return BoolValue.of(ints[slot] != 0);
+		if (t == Type.CHAR)
+			return CharValue.of((char) ints[slot]);
+		throw new IllegalArgumentException("should never reach here");
+	}
+}
@@ -0,0 +1,692 @@
+package clite.closure;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import clite.interpreter.ControlFlow;
+import clite.interpreter.Resolver;
+import clite.syntax.Operator;
+import clite.syntax.Program;
+import clite.syntax.Type;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+import clite.syntax.value.Value;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeMap;
+
+
+/**
+ * Walks a program once and turns every statement and expression into a closure.
+ *
+ * All of the decisions the interpreter makes while it runs (what kind of statement this is,
+ * which operator to apply, which function a call goes to, where a variable lives)
+ * are made here instead, so running the closures doesn't have to make them again.
+ *
+ * Every frame keeps track of which of its variables are defined, the same way the
+ * interpreter's values do. Copying a variable (by assigning it, passing it as an argument
+ * or returning it) or the result of a call copies whether or not it's defined;
+ * anything that's worked out from other values is defined.
+ *
+ * Linking a program assumes that the given program
+ * has already been through TypeTransformer.transform() and Resolver.resolve()
+ */
+public class Linker {
+	/**
+	 * Copies an argument from the caller's frame into the callee's frame
+	 */
+	private static abstract class Binder {
+		/**
+		 * @param caller Frame of the caller, which the argument is evaluated in
+		 * @param callee Frame of the function being called
+		 */
+		abstract void bind(Frame caller, Frame callee);
+	}
+
+	/**
+	 * Tells whether or not the value of an expression is defined, once it's been evaluated
+	 */
+	private static abstract class Defined {
+		/**
+		 * @param f Frame the expression was evaluated in
+		 * @return Whether or not the expression's value is defined
+		 */
+		abstract boolean in(Frame f);
+	}
+
+	/** Program being linked */
+	private Program program;
+
+	/** Linked version of every function */
+	private HashMap<String, ClosureFunction> functions = new HashMap<String, ClosureFunction>();
+
+	/** Frame holding the globals */
+	private Frame globals;
+
+	/** Types of all variables visible in the function being linked */
+	private TypeMap tm;
+
+	/** Types of the globals, which every function's type map reads through to */
+	private final TypeMap globalTypes;
+
+	/**
+	 * @param p Program to link
+	 */
+	public Linker(Program p) {
+		this.program = p;
+		this.globalTypes = StaticTypeCheck.typing(p.globals());
+		this.globals = new Frame(p.globals().size());
+	}
+
+	/** @return Frame holding the globals */
+	public Frame globals() { return globals; }
+
+	/**
+	 * Link every function in the program
+	 * @return Linked main function
+	 */
+	public ClosureFunction link() {
+		// every function exists before any body is linked, so calls can point right at them
+		for (Function f : program.functions().values())
+			functions.put(f.id(), new ClosureFunction(f, Resolver.frameSize(f)));
+
+		for (ClosureFunction cf : functions.values()) {
+			Function f = cf.function;
+			tm = StaticTypeCheck.typing(f, globalTypes);
+			cf.body = statement(f.body(), f);
+		}
+
+		return functions.get("main");
+	}
+
+	/**
+	 * Link a statement
+	 * @param s Statement to link
+	 * @param func Function the statement is in
+	 * @return Closure that runs the statement
+	 */
+	private Stmt statement(Statement s, Function func) {
+		if (s instanceof Skip)
+			return new Stmt() {
+				public boolean execute(Frame f) { return false; }
+			};
+
+		if (s instanceof Assignment)
+			return assignment((Assignment) s);
+
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			final Expr test = expression(c.test());
+			final Stmt thenBranch = statement(c.thenBranch(), func);
+			final Stmt elseBranch = statement(c.elseBranch(), func);
+			return new Stmt() {
+				public boolean execute(Frame f) {
+					if (test.evalBool(f))
+						return thenBranch.execute(f);
+					return elseBranch.execute(f);
+				}
+			};
+		}
+
+		if (s instanceof Loop) {
+			Loop l = (Loop) s;
+			final Expr test = expression(l.test());
+			final Stmt body = statement(l.body(), func);
+			if (!ControlFlow.containsReturn(l.body()))
+				return new Stmt() {
+					public boolean execute(Frame f) {
+						while (test.evalBool(f))
+							body.execute(f);
+						return false;
+					}
+				};
+			return new Stmt() {
+				public boolean execute(Frame f) {
+					while (test.evalBool(f))
+						if (body.execute(f))
+							return true;
+					return false;
+				}
+			};
+		}
+
+		if (s instanceof Block) {
+			Block b = (Block) s;
+			final Stmt[] stmts = new Stmt[b.size()];
+			for (int i = 0; i < stmts.length; i++)
+				stmts[i] = statement(b.member(i), func);
+			if (!ControlFlow.containsReturn(s))
+				return new Stmt() {
+					public boolean execute(Frame f) {
+						for (Stmt stmt : stmts)
+							stmt.execute(f);
+						return false;
+					}
+				};
+			return new Stmt() {
+				public boolean execute(Frame f) {
+					for (Stmt stmt : stmts)
+						if (stmt.execute(f))
+							return true;
+					return false;
+				}
+			};
+		}
+
+		if (s instanceof Call)
+			return callStatement((Call) s);
+
+		if (s instanceof Return)
+			return ret((Return) s, func);
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Link an assignment
+	 * @param a Assignment to link
+	 * @return Closure that runs the assignment
+	 */
+	private Stmt assignment(Assignment a) {
+		final Variable target = a.target();
+		final int slot = target.slot();
+		final Expr src = expression(a.source());
+		Type t = tm.get(target);
+
+		Stmt store;
+		if (target.isGlobal()) {
+			final int[] ints = globals.ints;
+			final float[] floats = globals.floats;
+			if (t == Type.FLOAT)
+				store = new Stmt() {
+					public boolean execute(Frame f) { floats[slot] = src.evalFloat(f); return false; }
+				};
+			else if (t == Type.BOOL)
+				store = new Stmt() {
+					public boolean execute(Frame f) { ints[slot] = src.evalBool(f) ? 1 : 0; return false; }
+				};
+			else
+				store = new Stmt() {
+					public boolean execute(Frame f) { ints[slot] = src.evalInt(f); return false; }
+				};
+		} else {
+			if (t == Type.FLOAT)
+				store = new Stmt() {
+					public boolean execute(Frame f) { f.floats[slot] = src.evalFloat(f); return false; }
+				};
+			else if (t == Type.BOOL)
+				store = new Stmt() {
+					public boolean execute(Frame f) { f.ints[slot] = src.evalBool(f) ? 1 : 0; return false; }
+				};
+			else
+				store = new Stmt() {
+					public boolean execute(Frame f) { f.ints[slot] = src.evalInt(f); return false; }
+				};
+		}
+
+		return define(store, target, a.source());
+	}
+
+	/**
+	 * Wrap a store into a variable so it also updates whether or not the variable is defined
+	 * @param store Closure doing the store
+	 * @param target Variable being stored to
+	 * @param source Expression being stored
+	 * @return Closure that does the store and updates the target's defined flag
+	 */
+	private Stmt define(final Stmt store, Variable target, Expression source) {
+		final int slot = target.slot();
+		final boolean targetGlobal = target.isGlobal();
+		final boolean[] globalDefined = globals.defined;
+
+		// copying an undefined value leaves the target undefined
+		final Defined copied = defined(source);
+		if (copied != null) {
+			return new Stmt() {
+				public boolean execute(Frame f) {
+					store.execute(f);
+					boolean defined = copied.in(f);
+					if (targetGlobal)
+						globalDefined[slot] = defined;
+					else
+						f.defined[slot] = defined;
+					return false;
+				}
+			};
+		}
+
+		if (targetGlobal)
+			return new Stmt() {
+				public boolean execute(Frame f) {
+					store.execute(f);
+					globalDefined[slot] = true;
+					return false;
+				}
+			};
+		return new Stmt() {
+			public boolean execute(Frame f) {
+				store.execute(f);
+				f.defined[slot] = true;
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Link a return statement
+	 * @param r Return to link
+	 * @param func Function the return is in
+	 * @return Closure that leaves the result in the frame and stops the function
+	 */
+	private Stmt ret(Return r, Function func) {
+		final Expr result = expression(r.result());
+		final Stmt store;
+		if (func.type() == Type.FLOAT)
+			store = new Stmt() {
+				public boolean execute(Frame f) {
+					f.returnFloat = result.evalFloat(f);
+					return true;
+				}
+			};
+		else if (func.type() == Type.BOOL)
+			store = new Stmt() {
+				public boolean execute(Frame f) {
+					f.returnInt = result.evalBool(f) ? 1 : 0;
+					return true;
+				}
+			};
+		else
+			store = new Stmt() {
+				public boolean execute(Frame f) {
+					f.returnInt = result.evalInt(f);
+					return true;
+				}
+			};
+
+		// returning an undefined value hands the caller an undefined value
+		final Defined copied = defined(r.result());
+		if (copied != null)
+			return new Stmt() {
+				public boolean execute(Frame f) {
+					store.execute(f);
+					f.returnDefined = copied.in(f);
+					return true;
+				}
+			};
+		return new Stmt() {
+			public boolean execute(Frame f) {
+				store.execute(f);
+				f.returnDefined = true;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Work out how to tell whether or not an expression's value is defined.
+	 * Only variables, calls and undefined literals can be undefined; the result
+	 * of any operation is defined.
+	 * @param e Expression to check
+	 * @return Check to run once the expression's been evaluated, or null if it's always defined
+	 */
+	private Defined defined(Expression e) {
+		if (e instanceof Variable) {
+			final int slot = ((Variable) e).slot();
+			if (((Variable) e).isGlobal()) {
+				final boolean[] globalDefined = globals.defined;
+				return new Defined() {
+					boolean in(Frame f) { return globalDefined[slot]; }
+				};
+			}
+			return new Defined() {
+				boolean in(Frame f) { return f.defined[slot]; }
+			};
+		}
+
+		// the call leaves whether or not its result is defined in the caller's frame
+		if (e instanceof Call)
+			return new Defined() {
+				boolean in(Frame f) { return f.callDefined; }
+			};
+
+		if (e instanceof Value && ((Value) e).undefined())
+			return new Defined() {
+				boolean in(Frame f) { return false; }
+			};
+		return null;
+	}
+
+	/**
+	 * Link an expression
+	 * @param e Expression to link
+	 * @return Closure that evaluates the expression
+	 */
+	private Expr expression(Expression e) {
+		if (e instanceof Value)
+			return constant((Value) e);
+		if (e instanceof Variable)
+			return variable((Variable) e);
+		if (e instanceof Binary)
+			return binary((Binary) e);
+		if (e instanceof Unary)
+			return unary((Unary) e);
+		if (e instanceof Call)
+			return call((Call) e);
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * @param v Literal to link
+	 * @return Closure that evaluates to the literal
+	 */
+	private Expr constant(Value v) {
+		Type t = v.type();
+		if (t == Type.FLOAT) {
+			final float value = v.undefined() ? 0.0f : v.floatValue();
+			return new Expr() {
+				public float evalFloat(Frame f) { return value; }
+			};
+		}
+		if (t == Type.BOOL) {
+			final boolean value = !v.undefined() && v.boolValue();
+			return new Expr() {
+				public boolean evalBool(Frame f) { return value; }
+			};
+		}
+		final int value = v.undefined() ? 0 : t == Type.CHAR ? v.charValue() : v.intValue();
+		return new Expr() {
+			public int evalInt(Frame f) { return value; }
+		};
+	}
+
+	/**
+	 * @param v Variable to link
+	 * @return Closure that reads the variable
+	 */
+	private Expr variable(Variable v) {
+		final int slot = v.slot();
+		Type t = tm.get(v);
+
+		if (v.isGlobal()) {
+			final int[] ints = globals.ints;
+			final float[] floats = globals.floats;
+			if (t == Type.FLOAT)
+				return new Expr() {
+					public float evalFloat(Frame f) { return floats[slot]; }
+				};
+			if (t == Type.BOOL)
+				return new Expr() {
+					public boolean evalBool(Frame f) { return ints[slot] != 0; }
+				};
+			return new Expr() {
+				public int evalInt(Frame f) { return ints[slot]; }
+			};
+		}
+
+		if (t == Type.FLOAT)
+			return new Expr() {
+				public float evalFloat(Frame f) { return f.floats[slot]; }
+			};
+		if (t == Type.BOOL)
+			return new Expr() {
+				public boolean evalBool(Frame f) { return f.ints[slot] != 0; }
+			};
+		return new Expr() {
+			public int evalInt(Frame f) { return f.ints[slot]; }
+		};
+	}
+
+	/**
+	 * @param b Binary operation to link (must have a typed operator)
+	 * @return Closure that evaluates the operation
+	 */
+	private Expr binary(Binary b) {
+		final Operator op = b.operator();
+		final Expr l = expression(b.term1());
+		final Expr r = expression(b.term2());
+
+		switch (op) {
+		case INT_PLUS:
+			return new Expr() { public int evalInt(Frame f) { return l.evalInt(f) + r.evalInt(f); } };
+		case INT_MINUS:
+			return new Expr() { public int evalInt(Frame f) { return l.evalInt(f) - r.evalInt(f); } };
+		case INT_TIMES:
+			return new Expr() { public int evalInt(Frame f) { return l.evalInt(f) * r.evalInt(f); } };
+		case INT_DIV:
+			return new Expr() { public int evalInt(Frame f) { return l.evalInt(f) / r.evalInt(f); } };
+
+		case FLOAT_PLUS:
+			return new Expr() { public float evalFloat(Frame f) { return l.evalFloat(f) + r.evalFloat(f); } };
+		case FLOAT_MINUS:
+			return new Expr() { public float evalFloat(Frame f) { return l.evalFloat(f) - r.evalFloat(f); } };
+		case FLOAT_TIMES:
+			return new Expr() { public float evalFloat(Frame f) { return l.evalFloat(f) * r.evalFloat(f); } };
+		case FLOAT_DIV:
+			return new Expr() { public float evalFloat(Frame f) { return l.evalFloat(f) / r.evalFloat(f); } };
+
+		// chars are evaluated as ints, so they compare the same way
+		case INT_LT:
+		case CHAR_LT:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalInt(f) < r.evalInt(f); } };
+		case INT_LE:
+		case CHAR_LE:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalInt(f) <= r.evalInt(f); } };
+		case INT_GT:
+		case CHAR_GT:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalInt(f) > r.evalInt(f); } };
+		case INT_GE:
+		case CHAR_GE:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalInt(f) >= r.evalInt(f); } };
+		case INT_EQ:
+		case CHAR_EQ:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalInt(f) == r.evalInt(f); } };
+		case INT_NE:
+		case CHAR_NE:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalInt(f) != r.evalInt(f); } };
+
+		case FLOAT_LT:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalFloat(f) < r.evalFloat(f); } };
+		case FLOAT_LE:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalFloat(f) <= r.evalFloat(f); } };
+		case FLOAT_GT:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalFloat(f) > r.evalFloat(f); } };
+		case FLOAT_GE:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalFloat(f) >= r.evalFloat(f); } };
+		case FLOAT_EQ:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalFloat(f) == r.evalFloat(f); } };
+		case FLOAT_NE:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalFloat(f) != r.evalFloat(f); } };
+
+		// the right-hand side is only evaluated if the left-hand side doesn't decide the result
+		case BOOL_AND:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalBool(f) && r.evalBool(f); } };
+		case BOOL_OR:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalBool(f) || r.evalBool(f); } };
+		case BOOL_EQ:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalBool(f) == r.evalBool(f); } };
+		case BOOL_NE:
+			return new Expr() { public boolean evalBool(Frame f) { return l.evalBool(f) != r.evalBool(f); } };
+
+		default:
+			// the type checker lets bools through every relational op, but only == and != work on them
+			if (op.isRelationalOp())
+				return new Expr() {
+					public boolean evalBool(Frame f) {
+						throw new IllegalArgumentException("Attempted illegal relational op " + op + " on two booleans");
+					}
+				};
+			throw new IllegalArgumentException("should never reach here");
+		}
+	}
+
+	/**
+	 * @param u Unary operation to link (must have a typed operator)
+	 * @return Closure that evaluates the operation
+	 */
+	private Expr unary(Unary u) {
+		final Expr t = expression(u.term());
+
+		switch (u.operator()) {
+		case BOOL_NOT:
+			return new Expr() { public boolean evalBool(Frame f) { return !t.evalBool(f); } };
+		case INT_NEG:
+			return new Expr() { public int evalInt(Frame f) { return -t.evalInt(f); } };
+		case FLOAT_NEG:
+			return new Expr() { public float evalFloat(Frame f) { return -t.evalFloat(f); } };
+		case I2F:
+			return new Expr() { public float evalFloat(Frame f) { return (float) t.evalInt(f); } };
+		case F2I:
+			return new Expr() { public int evalInt(Frame f) { return (int) t.evalFloat(f); } };
+		case C2I:
+			// chars are already evaluated as ints
+			return t;
+		case I2C:
+			return new Expr() { public int evalInt(Frame f) { return (char) t.evalInt(f); } };
+		default:
+			throw new IllegalArgumentException("should never reach here");
+		}
+	}
+
+	/**
+	 * Link a call statement, whose result (if it has one) gets thrown away
+	 * @param c Call to link
+	 * @return Closure that makes the call
+	 */
+	private Stmt callStatement(Call c) {
+		final ClosureFunction target = functions.get(c.identifier().toString());
+		final Binder[] binders = binders(c, target);
+
+		// the callee's return type doesn't matter, since nothing reads the result
+		return new Stmt() {
+			public boolean execute(Frame f) {
+				target.release(invoke(target, binders, f, false));
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Link a function call that's used as an expression
+	 * @param c Call to link
+	 * @return Closure that makes the call
+	 */
+	private Expr call(Call c) {
+		final ClosureFunction target = functions.get(c.identifier().toString());
+		final Binder[] binders = binders(c, target);
+
+		// no need to check for a return that's always going to be hit
+		final boolean check = !target.alwaysReturns;
+
+		if (target.function.type() == Type.FLOAT)
+			return new Expr() {
+				public float evalFloat(Frame f) {
+					Frame callee = invoke(target, binders, f, check);
+					float result = callee.returnFloat;
+					f.callDefined = callee.returnDefined;
+					target.release(callee);
+					return result;
+				}
+			};
+		if (target.function.type() == Type.BOOL)
+			return new Expr() {
+				public boolean evalBool(Frame f) {
+					Frame callee = invoke(target, binders, f, check);
+					boolean result = callee.returnInt != 0;
+					f.callDefined = callee.returnDefined;
+					target.release(callee);
+					return result;
+				}
+			};
+
+		// int and char calls
+		return new Expr() {
+			public int evalInt(Frame f) {
+				Frame callee = invoke(target, binders, f, check);
+				int result = callee.returnInt;
+				f.callDefined = callee.returnDefined;
+				target.release(callee);
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * @param c Call to link
+	 * @param target Function being called
+	 * @return Binder for each of the call's arguments, in order
+	 */
+	private Binder[] binders(Call c, ClosureFunction target) {
+		Binder[] binders = new Binder[c.argumentCount()];
+		Iterator<Declaration> params = target.function.params().values().iterator();
+		for (int slot = 0; slot < binders.length; slot++)
+			binders[slot] = binder(c.argument(slot), params.next().type(), slot);
+		return binders;
+	}
+
+	/**
+	 * @param e Argument to bind
+	 * @param t Type of parameter
+	 * @param slot Slot of parameter in callee's frame
+	 * @return Binder that puts the argument in the parameter's slot and marks whether or not it's defined
+	 */
+	private Binder binder(Expression e, Type t, final int slot) {
+		final Expr arg = expression(e);
+		final Binder store;
+		if (t == Type.FLOAT)
+			store = new Binder() {
+				void bind(Frame caller, Frame callee) { callee.floats[slot] = arg.evalFloat(caller); }
+			};
+		else if (t == Type.BOOL)
+			store = new Binder() {
+				void bind(Frame caller, Frame callee) { callee.ints[slot] = arg.evalBool(caller) ? 1 : 0; }
+			};
+		else
+			store = new Binder() {
+				void bind(Frame caller, Frame callee) { callee.ints[slot] = arg.evalInt(caller); }
+			};
+
+		// passing an undefined value leaves the parameter undefined
+		final Defined copied = defined(e);
+		if (copied != null)
+			return new Binder() {
+				void bind(Frame caller, Frame callee) {
+					store.bind(caller, callee);
+					callee.defined[slot] = copied.in(caller);
+				}
+			};
+		return new Binder() {
+			void bind(Frame caller, Frame callee) {
+				store.bind(caller, callee);
+				callee.defined[slot] = true;
+			}
+		};
+	}
+
+	/**
+	 * Call a function
+	 * @param target Function to call
+	 * @param binders Binders for the arguments
+	 * @param caller Frame of the caller
+	 * @param check Whether or not to make sure the function hit a return
+	 * @return Frame of the finished call (holding the result), to be released by the caller
+	 */
+	private static Frame invoke(ClosureFunction target, Binder[] binders, Frame caller, boolean check) {
+		Frame callee = target.acquire();
+		for (Binder b : binders)
+			b.bind(caller, callee);
+
+		if (!target.body.execute(callee) && check)
+			throw new IllegalArgumentException("attemped to interpret function call with no return as expression");
+		return callee;
+	}
+}
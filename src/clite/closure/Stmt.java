@@ -0,0 +1,14 @@
+package clite.closure;
+
+
+/**
+ * A statement that's been linked into a closure
+ */
+public abstract class Stmt {
+	/**
+	 * Run the statement
+	 * @param f Frame of the function the statement is in
+	 * @return Whether or not a return statement was hit (its value is left in the frame)
+	 */
+	public abstract boolean execute(Frame f);
+}
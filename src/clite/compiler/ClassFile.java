@@ -0,0 +1,316 @@
+package clite.compiler;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * A bare-bones writer for JVM class files.
+ *
+ * Only supports what the compiler needs: one public class with static
+ * fields and static methods. Classes are written as version 49 class files,
+ * which are checked by the type-inferencing verifier, so no stack map
+ * frames have to be generated.
+ */
+public class ClassFile {
+	/** Class file version (Java 5) */
+	private static final int MAJOR_VERSION = 49;
+
+	/** Access flags */
+	public static final int
+	ACC_PUBLIC = 0x0001,
+	ACC_STATIC = 0x0008,
+	ACC_FINAL  = 0x0010,
+	ACC_SUPER  = 0x0020;
+
+	/** Constant pool tags */
+	private static final int
+	CONSTANT_Utf8        = 1,
+	CONSTANT_Integer     = 3,
+	CONSTANT_Float       = 4,
+	CONSTANT_Class       = 7,
+	CONSTANT_Fieldref    = 9,
+	CONSTANT_Methodref   = 10,
+	CONSTANT_NameAndType = 12;
+
+	/** Internal name of this class */
+	private String name;
+
+	/** Constant pool entries, already encoded */
+	private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+	/** Writer for the constant pool */
+	private DataOutputStream poolOut = new DataOutputStream(pool);
+
+	/** Number of entries in the constant pool (plus one; index 0 is unused) */
+	private int poolCount = 1;
+
+	/** Maps the key of each constant to its index, so constants are only added once */
+	private HashMap<String, Integer> constants = new HashMap<String, Integer>();
+
+	/** Encoded fields */
+	private ArrayList<byte[]> fields = new ArrayList<byte[]>();
+
+	/** Encoded methods */
+	private ArrayList<byte[]> methods = new ArrayList<byte[]>();
+
+	/** Index of this class in the constant pool */
+	private int thisClass;
+
+	/** Index of java/lang/Object in the constant pool */
+	private int superClass;
+
+	/**
+	 * @param name Internal name of the class (i.e. clite/compiler/Program)
+	 */
+	public ClassFile(String name) {
+		this.name = name;
+		thisClass = classConstant(name);
+		superClass = classConstant("java/lang/Object");
+	}
+
+	/** @return Internal name of the class */
+	public String name() { return name; }
+
+	/**
+	 * Add a UTF8 constant
+	 * @param s String to add
+	 * @return Index of constant
+	 */
+	public int utf8(String s) {
+		Integer index = constants.get("U" + s);
+		if (index != null)
+			return index;
+		try {
+			poolOut.writeByte(CONSTANT_Utf8);
+			poolOut.writeUTF(s);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return add("U" + s, 1);
+	}
+
+	/**
+	 * Add an int constant
+	 * @param i Int to add
+	 * @return Index of constant
+	 */
+	public int intConstant(int i) {
+		Integer index = constants.get("I" + i);
+		if (index != null)
+			return index;
+		try {
+			poolOut.writeByte(CONSTANT_Integer);
+			poolOut.writeInt(i);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return add("I" + i, 1);
+	}
+
+	/**
+	 * Add a float constant
+	 * @param f Float to add
+	 * @return Index of constant
+	 */
+	public int floatConstant(float f) {
+		int bits = Float.floatToRawIntBits(f);
+		Integer index = constants.get("F" + bits);
+		if (index != null)
+			return index;
+		try {
+			poolOut.writeByte(CONSTANT_Float);
+			poolOut.writeInt(bits);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return add("F" + bits, 1);
+	}
+
+	/**
+	 * Add a class constant
+	 * @param internalName Internal name of class
+	 * @return Index of constant
+	 */
+	public int classConstant(String internalName) {
+		Integer index = constants.get("C" + internalName);
+		if (index != null)
+			return index;
+		int nameIndex = utf8(internalName);
+		try {
+			poolOut.writeByte(CONSTANT_Class);
+			poolOut.writeShort(nameIndex);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return add("C" + internalName, 1);
+	}
+
+	/**
+	 * Add a reference to a static field of this class
+	 * @param fieldName Name of field
+	 * @param descriptor Type descriptor of field
+	 * @return Index of constant
+	 */
+	public int fieldref(String fieldName, String descriptor) {
+		return memberref(CONSTANT_Fieldref, thisClass, fieldName, descriptor);
+	}
+
+	/**
+	 * Add a reference to a static method of this class
+	 * @param methodName Name of method
+	 * @param descriptor Type descriptor of method
+	 * @return Index of constant
+	 */
+	public int methodref(String methodName, String descriptor) {
+		return memberref(CONSTANT_Methodref, thisClass, methodName, descriptor);
+	}
+
+	/**
+	 * Add a reference to a static method of another class
+	 * @param owner Internal name of class the method is in
+	 * @param methodName Name of method
+	 * @param descriptor Type descriptor of method
+	 * @return Index of constant
+	 */
+	public int methodref(String owner, String methodName, String descriptor) {
+		return memberref(CONSTANT_Methodref, classConstant(owner), methodName, descriptor);
+	}
+
+	/**
+	 * Add a reference to a member of a class
+	 * @param tag Fieldref or Methodref
+	 * @param owner Index of the class constant for the class the member is in
+	 * @param memberName Name of member
+	 * @param descriptor Type descriptor of member
+	 * @return Index of constant
+	 */
+	private int memberref(int tag, int owner, String memberName, String descriptor) {
+		String key = "R" + tag + "@" + owner + memberName + ":" + descriptor;
+		Integer index = constants.get(key);
+		if (index != null)
+			return index;
+
+		int nameIndex = utf8(memberName);
+		int descIndex = utf8(descriptor);
+		int nameAndType;
+		Integer nt = constants.get("N" + memberName + ":" + descriptor);
+		try {
+			if (nt == null) {
+				poolOut.writeByte(CONSTANT_NameAndType);
+				poolOut.writeShort(nameIndex);
+				poolOut.writeShort(descIndex);
+				nameAndType = add("N" + memberName + ":" + descriptor, 1);
+			} else
+				nameAndType = nt;
+
+			poolOut.writeByte(tag);
+			poolOut.writeShort(owner);
+			poolOut.writeShort(nameAndType);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return add(key, 1);
+	}
+
+	/**
+	 * Record that a constant has been written to the pool
+	 * @param key Key of constant
+	 * @param size Number of pool entries the constant takes up
+	 * @return Index of constant
+	 */
+	private int add(String key, int size) {
+		int index = poolCount;
+		poolCount += size;
+		constants.put(key, index);
+		return index;
+	}
+
+	/**
+	 * Add a field to the class
+	 * @param access Access flags
+	 * @param fieldName Name of field
+	 * @param descriptor Type descriptor of field
+	 */
+	public void field(int access, String fieldName, String descriptor) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeShort(access);
+			out.writeShort(utf8(fieldName));
+			out.writeShort(utf8(descriptor));
+			out.writeShort(0); // no attributes
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		fields.add(bytes.toByteArray());
+	}
+
+	/**
+	 * Add a method to the class
+	 * @param access Access flags
+	 * @param methodName Name of method
+	 * @param descriptor Type descriptor of method
+	 * @param code Body of method
+	 */
+	public void method(int access, String methodName, String descriptor, Code code) {
+		byte[] body = code.toByteArray();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeShort(access);
+			out.writeShort(utf8(methodName));
+			out.writeShort(utf8(descriptor));
+			out.writeShort(1); // just the Code attribute
+
+			out.writeShort(utf8("Code"));
+			out.writeInt(12 + body.length);
+			out.writeShort(code.maxStack());
+			out.writeShort(code.maxLocals());
+			out.writeInt(body.length);
+			out.write(body);
+			out.writeShort(0); // no exception table
+			out.writeShort(0); // no attributes
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		methods.add(bytes.toByteArray());
+	}
+
+	/**
+	 * @return Class file, ready to be loaded
+	 */
+	public byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(MAJOR_VERSION);
+
+			out.writeShort(poolCount);
+			out.write(pool.toByteArray());
+
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // no interfaces
+
+			out.writeShort(fields.size());
+			for (byte[] f : fields)
+				out.write(f);
+
+			out.writeShort(methods.size());
+			for (byte[] m : methods)
+				out.write(m);
+
+			out.writeShort(0); // no attributes
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,262 @@
+package clite.compiler;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+
+
+/**
+ * Builds the bytecode for a single method.
+ *
+ * Keeps track of how deep the operand stack gets so max_stack
+ * can be filled in, and patches jump offsets once labels are placed.
+ */
+public class Code {
+	/** Opcodes used by the compiler */
+	public static final int
+	ICONST_M1 = 0x02, ICONST_0 = 0x03, FCONST_0 = 0x0b,
+	BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13,
+	ILOAD = 0x15, FLOAD = 0x17, ISTORE = 0x36, FSTORE = 0x38,
+	POP = 0x57,
+	IADD = 0x60, FADD = 0x62, ISUB = 0x64, FSUB = 0x66,
+	IMUL = 0x68, FMUL = 0x6a, IDIV = 0x6c, FDIV = 0x6e,
+	INEG = 0x74, FNEG = 0x76,
+	IAND = 0x7e, IOR = 0x80, IXOR = 0x82,
+	I2F = 0x86, F2I = 0x8b, I2C = 0x92,
+	FCMPL = 0x95, FCMPG = 0x96,
+	IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e,
+	IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPLT = 0xa1,
+	IF_ICMPGE = 0xa2, IF_ICMPGT = 0xa3, IF_ICMPLE = 0xa4,
+	GOTO = 0xa7,
+	IRETURN = 0xac, FRETURN = 0xae, RETURN = 0xb1,
+	GETSTATIC = 0xb2, PUTSTATIC = 0xb3, INVOKESTATIC = 0xb8,
+	WIDE = 0xc4;
+
+	/**
+	 * A position in the code that can be jumped to
+	 */
+	public static class Label {
+		/** Offset of label in code (-1 until placed) */
+		private int offset = -1;
+
+		/** Stack depth at label (-1 until something jumps to it) */
+		private int stack = -1;
+
+		/** Offsets of the jump instructions that go to this label */
+		private ArrayList<Integer> jumps = new ArrayList<Integer>();
+	}
+
+	/** Bytecode so far */
+	private ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+	/** Every label that's been created */
+	private ArrayList<Label> labels = new ArrayList<Label>();
+
+	/** Class the code belongs to (for constants) */
+	private ClassFile cls;
+
+	/** Current depth of the operand stack */
+	private int stack = 0;
+
+	/** Deepest the operand stack gets */
+	private int maxStack = 0;
+
+	/** Number of local variable slots */
+	private int maxLocals;
+
+	/**
+	 * @param cls Class the code belongs to
+	 * @param maxLocals Number of local variable slots the method needs
+	 */
+	public Code(ClassFile cls, int maxLocals) {
+		this.cls = cls;
+		this.maxLocals = maxLocals;
+	}
+
+	/** @return Deepest the operand stack gets */
+	public int maxStack() { return maxStack; }
+
+	/** @return Number of local variable slots */
+	public int maxLocals() { return maxLocals; }
+
+	/**
+	 * Adjust the tracked stack depth
+	 * @param delta Number of values pushed (negative if popped)
+	 */
+	private void stack(int delta) {
+		stack += delta;
+		if (stack > maxStack)
+			maxStack = stack;
+	}
+
+	/**
+	 * Emit an instruction with no operands
+	 * @param opcode Instruction to emit
+	 * @param delta Change in stack depth
+	 */
+	public void op(int opcode, int delta) {
+		code.write(opcode);
+		stack(delta);
+	}
+
+	/**
+	 * Push an int constant
+	 * @param i Int to push
+	 */
+	public void pushInt(int i) {
+		if (i >= -1 && i <= 5)
+			code.write(ICONST_0 + i);
+		else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
+			code.write(BIPUSH);
+			code.write(i);
+		} else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) {
+			code.write(SIPUSH);
+			u2(i);
+		} else
+			ldc(cls.intConstant(i));
+		stack(1);
+	}
+
+	/**
+	 * Push a float constant
+	 * @param f Float to push
+	 */
+	public void pushFloat(float f) {
+		// fconst_n can't be used for -0.0
+		if ((f == 0.0f || f == 1.0f || f == 2.0f) && Float.floatToRawIntBits(f) >= 0)
+			code.write(FCONST_0 + (int) f);
+		else
+			ldc(cls.floatConstant(f));
+		stack(1);
+	}
+
+	/**
+	 * Load a constant from the constant pool
+	 * @param index Index of constant
+	 */
+	private void ldc(int index) {
+		if (index <= 0xff) {
+			code.write(LDC);
+			code.write(index);
+		} else {
+			code.write(LDC_W);
+			u2(index);
+		}
+	}
+
+	/**
+	 * Load or store a local variable
+	 * @param opcode ILOAD, FLOAD, ISTORE or FSTORE
+	 * @param slot Local variable slot
+	 */
+	public void local(int opcode, int slot) {
+		if (slot > 0xff) {
+			code.write(WIDE);
+			code.write(opcode);
+			u2(slot);
+		} else {
+			code.write(opcode);
+			code.write(slot);
+		}
+		stack(opcode == ILOAD || opcode == FLOAD ? 1 : -1);
+	}
+
+	/**
+	 * Get or put a static field of the class
+	 * @param opcode GETSTATIC or PUTSTATIC
+	 * @param name Name of field
+	 * @param descriptor Type descriptor of field
+	 */
+	public void field(int opcode, String name, String descriptor) {
+		code.write(opcode);
+		u2(cls.fieldref(name, descriptor));
+		stack(opcode == GETSTATIC ? 1 : -1);
+	}
+
+	/**
+	 * Call a static method of the class
+	 * @param name Name of method
+	 * @param descriptor Type descriptor of method
+	 * @param args Number of arguments the method takes
+	 * @param returns Whether or not the method returns a value
+	 */
+	public void invoke(String name, String descriptor, int args, boolean returns) {
+		code.write(INVOKESTATIC);
+		u2(cls.methodref(name, descriptor));
+		stack(-args + (returns ? 1 : 0));
+	}
+
+	/**
+	 * Call a static method of another class
+	 * @param owner Internal name of class the method is in
+	 * @param name Name of method
+	 * @param descriptor Type descriptor of method
+	 * @param args Number of arguments the method takes
+	 * @param returns Whether or not the method returns a value
+	 */
+	public void invoke(String owner, String name, String descriptor, int args, boolean returns) {
+		code.write(INVOKESTATIC);
+		u2(cls.methodref(owner, name, descriptor));
+		stack(-args + (returns ? 1 : 0));
+	}
+
+	/** @return New, unplaced label */
+	public Label label() {
+		Label l = new Label();
+		labels.add(l);
+		return l;
+	}
+
+	/**
+	 * Emit a jump to a label
+	 * @param opcode Branch instruction (IFEQ, IF_ICMPLT, GOTO, etc.)
+	 * @param target Label to jump to
+	 */
+	public void jump(int opcode, Label target) {
+		if (opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE)
+			stack(-2);
+		else if (opcode != GOTO)
+			stack(-1);
+
+		target.jumps.add(code.size());
+		target.stack = stack;
+		code.write(opcode);
+		u2(0); // patched in toByteArray
+	}
+
+	/**
+	 * Place a label at the current position in the code.
+	 * If the label has been jumped to, the stack depth is set to what it was at the jump
+	 * (code right after a goto is only reachable through its labels)
+	 * @param l Label to place
+	 */
+	public void mark(Label l) {
+		l.offset = code.size();
+		if (l.stack >= 0)
+			stack = l.stack;
+	}
+
+	/**
+	 * Write an unsigned two-byte value
+	 * @param v Value to write
+	 */
+	private void u2(int v) {
+		code.write((v >> 8) & 0xff);
+		code.write(v & 0xff);
+	}
+
+	/** @return Bytecode with every jump pointed at its label */
+	public byte[] toByteArray() {
+		byte[] bytes = code.toByteArray();
+		for (Label l : labels) {
+			if (l.offset < 0 && !l.jumps.isEmpty())
+				throw new IllegalStateException("jump to label that was never placed");
+			for (int jump : l.jumps) {
+				int offset = l.offset - jump;
+				if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+					throw new IllegalStateException("method too large to compile");
+				bytes[jump + 1] = (byte) (offset >> 8);
+				bytes[jump + 2] = (byte) offset;
+			}
+		}
+		return bytes;
+	}
+}
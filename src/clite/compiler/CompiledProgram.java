@@ -0,0 +1,159 @@
+package clite.compiler;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import clite.interpreter.FrameLayout;
+import clite.interpreter.Interpreter;
+import clite.interpreter.State;
+import clite.syntax.Program;
+import clite.syntax.Type;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Function;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.CharValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+
+
+/**
+ * A program that's been compiled to bytecode and loaded as a hidden class
+ */
+public class CompiledProgram {
+	/** Internal name of this class, which compiled code calls back into */
+	public static final String CLASS_NAME = "clite/compiler/CompiledProgram";
+
+	/** Program that was compiled */
+	private Program program;
+
+	/** Lookup with full access to the compiled class */
+	private MethodHandles.Lookup lookup;
+
+	/**
+	 * Load a compiled program
+	 * @param program Program that was compiled
+	 * @param bytes Class file generated from program
+	 */
+	public CompiledProgram(Program program, byte[] bytes) {
+		this.program = program;
+		try {
+			lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Unable to load compiled program", e);
+		}
+	}
+
+	/** @return Compiled class */
+	public Class<?> compiledClass() { return lookup.lookupClass(); }
+
+	/**
+	 * Run the program's main function
+	 * @return Final state of program
+	 */
+	public State run() {
+		try {
+			MethodHandle handle = lookup.findStatic(compiledClass(), Compiler.ENTRY, MethodType.methodType(void.class));
+			handle.invoke();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("Unable to run compiled program", e);
+		}
+
+		return finalState(program.functions().get("main"));
+	}
+
+	/**
+	 * Called by compiled code when a function whose result is needed falls off its end
+	 * @throws IllegalArgumentException always, the same way the interpreter does
+	 */
+	public static void noReturn() {
+		throw new IllegalArgumentException("attemped to interpret function call with no return as expression");
+	}
+
+	/**
+	 * Read the globals and main's frame out of the compiled class
+	 * @param main Main function
+	 * @return State that holds the values of the globals and main's frame
+	 */
+	private State finalState(Function main) {
+		State state = Interpreter.initialState(program.globals());
+		FrameLayout layout = state.layout(main);
+		state.push(layout.acquire());
+		state.nameFrame(layout.names());
+
+		int slot = 0;
+		for (Declaration d : program.globals().values())
+			copy(state, d.variable().at(slot++, true), d.type());
+
+		slot = 0;
+		for (Declaration d : main.params().values())
+			copy(state, d.variable().at(slot++, false), d.type());
+		for (Declaration d : main.locals().values())
+			copy(state, d.variable().at(slot++, false), d.type());
+
+		return state;
+	}
+
+	/**
+	 * Copy the value of a variable from the compiled class into a state, if it's defined
+	 * @param state State to copy into
+	 * @param v Global or variable in main's frame
+	 * @param t Type of variable
+	 */
+	private void copy(State state, Variable v, Type t) {
+		if ((Boolean) get(Compiler.defName(v), boolean.class))
+			state.onion(v, toValue(get(Compiler.fieldName(v), javaType(t)), t));
+	}
+
+	/**
+	 * Get the value of a static field of the compiled class
+	 * @param name Name of field
+	 * @param type Type of field
+	 * @return Value of field
+	 */
+	private Object get(String name, Class<?> type) {
+		try {
+			return lookup.findStaticGetter(compiledClass(), name, type).invoke();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Unable to read " + name + " from compiled program", e);
+		}
+	}
+
+	/**
+	 * @param o Boxed primitive read from the compiled class
+	 * @param t Type of value
+	 * @return Value holding the primitive
+	 */
+	private static Value toValue(Object o, Type t) {
+		if (t == Type.INT)
+			return IntValue.of((Integer) o);
+		if (t == Type.FLOAT)
+			return FloatValue.of((Float) o);
+		if (t == Type.BOOL)
+			return BoolValue.of((Boolean) o);
+		if (t == Type.CHAR)
+			return CharValue.of((Character) o);
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * @param t CLite type
+	 * @return Java class for the primitive type
+	 */
+	private static Class<?> javaType(Type t) {
+		if (t == Type.INT)
+			return int.class;
+		if (t == Type.FLOAT)
+			return float.class;
+		if (t == Type.BOOL)
+			return boolean.class;
+		if (t == Type.CHAR)
+			return char.class;
+		return void.class;
+	}
+}
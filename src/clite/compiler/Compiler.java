@@ -0,0 +1,723 @@
+package clite.compiler;
+
+import clite.interpreter.ControlFlow;
+import clite.interpreter.Resolver;
+import clite.syntax.Operator;
+import clite.syntax.Program;
+import clite.syntax.Type;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.CharValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeMap;
+
+
+/**
+ * Compiles a program into JVM bytecode.
+ *
+ * Every function becomes a static method with primitive parameters and locals,
+ * and every global becomes a static field. Main is compiled a second time as the
+ * entry method, which copies its frame into static fields when it finishes, so the
+ * frame can be read back into the final State (calls to main from inside the program
+ * go to the ordinary method, so they get frames of their own).
+ *
+ * Every variable gets a flag that says whether or not it's been defined, so undefined
+ * values behave the same way they do in the interpreter. Each parameter is passed
+ * with its flag right after it, and a function leaves the flag of the value it
+ * returns in a static field. Copying a variable (by assigning it, passing it as an
+ * argument or returning it) or the result of a call copies the flag along with the value;
+ * anything that's worked out from other values is defined.
+ *
+ * Calling compile on a program assumes that the given program
+ * has already been through TypeTransformer.transform() and Resolver.resolve()
+ */
+public class Compiler {
+	/** Internal name of compiled classes */
+	public static final String CLASS_NAME = "clite/compiler/Program";
+
+	/** Name of the method that runs main and saves its frame */
+	public static final String ENTRY = "main$entry";
+
+	/** Name of the static field that says whether or not the value the last function returned is defined */
+	private static final String RETURN_DEFINED = "ret$def";
+
+	/** Name of the static field that says whether or not the last function to finish fell off its end */
+	private static final String NO_RETURN = "noret$";
+
+	/** Class being written */
+	private ClassFile cls;
+
+	/** Program being compiled */
+	private Program program;
+
+	/** Code of the method currently being compiled */
+	private Code code;
+
+	/** Types of all variables visible in the current function */
+	private TypeMap tm;
+
+	/** Types of the globals, which every function's type map reads through to */
+	private final TypeMap globalTypes;
+
+	/** Whether or not the method currently being compiled is the entry method */
+	private boolean entry;
+
+	/** Local variable slot that the current function's variables start at (after the incoming arguments) */
+	private int base;
+
+	/** Number of slots in the current function's frame */
+	private int frameSize;
+
+	/**
+	 * Compile a program and load it
+	 * @param p Program to compile
+	 * @return Loaded program, ready to run
+	 */
+	public static CompiledProgram compile(Program p) {
+		StaticTypeCheck.check(p.functions().containsKey("main"), "Error! Main function not found!");
+		Compiler compiler = new Compiler(p);
+		return new CompiledProgram(p, compiler.generate());
+	}
+
+	/**
+	 * @param p Program to compile
+	 */
+	private Compiler(Program p) {
+		this.program = p;
+		this.globalTypes = StaticTypeCheck.typing(p.globals());
+		this.cls = new ClassFile(CLASS_NAME);
+	}
+
+	/**
+	 * @return Class file for the program
+	 */
+	private byte[] generate() {
+		int access = ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC;
+
+		// globals and main's frame become static fields
+		int slot = 0;
+		for (Declaration d : program.globals().values()) {
+			Variable v = d.variable().at(slot++, true);
+			cls.field(access, fieldName(v), descriptor(d.type()));
+			cls.field(access, defName(v), "Z");
+		}
+		Function main = program.functions().get("main");
+		slot = 0;
+		for (Declaration d : main.params().values())
+			mainField(access, d, slot++);
+		for (Declaration d : main.locals().values())
+			mainField(access, d, slot++);
+		cls.field(access, RETURN_DEFINED, "Z");
+		cls.field(access, NO_RETURN, "Z");
+
+		for (Function f : program.functions().values())
+			function(f, false);
+		function(main, true);
+
+		return cls.toByteArray();
+	}
+
+	/**
+	 * Add fields for a variable in main's frame
+	 * @param access Access flags for field
+	 * @param d Declaration of variable
+	 * @param slot Slot variable is in
+	 */
+	private void mainField(int access, Declaration d, int slot) {
+		Variable v = d.variable().at(slot, false);
+		cls.field(access, fieldName(v), descriptor(d.type()));
+		cls.field(access, defName(v), "Z");
+	}
+
+	/**
+	 * @param v Global or variable in main's frame
+	 * @return Name of the static field that holds the variable
+	 */
+	public static String fieldName(Variable v) {
+		return (v.isGlobal() ? "g$" : "m$") + v.slot() + "$" + v;
+	}
+
+	/**
+	 * @param v Global or variable in main's frame
+	 * @return Name of the static field that says whether or not the variable is defined
+	 */
+	public static String defName(Variable v) {
+		return fieldName(v) + "$def";
+	}
+
+	/**
+	 * @param t Type to get descriptor of
+	 * @return JVM type descriptor for type
+	 */
+	public static String descriptor(Type t) {
+		if (t == Type.INT)
+			return "I";
+		if (t == Type.FLOAT)
+			return "F";
+		if (t == Type.BOOL)
+			return "Z";
+		if (t == Type.CHAR)
+			return "C";
+		if (t == Type.VOID)
+			return "V";
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * @param f Function to get descriptor of
+	 * @return JVM method descriptor for function (every parameter is followed by its defined flag)
+	 */
+	public static String descriptor(Function f) {
+		StringBuilder desc = new StringBuilder("(");
+		for (Declaration d : f.params().values())
+			desc.append(descriptor(d.type())).append('Z');
+		desc.append(')');
+		desc.append(descriptor(f.type()));
+		return desc.toString();
+	}
+
+	/**
+	 * Compile a function into a static method
+	 * @param f Function to compile
+	 * @param isEntry Whether to compile main as the entry method instead of as an ordinary function
+	 */
+	private void function(Function f, boolean isEntry) {
+		entry = isEntry;
+		frameSize = Resolver.frameSize(f);
+		int params = f.params().size();
+		// the arguments come in as value, flag pairs, and get copied out to where the variables live
+		base = entry ? 0 : 2 * params;
+		code = new Code(cls, base + 2 * frameSize);
+
+		tm = StaticTypeCheck.typing(f, globalTypes);
+
+		int slot = 0;
+		for (Declaration d : f.params().values()) {
+			// main's parameters never get arguments when it's run, but they still count as defined
+			if (entry) {
+				zero(d.type());
+				code.pushInt(1);
+			} else {
+				code.local(d.type() == Type.FLOAT ? Code.FLOAD : Code.ILOAD, 2 * slot);
+				code.local(Code.ILOAD, 2 * slot + 1);
+			}
+			code.local(Code.ISTORE, defSlot(slot));
+			store(slot, d.type());
+			slot++;
+		}
+		// locals start out as zero, which is what an undefined value reads as
+		for (Declaration d : f.locals().values()) {
+			zero(d.type());
+			store(slot, d.type());
+			code.pushInt(0);
+			code.local(Code.ISTORE, defSlot(slot));
+			slot++;
+		}
+
+		Block body = f.body();
+		for (int i = 0; i < body.size(); i++)
+			statement(body.member(i), f);
+
+		// falling off the end of the function (only allowed for main)
+		if (entry) {
+			saveMain(f);
+			code.op(Code.RETURN, 0);
+		} else if (f.type() == Type.VOID)
+			code.op(Code.RETURN, 0);
+		else {
+			// the caller throws if it needed the result
+			code.pushInt(1);
+			code.field(Code.PUTSTATIC, NO_RETURN, "Z");
+			zero(f.type());
+			code.op(f.type() == Type.FLOAT ? Code.FRETURN : Code.IRETURN, -1);
+		}
+
+		if (entry)
+			cls.method(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, ENTRY, "()V", code);
+		else
+			cls.method(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, f.id(), descriptor(f), code);
+	}
+
+	/**
+	 * Copy main's frame into its static fields, so it can be read once the program is done
+	 * @param main Main function
+	 */
+	private void saveMain(Function main) {
+		int slot = 0;
+		for (Declaration d : main.params().values())
+			saveField(d, slot++);
+		for (Declaration d : main.locals().values())
+			saveField(d, slot++);
+	}
+
+	/**
+	 * Copy a variable in main's frame into its static fields
+	 * @param d Declaration of variable
+	 * @param slot Slot variable is in
+	 */
+	private void saveField(Declaration d, int slot) {
+		Variable v = d.variable().at(slot, false);
+		load(slot, d.type());
+		code.field(Code.PUTSTATIC, fieldName(v), descriptor(d.type()));
+		code.local(Code.ILOAD, defSlot(slot));
+		code.field(Code.PUTSTATIC, defName(v), "Z");
+	}
+
+	/**
+	 * Compile a statement
+	 * @param s Statement to compile
+	 * @param f Function the statement is in
+	 */
+	private void statement(Statement s, Function f) {
+		if (s instanceof Skip)
+			return;
+
+		if (s instanceof Assignment) {
+			assignment((Assignment) s);
+			return;
+		}
+
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			Code.Label elseBranch = code.label();
+			Code.Label end = code.label();
+
+			branch(c.test(), false, elseBranch);
+			statement(c.thenBranch(), f);
+			code.jump(Code.GOTO, end);
+			code.mark(elseBranch);
+			statement(c.elseBranch(), f);
+			code.mark(end);
+			return;
+		}
+
+		if (s instanceof Loop) {
+			Loop l = (Loop) s;
+			Code.Label body = code.label();
+			Code.Label test = code.label();
+
+			// the test goes after the body, so each time around the loop only takes one jump
+			code.jump(Code.GOTO, test);
+			code.mark(body);
+			statement(l.body(), f);
+			code.mark(test);
+			branch(l.test(), true, body);
+			return;
+		}
+
+		if (s instanceof Block) {
+			Block b = (Block) s;
+			for (int i = 0; i < b.size(); i++)
+				statement(b.member(i), f);
+			return;
+		}
+
+		if (s instanceof Call) {
+			Type t = call((Call) s);
+			// throw away the result
+			if (t != Type.VOID)
+				code.op(Code.POP, -1);
+			return;
+		}
+
+		if (s instanceof Return) {
+			Expression result = ((Return) s).result();
+			expression(result);
+			if (entry) {
+				// nothing reads what the entry method returns
+				code.op(Code.POP, -1);
+				saveMain(f);
+				code.op(Code.RETURN, 0);
+				return;
+			}
+
+			defined(result);
+			code.field(Code.PUTSTATIC, RETURN_DEFINED, "Z");
+			if (!ControlFlow.alwaysReturns(f.body())) {
+				code.pushInt(0);
+				code.field(Code.PUTSTATIC, NO_RETURN, "Z");
+			}
+			code.op(f.type() == Type.FLOAT ? Code.FRETURN : Code.IRETURN, -1);
+			return;
+		}
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Compile an assignment
+	 * @param a Assignment to compile
+	 */
+	private void assignment(Assignment a) {
+		Variable target = a.target();
+		Type t = tm.get(target);
+
+		expression(a.source());
+		if (target.isGlobal())
+			code.field(Code.PUTSTATIC, fieldName(target), descriptor(t));
+		else
+			store(target.slot(), t);
+
+		// copying an undefined value leaves the target undefined
+		defined(a.source());
+		if (target.isGlobal())
+			code.field(Code.PUTSTATIC, defName(target), "Z");
+		else
+			code.local(Code.ISTORE, defSlot(target.slot()));
+	}
+
+	/**
+	 * Push whether or not the value of an expression is defined, right after the expression's been compiled.
+	 * Only variables, calls and undefined literals can be undefined; the result of any operation is defined.
+	 * @param e Expression that was just compiled
+	 */
+	private void defined(Expression e) {
+		if (e instanceof Variable) {
+			Variable v = (Variable) e;
+			if (v.isGlobal())
+				code.field(Code.GETSTATIC, defName(v), "Z");
+			else
+				code.local(Code.ILOAD, defSlot(v.slot()));
+		} else if (e instanceof Call)
+			code.field(Code.GETSTATIC, RETURN_DEFINED, "Z");
+		else
+			code.pushInt(e instanceof Value && ((Value) e).undefined() ? 0 : 1);
+	}
+
+	/**
+	 * @param slot Slot of variable in the current function's frame
+	 * @return Local variable slot that holds whether or not the variable is defined
+	 */
+	private int defSlot(int slot) {
+		return base + frameSize + slot;
+	}
+
+	/**
+	 * Store the value on top of the stack into a variable in the current function's frame
+	 * @param slot Slot of variable
+	 * @param t Type of variable
+	 */
+	private void store(int slot, Type t) {
+		code.local(t == Type.FLOAT ? Code.FSTORE : Code.ISTORE, base + slot);
+	}
+
+	/**
+	 * Push a variable in the current function's frame onto the stack
+	 * @param slot Slot of variable
+	 * @param t Type of variable
+	 */
+	private void load(int slot, Type t) {
+		code.local(t == Type.FLOAT ? Code.FLOAD : Code.ILOAD, base + slot);
+	}
+
+	/**
+	 * Push the zero of a type, which is what an undefined value reads as
+	 * @param t Type to push zero of
+	 */
+	private void zero(Type t) {
+		if (t == Type.FLOAT)
+			code.pushFloat(0.0f);
+		else
+			code.pushInt(0);
+	}
+
+	/**
+	 * Compile a function call, leaving its result (if any) on the stack
+	 * @param c Call to compile
+	 * @return Return type of function being called
+	 */
+	private Type call(Call c) {
+		Function callee = program.functions().get(c.identifier().toString());
+		for (int i = 0; i < c.argumentCount(); i++) {
+			// passing an undefined value leaves the parameter undefined
+			expression(c.argument(i));
+			defined(c.argument(i));
+		}
+		code.invoke(callee.id(), descriptor(callee), 2 * callee.params().size(), callee.type() != Type.VOID);
+		return callee.type();
+	}
+
+	/**
+	 * Compile a function call that's used as an expression, leaving its result on the stack
+	 * @param c Call to compile
+	 * @return Return type of function being called
+	 */
+	private Type callExpression(Call c) {
+		Type t = call(c);
+
+		// a function that can fall off its end has to be checked for a result
+		Function callee = program.functions().get(c.identifier().toString());
+		if (!ControlFlow.alwaysReturns(callee.body())) {
+			Code.Label returned = code.label();
+			code.field(Code.GETSTATIC, NO_RETURN, "Z");
+			code.jump(Code.IFEQ, returned);
+			code.invoke(CompiledProgram.CLASS_NAME, "noReturn", "()V", 0, false);
+			code.mark(returned);
+		}
+		return t;
+	}
+
+	/**
+	 * Compile an expression, leaving its value on the stack
+	 * @param e Expression to compile
+	 * @return Type of value left on the stack
+	 */
+	private Type expression(Expression e) {
+		if (e instanceof Value)
+			return value((Value) e);
+
+		if (e instanceof Variable) {
+			Variable v = (Variable) e;
+			Type t = tm.get(v);
+			if (v.isGlobal())
+				code.field(Code.GETSTATIC, fieldName(v), descriptor(t));
+			else
+				load(v.slot(), t);
+			return t;
+		}
+
+		if (e instanceof Binary)
+			return binary((Binary) e);
+
+		if (e instanceof Unary)
+			return unary((Unary) e);
+
+		if (e instanceof Call)
+			return callExpression((Call) e);
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Push a literal value
+	 * @param v Value to push
+	 * @return Type of value
+	 */
+	private Type value(Value v) {
+		if (v instanceof IntValue)
+			code.pushInt(v.intValue());
+		else if (v instanceof FloatValue)
+			code.pushFloat(v.floatValue());
+		else if (v instanceof BoolValue)
+			code.pushInt(v.boolValue() ? 1 : 0);
+		else if (v instanceof CharValue)
+			code.pushInt(v.charValue());
+		else
+			throw new IllegalArgumentException("should never reach here");
+		return v.type();
+	}
+
+	/**
+	 * Compile a unary operation
+	 * @param u Unary to compile
+	 * @return Type of result
+	 */
+	private Type unary(Unary u) {
+		Operator op = u.operator();
+		Type t = expression(u.term());
+
+		if (op.generic() == Operator.NOT) {
+			code.pushInt(1);
+			code.op(Code.IXOR, -1);
+			return Type.BOOL;
+		}
+		if (op.generic() == Operator.NEG) {
+			code.op(t == Type.FLOAT ? Code.FNEG : Code.INEG, 0);
+			return t;
+		}
+		if (op.generic() == Operator.FLOAT) {
+			code.op(Code.I2F, 0);
+			return Type.FLOAT;
+		}
+		if (op.generic() == Operator.INT) {
+			// chars are already ints on the stack
+			if (t == Type.FLOAT)
+				code.op(Code.F2I, 0);
+			return Type.INT;
+		}
+		if (op.generic() == Operator.CHAR) {
+			code.op(Code.I2C, 0);
+			return Type.CHAR;
+		}
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Compile a binary operation.
+	 * The right-hand side of && and || is only evaluated if the left-hand side doesn't decide the result.
+	 * @param b Binary to compile
+	 * @return Type of result
+	 */
+	private Type binary(Binary b) {
+		Operator op = b.operator();
+		if (op.isBooleanOp()) {
+			Code.Label no = code.label();
+			Code.Label end = code.label();
+			branch(b, false, no);
+			code.pushInt(1);
+			code.jump(Code.GOTO, end);
+			code.mark(no);
+			code.pushInt(0);
+			code.mark(end);
+			return Type.BOOL;
+		}
+
+		Type t1 = StaticTypeCheck.typeOf(b.term1(), program.functions(), tm);
+		Type t2 = StaticTypeCheck.typeOf(b.term2(), program.functions(), tm);
+
+		// mixing an int and a float turns the int into a float
+		boolean isFloat = t1 == Type.FLOAT || t2 == Type.FLOAT;
+		operand(b.term1(), t1, isFloat);
+		operand(b.term2(), t2, isFloat);
+
+		if (op.isArithmeticOp()) {
+			if (op.generic() == Operator.PLUS)
+				code.op(isFloat ? Code.FADD : Code.IADD, -1);
+			else if (op.generic() == Operator.MINUS)
+				code.op(isFloat ? Code.FSUB : Code.ISUB, -1);
+			else if (op.generic() == Operator.TIMES)
+				code.op(isFloat ? Code.FMUL : Code.IMUL, -1);
+			else
+				code.op(isFloat ? Code.FDIV : Code.IDIV, -1);
+			return isFloat ? Type.FLOAT : Type.INT;
+		}
+
+		if (op.isRelationalOp()) {
+			relational(op, isFloat);
+			return Type.BOOL;
+		}
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Compile one operand of a binary operation
+	 * @param e Operand to compile
+	 * @param t Type of operand
+	 * @param isFloat Whether or not the operation is done on floats
+	 */
+	private void operand(Expression e, Type t, boolean isFloat) {
+		expression(e);
+		if (isFloat && t == Type.INT)
+			code.op(Code.I2F, 0);
+	}
+
+	/**
+	 * Compile a test that jumps instead of leaving a bool on the stack.
+	 * && and || jump as soon as one side decides the result, and compares jump on their own.
+	 * @param e Test to compile
+	 * @param when Value of the test that should take the jump
+	 * @param target Label to jump to
+	 */
+	private void branch(Expression e, boolean when, Code.Label target) {
+		if (e instanceof Unary && ((Unary) e).operator().isNotOp()) {
+			branch(((Unary) e).term(), !when, target);
+			return;
+		}
+
+		if (e instanceof Binary) {
+			Binary b = (Binary) e;
+			Operator op = b.operator();
+
+			if (op.isBooleanOp()) {
+				// && takes a true jump only if both sides are true, and || takes a false jump only if both are false
+				if ((op.generic() == Operator.AND) == when) {
+					Code.Label skip = code.label();
+					branch(b.term1(), !when, skip);
+					branch(b.term2(), when, target);
+					code.mark(skip);
+				} else {
+					branch(b.term1(), when, target);
+					branch(b.term2(), when, target);
+				}
+				return;
+			}
+
+			if (op.isRelationalOp()) {
+				Type t1 = StaticTypeCheck.typeOf(b.term1(), program.functions(), tm);
+				Type t2 = StaticTypeCheck.typeOf(b.term2(), program.functions(), tm);
+				boolean isFloat = t1 == Type.FLOAT || t2 == Type.FLOAT;
+				operand(b.term1(), t1, isFloat);
+				operand(b.term2(), t2, isFloat);
+				compareJump(op, isFloat, when, target);
+				return;
+			}
+		}
+
+		expression(e);
+		code.jump(when ? Code.IFNE : Code.IFEQ, target);
+	}
+
+	/**
+	 * Compare the top two values on the stack, leaving a bool
+	 * @param op Relational operator
+	 * @param isFloat Whether or not the values are floats
+	 */
+	private void relational(Operator op, boolean isFloat) {
+		Code.Label isFalse = code.label();
+		Code.Label end = code.label();
+
+		compareJump(op, isFloat, false, isFalse);
+		code.pushInt(1);
+		code.jump(Code.GOTO, end);
+		code.mark(isFalse);
+		code.pushInt(0);
+		code.mark(end);
+	}
+
+	/**
+	 * Compare the top two values on the stack and jump on the result
+	 * @param op Relational operator
+	 * @param isFloat Whether or not the values are floats
+	 * @param when Result of the comparison that should take the jump
+	 * @param target Label to jump to
+	 */
+	private void compareJump(Operator op, boolean isFloat, boolean when, Code.Label target) {
+		Operator g = op.generic();
+		if (isFloat) {
+			// NaN always compares false, so < and <= use FCMPG (NaN is 1) and the rest use FCMPL (NaN is -1)
+			code.op(g == Operator.LT || g == Operator.LE ? Code.FCMPG : Code.FCMPL, -1);
+			if (g == Operator.LT)
+				code.jump(when ? Code.IFLT : Code.IFGE, target);
+			else if (g == Operator.LE)
+				code.jump(when ? Code.IFLE : Code.IFGT, target);
+			else if (g == Operator.GT)
+				code.jump(when ? Code.IFGT : Code.IFLE, target);
+			else if (g == Operator.GE)
+				code.jump(when ? Code.IFGE : Code.IFLT, target);
+			else if (g == Operator.EQ)
+				code.jump(when ? Code.IFEQ : Code.IFNE, target);
+			else
+				code.jump(when ? Code.IFNE : Code.IFEQ, target);
+		} else {
+			if (g == Operator.LT)
+				code.jump(when ? Code.IF_ICMPLT : Code.IF_ICMPGE, target);
+			else if (g == Operator.LE)
+				code.jump(when ? Code.IF_ICMPLE : Code.IF_ICMPGT, target);
+			else if (g == Operator.GT)
+				code.jump(when ? Code.IF_ICMPGT : Code.IF_ICMPLE, target);
+			else if (g == Operator.GE)
+				code.jump(when ? Code.IF_ICMPGE : Code.IF_ICMPLT, target);
+			else if (g == Operator.EQ)
+				code.jump(when ? Code.IF_ICMPEQ : Code.IF_ICMPNE, target);
+			else
+				code.jump(when ? Code.IF_ICMPNE : Code.IF_ICMPEQ, target);
+		}
+	}
+}
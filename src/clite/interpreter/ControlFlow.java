@@ -0,0 +1,68 @@
+package clite.interpreter;
+
+import clite.syntax.function.Call;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+
+
+/**
+ * Facts about how control flows through a statement.
+ *
+ * These only depend on the shape of the syntax tree, so backends work
+ * them out once when they link a function instead of every time it's called.
+ */
+public class ControlFlow {
+	/**
+	 * Test whether a statement contains a return
+	 * @param s Statement to test
+	 * @return Whether or not the given statement has a return anywhere in it
+	 */
+	public static boolean containsReturn(Statement s) {
+		if (s instanceof Skip || s instanceof Assignment || s instanceof Call)
+			return false;
+		if (s instanceof Return)
+			return true;
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			return containsReturn(c.thenBranch()) || containsReturn(c.elseBranch());
+		}
+		if (s instanceof Loop)
+			return containsReturn(((Loop) s).body());
+		if (s instanceof Block) {
+			Block b = (Block) s;
+			for (int i = 0; i < b.size(); i++)
+				if (containsReturn(b.member(i)))
+					return true;
+			return false;
+		}
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Test whether running a statement always hits a return, no matter which way its tests go
+	 * @param s Statement to test
+	 * @return Whether or not the given statement always returns
+	 */
+	public static boolean alwaysReturns(Statement s) {
+		if (s instanceof Return)
+			return true;
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			return alwaysReturns(c.thenBranch()) && alwaysReturns(c.elseBranch());
+		}
+		if (s instanceof Block) {
+			Block b = (Block) s;
+			for (int i = 0; i < b.size(); i++)
+				if (alwaysReturns(b.member(i)))
+					return true;
+			return false;
+		}
+		// a loop's body might never run
+		return false;
+	}
+}
@@ -0,0 +1,93 @@
+package clite.interpreter;
+
+import clite.syntax.declaration.Declaration;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Function;
+import clite.syntax.value.Value;
+
+
+/**
+ * Describes the frame of a function: how many slots it has,
+ * what the slots start out as, and what they're called.
+ *
+ * A layout is computed once per function, along with whether or not
+ * the function has a return in it (see ControlFlow). Frames that are no longer
+ * in use are handed back to the layout and reused by later calls,
+ * so calling a function doesn't allocate anything once the pool is warm.
+ */
+public class FrameLayout {
+	/** Initial contents of a frame; parameters are empty and locals are undefined */
+	private Value[] initial;
+
+	/** Names of the variables in the frame, indexed by slot */
+	private Variable[] names;
+
+	/** Number of parameters (parameters take up the first slots of the frame) */
+	private int paramCount;
+
+	/** Whether or not the function's body has a return statement anywhere in it */
+	private boolean containsReturn;
+
+	/** Frames that are free to be reused */
+	private Value[][] pool = new Value[4][];
+
+	/** Number of frames in the pool */
+	private int pooled = 0;
+
+	/**
+	 * Compute the layout of a function's frame
+	 * @param f Function to compute layout for
+	 */
+	public FrameLayout(Function f) {
+		int size = Resolver.frameSize(f);
+		initial = new Value[size];
+		names = new Variable[size];
+		paramCount = f.params().size();
+
+		int slot = 0;
+		for (Declaration decl : f.params().values())
+			names[slot++] = decl.variable();
+		for (Declaration decl : f.locals().values()) {
+			// undefined values are never modified, so every frame can share them
+			initial[slot] = Value.mkValue(decl.type());
+			names[slot++] = decl.variable();
+		}
+
+		containsReturn = ControlFlow.containsReturn(f.body());
+	}
+
+	/** @return Number of slots in a frame with this layout */
+	public int size() { return initial.length; }
+
+	/** @return Number of parameters in a frame with this layout */
+	public int paramCount() { return paramCount; }
+
+	/** @return Names of the variables in the frame, indexed by slot */
+	public Variable[] names() { return names; }
+
+	/** @return Whether or not the function's body has a return statement anywhere in it */
+	public boolean containsReturn() { return containsReturn; }
+
+	/**
+	 * Get a fresh frame with this layout, reusing a released frame if there is one
+	 * @return Frame with empty parameters and undefined locals
+	 */
+	public Value[] acquire() {
+		Value[] frame = pooled > 0 ? pool[--pooled] : new Value[initial.length];
+		System.arraycopy(initial, 0, frame, 0, initial.length);
+		return frame;
+	}
+
+	/**
+	 * Give a frame back to be reused by a later call
+	 * @param frame Frame acquired from this layout that is no longer in use
+	 */
+	public void release(Value[] frame) {
+		if (pooled == pool.length) {
+			Value[][] bigger = new Value[pool.length * 2][];
+			System.arraycopy(pool, 0, bigger, 0, pool.length);
+			pool = bigger;
+		}
+		pool[pooled++] = frame;
+	}
+}
@@ -1,10 +1,8 @@
 package clite.interpreter;
-import java.util.Iterator;
 
 import clite.syntax.Operator;
 import clite.syntax.Program;
 import clite.syntax.Type;
-import clite.syntax.declaration.Declaration;
 import clite.syntax.declaration.Declarations;
 import clite.syntax.expression.Binary;
 import clite.syntax.expression.Expression;
@@ -40,7 +38,15 @@ public class Interpreter {
 	 * @return Final state of program
 	 */
 	public static State interpret(Program p) {
-		return interpret(p.functions().get("main").body(), p.functions(), initialState(p.globals()));
+		Function main = p.functions().get("main");
+		State state = initialState(p.globals());
+		
+		// main's frame stays around after it's done so it can be displayed
+		FrameLayout layout = state.layout(main);
+		state.push(layout.acquire());
+		state.nameFrame(layout.names());
+		
+		return interpret(main.body(), p.functions(), state);
 	}
 	
 	/**
@@ -49,13 +55,46 @@ public class Interpreter {
 	 * @return Initial state representing given declarations with uninitialized variables
 	 */
 	public static State initialState(Declarations d) {
-		State state = new State();
-		
-		// allocate space for each variable in the declarations
-		for (Declaration decl : d.values())
-			state.put(decl.variable(), Value.mkValue(decl.type()));
-		
-		return state;
+		return new State(d);
+	}
+	
+	/**
+	 * Evaluate the arguments to a function call in the caller's frame
+	 * and store them in the parameter slots of the callee's frame
+	 * @param c Call to get arguments from
+	 * @param frame Callee's frame
+	 * @param funcs Map of functions
+	 * @param state State of the caller
+	 */
+	public static void bindArguments(Call c, Value[] frame, Functions funcs, State state) {
+		for(int slot = 0; slot < c.argumentCount(); slot++)
+			frame[slot] = interpret(c.argument(slot), funcs, state);
+	}
+	
+	/**
+	 * Push an activation record for a function call.
+	 * The arguments are evaluated in the caller's frame before the callee's frame is pushed.
+	 * @param c Call being made
+	 * @param f Function being called
+	 * @param funcs Map of functions
+	 * @param state State of the caller
+	 * @return Layout of the callee's frame, to give to leave() when the call is done
+	 */
+	public static FrameLayout enter(Call c, Function f, Functions funcs, State state) {
+		FrameLayout layout = state.layout(f);
+		Value[] frame = layout.acquire();
+		bindArguments(c, frame, funcs, state);
+		state.push(frame);
+		return layout;
+	}
+	
+	/**
+	 * Pop the activation record of a finished function call and release it back to its layout
+	 * @param layout Layout returned from enter()
+	 * @param state State to pop frame from
+	 */
+	public static void leave(FrameLayout layout, State state) {
+		layout.release(state.pop());
 	}
 
 	/**
@@ -78,9 +117,24 @@ public class Interpreter {
 			return interpret((Block) s, funcs, state);
 		if(s instanceof Call)
 			return interpretCallStatement((Call)s, funcs, state);
+		if (s instanceof Return)
+			return interpret((Return) s, funcs, state);
 		throw new IllegalArgumentException("should never reach here");
 	}
 
+	/**
+	 * Interprets a return statement by handing its value to the state,
+	 * which stops the enclosing blocks and loops from running anything else
+	 * @param r Return to interpret
+	 * @param funcs Map of functions
+	 * @param state State up to this point
+	 * @return State after interpreting return
+	 */
+	public static State interpret(Return r, Functions funcs, State state) {
+		state.setReturn(interpret(r.result(), funcs, state));
+		return state;
+	}
+
 	/**
 	 * Interprets an assignment
 	 * @param a Assignment to interpret
@@ -100,9 +154,8 @@ public class Interpreter {
 	 * @return State after interpreting block
 	 */
 	public static State interpret(Block b, Functions funcs, State state) {
-		Iterator<Statement> members = b.getMembers();
-		while(members.hasNext()) 
-			state = interpret(members.next(), funcs, state);
+		for(int i = 0; i < b.size() && !state.hasReturned(); i++)
+			state = interpret(b.member(i), funcs, state);
 		
 		return state;
 	}
@@ -115,7 +168,7 @@ public class Interpreter {
 	 * @return State after interpreting conditional
 	 */
 	public static State interpret(Conditional c, Functions funcs, State state) {
-		if (interpret(c.test(), funcs, state).boolValue())
+		if (test(c.test(), funcs, state))
 			return interpret(c.thenBranch(), funcs, state);
 		else
 			return interpret(c.elseBranch(), funcs, state);
@@ -129,10 +182,70 @@ public class Interpreter {
 	 * @return State after interpreting loop
 	 */
 	public static State interpret(Loop l, Functions funcs, State state) {
-		if (interpret(l.test(), funcs, state).boolValue())
-			return interpret(l, funcs, interpret(l.body(), funcs, state));
-		else
-			return state;
+		// iterate instead of recursing so long loops don't grow the Java stack
+		while (test(l.test(), funcs, state)) {
+			state = interpret(l.body(), funcs, state);
+			if (state.hasReturned())
+				break;
+		}
+		return state;
+	}
+	
+	/**
+	 * Interpret the test of a conditional or loop.
+	 * Typed compares, &&, || and ! are worked out here directly, so the test
+	 * doesn't have to make a BoolValue for every step of a compound condition.
+	 * @param e Test to interpret (must be a bool)
+	 * @param funcs Map of functions
+	 * @param state State up to this point
+	 * @return Whether or not the test passed
+	 */
+	public static boolean test(Expression e, Functions funcs, State state) {
+		if (e instanceof Binary) {
+			Binary b = (Binary) e;
+			Expression t1 = b.term1();
+			Expression t2 = b.term2();
+			switch (b.operator()) {
+			// the right-hand side is only interpreted if the left-hand side doesn't decide the result
+			case BOOL_AND:
+				return test(t1, funcs, state) && test(t2, funcs, state);
+			case BOOL_OR:
+				return test(t1, funcs, state) || test(t2, funcs, state);
+			
+			case INT_LT:
+				return interpret(t1, funcs, state).intValue() < interpret(t2, funcs, state).intValue();
+			case INT_LE:
+				return interpret(t1, funcs, state).intValue() <= interpret(t2, funcs, state).intValue();
+			case INT_GT:
+				return interpret(t1, funcs, state).intValue() > interpret(t2, funcs, state).intValue();
+			case INT_GE:
+				return interpret(t1, funcs, state).intValue() >= interpret(t2, funcs, state).intValue();
+			case INT_EQ:
+				return interpret(t1, funcs, state).intValue() == interpret(t2, funcs, state).intValue();
+			case INT_NE:
+				return interpret(t1, funcs, state).intValue() != interpret(t2, funcs, state).intValue();
+			
+			case FLOAT_LT:
+				return interpret(t1, funcs, state).floatValue() < interpret(t2, funcs, state).floatValue();
+			case FLOAT_LE:
+				return interpret(t1, funcs, state).floatValue() <= interpret(t2, funcs, state).floatValue();
+			case FLOAT_GT:
+				return interpret(t1, funcs, state).floatValue() > interpret(t2, funcs, state).floatValue();
+			case FLOAT_GE:
+				return interpret(t1, funcs, state).floatValue() >= interpret(t2, funcs, state).floatValue();
+			case FLOAT_EQ:
+				return interpret(t1, funcs, state).floatValue() == interpret(t2, funcs, state).floatValue();
+			case FLOAT_NE:
+				return interpret(t1, funcs, state).floatValue() != interpret(t2, funcs, state).floatValue();
+			
+			default:
+				break;
+			}
+		}
+		if (e instanceof Unary && ((Unary) e).operator() == Operator.BOOL_NOT)
+			return !test(((Unary) e).term(), funcs, state);
+		
+		return interpret(e, funcs, state).boolValue();
 	}
 	
 	/**
@@ -146,7 +259,7 @@ public class Interpreter {
 		if (e instanceof Value)
 			return (Value) e;
 		if (e instanceof Variable)
-			return (Value) (state.get(e));
+			return state.get((Variable) e);
 		if (e instanceof Binary) 
 			return interpret((Binary) e, funcs, state);
 		if (e instanceof Unary) 
@@ -167,46 +280,16 @@ public class Interpreter {
 		// grab the function from the call
 		Function f = funcs.get(c.identifier().toString());
 		
-		// add function's locals to the state
-		for (Declaration decl : f.locals().values())
-			state.put(decl.variable(), Value.mkValue(decl.type()));
-
-		// add parameters as their name defined by the function
-		Iterator<Expression> argIt = c.arguments();
-		Iterator<Declaration> funcIt = f.params().values().iterator(); 
-		while(argIt.hasNext()){
-			Expression exp = argIt.next();
-			Declaration dec = funcIt.next();
-			Value v = interpret(exp, funcs, state);
-			state.put(dec.variable(), v);
-		}
+		// give the function its own frame, with parameters as their name defined by the function
+		FrameLayout layout = enter(c, f, funcs, state);
 		
-		// interpret every statement in the function's body
-		Iterator<Statement> members = f.body().getMembers();
-		while(members.hasNext()){
-			Statement s = members.next();
-			
-			// if we hit the return statement, we can return the value of it's expression
-			if(s instanceof Return){
-				// remove locals and parameters from the state
-				for (Declaration decl : f.locals().values())
-					state.remove(decl.variable());
-				for (Declaration decl : f.params().values())
-					state.remove(decl.variable());
-				return state;
-			}// else, we interpret the statement
-			else{
-				state = interpret(s, funcs, state);
-			}
-		}
+		// the body stops as soon as it hits a return (the result is still evaluated, but thrown away)
+		state = interpret(f.body(), funcs, state);
+		if(layout.containsReturn())
+			state.takeReturn();
 		
-		// remove locals and parameters from the state
-		for (Declaration decl : f.locals().values())
-			state.remove(decl.variable());
-		for (Declaration decl : f.params().values())
-			state.remove(decl.variable());
-		
-
+		// go back to the caller's frame
+		leave(layout, state);
 		
 		return state;
 	}
@@ -222,150 +305,19 @@ public class Interpreter {
 		// grab functions from call
 		Function f = funcs.get(c.identifier().toString());
 		
-		// add function's locals to the state
-		for (Declaration decl : f.locals().values())
-			state.put(decl.variable(), Value.mkValue(decl.type()));
-
-		// add parameters as their name defined by the function
-		Iterator<Expression> argIt = c.arguments();
-		Iterator<Declaration> funcIt = f.params().values().iterator(); 
-		while(argIt.hasNext()){
-			Expression exp = argIt.next();
-			Declaration dec = funcIt.next();
-			Value v = interpret(exp, funcs, state);
-			state.put(dec.variable(), v);
-		}
+		// give the function its own frame, with parameters as their name defined by the function
+		FrameLayout layout = enter(c, f, funcs, state);
 		
-		// interpret every statement in the function's body
-		Iterator<Statement> members = f.body().getMembers();
-		while(members.hasNext()){
-			Statement s = members.next();
-			
-			// if we hit the return statement, we can return the value of it's expression
-			if(s instanceof Return){
-				// interpret the return statement's expression
-				Value v =  interpret(((Return)s).result(), funcs, state);
-				
-				// remove locals and parameters from the state FIXME when do these get added/removed?!?
-				for (Declaration decl : f.locals().values())
-					state.remove(decl.variable());
-				for (Declaration decl : f.params().values())
-					state.remove(decl.variable());
-				
-				return v;
-			} else if(hasReturn(s)){
-				if(s instanceof Conditional && isSkipped((Conditional)s, funcs, state))
-					continue;
-				else{
-					Value v = interpretWithReturn(s, funcs, state);
-					
-					// remove locals and parameters from the state
-					for (Declaration decl : f.locals().values())
-						state.remove(decl.variable());
-					for (Declaration decl : f.params().values())
-						state.remove(decl.variable());
-					
-					return v;
-				}
-			// else, we interpret the statement
-			} else {
-				state = interpret(s, funcs, state);
-			}
-		}
-		throw new IllegalArgumentException("attemped to interpret function call with no return as expression");
-	}
-	
-	/**
-	 * Interpret a function call that has a return statement
-	 * @param s Statement to interpret
-	 * @param funcs Function map
-	 * @param state Current state
-	 * @return Value from return statement in statement
-	 */
-	public static Value interpretWithReturn(Statement s, Functions funcs, State state){
-		state.display();
-		if (s instanceof Conditional){
-			Conditional c = (Conditional)s;
-			Statement chosen;
-			
-			if (interpret(c.test(), funcs, state).boolValue())
-				chosen = c.thenBranch();
-			else
-				chosen = c.elseBranch();
-			
-			if(chosen instanceof Return)
-				return interpret(((Return)chosen).result(), funcs, state);
-			else
-				return interpretWithReturn(chosen, funcs, state);
-		}
-		
-		if (s instanceof Loop){
-			Loop l = (Loop)s;
-			if (interpret(l.test(), funcs, state).boolValue())
-				return interpretWithReturn(l, funcs, interpret(l.body(), funcs, state));
-		}
-		
-		if (s instanceof Block){
-			Block b = (Block) s;
-			Iterator<Statement> it = b.getMembers();
-			while(it.hasNext()){
-				Statement bs = it.next();
-				if(bs instanceof Skip)
-					continue;
-				if(bs instanceof Return)
-					return interpret(((Return)s).result(), funcs, state);
-				else 
-					state = interpret(s, funcs, state);
-			}
-		}
+		// the body stops as soon as it hits a return, and the return leaves its value in the state
+		state = interpret(f.body(), funcs, state);
+		Value v = layout.containsReturn() ? state.takeReturn() : null;
 		
-		if(s instanceof Return)
-			return interpret(((Return)s).result(), funcs, state);
+		// go back to the caller's frame
+		leave(layout, state);
 		
-		throw new IllegalArgumentException("tried to interpret statement with return when it didn't have a return");
-	}
-	
-	/**
-	 * Test whether a statement contains a return
-	 * @param s Statement to test
-	 * @return Whether or not the given statement has a return
-	 */
-	public static boolean hasReturn(Statement s){
-		if (s instanceof Skip || s instanceof Assignment)
-			return false;
-		if (s instanceof Conditional){
-			Conditional c = (Conditional)s;
-			return hasReturn(c.thenBranch()) || hasReturn(c.elseBranch());
-		}if (s instanceof Loop){
-			return hasReturn(((Loop)s).body());
-		}if (s instanceof Block){
-			Block b = (Block) s;
-			Iterator<Statement> it = b.getMembers();
-			while(it.hasNext())
-				if(hasReturn(it.next()))
-					return true;
-			return false;
-		}if(s instanceof Return)
-			return true;
-		throw new IllegalArgumentException("should never reach here");
-	}
-	
-	/**
-	 * Tells whether or not a conditional results in a Skip
-	 * @param c Condtional to test
-	 * @param funcs Function map
-	 * @param state Current state
-	 * @return Whether or not the conditional results in a skip
-	 */
-	public static boolean isSkipped(Conditional c, Functions funcs, State state){
-		Statement chosen;
-		
-		if (interpret(c.test(), funcs, state).boolValue())
-			chosen = c.thenBranch();
-		else
-			chosen = c.elseBranch();
-		
-		return chosen instanceof Skip;
+		if(v == null)
+			throw new IllegalArgumentException("attemped to interpret function call with no return as expression");
+		return v;
 	}
 	
 	/**
@@ -379,55 +331,71 @@ public class Interpreter {
 	 */
 	public static Value interpret(Unary u, Functions funcs, State state) throws IllegalArgumentException {
 		Operator op = u.operator();
-		Value v = interpret(u.term, funcs, state);
-		StaticTypeCheck.check(!v.undefined(), "reference to undef value in unary op");
+		Value v = interpret(u.term(), funcs, state);
+		
+		// typed ops only come from TypeTransformer, which only runs on programs that
+		// passed the static type check, so the value is trusted to be the right type
+		if (!op.isTyped())
+			StaticTypeCheck.check(!v.undefined(), "reference to undef value in unary op");
+		
+		switch (op) {
+		case BOOL_NOT:
+			return BoolValue.of(!v.boolValue());
+		case INT_NEG:
+			return IntValue.of(-v.intValue());
+		case FLOAT_NEG:
+			return FloatValue.of(-v.floatValue());
+		case I2F:
+			return FloatValue.of((float)v.intValue());
+		case F2I:
+			return IntValue.of((int)v.floatValue());
+		case C2I:
+			return IntValue.of((int)v.charValue());
+		case I2C:
+			return CharValue.of((char)v.intValue());
 		
 		// boolean not
-		if (op.val.equals(Operator.NOT)){
+		case NOT:
 			if(v.type() != Type.BOOL)
 				throw new IllegalArgumentException("Can only apply ! operator to bool (attempted on " + v + ")");
 			else
-				return new BoolValue(!v.boolValue());
-		}
-
+				return BoolValue.of(!v.boolValue());
+		
 		// negate
-		else if(op.val.equals(Operator.NEG)){
+		case NEG:
 			if(v.type() == Type.FLOAT)
-				return new FloatValue(-v.floatValue());
+				return FloatValue.of(-v.floatValue());
 			else if(v.type() == Type.INT)
-				return new IntValue(-v.intValue());
+				return IntValue.of(-v.intValue());
 			else
 				throw new IllegalArgumentException("Can only apply - operator to int or float (attempted on " + v + ")");
-		}
 		
 		// float cast
-		else if (op.val.equals(Operator.FLOAT)){
+		case FLOAT:
 			if(v.type() != Type.INT)
 				throw new IllegalArgumentException("Can only cast int to float (tried to cast " + v + ")");
 			else
-				return new FloatValue((float)v.intValue());
-		}
+				return FloatValue.of((float)v.intValue());
 		
 		// int cast
-		else if (op.val.equals(Operator.INT)){
+		case INT:
 			if(v.type() == Type.FLOAT)
-				return new IntValue((int)v.floatValue());
+				return IntValue.of((int)v.floatValue());
 			else if(v.type() == Type.CHAR)
-				return new IntValue((int)v.charValue());
+				return IntValue.of((int)v.charValue());
 			else
 				throw new IllegalArgumentException("Can only cast float or char to int (tried to cast " + v + ")");
-		}
-		
 		
 		// char cast
-		else if(op.val.equals(Operator.CHAR)){
+		case CHAR:
 			if(v.type() == Type.INT)
-				return new CharValue((char)v.intValue());
+				return CharValue.of((char)v.intValue());
 			else
 				throw new IllegalArgumentException("Can only cast int to char (tried to cast " + v + ")");
-		}
 		
-		throw new IllegalArgumentException("should never reach here");
+		default:
+			throw new IllegalArgumentException("should never reach here");
+		}
 	}
 	
 	/**
@@ -442,45 +410,134 @@ public class Interpreter {
 	 */
 	public static Value interpret(Binary b, Functions funcs, State state) throws IllegalArgumentException {
 		Operator op = b.operator();
+		if (op == Operator.BOOL_AND || op == Operator.BOOL_OR)
+			return BoolValue.of(test(b, funcs, state));
+		
 		// interpret the operator's terms
 		Value v1 = interpret(b.term1(), funcs, state);
 		Value v2 = interpret(b.term2(), funcs, state);
 		
+		// typed ops are trusted (see interpret(Unary))
+		if (op.isTyped())
+			return apply(op, v1, v2);
+		
 		//StaticTypeCheck.check(v1.type() == v2.type(), "mismatched types");
 		StaticTypeCheck.check(!v1.undefined() || !v2.undefined(), "reference to undef value in binary op");
 		
+		return applyGeneric(op, v1, v2);
+	}
+	
+	/**
+	 * Apply a typed binary operator (from TypeTransformer) to two values
+	 * without looking at their types
+	 * 
+	 * @param op Typed operator to apply
+	 * @param v1 Left-hand side
+	 * @param v2 Right-hand side
+	 * @return Result of operation
+	 */
+	private static Value apply(Operator op, Value v1, Value v2) {
+		switch (op) {
+		case INT_PLUS:
+			return IntValue.of(v1.intValue() + v2.intValue());
+		case INT_MINUS:
+			return IntValue.of(v1.intValue() - v2.intValue());
+		case INT_TIMES:
+			return IntValue.of(v1.intValue() * v2.intValue());
+		case INT_DIV:
+			return IntValue.of(v1.intValue() / v2.intValue());
+		
+		case FLOAT_PLUS:
+			return FloatValue.of(v1.floatValue() + v2.floatValue());
+		case FLOAT_MINUS:
+			return FloatValue.of(v1.floatValue() - v2.floatValue());
+		case FLOAT_TIMES:
+			return FloatValue.of(v1.floatValue() * v2.floatValue());
+		case FLOAT_DIV:
+			return FloatValue.of(v1.floatValue() / v2.floatValue());
+		
+		case INT_LT:
+			return BoolValue.of(v1.intValue() < v2.intValue());
+		case INT_LE:
+			return BoolValue.of(v1.intValue() <= v2.intValue());
+		case INT_GT:
+			return BoolValue.of(v1.intValue() > v2.intValue());
+		case INT_GE:
+			return BoolValue.of(v1.intValue() >= v2.intValue());
+		case INT_EQ:
+			return BoolValue.of(v1.intValue() == v2.intValue());
+		case INT_NE:
+			return BoolValue.of(v1.intValue() != v2.intValue());
+		
+		case FLOAT_LT:
+			return BoolValue.of(v1.floatValue() < v2.floatValue());
+		case FLOAT_LE:
+			return BoolValue.of(v1.floatValue() <= v2.floatValue());
+		case FLOAT_GT:
+			return BoolValue.of(v1.floatValue() > v2.floatValue());
+		case FLOAT_GE:
+			return BoolValue.of(v1.floatValue() >= v2.floatValue());
+		case FLOAT_EQ:
+			return BoolValue.of(v1.floatValue() == v2.floatValue());
+		case FLOAT_NE:
+			return BoolValue.of(v1.floatValue() != v2.floatValue());
+		
+		case CHAR_LT:
+			return BoolValue.of(v1.charValue() < v2.charValue());
+		case CHAR_LE:
+			return BoolValue.of(v1.charValue() <= v2.charValue());
+		case CHAR_GT:
+			return BoolValue.of(v1.charValue() > v2.charValue());
+		case CHAR_GE:
+			return BoolValue.of(v1.charValue() >= v2.charValue());
+		case CHAR_EQ:
+			return BoolValue.of(v1.charValue() == v2.charValue());
+		case CHAR_NE:
+			return BoolValue.of(v1.charValue() != v2.charValue());
+		
+		case BOOL_AND:
+			return BoolValue.of(v1.boolValue() && v2.boolValue());
+		case BOOL_OR:
+			return BoolValue.of(v1.boolValue() || v2.boolValue());
+		case BOOL_EQ:
+			return BoolValue.of(v1.boolValue() == v2.boolValue());
+		case BOOL_NE:
+			return BoolValue.of(v1.boolValue() != v2.boolValue());
+		
+		default:
+			throw new IllegalArgumentException("should never reach here");
+		}
+	}
+	
+	/**
+	 * Apply a generic binary operator to two values.
+	 * Dynamically casts int to float if the values are mixed.
+	 * 
+	 * @param op Generic operator to apply
+	 * @param v1 Left-hand side
+	 * @param v2 Right-hand side
+	 * @return Result of operation
+	 * @throws IllegalArgumentException If binary op has illegal types
+	 */
+	private static Value applyGeneric(Operator op, Value v1, Value v2) throws IllegalArgumentException {
 		/*   ARITHMETIC OP  --    +, -, *, /   */
 		if (op.isArithmeticOp()) {
 			// int (+, -, *, /) int
-			if (v1.type() == Type.INT && v1.type() == Type.INT) {
-				if (op.val.equals(Operator.PLUS))
-					return new IntValue(v1.intValue() + v2.intValue());
-				if (op.val.equals(Operator.MINUS))
-					return new IntValue(v1.intValue() - v2.intValue());
-				if (op.val.equals(Operator.TIMES))
-					return new IntValue(v1.intValue() * v2.intValue());
-				if (op.val.equals(Operator.DIV))
-					return new IntValue(v1.intValue() / v2.intValue());
-				
+			if (v1.type() == Type.INT && v2.type() == Type.INT)
+				return apply(op.typed(Type.INT), v1, v2);
+			
 			// float (+, -, *,/) float 
-			} else if(v1.type() == Type.FLOAT && v2.type() == Type.FLOAT) {
-				if (op.val.equals(Operator.PLUS))
-					return new FloatValue(v1.floatValue() + v2.floatValue());
-				if (op.val.equals(Operator.MINUS))
-					return new FloatValue(v1.floatValue() - v2.floatValue());
-				if (op.val.equals(Operator.TIMES))
-					return new FloatValue(v1.floatValue() * v2.floatValue());
-				if (op.val.equals(Operator.DIV))
-					return new FloatValue(v1.floatValue() / v2.floatValue());
-				
+			else if(v1.type() == Type.FLOAT && v2.type() == Type.FLOAT)
+				return apply(op.typed(Type.FLOAT), v1, v2);
+			
 			// if attempting op on int and float, cast int to float and do it again
-			} else if((v1.type() == Type.INT && v2.type() == Type.FLOAT) ||
+			else if((v1.type() == Type.INT && v2.type() == Type.FLOAT) ||
 					  (v1.type() == Type.FLOAT && v2.type() == Type.INT)) {
 				if(v1.type() == Type.INT)
-					v1 = new FloatValue((float)v1.intValue());
+					v1 = FloatValue.of((float)v1.intValue());
 				else if(v2.type() == Type.INT)
-					v2 = new FloatValue((float)v2.intValue());
-				return interpret(new Binary(op, v1, v2), funcs, state);
+					v2 = FloatValue.of((float)v2.intValue());
+				return apply(op.typed(Type.FLOAT), v1, v2);
 			} else {
 				throw new IllegalArgumentException("Attemped arithmetic op on a " + v1.type() + " and a " + v2.type() + ", not allowed (v1: " + v1 + " v2: " + v2 + ")");
 			}
@@ -488,78 +545,33 @@ public class Interpreter {
 		/*   BOOLEAN OP --  &&, ||  */
 		} else if (op.isBooleanOp()){
 			// boolean op and only be performed on booleans
-			if(!(v1.type() == Type.BOOL && v1.type() == Type.BOOL))
+			if(!(v1.type() == Type.BOOL && v2.type() == Type.BOOL))
 				throw new IllegalArgumentException("Attemped boolean op on " + v1.type() + ", not allowed");
-			else {
-				if(op.val.equals(Operator.AND))
-					return new BoolValue(v1.boolValue() && v2.boolValue());
-				else if(op.val.equals(Operator.OR))
-					return new BoolValue(v1.boolValue() || v2.boolValue());
-			}
+			else
+				return apply(op.typed(Type.BOOL), v1, v2);
 			
 		/*   RELATIONAL OP   --   <, >, <=, >=, ==, !=    */
 		} else if(op.isRelationalOp()){
-			// int (<, >, <=, >=, ==, !=) int
-			if (v1.type() == Type.INT && v1.type() == Type.INT) {
-				if(op.val.equals(Operator.LT))
-					return new BoolValue(v1.intValue() < v2.intValue());
-				else if(op.val.equals(Operator.GT))
-					return new BoolValue(v1.intValue() > v2.intValue());
-				else if(op.val.equals(Operator.LE))
-					return new BoolValue(v1.intValue() <= v2.intValue());
-				else if(op.val.equals(Operator.GE))
-					return new BoolValue(v1.intValue() >= v2.intValue());
-				else if(op.val.equals(Operator.EQ))
-					return new BoolValue(v1.intValue() == v2.intValue());
-				else if(op.val.equals(Operator.NE))
-					return new BoolValue(v1.intValue() != v2.intValue());
-				
-			// float (<, >, <=, >=, ==, !=) float
-			} else if(v1.type() == Type.FLOAT && v1.type() == Type.FLOAT){
-				if(op.val.equals(Operator.LT))
-					return new BoolValue(v1.floatValue() < v2.floatValue());
-				else if(op.val.equals(Operator.GT))
-					return new BoolValue(v1.floatValue() > v2.floatValue());
-				else if(op.val.equals(Operator.LE))
-					return new BoolValue(v1.floatValue() <= v2.floatValue());
-				else if(op.val.equals(Operator.GE))
-					return new BoolValue(v1.floatValue() >= v2.floatValue());
-				else if(op.val.equals(Operator.EQ))
-					return new BoolValue(v1.floatValue() == v2.floatValue());
-				else if(op.val.equals(Operator.NE))
-					return new BoolValue(v1.floatValue() != v2.floatValue());
+			// int, float and char (<, >, <=, >=, ==, !=) the same type
+			if ((v1.type() == Type.INT && v2.type() == Type.INT) ||
+				(v1.type() == Type.FLOAT && v2.type() == Type.FLOAT) ||
+				(v1.type() == Type.CHAR && v2.type() == Type.CHAR))
+				return apply(op.typed(v1.type()), v1, v2);
 				
 			// if attempting op on int and float, cast int to float and do it again
-			} else if((v1.type() == Type.INT && v2.type() == Type.FLOAT) ||
+			else if((v1.type() == Type.INT && v2.type() == Type.FLOAT) ||
 					  (v1.type() == Type.FLOAT && v2.type() == Type.INT)) {
 				if(v1.type() == Type.INT)
-					v1 = new FloatValue((float)v1.intValue());
+					v1 = FloatValue.of((float)v1.intValue());
 				else if(v2.type() == Type.INT)
-					v2 = new FloatValue((float)v2.intValue());
-				return interpret(new Binary(op, v1, v2), funcs, state);
-				
-			// chars
-			} else if(v1.type() == Type.CHAR && v2.type() == Type.CHAR){
-				if(op.val.equals(Operator.LT))
-					return new BoolValue(v1.charValue() < v2.charValue());
-				else if(op.val.equals(Operator.GT))
-					return new BoolValue(v1.charValue() > v2.charValue());
-				else if(op.val.equals(Operator.LE))
-					return new BoolValue(v1.charValue() <= v2.charValue());
-				else if(op.val.equals(Operator.GE))
-					return new BoolValue(v1.charValue() >= v2.charValue());
-				else if(op.val.equals(Operator.EQ))
-					return new BoolValue(v1.charValue() == v2.charValue());
-				else if(op.val.equals(Operator.NE))
-					return new BoolValue(v1.charValue() != v2.charValue());
+					v2 = FloatValue.of((float)v2.intValue());
+				return apply(op.typed(Type.FLOAT), v1, v2);
 			}
 			
 			// bools can be compared with == and !=
 			else if(v1.type() == Type.BOOL && v2.type() == Type.BOOL){
-				if(op.val.equals(Operator.EQ))
-					return new BoolValue(v1.boolValue() == v2.boolValue());
-				else if(op.val.equals(Operator.NE))
-					return new BoolValue(v1.boolValue() != v2.boolValue());
+				if(op == Operator.EQ || op == Operator.NE)
+					return apply(op.typed(Type.BOOL), v1, v2);
 				else
 					throw new IllegalArgumentException("Attempted illegal relational op " + op + " on two booleans (v1: " + v1 + " v2: " + v2 + ")");
 			}
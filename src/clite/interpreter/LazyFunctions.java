@@ -0,0 +1,188 @@
+package clite.interpreter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import clite.parser.Parser;
+import clite.syntax.NodeIds;
+import clite.syntax.Program;
+import clite.syntax.Symbol;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Function;
+import clite.syntax.function.Functions;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeCheckTransformer;
+import clite.typing.TypeMap;
+
+
+/**
+ * Functions that only get parsed, type checked, transformed and resolved
+ * the first time they're looked up, which is when they're first called.
+ *
+ * Until then, the only thing known about a function is its signature, which is
+ * all that's needed to check calls to it. Since the Interpreter looks up the
+ * function every time it makes a call, it can run a program straight out of this.
+ * Anything that reads the whole map (values(), entrySet(), keySet() and so on)
+ * gets every function compiled first, so an uncompiled body is never handed out.
+ */
+@SuppressWarnings("serial")
+public class LazyFunctions extends Functions {
+	/** Lazy parser that skipped over the bodies */
+	private final Parser parser;
+
+	/** Every function's signature (and the whole function once its body has been parsed) */
+	private final Functions signatures;
+
+	/** Types of the globals */
+	private final TypeMap globalTypes;
+
+	/** Resolved globals */
+	private final HashMap<Symbol, Variable> globals;
+
+	/** IDs for the nodes of resolved functions, which are numbered in the order they're compiled */
+	private final NodeIds ids = new NodeIds();
+
+	/**
+	 * @param parser Lazy parser that skipped over the bodies
+	 * @param p Program the parser returned
+	 */
+	private LazyFunctions(Parser parser, Program p) {
+		this.parser = parser;
+		this.signatures = p.functions();
+		this.globalTypes = StaticTypeCheck.typing(p.globals());
+		this.globals = Resolver.globals(p.globals());
+	}
+
+	/**
+	 * Get a program whose functions are compiled on their first call
+	 * @param parser Parser made with Parser.lazy()
+	 * @return Program for the Interpreter
+	 */
+	public static Program program(Parser parser) {
+		Program p = parser.program();
+		StaticTypeCheck.check(p.functions().containsKey("main"), "Error! Main function not found!");
+		return new Program(p.globals(), new LazyFunctions(parser, p));
+	}
+
+	/**
+	 * @param name Name of function
+	 * @return Function, ready to interpret (or null if there's no such function)
+	 */
+	@Override
+	public Function get(Object name) {
+		Function f = super.get(name);
+		if (f == null && signatures.containsKey(name)) {
+			f = compile((String) name);
+			put(f.id(), f);
+		}
+		return f;
+	}
+
+	/**
+	 * @param name Name of function
+	 * @param otherwise What to return if there's no such function
+	 * @return Function, ready to interpret (or otherwise if there's no such function)
+	 */
+	@Override
+	public Function getOrDefault(Object name, Function otherwise) {
+		Function f = get(name);
+		return f != null ? f : otherwise;
+	}
+
+	/**
+	 * @param name Name of function
+	 * @return Whether or not the program has the function (whether or not it's been compiled yet)
+	 */
+	@Override
+	public boolean containsKey(Object name) {
+		return signatures.containsKey(name);
+	}
+
+	/** @return Number of functions in the program */
+	@Override
+	public int size() {
+		return signatures.size();
+	}
+
+	/** @return Whether or not the program has no functions */
+	@Override
+	public boolean isEmpty() {
+		return signatures.isEmpty();
+	}
+
+	/**
+	 * @param f Function
+	 * @return Whether or not the function is one of the program's (compiles every function)
+	 */
+	@Override
+	public boolean containsValue(Object f) {
+		compileAll();
+		return super.containsValue(f);
+	}
+
+	/** @return Names of every function (compiles every function, so the map holds them all) */
+	@Override
+	public Set<String> keySet() {
+		compileAll();
+		return super.keySet();
+	}
+
+	/** @return Every function, ready to interpret (compiles every function) */
+	@Override
+	public Collection<Function> values() {
+		compileAll();
+		return super.values();
+	}
+
+	/** @return Every function by name, ready to interpret (compiles every function) */
+	@Override
+	public Set<Map.Entry<String, Function>> entrySet() {
+		compileAll();
+		return super.entrySet();
+	}
+
+	/**
+	 * @param action What to do with each function, ready to interpret (compiles every function)
+	 */
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Function> action) {
+		compileAll();
+		super.forEach(action);
+	}
+
+	/**
+	 * Compile every function that hasn't been yet, and put them all in the order they were declared
+	 */
+	private void compileAll() {
+		if (super.size() == signatures.size())
+			return;
+		ArrayList<Function> all = new ArrayList<Function>(signatures.size());
+		for (String name : new ArrayList<String>(signatures.keySet()))
+			all.add(get(name));
+		clear();
+		for (Function f : all)
+			put(f.id(), f);
+	}
+
+	/**
+	 * Parse, check, transform and resolve a function
+	 * @param name Name of function
+	 * @return Resolved function
+	 */
+	private Function compile(String name) {
+		Function f = parser.parseBody(name, signatures);
+		// functions declared inside of another body were parsed along with it
+		if (f == null)
+			f = signatures.get(name);
+		else
+			signatures.put(name, f);
+
+		TypeMap tm = StaticTypeCheck.typing(f, globalTypes);
+		Function resolved = Resolver.resolve(TypeCheckTransformer.transform(f, signatures, tm), globals);
+		ids.number(resolved.body());
+		return resolved;
+	}
+}
@@ -0,0 +1,34 @@
+package clite.interpreter;
+
+import clite.syntax.Type;
+import clite.syntax.declaration.Declarations;
+import clite.syntax.function.Function;
+import clite.syntax.statement.Block;
+
+
+/**
+ * A function whose variables have all been resolved to slots (see Resolver),
+ * carrying the layout of its frame so a call doesn't have to look it up.
+ *
+ * The layout, and the pool of frames that comes with it, belongs to the
+ * function, so a resolved program can only be run by one interpreter at a time.
+ */
+public class ResolvedFunction extends Function {
+	/** Layout of the function's frame */
+	private final FrameLayout layout;
+
+	/**
+	 * @param type Return type of function
+	 * @param id Name of function
+	 * @param params Parameters of function
+	 * @param locals Local variables
+	 * @param body Body of statements, with every variable resolved
+	 */
+	public ResolvedFunction(Type type, String id, Declarations params, Declarations locals, Block body) {
+		super(type, id, params, locals, body);
+		this.layout = new FrameLayout(this);
+	}
+
+	/** @return Layout of the function's frame */
+	public FrameLayout layout() { return layout; }
+}
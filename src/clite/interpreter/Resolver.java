@@ -0,0 +1,203 @@
+package clite.interpreter;
+import java.util.HashMap;
+
+import clite.syntax.NodeIds;
+import clite.syntax.Program;
+import clite.syntax.Symbol;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.declaration.Declarations;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Functions;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+import clite.syntax.value.Value;
+
+
+/**
+ * Assigns every variable in a program a fixed slot in either the global frame
+ * or the frame of the function it's used in.
+ *
+ * Globals get slots in the order they're declared. Inside of a function,
+ * parameters come first (in order), followed by locals.
+ *
+ * Calling resolve on a program assumes that the given program
+ * has already been through TypeTransformer.transform()
+ */
+public class Resolver {
+	/**
+	 * Resolve every variable in a program
+	 * @param p Program to resolve
+	 * @return Program with every variable resolved to a slot, and its nodes numbered from 0
+	 */
+	public static Program resolve(Program p) {
+		HashMap<Symbol, Variable> globals = globals(p.globals());
+
+		Functions funcs = new Functions();
+		for (Function f : p.functions().values())
+			funcs.put(f.id(), resolve(f, globals));
+
+		Program resolved = new Program(p.globals(), funcs);
+		new NodeIds().number(resolved);
+		return resolved;
+	}
+
+	/**
+	 * Give every global variable a slot
+	 * @param d Declarations of the globals
+	 * @return Map of global names to resolved variables
+	 */
+	public static HashMap<Symbol, Variable> globals(Declarations d) {
+		HashMap<Symbol, Variable> globals = new HashMap<Symbol, Variable>();
+		int slot = 0;
+		for (Declaration dec : d.values()) {
+			globals.put(dec.variable().symbol(), dec.variable().at(slot, true));
+			slot++;
+		}
+		return globals;
+	}
+
+	/**
+	 * Resolve every variable in a function
+	 * @param f Function to resolve
+	 * @param globals Resolved global variables
+	 * @return Function with every variable resolved to a slot
+	 */
+	public static ResolvedFunction resolve(Function f, HashMap<Symbol, Variable> globals) {
+		// start with the globals, then let params and locals shadow them
+		HashMap<Symbol, Variable> scope = new HashMap<Symbol, Variable>(globals);
+		int slot = 0;
+		for (Declaration d : f.params().values()) {
+			scope.put(d.variable().symbol(), d.variable().at(slot, false));
+			slot++;
+		}
+		for (Declaration d : f.locals().values()) {
+			scope.put(d.variable().symbol(), d.variable().at(slot, false));
+			slot++;
+		}
+
+		Block body = (Block) resolve(f.body(), scope);
+		return new ResolvedFunction(f.type(), f.id(), f.params(), f.locals(), body);
+	}
+
+	/**
+	 * @param f Function to get frame size of
+	 * @return Number of slots needed for the function's parameters and locals
+	 */
+	public static int frameSize(Function f) {
+		return f.params().size() + f.locals().size();
+	}
+
+	/**
+	 * Resolve the variables in a statement
+	 * @param s Statement to resolve
+	 * @param scope Map of names to resolved variables
+	 * @return Resolved statement
+	 */
+	public static Statement resolve(Statement s, HashMap<Symbol, Variable> scope) {
+		// a new skip, so numbering the resolved program leaves the one it came from alone
+		if (s instanceof Skip)
+			return new Skip();
+
+		if (s instanceof Assignment) {
+			Assignment a = (Assignment) s;
+			return new Assignment(resolve(a.target(), scope), resolveExpression(a.source(), scope));
+		}
+
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			return new Conditional(
+					resolveExpression(c.test(), scope),
+					resolve(c.thenBranch(), scope),
+					resolve(c.elseBranch(), scope)
+			);
+		}
+
+		if (s instanceof Loop) {
+			Loop l = (Loop) s;
+			return new Loop(resolveExpression(l.test(), scope), resolve(l.body(), scope));
+		}
+
+		if (s instanceof Block) {
+			Block b = (Block) s;
+			Block.Builder out = new Block.Builder();
+			for (int i = 0; i < b.size(); i++)
+				out.add(resolve(b.member(i), scope));
+			return out.build();
+		}
+
+		if (s instanceof Call)
+			return resolve((Call) s, scope);
+
+		if (s instanceof Return) {
+			Return r = (Return) s;
+			return new Return(r.functionName(), resolveExpression(r.result(), scope));
+		}
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Resolve the variables in an expression
+	 * @param e Expression to resolve
+	 * @param scope Map of names to resolved variables
+	 * @return Resolved expression
+	 */
+	public static Expression resolveExpression(Expression e, HashMap<Symbol, Variable> scope) {
+		if (e instanceof Value)
+			return e;
+
+		if (e instanceof Variable)
+			return resolve((Variable) e, scope);
+
+		if (e instanceof Binary) {
+			Binary b = (Binary) e;
+			return new Binary(b.operator(), resolveExpression(b.term1(), scope), resolveExpression(b.term2(), scope));
+		}
+
+		if (e instanceof Unary) {
+			Unary u = (Unary) e;
+			return new Unary(u.operator(), resolveExpression(u.term(), scope));
+		}
+
+		if (e instanceof Call)
+			return resolve((Call) e, scope);
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Resolve a variable
+	 * @param v Variable to resolve
+	 * @param scope Map of names to resolved variables
+	 * @return Resolved variable
+	 */
+	public static Variable resolve(Variable v, HashMap<Symbol, Variable> scope) {
+		Variable resolved = scope.get(v.symbol());
+		if (resolved == null)
+			throw new IllegalArgumentException("Unable to resolve variable " + v);
+		return resolved;
+	}
+
+	/**
+	 * Resolve the arguments of a function call
+	 * @param c Call to resolve
+	 * @param scope Map of names to resolved variables
+	 * @return Call with resolved arguments
+	 */
+	public static Call resolve(Call c, HashMap<Symbol, Variable> scope) {
+		Expression[] args = new Expression[c.argumentCount()];
+		for (int i = 0; i < args.length; i++)
+			args[i] = resolveExpression(c.argument(i), scope);
+		return new Call(c.identifier(), args);
+	}
+}
@@ -1,65 +1,164 @@
 package clite.interpreter;
-import java.util.*;
 
+import clite.syntax.declaration.Declaration;
+import clite.syntax.declaration.Declarations;
 import clite.syntax.expression.Variable;
+import clite.syntax.function.Function;
 import clite.syntax.value.Value;
 
 
 
-@SuppressWarnings("serial")
 /**
  * Defines the set of variables and their associated values
  * that are active during interpretation
- * 
- * Basically just a renamed HashMap with some specialized methods (onion())
+ *
+ * Variables are stored in array-backed frames: one for globals
+ * and a stack of activation records, one for each function call that's
+ * currently executing. Every variable must be resolved (see Resolver)
+ * before it can be looked up.
  */
-public class State extends HashMap<Variable, Value> {
+public class State {
+	/** Values of global variables, indexed by slot */
+	private Value[] globals;
+
+	/** Names of global variables, indexed by slot */
+	private Variable[] globalNames;
+
+	/** Values of the currently executing function's parameters and locals, indexed by slot */
+	private Value[] frame;
+
+	/** Names of the variables in the bottom frame, indexed by slot (only used for display) */
+	private Variable[] frameNames;
+
+	/** Stack of activation records; the top of the stack is the current frame */
+	private Value[][] stack = new Value[16][];
+
+	/** Number of frames on the stack */
+	private int depth = 0;
+
+	/** Value of the return statement that was just hit, or null if the current call hasn't returned yet */
+	private Value returned;
+
 	/**
-	 * Create a new, empty state
+	 * Create a new state with uninitialized globals
+	 * @param globals Declarations of global variables
 	 */
-	public State() {
-		super();
+	public State(Declarations globals) {
+		this.globals = new Value[globals.size()];
+		this.globalNames = new Variable[globals.size()];
+
+		int slot = 0;
+		for (Declaration decl : globals.values()) {
+			this.globals[slot] = Value.mkValue(decl.type());
+			this.globalNames[slot] = decl.variable();
+			slot++;
+		}
+
+		this.frame = new Value[0];
+		this.frameNames = new Variable[0];
 	}
 
 	/**
-	 * Create a new state with a given variable and value
-	 * @param variable Initial variable
-	 * @param val Initial value of variable
+	 * Get the value of a resolved variable
+	 * @param variable Variable to get value of
+	 * @return Value of variable
 	 */
-	public State(Variable variable, Value val) {
-		super();
-		this.put(variable, val);
+	public Value get(Variable variable) {
+		return variable.isGlobal() ? globals[variable.slot()] : frame[variable.slot()];
 	}
 
 	/**
-	 * Put the given variable into the hash map
-	 * and return the new state. Updates a variable
-	 * if it's already in the map.
-	 * @param variable Variable to add/update
+	 * Set the value of a resolved variable and return the new state
+	 * @param variable Variable to update
 	 * @param val Value for variable
 	 * @return New state
 	 */
 	public State onion(Variable variable, Value val) {
-		this.put(variable, val);
+		if (variable.isGlobal())
+			globals[variable.slot()] = val;
+		else
+			frame[variable.slot()] = val;
 		return this;
 	}
 
+	/** @return Frame of the currently executing function */
+	public Value[] frame() {
+		return frame;
+	}
+
 	/**
-	 * Put the given state into this state and return the combined state
-	 * @param other State to combine
-	 * @return New state from two other states
+	 * Push an activation record onto the stack, making it the current frame
+	 * @param newFrame Frame to push
 	 */
-	public State onion(State other) {
-		for (Variable key : other.keySet())
-			put(key, other.get(key));
-		return this;
+	public void push(Value[] newFrame) {
+		if (depth == stack.length) {
+			Value[][] bigger = new Value[stack.length * 2][];
+			System.arraycopy(stack, 0, bigger, 0, stack.length);
+			stack = bigger;
+		}
+		stack[depth++] = newFrame;
+		frame = newFrame;
 	}
-	
+
+	/**
+	 * Pop the current activation record off of the stack
+	 * @return Frame that was popped
+	 */
+	public Value[] pop() {
+		Value[] old = stack[--depth];
+		stack[depth] = null;
+		frame = depth > 0 ? stack[depth - 1] : new Value[0];
+		return old;
+	}
+
+	/**
+	 * Signal that a return statement was hit, which stops the rest of the current call from running
+	 * @param v Value being returned
+	 */
+	public void setReturn(Value v) {
+		returned = v;
+	}
+
+	/** @return Whether or not the current call has hit a return statement */
+	public boolean hasReturned() {
+		return returned != null;
+	}
+
+	/**
+	 * Clear the return signal once a call is done
+	 * @return Value that was returned, or null if no return statement was hit
+	 */
+	public Value takeReturn() {
+		Value v = returned;
+		returned = null;
+		return v;
+	}
+
+	/**
+	 * Get the frame layout of a function (computed when it was resolved)
+	 * @param f Function to get layout of, which has been through Resolver
+	 * @return Layout of function's frame
+	 */
+	public FrameLayout layout(Function f) {
+		return ((ResolvedFunction) f).layout();
+	}
+
+	/**
+	 * Set the names used to display the bottom frame
+	 * @param names Names of variables in bottom frame, indexed by slot
+	 */
+	public void nameFrame(Variable[] names) {
+		frameNames = names;
+	}
+
 	/**
 	 * Print out all the variables in this state and their values
 	 */
 	public void display(){
-		for(Variable v : this.keySet())
-			System.out.println(v + ": " + this.get(v));
+		for(int i = 0; i < globals.length; i++)
+			System.out.println(globalNames[i] + ": " + globals[i]);
+		if (depth > 0)
+			for(int i = 0; i < frameNames.length && i < stack[0].length; i++)
+				System.out.println(frameNames[i] + ": " + stack[0][i]);
 	}
 }
@@ -0,0 +1,39 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.expression.Variable;
+import clite.syntax.value.Value;
+
+
+/**
+ * Stores the value of an expression in a resolved variable
+ */
+public class AssignmentNode extends StatementNode {
+	/** Variable being assigned to */
+	private final Variable target;
+
+	/** Expression giving the new value */
+	private ExpressionNode source;
+
+	/**
+	 * @param target Variable being assigned to (must be resolved)
+	 * @param source Expression giving the new value
+	 */
+	public AssignmentNode(Variable target, ExpressionNode source) {
+		this.target = target;
+		this.source = adopt(source);
+	}
+
+	@Override
+	public Value execute(State state) {
+		state.onion(target, source.execute(state));
+		return null;
+	}
+
+	@Override
+	protected void replaceChild(Node oldChild, Node newChild) {
+		if (source != oldChild)
+			throw new IllegalArgumentException("should never reach here");
+		source = (ExpressionNode) newChild;
+	}
+}
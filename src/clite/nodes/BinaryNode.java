@@ -0,0 +1,382 @@
+package clite.nodes;
+
+import clite.interpreter.Interpreter;
+import clite.interpreter.State;
+import clite.syntax.Operator;
+import clite.syntax.Type;
+import clite.syntax.expression.Binary;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+
+
+/**
+ * A binary operation.
+ *
+ * Every binary operation starts out uninitialized. The first time it's executed,
+ * it looks at the types of its operands and replaces itself with a node that only
+ * handles those types (i.e. int + int), so later executions skip straight to the math.
+ * If a specialized node ever sees operands it doesn't handle, it replaces itself with
+ * a generic node that does whatever the interpreter does.
+ */
+public abstract class BinaryNode extends ExpressionNode {
+	/** Kinds of operation, so specialized nodes can switch on an int instead of comparing strings */
+	protected static final int
+	PLUS = 0, MINUS = 1, TIMES = 2, DIV = 3,
+	LT = 4, LE = 5, GT = 6, GE = 7, EQ = 8, NE = 9,
+	AND = 10, OR = 11;
+
+	/** Operator being applied */
+	protected final Operator op;
+
+	/** Kind of operation (one of the constants above) */
+	protected final int kind;
+
+	/** Left-hand side */
+	protected ExpressionNode left;
+
+	/** Right-hand side */
+	protected ExpressionNode right;
+
+	/**
+	 * @param op Operator being applied
+	 * @param left Left-hand side
+	 * @param right Right-hand side
+	 */
+	protected BinaryNode(Operator op, ExpressionNode left, ExpressionNode right) {
+		this.op = op;
+		this.kind = kind(op);
+		this.left = adopt(left);
+		this.right = adopt(right);
+	}
+
+	/**
+	 * Create a binary operation that will specialize itself the first time it's executed
+	 * @param op Operator being applied
+	 * @param left Left-hand side
+	 * @param right Right-hand side
+	 * @return New binary node
+	 */
+	public static BinaryNode create(Operator op, ExpressionNode left, ExpressionNode right) {
+		return new Uninitialized(op, left, right);
+	}
+
+	@Override
+	public Value execute(State state) {
+		Value v1 = left.execute(state);
+
+		// && and || don't look at the right-hand side if the left-hand side decides the result
+		if ((kind == AND || kind == OR) && v1.type() == Type.BOOL && !v1.undefined() && v1.boolValue() == (kind == OR))
+			return v1;
+
+		Value v2 = right.execute(state);
+		return apply(v1, v2, state);
+	}
+
+	/**
+	 * Apply the operation to operands that have already been evaluated
+	 * @param v1 Value of left-hand side
+	 * @param v2 Value of right-hand side
+	 * @param state Current state
+	 * @return Result of operation
+	 */
+	protected abstract Value apply(Value v1, Value v2, State state);
+
+	/**
+	 * Give up on specializing and replace this node with a generic one
+	 * @return Generic node that replaced this one
+	 */
+	protected BinaryNode generalize() {
+		return (BinaryNode) replace(new Generic(op, left, right));
+	}
+
+	@Override
+	protected void replaceChild(Node oldChild, Node newChild) {
+		if (left == oldChild)
+			left = (ExpressionNode) newChild;
+		else if (right == oldChild)
+			right = (ExpressionNode) newChild;
+		else
+			throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * @param op Operator to get kind of
+	 * @return Kind of operation
+	 */
+	private static int kind(Operator op) {
+		switch (op.generic()) {
+		case PLUS:  return PLUS;
+		case MINUS: return MINUS;
+		case TIMES: return TIMES;
+		case DIV:   return DIV;
+		case LT:    return LT;
+		case LE:    return LE;
+		case GT:    return GT;
+		case GE:    return GE;
+		case EQ:    return EQ;
+		case NE:    return NE;
+		case AND:   return AND;
+		case OR:    return OR;
+		default:
+			throw new IllegalArgumentException("should never reach here");
+		}
+	}
+
+	/**
+	 * @param v1 Left-hand operand
+	 * @param v2 Right-hand operand
+	 * @return Whether or not both operands are undefined (which the interpreter reports as an error)
+	 */
+	protected static boolean bothUndefined(Value v1, Value v2) {
+		return v1.undefined() && v2.undefined();
+	}
+
+	/**
+	 * @param v Value to check
+	 * @return Whether or not the value is an int or a float
+	 */
+	private static boolean isNumber(Value v) {
+		return v.type() == Type.INT || v.type() == Type.FLOAT;
+	}
+
+	/**
+	 * Picks a specialization based on the first operands it sees
+	 */
+	static class Uninitialized extends BinaryNode {
+		Uninitialized(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			return specialize(v1, v2).apply(v1, v2, state);
+		}
+
+		/**
+		 * Replace this node with one that handles the given operands
+		 * @param v1 Left-hand operand
+		 * @param v2 Right-hand operand
+		 * @return Node that replaced this one
+		 */
+		private BinaryNode specialize(Value v1, Value v2) {
+			if (bothUndefined(v1, v2))
+				return generalize();
+
+			Type t1 = v1.type();
+			Type t2 = v2.type();
+			if (kind <= DIV) {
+				if (t1 == Type.INT && t2 == Type.INT)
+					return (BinaryNode) replace(new IntArithmetic(op, left, right));
+				if (isNumber(v1) && isNumber(v2))
+					return (BinaryNode) replace(new FloatArithmetic(op, left, right));
+			} else if (kind <= NE) {
+				if (t1 == Type.INT && t2 == Type.INT)
+					return (BinaryNode) replace(new IntCompare(op, left, right));
+				if (isNumber(v1) && isNumber(v2))
+					return (BinaryNode) replace(new FloatCompare(op, left, right));
+				if (t1 == Type.CHAR && t2 == Type.CHAR)
+					return (BinaryNode) replace(new CharCompare(op, left, right));
+				if (t1 == Type.BOOL && t2 == Type.BOOL && (kind == EQ || kind == NE))
+					return (BinaryNode) replace(new BoolCompare(op, left, right));
+			} else if (t1 == Type.BOOL && t2 == Type.BOOL)
+				return (BinaryNode) replace(new Logical(op, left, right));
+
+			return generalize();
+		}
+	}
+
+	/**
+	 * Handles any operands by handing them to the interpreter
+	 */
+	static class Generic extends BinaryNode {
+		Generic(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			return Interpreter.interpret(new Binary(op, v1, v2), null, state);
+		}
+	}
+
+	/**
+	 * int (+, -, *, /) int
+	 */
+	static class IntArithmetic extends BinaryNode {
+		IntArithmetic(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			if (v1.type() != Type.INT || v2.type() != Type.INT || bothUndefined(v1, v2))
+				return generalize().apply(v1, v2, state);
+
+			int i1 = v1.intValue();
+			int i2 = v2.intValue();
+			switch (kind) {
+			case PLUS:
+				return IntValue.of(i1 + i2);
+			case MINUS:
+				return IntValue.of(i1 - i2);
+			case TIMES:
+				return IntValue.of(i1 * i2);
+			default:
+				return IntValue.of(i1 / i2);
+			}
+		}
+	}
+
+	/**
+	 * float (+, -, *, /) float, where either side may be an int that gets turned into a float
+	 */
+	static class FloatArithmetic extends BinaryNode {
+		FloatArithmetic(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			if (!isNumber(v1) || !isNumber(v2) || (v1.type() == Type.INT && v2.type() == Type.INT) || bothUndefined(v1, v2))
+				return generalize().apply(v1, v2, state);
+
+			float f1 = v1.type() == Type.INT ? (float) v1.intValue() : v1.floatValue();
+			float f2 = v2.type() == Type.INT ? (float) v2.intValue() : v2.floatValue();
+			switch (kind) {
+			case PLUS:
+				return FloatValue.of(f1 + f2);
+			case MINUS:
+				return FloatValue.of(f1 - f2);
+			case TIMES:
+				return FloatValue.of(f1 * f2);
+			default:
+				return FloatValue.of(f1 / f2);
+			}
+		}
+	}
+
+	/**
+	 * int (<, <=, >, >=, ==, !=) int
+	 */
+	static class IntCompare extends BinaryNode {
+		IntCompare(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			if (v1.type() != Type.INT || v2.type() != Type.INT || bothUndefined(v1, v2))
+				return generalize().apply(v1, v2, state);
+			return BoolValue.of(compare(v1.intValue(), v2.intValue(), kind));
+		}
+	}
+
+	/**
+	 * float (<, <=, >, >=, ==, !=) float, where either side may be an int that gets turned into a float
+	 */
+	static class FloatCompare extends BinaryNode {
+		FloatCompare(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			if (!isNumber(v1) || !isNumber(v2) || (v1.type() == Type.INT && v2.type() == Type.INT) || bothUndefined(v1, v2))
+				return generalize().apply(v1, v2, state);
+
+			float f1 = v1.type() == Type.INT ? (float) v1.intValue() : v1.floatValue();
+			float f2 = v2.type() == Type.INT ? (float) v2.intValue() : v2.floatValue();
+			switch (kind) {
+			case LT:
+				return BoolValue.of(f1 < f2);
+			case LE:
+				return BoolValue.of(f1 <= f2);
+			case GT:
+				return BoolValue.of(f1 > f2);
+			case GE:
+				return BoolValue.of(f1 >= f2);
+			case EQ:
+				return BoolValue.of(f1 == f2);
+			default:
+				return BoolValue.of(f1 != f2);
+			}
+		}
+	}
+
+	/**
+	 * char (<, <=, >, >=, ==, !=) char
+	 */
+	static class CharCompare extends BinaryNode {
+		CharCompare(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			if (v1.type() != Type.CHAR || v2.type() != Type.CHAR || bothUndefined(v1, v2))
+				return generalize().apply(v1, v2, state);
+			return BoolValue.of(compare(v1.charValue(), v2.charValue(), kind));
+		}
+	}
+
+	/**
+	 * bool (==, !=) bool
+	 */
+	static class BoolCompare extends BinaryNode {
+		BoolCompare(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			if (v1.type() != Type.BOOL || v2.type() != Type.BOOL || bothUndefined(v1, v2))
+				return generalize().apply(v1, v2, state);
+			boolean same = v1.boolValue() == v2.boolValue();
+			return BoolValue.of(kind == EQ ? same : !same);
+		}
+	}
+
+	/**
+	 * bool (&&, ||) bool
+	 */
+	static class Logical extends BinaryNode {
+		Logical(Operator op, ExpressionNode left, ExpressionNode right) {
+			super(op, left, right);
+		}
+
+		@Override
+		protected Value apply(Value v1, Value v2, State state) {
+			if (v1.type() != Type.BOOL || v2.type() != Type.BOOL || bothUndefined(v1, v2))
+				return generalize().apply(v1, v2, state);
+			if (kind == AND)
+				return BoolValue.of(v1.boolValue() && v2.boolValue());
+			return BoolValue.of(v1.boolValue() || v2.boolValue());
+		}
+	}
+
+	/**
+	 * Compare two ints (or chars)
+	 * @param i1 Left-hand side
+	 * @param i2 Right-hand side
+	 * @param kind Kind of comparison
+	 * @return Result of comparison
+	 */
+	private static boolean compare(int i1, int i2, int kind) {
+		switch (kind) {
+		case LT:
+			return i1 < i2;
+		case LE:
+			return i1 <= i2;
+		case GT:
+			return i1 > i2;
+		case GE:
+			return i1 >= i2;
+		case EQ:
+			return i1 == i2;
+		default:
+			return i1 != i2;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A list of statements executed in order
+ */
+public class BlockNode extends StatementNode {
+	/** Statements in the block */
+	private final StatementNode[] members;
+
+	/**
+	 * @param members Statements in the block
+	 */
+	public BlockNode(StatementNode[] members) {
+		this.members = members;
+		for (StatementNode s : members)
+			adopt(s);
+	}
+
+	@Override
+	public Value execute(State state) {
+		for (StatementNode s : members) {
+			Value v = s.execute(state);
+			if (v != null)
+				return v;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,66 @@
+package clite.nodes;
+
+import clite.interpreter.FrameLayout;
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A function call used as an expression
+ */
+public class CallNode extends ExpressionNode {
+	/** Function being called */
+	private final CallTarget target;
+
+	/** Arguments, in the same order as the function's parameters */
+	private final ExpressionNode[] arguments;
+
+	/**
+	 * @param target Function being called
+	 * @param arguments Arguments, in the same order as the function's parameters
+	 */
+	public CallNode(CallTarget target, ExpressionNode[] arguments) {
+		this.target = target;
+		this.arguments = arguments;
+		for (ExpressionNode arg : arguments)
+			adopt(arg);
+	}
+
+	@Override
+	public Value execute(State state) {
+		Value v = call(state);
+		if (v == null)
+			throw new IllegalArgumentException("attemped to interpret function call with no return as expression");
+		return v;
+	}
+
+	/**
+	 * Make the call
+	 * @param state State of the caller
+	 * @return Value of the return statement that was hit, or null if the function finished without hitting one
+	 */
+	public Value call(State state) {
+		// the arguments are evaluated in the caller's frame before the callee's frame is pushed
+		FrameLayout layout = target.layout(state);
+		Value[] frame = layout.acquire();
+		for (int slot = 0; slot < arguments.length; slot++)
+			frame[slot] = arguments[slot].execute(state);
+		state.push(frame);
+
+		Value v = target.body().execute(state);
+
+		layout.release(state.pop());
+		return v;
+	}
+
+	@Override
+	protected void replaceChild(Node oldChild, Node newChild) {
+		for (int i = 0; i < arguments.length; i++) {
+			if (arguments[i] == oldChild) {
+				arguments[i] = (ExpressionNode) newChild;
+				return;
+			}
+		}
+		throw new IllegalArgumentException("should never reach here");
+	}
+}
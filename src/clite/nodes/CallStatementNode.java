@@ -0,0 +1,26 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A function call whose result (if any) is thrown away
+ */
+public class CallStatementNode extends StatementNode {
+	/** Call being made */
+	private final CallNode call;
+
+	/**
+	 * @param call Call being made
+	 */
+	public CallStatementNode(CallNode call) {
+		this.call = adopt(call);
+	}
+
+	@Override
+	public Value execute(State state) {
+		call.call(state);
+		return null;
+	}
+}
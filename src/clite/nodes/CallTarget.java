@@ -0,0 +1,52 @@
+package clite.nodes;
+
+import clite.interpreter.FrameLayout;
+import clite.interpreter.State;
+import clite.syntax.function.Function;
+
+
+/**
+ * A function that can be called from nodes; its body is turned into nodes the first time it's called
+ */
+public class CallTarget {
+	/** Function this is for */
+	private final Function function;
+
+	/** Builder used to make the body */
+	private final NodeBuilder builder;
+
+	/** Body of function (null until the first call) */
+	private BlockNode body;
+
+	/** Layout of the function's frame (null until the first call) */
+	private FrameLayout layout;
+
+	/**
+	 * @param function Function this is for
+	 * @param builder Builder to use to make the body
+	 */
+	public CallTarget(Function function, NodeBuilder builder) {
+		this.function = function;
+		this.builder = builder;
+	}
+
+	/** @return Function this is for */
+	public Function function() { return function; }
+
+	/** @return Body of function */
+	public BlockNode body() {
+		if (body == null)
+			body = builder.block(function.body());
+		return body;
+	}
+
+	/**
+	 * @param state State the function is being called in
+	 * @return Layout of the function's frame
+	 */
+	public FrameLayout layout(State state) {
+		if (layout == null)
+			layout = state.layout(function);
+		return layout;
+	}
+}
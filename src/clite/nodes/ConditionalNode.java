@@ -0,0 +1,45 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * An if statement
+ */
+public class ConditionalNode extends StatementNode {
+	/** Test deciding which branch to take */
+	private ExpressionNode test;
+
+	/** Statement executed if test is true */
+	private final StatementNode thenBranch;
+
+	/** Statement executed if test is false */
+	private final StatementNode elseBranch;
+
+	/**
+	 * @param test Test deciding which branch to take
+	 * @param thenBranch Statement executed if test is true
+	 * @param elseBranch Statement executed if test is false
+	 */
+	public ConditionalNode(ExpressionNode test, StatementNode thenBranch, StatementNode elseBranch) {
+		this.test = adopt(test);
+		this.thenBranch = adopt(thenBranch);
+		this.elseBranch = adopt(elseBranch);
+	}
+
+	@Override
+	public Value execute(State state) {
+		if (test.execute(state).boolValue())
+			return thenBranch.execute(state);
+		else
+			return elseBranch.execute(state);
+	}
+
+	@Override
+	protected void replaceChild(Node oldChild, Node newChild) {
+		if (test != oldChild)
+			throw new IllegalArgumentException("should never reach here");
+		test = (ExpressionNode) newChild;
+	}
+}
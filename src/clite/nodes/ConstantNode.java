@@ -0,0 +1,25 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A literal value
+ */
+public class ConstantNode extends ExpressionNode {
+	/** Value of literal */
+	private final Value value;
+
+	/**
+	 * @param value Value of literal
+	 */
+	public ConstantNode(Value value) {
+		this.value = value;
+	}
+
+	@Override
+	public Value execute(State state) {
+		return value;
+	}
+}
@@ -0,0 +1,17 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A node that evaluates to a value
+ */
+public abstract class ExpressionNode extends Node {
+	/**
+	 * Evaluate this node
+	 * @param state Current state
+	 * @return Value of node
+	 */
+	public abstract Value execute(State state);
+}
@@ -0,0 +1,42 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A while loop
+ */
+public class LoopNode extends StatementNode {
+	/** Test deciding whether to keep going */
+	private ExpressionNode test;
+
+	/** Body of loop */
+	private final StatementNode body;
+
+	/**
+	 * @param test Test deciding whether to keep going
+	 * @param body Body of loop
+	 */
+	public LoopNode(ExpressionNode test, StatementNode body) {
+		this.test = adopt(test);
+		this.body = adopt(body);
+	}
+
+	@Override
+	public Value execute(State state) {
+		while (test.execute(state).boolValue()) {
+			Value v = body.execute(state);
+			if (v != null)
+				return v;
+		}
+		return null;
+	}
+
+	@Override
+	protected void replaceChild(Node oldChild, Node newChild) {
+		if (test != oldChild)
+			throw new IllegalArgumentException("should never reach here");
+		test = (ExpressionNode) newChild;
+	}
+}
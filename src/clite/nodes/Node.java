@@ -0,0 +1,53 @@
+package clite.nodes;
+
+
+/**
+ * A node in an executable tree.
+ *
+ * Nodes know their parent so that they can replace themselves
+ * with a different node (usually a more specialized one) while the tree is running.
+ */
+public abstract class Node {
+	/** Node that this node is a child of (null for the root of a function body) */
+	private Node parent;
+
+	/** Node that replaced this one (null if it hasn't been replaced) */
+	private Node replacement;
+
+	/**
+	 * Make a node a child of this node
+	 * @param child Node to adopt
+	 * @return The child
+	 */
+	protected <T extends Node> T adopt(T child) {
+		if (child != null)
+			((Node) child).parent = this;
+		return child;
+	}
+
+	/**
+	 * Replace this node in its parent with another node.
+	 * A recursive call can run a node and replace it while an outer call is still
+	 * running the same node; when the outer call gets around to replacing it,
+	 * it gets the node that's already in its place instead.
+	 * @param newNode Node to replace this one with
+	 * @return Node that's now in this node's place
+	 */
+	protected Node replace(Node newNode) {
+		if (replacement != null)
+			return replacement;
+		parent.replaceChild(this, newNode);
+		newNode.parent = parent;
+		replacement = newNode;
+		return newNode;
+	}
+
+	/**
+	 * Replace one of this node's children with another node
+	 * @param oldChild Child being replaced
+	 * @param newChild Node to put in its place
+	 */
+	protected void replaceChild(Node oldChild, Node newChild) {
+		throw new IllegalArgumentException("should never reach here");
+	}
+}
@@ -0,0 +1,132 @@
+package clite.nodes;
+import java.util.HashMap;
+
+import clite.syntax.Program;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+import clite.syntax.value.Value;
+
+
+/**
+ * Turns the abstract syntax tree of a program into an executable node tree.
+ *
+ * The syntax tree isn't changed; it stays the front end for the type checker and the
+ * other backends. Function bodies are only turned into nodes when they're first called
+ * (see CallTarget).
+ */
+public class NodeBuilder {
+	/** Program being built */
+	private Program program;
+
+	/** Call target for each function, created the first time a call to it is built */
+	private HashMap<String, CallTarget> targets = new HashMap<String, CallTarget>();
+
+	/**
+	 * @param p Program to build nodes for (must already be resolved)
+	 */
+	public NodeBuilder(Program p) {
+		this.program = p;
+	}
+
+	/**
+	 * Get the call target for a function
+	 * @param id Name of function
+	 * @return Call target for function
+	 */
+	public CallTarget target(String id) {
+		CallTarget target = targets.get(id);
+		if (target == null) {
+			Function f = program.functions().get(id);
+			target = new CallTarget(f, this);
+			targets.put(id, target);
+		}
+		return target;
+	}
+
+	/**
+	 * Build a block
+	 * @param b Block to build
+	 * @return Block node
+	 */
+	public BlockNode block(Block b) {
+		StatementNode[] members = new StatementNode[b.size()];
+		for (int i = 0; i < members.length; i++)
+			members[i] = statement(b.member(i));
+		return new BlockNode(members);
+	}
+
+	/**
+	 * Build a statement
+	 * @param s Statement to build
+	 * @return Statement node
+	 */
+	public StatementNode statement(Statement s) {
+		if (s instanceof Skip)
+			return new SkipNode();
+		if (s instanceof Assignment) {
+			Assignment a = (Assignment) s;
+			return new AssignmentNode(a.target(), expression(a.source()));
+		}
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			return new ConditionalNode(expression(c.test()), statement(c.thenBranch()), statement(c.elseBranch()));
+		}
+		if (s instanceof Loop) {
+			Loop l = (Loop) s;
+			return new LoopNode(expression(l.test()), statement(l.body()));
+		}
+		if (s instanceof Block)
+			return block((Block) s);
+		if (s instanceof Call)
+			return new CallStatementNode(call((Call) s));
+		if (s instanceof Return)
+			return new ReturnNode(expression(((Return) s).result()));
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Build an expression
+	 * @param e Expression to build
+	 * @return Expression node
+	 */
+	public ExpressionNode expression(Expression e) {
+		if (e instanceof Value)
+			return new ConstantNode((Value) e);
+		if (e instanceof Variable)
+			return new VariableNode((Variable) e);
+		if (e instanceof Binary) {
+			Binary b = (Binary) e;
+			return BinaryNode.create(b.operator(), expression(b.term1()), expression(b.term2()));
+		}
+		if (e instanceof Unary) {
+			Unary u = (Unary) e;
+			return UnaryNode.create(u.operator(), expression(u.term()));
+		}
+		if (e instanceof Call)
+			return call((Call) e);
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Build a function call
+	 * @param c Call to build
+	 * @return Call node
+	 */
+	private CallNode call(Call c) {
+		ExpressionNode[] args = new ExpressionNode[c.argumentCount()];
+		for (int i = 0; i < args.length; i++)
+			args[i] = expression(c.argument(i));
+		return new CallNode(target(c.identifier().toString()), args);
+	}
+}
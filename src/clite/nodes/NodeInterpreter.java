@@ -0,0 +1,31 @@
+package clite.nodes;
+
+import clite.interpreter.FrameLayout;
+import clite.interpreter.Interpreter;
+import clite.interpreter.State;
+import clite.syntax.Program;
+
+
+/**
+ * Runs a program by turning it into a tree of self-specializing nodes
+ * and executing the tree.
+ */
+public class NodeInterpreter {
+	/**
+	 * Interprets a program and returns the final state of the program
+	 * @param p Program to interpret (must already be transformed and resolved)
+	 * @return Final state of program
+	 */
+	public static State interpret(Program p) {
+		CallTarget main = new NodeBuilder(p).target("main");
+		State state = Interpreter.initialState(p.globals());
+
+		// main's frame stays around after it's done so it can be displayed
+		FrameLayout layout = main.layout(state);
+		state.push(layout.acquire());
+		state.nameFrame(layout.names());
+
+		main.body().execute(state);
+		return state;
+	}
+}
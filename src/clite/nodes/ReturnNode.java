@@ -0,0 +1,32 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A return statement; ends the function call it's in
+ */
+public class ReturnNode extends StatementNode {
+	/** Expression giving the value to return */
+	private ExpressionNode result;
+
+	/**
+	 * @param result Expression giving the value to return
+	 */
+	public ReturnNode(ExpressionNode result) {
+		this.result = adopt(result);
+	}
+
+	@Override
+	public Value execute(State state) {
+		return result.execute(state);
+	}
+
+	@Override
+	protected void replaceChild(Node oldChild, Node newChild) {
+		if (result != oldChild)
+			throw new IllegalArgumentException("should never reach here");
+		result = (ExpressionNode) newChild;
+	}
+}
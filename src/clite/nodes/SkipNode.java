@@ -0,0 +1,15 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A statement that does nothing
+ */
+public class SkipNode extends StatementNode {
+	@Override
+	public Value execute(State state) {
+		return null;
+	}
+}
@@ -0,0 +1,17 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.value.Value;
+
+
+/**
+ * A node that changes the state
+ */
+public abstract class StatementNode extends Node {
+	/**
+	 * Execute this node
+	 * @param state Current state
+	 * @return Value of the return statement that was hit, or null if the node finished without hitting one
+	 */
+	public abstract Value execute(State state);
+}
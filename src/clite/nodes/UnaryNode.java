@@ -0,0 +1,251 @@
+package clite.nodes;
+
+import clite.interpreter.Interpreter;
+import clite.interpreter.State;
+import clite.syntax.Operator;
+import clite.syntax.Type;
+import clite.syntax.expression.Unary;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.CharValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+
+
+/**
+ * A unary operation.
+ *
+ * Specializes itself the same way BinaryNode does: the first execution picks a
+ * node for the type of the operand, and a node that sees the wrong type
+ * replaces itself with a generic one.
+ */
+public abstract class UnaryNode extends ExpressionNode {
+	/** Operator being applied */
+	protected final Operator op;
+
+	/** Term to apply operator to */
+	protected ExpressionNode term;
+
+	/**
+	 * @param op Operator being applied
+	 * @param term Term to apply operator to
+	 */
+	protected UnaryNode(Operator op, ExpressionNode term) {
+		this.op = op;
+		this.term = adopt(term);
+	}
+
+	/**
+	 * Create a unary operation that will specialize itself the first time it's executed
+	 * @param op Operator being applied
+	 * @param term Term to apply operator to
+	 * @return New unary node
+	 */
+	public static UnaryNode create(Operator op, ExpressionNode term) {
+		return new Uninitialized(op, term);
+	}
+
+	@Override
+	public Value execute(State state) {
+		return apply(term.execute(state), state);
+	}
+
+	/**
+	 * Apply the operation to an operand that has already been evaluated
+	 * @param v Value of term
+	 * @param state Current state
+	 * @return Result of operation
+	 */
+	protected abstract Value apply(Value v, State state);
+
+	/**
+	 * Give up on specializing and replace this node with a generic one
+	 * @return Generic node that replaced this one
+	 */
+	protected UnaryNode generalize() {
+		return (UnaryNode) replace(new Generic(op, term));
+	}
+
+	/**
+	 * @param v Operand
+	 * @param t Type the specialized node handles
+	 * @return Whether or not the operand can take the specialized path
+	 */
+	protected static boolean matches(Value v, Type t) {
+		return v.type() == t && !v.undefined();
+	}
+
+	@Override
+	protected void replaceChild(Node oldChild, Node newChild) {
+		if (term != oldChild)
+			throw new IllegalArgumentException("should never reach here");
+		term = (ExpressionNode) newChild;
+	}
+
+	/**
+	 * Picks a specialization based on the first operand it sees
+	 */
+	static class Uninitialized extends UnaryNode {
+		Uninitialized(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			return specialize(v).apply(v, state);
+		}
+
+		/**
+		 * Replace this node with one that handles the given operand
+		 * @param v Operand
+		 * @return Node that replaced this one
+		 */
+		private UnaryNode specialize(Value v) {
+			if (v.undefined())
+				return generalize();
+
+			Type t = v.type();
+			if (op.generic() == Operator.NOT && t == Type.BOOL)
+				return (UnaryNode) replace(new Not(op, term));
+			if (op.generic() == Operator.NEG && t == Type.INT)
+				return (UnaryNode) replace(new IntNegate(op, term));
+			if (op.generic() == Operator.NEG && t == Type.FLOAT)
+				return (UnaryNode) replace(new FloatNegate(op, term));
+			if (op.generic() == Operator.FLOAT && t == Type.INT)
+				return (UnaryNode) replace(new IntToFloat(op, term));
+			if (op.generic() == Operator.INT && t == Type.FLOAT)
+				return (UnaryNode) replace(new FloatToInt(op, term));
+			if (op.generic() == Operator.INT && t == Type.CHAR)
+				return (UnaryNode) replace(new CharToInt(op, term));
+			if (op.generic() == Operator.CHAR && t == Type.INT)
+				return (UnaryNode) replace(new IntToChar(op, term));
+			return generalize();
+		}
+	}
+
+	/**
+	 * Handles any operand by handing it to the interpreter
+	 */
+	static class Generic extends UnaryNode {
+		Generic(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			return Interpreter.interpret(new Unary(op, v), null, state);
+		}
+	}
+
+	/**
+	 * !bool
+	 */
+	static class Not extends UnaryNode {
+		Not(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			if (!matches(v, Type.BOOL))
+				return generalize().apply(v, state);
+			return BoolValue.of(!v.boolValue());
+		}
+	}
+
+	/**
+	 * -int
+	 */
+	static class IntNegate extends UnaryNode {
+		IntNegate(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			if (!matches(v, Type.INT))
+				return generalize().apply(v, state);
+			return IntValue.of(-v.intValue());
+		}
+	}
+
+	/**
+	 * -float
+	 */
+	static class FloatNegate extends UnaryNode {
+		FloatNegate(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			if (!matches(v, Type.FLOAT))
+				return generalize().apply(v, state);
+			return FloatValue.of(-v.floatValue());
+		}
+	}
+
+	/**
+	 * float(int)
+	 */
+	static class IntToFloat extends UnaryNode {
+		IntToFloat(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			if (!matches(v, Type.INT))
+				return generalize().apply(v, state);
+			return FloatValue.of((float) v.intValue());
+		}
+	}
+
+	/**
+	 * int(float)
+	 */
+	static class FloatToInt extends UnaryNode {
+		FloatToInt(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			if (!matches(v, Type.FLOAT))
+				return generalize().apply(v, state);
+			return IntValue.of((int) v.floatValue());
+		}
+	}
+
+	/**
+	 * int(char)
+	 */
+	static class CharToInt extends UnaryNode {
+		CharToInt(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			if (!matches(v, Type.CHAR))
+				return generalize().apply(v, state);
+			return IntValue.of((int) v.charValue());
+		}
+	}
+
+	/**
+	 * char(int)
+	 */
+	static class IntToChar extends UnaryNode {
+		IntToChar(Operator op, ExpressionNode term) {
+			super(op, term);
+		}
+
+		@Override
+		protected Value apply(Value v, State state) {
+			if (!matches(v, Type.INT))
+				return generalize().apply(v, state);
+			return CharValue.of((char) v.intValue());
+		}
+	}
+}
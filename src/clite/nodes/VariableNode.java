@@ -0,0 +1,26 @@
+package clite.nodes;
+
+import clite.interpreter.State;
+import clite.syntax.expression.Variable;
+import clite.syntax.value.Value;
+
+
+/**
+ * Reads a resolved variable
+ */
+public class VariableNode extends ExpressionNode {
+	/** Variable to read */
+	private final Variable variable;
+
+	/**
+	 * @param variable Variable to read (must be resolved)
+	 */
+	public VariableNode(Variable variable) {
+		this.variable = variable;
+	}
+
+	@Override
+	public Value execute(State state) {
+		return state.get(variable);
+	}
+}
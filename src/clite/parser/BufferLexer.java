@@ -0,0 +1,240 @@
+package clite.parser;
+import java.nio.ByteBuffer;
+
+import clite.syntax.SymbolTable;
+
+/**
+ * Turns a buffer holding a whole source file into a token stream.
+ *
+ * Unlike Lexer, this never copies the source: literals come out as tokens that
+ * point at a slice of the buffer (see Token.slice), and their String value is only
+ * made if the parser asks for it. Identifiers are interned straight out of the
+ * buffer (see SymbolTable), so only a name's first use makes a String. Files can be memory-mapped with map(),
+ * so large generated sources don't have to be read into the heap first.
+ * It produces the same tokens as Lexer.
+ */
+public class BufferLexer implements TokenStream {
+	/** Source being lexed */
+	private final CharSequence input;
+	
+	/** Number of characters in input */
+	private final int end;
+	
+	/** Offset of the next character to look at */
+	private int pos = 0;
+	
+	/** Current line number in file */
+	private int lineno = 1;
+	
+	/** Offset of the first character of the current line */
+	private int lineStart = 0;
+	
+	/** Table identifiers are interned in */
+	private final SymbolTable symbols;
+	
+	/** End-of-line and end-of-file chars */
+	private static final char EOL = '\n', EOF = '\004';
+
+	/**
+	 * @param input Source to lex (a String, CharBuffer, etc.)
+	 */
+	public BufferLexer(CharSequence input) {
+		this(input, new SymbolTable());
+	}
+
+	/**
+	 * @param input Source to lex (a String, CharBuffer, etc.)
+	 * @param symbols Table to intern identifiers in
+	 */
+	public BufferLexer(CharSequence input, SymbolTable symbols) {
+		this.input = input;
+		this.end = input.length();
+		this.symbols = symbols;
+	}
+
+	/**
+	 * @param input Source to lex, one byte per character
+	 */
+	public BufferLexer(byte[] input) {
+		this(new ByteSequence(ByteBuffer.wrap(input)));
+	}
+
+	/**
+	 * Memory-map a file and lex it straight out of the mapping
+	 * @param fileName source filename
+	 * @return Lexer for the file
+	 */
+	public static BufferLexer map(String fileName) {
+		return new BufferLexer(ByteSequence.map(fileName));
+	}
+
+	/**
+	 * @return next token from stream
+	 */
+	public Token next() {
+		while (pos < end) {
+			char c = input.charAt(pos);
+			
+			// identifier or keyword
+			if (isLetter(c)) {
+				int start = pos++;
+				while (pos < end && (isLetter(input.charAt(pos)) || isDigit(input.charAt(pos))))
+					pos++;
+				return Token.keyword(input, start, pos - start, symbols);
+			}
+			
+			// int literal, or float literal if the digits are followed by a .
+			if (isDigit(c)) {
+				int start = pos++;
+				while (pos < end && isDigit(input.charAt(pos)))
+					pos++;
+				if (pos >= end || input.charAt(pos) != '.')
+					return Token.slice(Token.Type.IntLiteral, input, start, pos - start);
+				while (pos < end && (isDigit(input.charAt(pos)) || input.charAt(pos) == '.'))
+					pos++;
+				return Token.slice(Token.Type.FloatLiteral, input, start, pos - start);
+			}
+			
+			pos++;
+			switch (c) {
+			// skip spaces, tabs, carriage returns, and end-of-line characters
+			case EOL:
+				lineno++;
+				lineStart = pos;
+				break;
+			case ' ':
+			case '\t':
+			case '\r':
+				break;
+			
+			// divide or comment
+			case '/':
+				if (!skip('/'))
+					return Token.divideTok;
+				// skip the rest of the line (the EOL is handled above)
+				while (pos < end && input.charAt(pos) != EOL)
+					pos++;
+				break;
+			
+			// char literal, grab char and skip second '
+			case '\'':
+				if (pos + 2 > end)
+					error("Attempt to read past end of file");
+				pos += 2;
+				return Token.slice(Token.Type.CharLiteral, input, pos - 2, 1);
+			
+			// end of file
+			case EOF:
+				return Token.eofTok;
+			
+			case '+':
+				return Token.plusTok;
+			case '-':
+				return Token.minusTok;
+			case '*':
+				return Token.multiplyTok;
+			case '(':
+				return Token.leftParenTok;
+			case ')':
+				return Token.rightParenTok;
+			case '{':
+				return Token.leftBraceTok;
+			case '}':
+				return Token.rightBraceTok;
+			case ';':
+				return Token.semicolonTok;
+			case ',':
+				return Token.commaTok;
+			
+			case '&':
+				check('&');
+				return Token.andTok;
+			case '|':
+				check('|');
+				return Token.orTok;
+			
+			case '=':
+				return skip('=') ? Token.eqeqTok : Token.assignTok;
+			case '<':
+				return skip('=') ? Token.lteqTok : Token.ltTok;
+			case '>':
+				return skip('=') ? Token.gteqTok : Token.gtTok;
+			case '!':
+				return skip('=') ? Token.noteqTok : Token.notTok;
+			
+			default:
+				pos--;
+				error("Illegal character " + c);
+			}
+		}
+		return Token.eofTok;
+	}
+
+	/**
+	 * @param c Character to check
+	 * @return Whether or not the given character is a letter
+	 */
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	/**
+	 * @param c Character to check
+	 * @return Whether or not the given character is a digit
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Skips the next character if it's the given character
+	 * @param c Character to check for
+	 * @return Whether or not the character was there
+	 */
+	private boolean skip(char c) {
+		if (pos < end && input.charAt(pos) == c) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Skips the next character, erroring if it isn't the given character
+	 * @param c Character to check for
+	 */
+	private void check(char c) {
+		if (!skip(c))
+			error("Illegal character, expecting " + c);
+	}
+
+	/**
+	 * Print an error
+	 * @param msg Message to print
+	 */
+	public void error(String msg) {
+		int lineEnd = lineStart;
+		while (lineEnd < end && input.charAt(lineEnd) != EOL)
+			lineEnd++;
+		
+		System.err.println("Error in Lexer!");
+		System.err.println("Line: " + lineno + " Col: " + columnNumber());
+		System.err.println(input.subSequence(lineStart, lineEnd));
+		System.err.println("Error: " + msg);
+		System.exit(1);
+	}
+	
+	/**
+	 * @return Current line number
+	 */
+	public int lineNumber(){
+		return lineno;
+	}
+	
+	/**
+	 * @return Current column number
+	 */
+	public int columnNumber(){
+		return pos - lineStart;
+	}
+}
@@ -0,0 +1,67 @@
+package clite.parser;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Lets a buffer of bytes be read as characters without decoding it first.
+ * Every byte is one character (ISO-8859-1, which covers plain ASCII source).
+ */
+class ByteSequence implements CharSequence {
+	/** Bytes being read */
+	private final ByteBuffer bytes;
+
+	/**
+	 * @param bytes Bytes to read as characters; position 0 of the buffer is index 0
+	 */
+	ByteSequence(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Memory-map a file so it can be read as characters
+	 * @param fileName source filename
+	 * @return Characters of the file
+	 */
+	static ByteSequence map(String fileName) {
+		try {
+			RandomAccessFile file = new RandomAccessFile(fileName, "r");
+			try {
+				FileChannel channel = file.getChannel();
+				// the mapping stays valid after the file is closed
+				return new ByteSequence(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			System.out.println("File not found: " + fileName);
+			System.exit(1);
+			return null;
+		}
+	}
+
+	@Override
+	public int length() {
+		return bytes.limit();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (bytes.get(index) & 0xff);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		ByteBuffer copy = bytes.duplicate();
+		copy.position(start);
+		copy.limit(end);
+		return new ByteSequence(copy.slice());
+	}
+
+	@Override
+	public String toString() {
+		return new StringBuilder(length()).append(this).toString();
+	}
+}
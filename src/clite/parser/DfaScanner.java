@@ -0,0 +1,334 @@
+package clite.parser;
+import java.nio.ByteBuffer;
+
+import clite.syntax.SymbolTable;
+
+/**
+ * Table-driven scanner that produces the same tokens as Lexer.
+ *
+ * Every character is mapped to a character class with one array lookup, and a
+ * transition table says which state the DFA goes to on each class. The scanner
+ * takes transitions until there isn't one, then the state it stopped in decides
+ * which token was read. Keywords are found with a perfect hash (see KeywordTable),
+ * and like BufferLexer, literals are slices of the input and identifiers are interned.
+ */
+public class DfaScanner implements TokenStream {
+	/** Character classes */
+	private static final int
+	C_OTHER = 0, C_LETTER = 1, C_DIGIT = 2, C_DOT = 3,
+	C_SPACE = 4, C_EOL = 5, C_SLASH = 6, C_QUOTE = 7,
+	C_AMP = 8, C_BAR = 9, C_EQ = 10, C_LT = 11, C_GT = 12, C_BANG = 13,
+	C_PLUS = 14, C_MINUS = 15, C_STAR = 16,
+	C_LPAREN = 17, C_RPAREN = 18, C_LBRACE = 19, C_RBRACE = 20,
+	C_SEMI = 21, C_COMMA = 22, C_EOF = 23,
+	CLASSES = 24;
+
+	/** States of the DFA */
+	private static final int
+	S_START = 0, S_SPACE = 1, S_EOL = 2,
+	S_IDENT = 3, S_INT = 4, S_FLOAT = 5,
+	S_SLASH = 6, S_COMMENT = 7,
+	S_QUOTE = 8, S_CHAR = 9, S_CHAR_END = 10,
+	S_AMP = 11, S_AND = 12, S_BAR = 13, S_OR = 14,
+	S_ASSIGN = 15, S_EQEQ = 16, S_LT = 17, S_LTEQ = 18,
+	S_GT = 19, S_GTEQ = 20, S_NOT = 21, S_NOTEQ = 22,
+	S_PLUS = 23, S_MINUS = 24, S_STAR = 25,
+	S_LPAREN = 26, S_RPAREN = 27, S_LBRACE = 28, S_RBRACE = 29,
+	S_SEMI = 30, S_COMMA = 31, S_EOF = 32,
+	STATES = 33;
+
+	/** Class of each ASCII character (everything else is C_OTHER) */
+	private static final byte[] CLASS = new byte[128];
+
+	/** Next state for each state and class, indexed by state * CLASSES + class (-1 if there's no transition) */
+	private static final int[] NEXT = new int[STATES * CLASSES];
+
+	/** Token for each state that always ends in the same token (null for the rest) */
+	private static final Token[] FIXED = new Token[STATES];
+
+	/** Keywords */
+	private static final KeywordTable KEYWORDS = KeywordTable.build();
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++)
+			CLASS[c] = C_LETTER;
+		for (char c = 'A'; c <= 'Z'; c++)
+			CLASS[c] = C_LETTER;
+		for (char c = '0'; c <= '9'; c++)
+			CLASS[c] = C_DIGIT;
+		CLASS['.'] = C_DOT;
+		CLASS[' '] = CLASS['\t'] = CLASS['\r'] = C_SPACE;
+		CLASS['\n'] = C_EOL;
+		CLASS['/'] = C_SLASH;
+		CLASS['\''] = C_QUOTE;
+		CLASS['&'] = C_AMP;
+		CLASS['|'] = C_BAR;
+		CLASS['='] = C_EQ;
+		CLASS['<'] = C_LT;
+		CLASS['>'] = C_GT;
+		CLASS['!'] = C_BANG;
+		CLASS['+'] = C_PLUS;
+		CLASS['-'] = C_MINUS;
+		CLASS['*'] = C_STAR;
+		CLASS['('] = C_LPAREN;
+		CLASS[')'] = C_RPAREN;
+		CLASS['{'] = C_LBRACE;
+		CLASS['}'] = C_RBRACE;
+		CLASS[';'] = C_SEMI;
+		CLASS[','] = C_COMMA;
+		CLASS['\004'] = C_EOF;
+
+		for (int i = 0; i < NEXT.length; i++)
+			NEXT[i] = -1;
+
+		// whitespace; each end-of-line is its own token so lines can be counted
+		on(S_START, C_SPACE, S_SPACE);
+		on(S_SPACE, C_SPACE, S_SPACE);
+		on(S_START, C_EOL, S_EOL);
+
+		// identifiers and keywords
+		on(S_START, C_LETTER, S_IDENT);
+		on(S_IDENT, C_LETTER, S_IDENT);
+		on(S_IDENT, C_DIGIT, S_IDENT);
+
+		// int literals, and float literals once there's a . (after which Lexer takes any digits and dots)
+		on(S_START, C_DIGIT, S_INT);
+		on(S_INT, C_DIGIT, S_INT);
+		on(S_INT, C_DOT, S_FLOAT);
+		on(S_FLOAT, C_DIGIT, S_FLOAT);
+		on(S_FLOAT, C_DOT, S_FLOAT);
+
+		// divide, or a comment that runs to the end of the line
+		on(S_START, C_SLASH, S_SLASH);
+		on(S_SLASH, C_SLASH, S_COMMENT);
+		for (int c = 0; c < CLASSES; c++)
+			if (c != C_EOL)
+				on(S_COMMENT, c, S_COMMENT);
+
+		// char literal: a quote, any character, then one more character (the closing quote)
+		on(S_START, C_QUOTE, S_QUOTE);
+		for (int c = 0; c < CLASSES; c++) {
+			on(S_QUOTE, c, S_CHAR);
+			on(S_CHAR, c, S_CHAR_END);
+		}
+
+		// operators that may be two characters long
+		on(S_START, C_AMP, S_AMP);
+		on(S_AMP, C_AMP, S_AND);
+		on(S_START, C_BAR, S_BAR);
+		on(S_BAR, C_BAR, S_OR);
+		on(S_START, C_EQ, S_ASSIGN);
+		on(S_ASSIGN, C_EQ, S_EQEQ);
+		on(S_START, C_LT, S_LT);
+		on(S_LT, C_EQ, S_LTEQ);
+		on(S_START, C_GT, S_GT);
+		on(S_GT, C_EQ, S_GTEQ);
+		on(S_START, C_BANG, S_NOT);
+		on(S_NOT, C_EQ, S_NOTEQ);
+
+		// single character tokens
+		on(S_START, C_PLUS, S_PLUS);
+		on(S_START, C_MINUS, S_MINUS);
+		on(S_START, C_STAR, S_STAR);
+		on(S_START, C_LPAREN, S_LPAREN);
+		on(S_START, C_RPAREN, S_RPAREN);
+		on(S_START, C_LBRACE, S_LBRACE);
+		on(S_START, C_RBRACE, S_RBRACE);
+		on(S_START, C_SEMI, S_SEMI);
+		on(S_START, C_COMMA, S_COMMA);
+		on(S_START, C_EOF, S_EOF);
+
+		FIXED[S_SLASH] = Token.divideTok;
+		FIXED[S_AND] = Token.andTok;
+		FIXED[S_OR] = Token.orTok;
+		FIXED[S_ASSIGN] = Token.assignTok;
+		FIXED[S_EQEQ] = Token.eqeqTok;
+		FIXED[S_LT] = Token.ltTok;
+		FIXED[S_LTEQ] = Token.lteqTok;
+		FIXED[S_GT] = Token.gtTok;
+		FIXED[S_GTEQ] = Token.gteqTok;
+		FIXED[S_NOT] = Token.notTok;
+		FIXED[S_NOTEQ] = Token.noteqTok;
+		FIXED[S_PLUS] = Token.plusTok;
+		FIXED[S_MINUS] = Token.minusTok;
+		FIXED[S_STAR] = Token.multiplyTok;
+		FIXED[S_LPAREN] = Token.leftParenTok;
+		FIXED[S_RPAREN] = Token.rightParenTok;
+		FIXED[S_LBRACE] = Token.leftBraceTok;
+		FIXED[S_RBRACE] = Token.rightBraceTok;
+		FIXED[S_SEMI] = Token.semicolonTok;
+		FIXED[S_COMMA] = Token.commaTok;
+		FIXED[S_EOF] = Token.eofTok;
+	}
+
+	/**
+	 * Add a transition to the table
+	 * @param state State to go from
+	 * @param cls Class of character
+	 * @param next State to go to
+	 */
+	private static void on(int state, int cls, int next) {
+		NEXT[state * CLASSES + cls] = next;
+	}
+
+	/** Source being scanned */
+	private final CharSequence input;
+
+	/** Number of characters in input */
+	private final int end;
+
+	/** Offset of the next character to look at */
+	private int pos = 0;
+
+	/** Current line number in file */
+	private int lineno = 1;
+
+	/** Offset of the first character of the current line */
+	private int lineStart = 0;
+
+	/** Table identifiers are interned in */
+	private final SymbolTable symbols;
+
+	/** Whether errors are thrown as a Parser.ParseError instead of being printed */
+	boolean nested;
+
+	/**
+	 * @param input Source to scan (a String, CharBuffer, etc.)
+	 */
+	public DfaScanner(CharSequence input) {
+		this(input, new SymbolTable());
+	}
+
+	/**
+	 * @param input Source to scan (a String, CharBuffer, etc.)
+	 * @param symbols Table to intern identifiers in
+	 */
+	public DfaScanner(CharSequence input, SymbolTable symbols) {
+		this.input = input;
+		this.end = input.length();
+		this.symbols = symbols;
+	}
+
+	/**
+	 * @param input Source to scan, one byte per character
+	 */
+	public DfaScanner(byte[] input) {
+		this(new ByteSequence(ByteBuffer.wrap(input)));
+	}
+
+	/**
+	 * @param input Source to scan, one byte per character
+	 * @param symbols Table to intern identifiers in
+	 */
+	public DfaScanner(byte[] input, SymbolTable symbols) {
+		this(new ByteSequence(ByteBuffer.wrap(input)), symbols);
+	}
+
+	/**
+	 * Memory-map a file and scan it straight out of the mapping
+	 * @param fileName source filename
+	 * @return Scanner for the file
+	 */
+	public static DfaScanner map(String fileName) {
+		return new DfaScanner(ByteSequence.map(fileName));
+	}
+
+	/**
+	 * @return next token from stream
+	 */
+	public Token next() {
+		while (true) {
+			int start = pos;
+			int state = S_START;
+			while (pos < end) {
+				char c = input.charAt(pos);
+				int next = NEXT[state * CLASSES + (c < 128 ? CLASS[c] : C_OTHER)];
+				if (next < 0)
+					break;
+				state = next;
+				pos++;
+			}
+
+			Token fixed = FIXED[state];
+			if (fixed != null)
+				return fixed;
+
+			switch (state) {
+			case S_SPACE:
+			case S_COMMENT:
+				break;
+			case S_EOL:
+				lineno++;
+				lineStart = pos;
+				break;
+			case S_IDENT: {
+				Token keyword = KEYWORDS.get(input, start, pos - start);
+				if (keyword != null)
+					return keyword;
+				return Token.identifier(input, start, pos - start, symbols);
+			}
+			case S_INT:
+				return Token.slice(Token.Type.IntLiteral, input, start, pos - start);
+			case S_FLOAT:
+				return Token.slice(Token.Type.FloatLiteral, input, start, pos - start);
+			case S_CHAR_END:
+				return Token.slice(Token.Type.CharLiteral, input, start + 1, 1);
+			case S_QUOTE:
+			case S_CHAR:
+				error("Attempt to read past end of file");
+				break;
+			case S_AMP:
+				error("Illegal character, expecting &");
+				break;
+			case S_BAR:
+				error("Illegal character, expecting |");
+				break;
+			default:
+				// stuck at the start: out of input, or a character no token starts with
+				if (pos >= end)
+					return Token.eofTok;
+				error("Illegal character " + input.charAt(pos));
+			}
+		}
+	}
+
+	/**
+	 * Print an error (or throw it, if nested)
+	 * @param msg Message to print
+	 */
+	public void error(String msg) {
+		int lineEnd = lineStart;
+		while (lineEnd < end && input.charAt(lineEnd) != '\n')
+			lineEnd++;
+
+		String error = "Error in Lexer!\n"
+				+ "Line: " + lineno + " Col: " + columnNumber() + "\n"
+				+ input.subSequence(lineStart, lineEnd) + "\n"
+				+ "Error: " + msg;
+		if (nested)
+			throw new Parser.ParseError(error);
+		System.err.println(error);
+		System.exit(1);
+	}
+
+	/**
+	 * @return Offset of the next character to look at (just past the last token read)
+	 */
+	int position(){
+		return pos;
+	}
+
+	/**
+	 * @return Current line number
+	 */
+	public int lineNumber(){
+		return lineno;
+	}
+
+	/**
+	 * @return Current column number
+	 */
+	public int columnNumber(){
+		return pos - lineStart;
+	}
+}
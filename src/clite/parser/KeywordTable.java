@@ -0,0 +1,106 @@
+package clite.parser;
+
+
+/**
+ * Perfect hash table of keywords, for looking up slices of a buffer without allocating.
+ *
+ * A keyword's slot is worked out from its first character, last character and length.
+ * The multipliers are picked when the table is built so that no two keywords share
+ * a slot, which means a lookup only ever has to compare against one keyword.
+ */
+class KeywordTable {
+	/** Spelling of the keyword in each slot (null for empty slots) */
+	private final String[] names;
+
+	/** Token for the keyword in each slot */
+	private final Token[] tokens;
+
+	/** Multiplier for the first character */
+	private final int first;
+
+	/** Multiplier for the last character */
+	private final int last;
+
+	/** Number of slots minus one (the number of slots is a power of two) */
+	private final int mask;
+
+	/**
+	 * @param names Spelling of the keyword in each slot
+	 * @param tokens Token for the keyword in each slot
+	 * @param first Multiplier for the first character
+	 * @param last Multiplier for the last character
+	 */
+	private KeywordTable(String[] names, Token[] tokens, int first, int last) {
+		this.names = names;
+		this.tokens = tokens;
+		this.first = first;
+		this.last = last;
+		this.mask = names.length - 1;
+	}
+
+	/**
+	 * Build a table holding every keyword in Token
+	 * @return Keyword table
+	 */
+	static KeywordTable build() {
+		String[] words = Token.keywordSpellings().toArray(new String[0]);
+
+		// start with twice as many slots as keywords, and keep doubling until multipliers that work turn up
+		int size = 1;
+		while (size < words.length * 2)
+			size *= 2;
+		while (true) {
+			for (int first = 1; first < 64; first++)
+				for (int last = 1; last < 64; last++) {
+					KeywordTable table = new KeywordTable(new String[size], new Token[size], first, last);
+					if (table.fill(words))
+						return table;
+				}
+			size *= 2;
+		}
+	}
+
+	/**
+	 * Put every keyword in its slot
+	 * @param words Keywords to add
+	 * @return Whether or not every keyword got its own slot
+	 */
+	private boolean fill(String[] words) {
+		for (String w : words) {
+			int slot = slot(w, 0, w.length());
+			if (names[slot] != null)
+				return false;
+			names[slot] = w;
+			tokens[slot] = Token.keywordToken(w);
+		}
+		return true;
+	}
+
+	/**
+	 * @param source Buffer holding the word
+	 * @param offset Offset of word in buffer
+	 * @param length Length of word
+	 * @return Slot the word would be in
+	 */
+	private int slot(CharSequence source, int offset, int length) {
+		return (source.charAt(offset) * first + source.charAt(offset + length - 1) * last + length) & mask;
+	}
+
+	/**
+	 * Look up a slice of a buffer
+	 * @param source Buffer holding the word
+	 * @param offset Offset of word in buffer
+	 * @param length Length of word (at least 1)
+	 * @return Keyword token if the slice is a keyword, null otherwise
+	 */
+	Token get(CharSequence source, int offset, int length) {
+		int slot = slot(source, offset, length);
+		String name = names[slot];
+		if (name == null || name.length() != length)
+			return null;
+		for (int i = 0; i < length; i++)
+			if (name.charAt(i) != source.charAt(offset + i))
+				return null;
+		return tokens[slot];
+	}
+}
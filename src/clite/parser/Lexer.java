@@ -1,10 +1,13 @@
 package clite.parser;
 import java.io.*;
 
+import clite.syntax.SymbolTable;
+
 /**
- * Turns a given file into a token stream
+ * Turns a given file into a token stream, one line at a time.
+ * See BufferLexer for a lexer that works on the whole file at once.
  */
-public class Lexer {
+public class Lexer implements TokenStream {
 	/** Used for reading through input */
 	private BufferedReader input;
 	
@@ -23,16 +26,28 @@ public class Lexer {
 	/** All possible letters and digits*/
 	private final String
 	LETTERS = "abcdefghijklmnopqrstuvwxyz"
-			+ "ABCDEFGHIJKLMNOPQRSTeVWXYZ",
+			+ "ABCDEFGHIJKLMNOPQRSTUVWXYZ",
 	DIGITS  = "0123456789";
 	
 	/** End-of-line and end-of-file chars */
 	private final char EOL = '\n', EOF = '\004';
+	
+	/** Table identifiers are interned in */
+	private final SymbolTable symbols;
 
 	/**
 	 * @param fileName source filename
 	 */
 	public Lexer(String fileName) {
+		this(fileName, new SymbolTable());
+	}
+
+	/**
+	 * @param fileName source filename
+	 * @param symbols Table to intern identifiers in
+	 */
+	public Lexer(String fileName, SymbolTable symbols) {
+		this.symbols = symbols;
 		try {
 			input = new BufferedReader(new FileReader(fileName));
 		} catch (FileNotFoundException e) {
@@ -79,7 +94,7 @@ public class Lexer {
 			 */
 			if (isLetter(currentChar)) { // ident or keyword
 				String spelling = concat(LETTERS + DIGITS);
-				return Token.keyword(spelling);
+				return Token.keyword(spelling, symbols);
 			/*
 			 * else if the current character is a digit, keep going
 			 * until hitting something not in DIGITS, then check for a .
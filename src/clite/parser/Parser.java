@@ -1,9 +1,14 @@
 package clite.parser;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+import clite.syntax.NodeIds;
 import clite.syntax.Operator;
 import clite.syntax.Program;
+import clite.syntax.SymbolTable;
 import clite.syntax.Type;
 import clite.syntax.declaration.Declaration;
 import clite.syntax.declaration.Declarations;
@@ -21,6 +26,7 @@ import clite.syntax.statement.Conditional;
 import clite.syntax.statement.Loop;
 import clite.syntax.statement.Skip;
 import clite.syntax.statement.Statement;
+import clite.syntax.value.BoolValue;
 import clite.syntax.value.CharValue;
 import clite.syntax.value.FloatValue;
 import clite.syntax.value.IntValue;
@@ -32,8 +38,55 @@ import clite.syntax.value.Value;
  * generates its abstract syntax.
  * 
  * Each method corresponds to a concrete syntax grammar rule.
+ * 
+ * With an explicit stack, statements and expressions are instead parsed by
+ * loops that keep whatever they're in the middle of on a list, so nesting
+ * depth is only limited by memory instead of the size of the Java stack.
+ * 
+ * A parallel parser reads every token first, then hands each function body
+ * to its own parser on a ForkJoinPool while it goes on through the rest of the file.
+ * A lazy parser only reads each function's signature, and parses its body when
+ * parseBody() is called.
  */
 public class Parser {
+	/** Precedence of each binary operator, indexed by token type (0 for tokens that aren't binary operators) */
+	private static final int[] PRECEDENCE = new int[Token.Type.values().length];
+	
+	/** Binary operator each token stands for, indexed by token type */
+	private static final Operator[] BINARY = new Operator[Token.Type.values().length];
+	
+	/**
+	 * Fewest tokens a file needs before a parallel parser hands its function bodies to the pool.
+	 * Below this, handing out the bodies costs more than the workers can save.
+	 */
+	private static final int PARALLEL_TOKENS = 4096;
+	
+	static {
+		binary(Token.Type.Or, Operator.OR, 1);
+		binary(Token.Type.And, Operator.AND, 2);
+		binary(Token.Type.Equals, Operator.EQ, 3);
+		binary(Token.Type.NotEqual, Operator.NE, 3);
+		binary(Token.Type.Less, Operator.LT, 4);
+		binary(Token.Type.LessEqual, Operator.LE, 4);
+		binary(Token.Type.Greater, Operator.GT, 4);
+		binary(Token.Type.GreaterEqual, Operator.GE, 4);
+		binary(Token.Type.Plus, Operator.PLUS, 5);
+		binary(Token.Type.Minus, Operator.MINUS, 5);
+		binary(Token.Type.Multiply, Operator.TIMES, 6);
+		binary(Token.Type.Divide, Operator.DIV, 6);
+	}
+	
+	/**
+	 * Add a binary operator to the precedence table
+	 * @param t Type of token
+	 * @param op Operator the token stands for
+	 * @param precedence How tightly the operator binds (higher binds tighter)
+	 */
+	private static void binary(Token.Type t, Operator op, int precedence) {
+		PRECEDENCE[t.ordinal()] = precedence;
+		BINARY[t.ordinal()] = op;
+	}
+	
 	/**  Current token from the input stream */
 	private Token currentToken;
 	
@@ -41,7 +94,25 @@ public class Parser {
 	private Variable currentFunction;
 	
 	/** Lexer that provides token */
-	private Lexer lexer;
+	private TokenStream lexer;
+	
+	/** Whether statements and expressions are parsed with an explicit stack instead of recursion */
+	private final boolean explicitStack;
+	
+	/** Pool function bodies are parsed on (null to parse them in place) */
+	private ForkJoinPool pool;
+	
+	/** Function bodies being parsed on the pool, in declaration order */
+	private ArrayList<FunctionTask> bodies;
+	
+	/** Function bodies a lazy parser skipped, by function name (null if bodies aren't skipped) */
+	private HashMap<String, FunctionTask> skipped;
+	
+	/** Whether errors are thrown to the parser that started this one instead of being printed */
+	private boolean nested;
+	
+	/** IDs for the nodes of the program being parsed */
+	private final NodeIds ids = new NodeIds();
 	
 	/** @param file Location of file to read */
 	public Parser(String file){ this(new Lexer(file)); }
@@ -50,12 +121,82 @@ public class Parser {
 	 * Create a new parser. Call program() to get program from Lexer.
 	 * @param lexer Lexer to use to generate program
 	 */
-	public Parser(Lexer lexer) {
+	public Parser(TokenStream lexer) {
+		this(lexer, false);
+	}
+
+	/**
+	 * Create a new parser. Call program() to get program from Lexer.
+	 * @param lexer Lexer to use to generate program
+	 * @param explicitStack Whether to parse statements and expressions with an explicit stack,
+	 *                      so that arbitrarily deep nesting doesn't overflow the Java stack
+	 */
+	public Parser(TokenStream lexer, boolean explicitStack) {
 		this.lexer = lexer;
+		this.explicitStack = explicitStack;
 		
 		// retrieve first token
 		currentToken = lexer.next();
 	}
+	
+	/**
+	 * Create a parser that parses function bodies in parallel.
+	 * All of the tokens are read from the lexer before this returns.
+	 * With a pool that only has one worker, or a file with fewer than PARALLEL_TOKENS
+	 * tokens, the bodies are parsed in place instead, since tasks would only be slower.
+	 * @param lexer Lexer to use to generate program
+	 * @param explicitStack Whether to parse statements and expressions with an explicit stack
+	 * @param pool Pool to parse function bodies on
+	 * @return Parser; call program() to get program
+	 */
+	public static Parser parallel(TokenStream lexer, boolean explicitStack, ForkJoinPool pool) {
+		// a single worker can't parse anything alongside this thread, so don't bother reading ahead
+		if(pool.getParallelism() < 2)
+			return new Parser(lexer, explicitStack);
+		TokenArray tokens = TokenArray.read(lexer);
+		Parser p = new Parser(tokens, explicitStack);
+		p.bodies = new ArrayList<FunctionTask>();
+		// and a small file isn't worth splitting up
+		if(tokens.remaining() >= PARALLEL_TOKENS)
+			p.pool = pool;
+		return p;
+	}
+	
+	/**
+	 * Create a parser that skips over function bodies.
+	 * All of the tokens are read from the lexer before this returns.
+	 * program() gives every function a null body and locals; parseBody() fills them in.
+	 * @param lexer Lexer to use to generate program
+	 * @param explicitStack Whether to parse statements and expressions with an explicit stack
+	 * @return Parser; call program() to get program
+	 */
+	public static Parser lazy(TokenStream lexer, boolean explicitStack) {
+		Parser p = new Parser(TokenArray.read(lexer), explicitStack);
+		p.skipped = new HashMap<String, FunctionTask>();
+		return p;
+	}
+	
+	/**
+	 * Parse the body of a function that a lazy parser skipped.
+	 * Its nodes are numbered carrying on from the rest of the program's.
+	 * @param name Name of function
+	 * @param functions Map any functions declared in the body are added to
+	 * @return Function with its locals and body, or null if its body wasn't skipped (or was already parsed)
+	 */
+	public Function parseBody(String name, Functions functions) {
+		FunctionTask task = skipped.remove(name);
+		if(task == null)
+			return null;
+		
+		task.invoke();
+		Function f = task.finish();
+		for(Function inner : task.functions.values()){
+			define(functions, inner, task.lineNumber, task.columnNumber);
+			ids.number(inner.body());
+		}
+		ids.number(f.body());
+		return f;
+	}
 
 	/**
 	 * Check if the current token is the given token type;
@@ -72,14 +213,49 @@ public class Parser {
 		return currentToken.value();
 	}
 
+	/**
+	 * Match an identifier
+	 * @return Variable named by the identifier
+	 */
+	private Variable identifier() {
+		Token t = currentToken;
+		match(Token.Type.Identifier);
+		return t.symbol().variable();
+	}
+
 	/**
 	 * Print an error message describing what the lexer expected
 	 * @param message What was expected
 	 */
 	private void error(String message) {
-		System.err.println("Error in parser!");
-		System.err.println("Line: " + lexer.lineNumber() + " Col: " + lexer.columnNumber());
-		System.err.println("Syntax error: expecting: " + message + "; saw: " + currentToken.value());
+		fail("Syntax error: expecting: " + message + "; saw: " + currentToken.value());
+	}
+	
+	/**
+	 * Print an error message along with where the lexer is
+	 * @param message Error message
+	 */
+	private void fail(String message) {
+		String error = "Error in parser!\n"
+				+ "Line: " + lexer.lineNumber() + " Col: " + lexer.columnNumber() + "\n"
+				+ message;
+		if(nested)
+			throw new ParseError(error);
+		
+		// a function body that came earlier in the file would have failed first
+		if(bodies != null)
+			for(FunctionTask task : bodies)
+				task.finish();
+		
+		exit(error);
+	}
+	
+	/**
+	 * Print an error and quit
+	 * @param error Error to print
+	 */
+	private static void exit(String error) {
+		System.err.println(error);
 		System.exit(1);
 	}
 
@@ -91,7 +267,52 @@ public class Parser {
 		Declarations globals = new Declarations();
 		Functions funcs = new Functions();
 		globals.putAll(declarations(funcs));
-		return new Program(globals, funcs);
+		
+		// add the functions parsed in parallel in the order they were declared
+		if(bodies != null){
+			for(FunctionTask task : bodies){
+				Function f = task.finish();
+				for(Function inner : task.functions.values())
+					define(funcs, inner, task.lineNumber, task.columnNumber);
+				define(funcs, f, task.lineNumber, task.columnNumber);
+			}
+			bodies.clear();
+		}
+		
+		// nodes are numbered once the whole tree is there, so bodies parsed in parallel still get them in order
+		Program p = new Program(globals, funcs);
+		ids.number(p);
+		return p;
+	}
+	
+	/**
+	 * Parse a whole source file, throwing errors (the lexer's as well as the parser's) instead of printing them
+	 * @param source Source to parse, one byte per character
+	 * @param symbols Table to intern identifiers in
+	 * @return Program generated from the source
+	 * @throws ParseError if there's a syntax error
+	 */
+	public static Program parse(byte[] source, SymbolTable symbols) {
+		DfaScanner scanner = new DfaScanner(source, symbols);
+		scanner.nested = true;
+		Parser parser = new Parser(scanner);
+		parser.nested = true;
+		return parser.program();
+	}
+	
+	/**
+	 * Parse a stretch of top-level declarations and functions, throwing errors instead of printing them
+	 * @param lexer Lexer over the stretch
+	 * @return Globals and functions declared in the stretch
+	 * @throws ParseError if there's a syntax error, or the declarations stop before the stretch does
+	 */
+	static Program stretch(TokenStream lexer) {
+		Parser parser = new Parser(lexer);
+		parser.nested = true;
+		Program p = parser.program();
+		if(parser.currentToken.type() != Token.Type.Eof)
+			parser.error("Type");
+		return p;
 	}
 	
 	/**
@@ -119,9 +340,7 @@ public class Parser {
 		
 		while(currentToken.type() != Token.Type.Eof){
 			// grab variable name from current token
-			Variable v = new Variable(currentToken.value());
-			// skip identifier
-			match(Token.Type.Identifier);
+			Variable v = identifier();
 			
 			if(currentToken.type() == Token.Type.LeftParen){
 				function(functions, type, v);
@@ -132,13 +351,9 @@ public class Parser {
 			} /*else if(currentToken.type() == Token.Type.Main)
 				break;*/
 			else{
-				Declaration dec = ds.put(v.toString(), new Declaration(v, type));
-				if(dec != null){
-					System.err.println("Error in parser!");
-					System.err.println("Line: " + lexer.lineNumber() + " Col: " + lexer.columnNumber());
-					System.err.println("Declaration already exists: " + v.toString());
-					System.exit(1);
-				}
+				Declaration dec = ds.put(v.symbol(), new Declaration(v, type));
+				if(dec != null)
+					fail("Declaration already exists: " + v.toString());
 				// currentToken will be a comma if there's more declarations of this type, skip comma
 				if(currentToken.type() == Token.Type.Comma){
 					match(Token.Type.Comma);
@@ -166,16 +381,72 @@ public class Parser {
 		Declarations params = parameters();
 		match(Token.Type.RightParen);
 		match(Token.Type.LeftBrace);
+		
+		// hand the body to another parser and skip to its closing brace
+		if(pool != null || skipped != null){
+			TokenArray tokens = (TokenArray) lexer;
+			int start = tokens.position() - 1;
+			int end = tokens.closing(start - 1);
+			// calls anywhere in the file can name a function declared inside this body,
+			// so a lazy parser can only skip it if there aren't any
+			if(end >= 0 && (skipped == null || !tokens.declaresFunction(start, end))){
+				Parser parser = new Parser(tokens.slice(start, end + 1), explicitStack);
+				parser.nested = true;
+				FunctionTask task = new FunctionTask(parser, t, v, params);
+				if(pool != null)
+					pool.execute(task);
+				
+				tokens.seek(end);
+				currentToken = tokens.next();
+				match(Token.Type.RightBrace);
+				task.lineNumber = lexer.lineNumber();
+				task.columnNumber = lexer.columnNumber();
+				
+				// a lazy parser leaves just the signature until the body is asked for
+				if(skipped != null){
+					define(functions, new Function(t, v.toString(), params, null, null), task.lineNumber, task.columnNumber);
+					skipped.put(v.toString(), task);
+				} else
+					bodies.add(task);
+				return;
+			}
+		}
+		
+		Function f = body(functions, t, v, params);
+		define(functions, f, lexer.lineNumber(), lexer.columnNumber());
+	}
+	
+	/**
+	 * Body of a function, up to and including its closing brace
+	 * @param functions Map any functions declared in the body are added to
+	 * @param t Type of function
+	 * @param v Name of function
+	 * @param params Parameters of function
+	 * @return Function
+	 */
+	private Function body(Functions functions, Type t, Variable v, Declarations params){
+		currentFunction = v;
 		Declarations locals = declarations(functions);
-		Block body = statements();
+		Block body = explicitStack ? flatStatements() : statements();
 		match(Token.Type.RightBrace);
-		
-		Function f = functions.put(v.toString(), new Function(t, v.toString(), params, locals, body));
-		if(f != null){
-			System.err.println("Error in parser!");
-			System.err.println("Line: " + lexer.lineNumber() + " Col: " + lexer.columnNumber());
-			System.err.println("Function already defined: " + v.toString());
-			System.exit(1);
+		return new Function(t, v.toString(), params, locals, body);
+	}
+	
+	/**
+	 * Add a function, making sure there isn't already one with its name
+	 * @param functions Map function is being added to
+	 * @param f Function to add
+	 * @param line Line to report if the function is already defined
+	 * @param column Column to report if the function is already defined
+	 */
+	private void define(Functions functions, Function f, int line, int column){
+		if(functions.put(f.id(), f) != null){
+			String error = "Error in parser!\n"
+					+ "Line: " + line + " Col: " + column + "\n"
+					+ "Function already defined: " + f.id();
+			if(nested)
+				throw new ParseError(error);
+			exit(error);
 		}
 	}
 	
@@ -189,11 +460,10 @@ public class Parser {
 		while(currentToken.type() != Token.Type.RightParen){
 			Type t = type();
 			// grab name then skip it
-			Variable v = new Variable(currentToken.value());
-			match(Token.Type.Identifier);
+			Variable v = identifier();
 			
 			// put the declaration into the list
-			decs.put(v.toString(), new Declaration(v, t));
+			decs.put(v.symbol(), new Declaration(v, t));
 			
 			// skip comma if it's there and move on to next parameter
 			if(currentToken.type() == Token.Type.Comma)
@@ -233,8 +503,10 @@ public class Parser {
 	 */
 	private Statement statement() {
 		// skip any semicolons
-		if(currentToken.type() == Token.Type.Semicolon)
+		if(currentToken.type() == Token.Type.Semicolon){
+			match(Token.Type.Semicolon);
 			return new Skip();
+		}
 		
 		// if statement
 		else if(currentToken.type() == Token.Type.If)
@@ -246,8 +518,7 @@ public class Parser {
 		
 		// identifier means assignment
 		else if(currentToken.type() == Token.Type.Identifier){
-			Variable name = new Variable(currentToken.value());
-			match(Token.Type.Identifier);
+			Variable name = identifier();
 			
 			if(currentToken.type() == Token.Type.Assign)
 				return assignment(name);
@@ -255,7 +526,8 @@ public class Parser {
 				Call c = callStatement(name);
 				match(Token.Type.Semicolon);
 				return c;
-			}
+			} else
+				error("= | (");
 		
 		// left brace indicates start of block
 		} else if(currentToken.type() == Token.Type.LeftBrace){
@@ -283,16 +555,16 @@ public class Parser {
 	private Call callStatement(Variable id){
 		match(Token.Type.LeftParen);
 		
-		Stack<Expression> args = new Stack<Expression>();
+		Call.Builder call = new Call.Builder(id);
 		while(!(currentToken.type() == Token.Type.RightParen)){
-			args.push(expression());
+			call.add(expression());
 			if(currentToken.type() == Token.Type.Comma)
 				match(Token.Type.Comma);
 		}
 		
 		match(Token.Type.RightParen);
 		
-		return new Call(id, args);
+		return call.build();
 	}
 	
 	/**
@@ -314,13 +586,80 @@ public class Parser {
 	 * @return A block of statements
 	 */
 	private Block statements() {
-		Block b = new Block();
+		Block.Builder b = new Block.Builder();
 		
 		// statement goes until a right brace is hit (or end of file)
 		while(currentToken.type() != Token.Type.RightBrace && currentToken.type() != Token.Type.Eof)
-			b.addMember(statement());
+			b.add(statement());
 		
-		return b;
+		return b.build();
+	}
+
+	/**
+	 * Block --> '{' Statements '}', parsed without recursing.
+	 * 
+	 * Blocks, ifs and whiles that have been started but not finished are kept on a list.
+	 * When a statement is finished it's handed to the innermost one, which may finish in turn.
+	 * @return A block of statements
+	 */
+	private Block flatStatements() {
+		ArrayList<OpenStatement> open = new ArrayList<OpenStatement>();
+		Block.Builder body = new Block.Builder();
+		open.add(new OpenStatement(body));
+		
+		while(true){
+			OpenStatement top = open.get(open.size() - 1);
+			Statement s;
+			
+			// end of a block (the outermost one is closed by the function)
+			if(top.block != null && (currentToken.type() == Token.Type.RightBrace || currentToken.type() == Token.Type.Eof)){
+				if(open.size() == 1)
+					return body.build();
+				match(Token.Type.RightBrace);
+				open.remove(open.size() - 1);
+				s = top.block.build();
+			
+			// statements that hold other statements get opened and parsed on the next time around
+			} else if(currentToken.type() == Token.Type.If || currentToken.type() == Token.Type.While){
+				boolean loop = currentToken.type() == Token.Type.While;
+				match(currentToken.type());
+				match(Token.Type.LeftParen);
+				Expression test = expression();
+				match(Token.Type.RightParen);
+				open.add(new OpenStatement(test, loop));
+				continue;
+			} else if(currentToken.type() == Token.Type.LeftBrace){
+				match(Token.Type.LeftBrace);
+				open.add(new OpenStatement(new Block.Builder()));
+				continue;
+			
+			// everything else is a single statement
+			} else
+				s = statement();
+			
+			// hand the statement up until something can hold on to it
+			while(true){
+				top = open.get(open.size() - 1);
+				if(top.block != null){
+					top.block.add(s);
+					break;
+				}
+				
+				if(!top.loop && top.thenBranch == null){
+					top.thenBranch = s;
+					// parse the else statement next
+					if(currentToken.type() == Token.Type.Else){
+						match(Token.Type.Else);
+						break;
+					}
+					s = new Conditional(top.test, s, new Skip());
+				} else if(top.loop)
+					s = new Loop(top.test, s);
+				else
+					s = new Conditional(top.test, top.thenBranch, s);
+				open.remove(open.size() - 1);
+			}
+		}
 	}
 
 	/**
@@ -353,7 +692,11 @@ public class Parser {
 		// grab if statement
 		Statement ifstatement = statement();
 		// grab else statement if it's there, skip otherwise
-		Statement elsestatement = (currentToken.type() == Token.Type.Else) ? elsestatement = statement() : new Skip();
+		Statement elsestatement = new Skip();
+		if(currentToken.type() == Token.Type.Else){
+			match(Token.Type.Else);
+			elsestatement = statement();
+		}
 		
 		return new Conditional(expression, ifstatement, elsestatement);
 	}
@@ -377,67 +720,34 @@ public class Parser {
 	}
 
 	/**
-	 * Expression --> Conjunction { || Conjunction } | Call
-	 */
-	private Expression expression() {
-		Expression e = conjunction();
-		
-		// expression goes while there's no more  ||s
-		while(currentToken.type() == Token.Type.Or){
-			Operator op = new Operator(currentToken.value());
-			match(Token.Type.Or);
-			Expression term2 = conjunction();
-			e = new Binary(op, e, term2);
-		}
-		
-		return e;
-	}
-
-	/**
+	 * Expression --> Conjunction { || Conjunction }
 	 * Conjunction --> Equality { && Equality }
+	 * Equality --> Relation { EquOp Relation }
+	 * Relation --> Addition { RelOp Addition }
+	 * Addition --> Term { AddOp Term }
+	 * Term --> Factor { MultiplyOp Factor }
+	 * 
+	 * Every level is handled by one loop that climbs the PRECEDENCE table,
+	 * instead of a method per level, so an operand only takes one call to reach.
 	 */
-	private Expression conjunction() {
-		Expression e = equality();
-		
-		// conjunction goes until there's no more &&s
-		while(currentToken.type() == Token.Type.And){
-			Operator op = new Operator(currentToken.value());
-			match(Token.Type.And);
-			Expression term2 = equality();
-			e = new Binary(op, e, term2);
-		}
-		
-		return e;
-	}
-
-	/**
-	 * Equality --> Relation [ EquOp Relation ]
-	 */
-	private Expression equality() {
-		Expression e = relation();
-		
-		// equality goes while there's an equality operator
-		while(isEqualityOp()){
-			Operator op = new Operator(currentToken.value());
-			match(currentToken.type());
-			Expression term2 = relation();
-			e = new Binary(op, e, term2);
-		}
-		
-		return e;
+	private Expression expression() {
+		return explicitStack ? flatExpression() : expression(1);
 	}
 
 	/**
-	 * Relation --> Addition [RelOp Addition]
+	 * Parse an expression whose binary operators all bind at least as tightly as the given precedence
+	 * @param minPrecedence Lowest precedence of an operator that belongs to this expression
+	 * @return Expression
 	 */
-	private Expression relation() {
-		Expression e = addition();
+	private Expression expression(int minPrecedence) {
+		Expression e = factor();
 		
-		// relation goes until there's no more relational ops
-		while(isRelationalOp()){
-			Operator op = new Operator(currentToken.value());
+		// every operator is left-associative, so the right-hand side only takes operators that bind tighter
+		int precedence;
+		while((precedence = PRECEDENCE[currentToken.type().ordinal()]) >= minPrecedence){
+			Operator op = BINARY[currentToken.type().ordinal()];
 			match(currentToken.type());
-			Expression term2 = addition();
+			Expression term2 = expression(precedence + 1);
 			e = new Binary(op, e, term2);
 		}
 		
@@ -445,35 +755,108 @@ public class Parser {
 	}
 
 	/**
-	 * Addition --> Term { AddOp Term }
+	 * Expression, parsed without recursing.
+	 * 
+	 * Operands go on one list, and operators and groups ( '(', casts and calls ) that
+	 * haven't been finished go on another. Binary operators are finished as soon as
+	 * an operator that doesn't bind tighter comes along, which builds the same tree
+	 * that climbing the precedence table does.
+	 * @return Expression
 	 */
-	private Expression addition() {
-		Expression e = term();
-		
-		// addition goes until there's no more addition ops
-		while (isAddOp()) {
-			Operator op = new Operator(currentToken.value());
-			match(currentToken.type());
-			Expression term2 = term();
-			e = new Binary(op, e, term2);
-		}
-		return e;
-	}
-
-	/**
-	 * Term --> Factor { MultiplyOp Factor }
-	 */
-	private Expression term() {
-		Expression e = factor();
+	private Expression flatExpression() {
+		ArrayList<Expression> operands = new ArrayList<Expression>();
+		ArrayList<OpenExpression> open = new ArrayList<OpenExpression>();
 		
-		// term goes until there's no more multiply ops
-		while (isMultiplyOp()) {
-			Operator op = new Operator(currentToken.value());
-			match(currentToken.type());
-			Expression term2 = factor();
-			e = new Binary(op, e, term2);
+		while(true){
+			// Factor --> [ UnaryOp ] Primary
+			if(isUnaryOp()){
+				open.add(new OpenExpression(OpenExpression.UNARY, unaryOperator(currentToken.type())));
+				match(currentToken.type());
+				// a primary can't start with another unary op
+				if(isUnaryOp())
+					error("Identifier | Literal | ( | Type");
+			}
+			
+			// variable or function call
+			if(currentToken.type() == Token.Type.Identifier){
+				Variable v = identifier();
+				
+				if(currentToken.type() == Token.Type.LeftParen){
+					match(Token.Type.LeftParen);
+					if(currentToken.type() != Token.Type.RightParen){
+						open.add(new OpenExpression(v));
+						continue;
+					}
+					match(Token.Type.RightParen);
+					operands.add(new Call.Builder(v).build());
+				} else
+					operands.add(v);
+			
+			// literal
+			} else if(isLiteral()){
+				operands.add(literal());
+			
+			// expression
+			} else if(currentToken.type() == Token.Type.LeftParen){
+				currentToken = lexer.next();
+				open.add(new OpenExpression(OpenExpression.GROUP, null));
+				continue;
+			
+			// type cast
+			} else if(isType()){
+				Operator op = unaryOperator(currentToken.type());
+				match(currentToken.type());
+				match(Token.Type.LeftParen);
+				open.add(new OpenExpression(OpenExpression.CAST, op));
+				continue;
+			} else
+				error("Identifier | Literal | ( | Type");
+			
+			// a primary was just finished; close everything it finishes
+			while(true){
+				OpenExpression top = open.isEmpty() ? null : open.get(open.size() - 1);
+				if(top != null && top.kind == OpenExpression.UNARY){
+					open.remove(open.size() - 1);
+					operands.add(new Unary(top.op, operands.remove(operands.size() - 1)));
+				}
+				
+				// every operator is left-associative, so anything that binds at least as tightly goes first
+				int precedence = PRECEDENCE[currentToken.type().ordinal()];
+				while(!open.isEmpty() && (top = open.get(open.size() - 1)).kind == OpenExpression.BINARY && top.precedence >= precedence){
+					open.remove(open.size() - 1);
+					Expression term2 = operands.remove(operands.size() - 1);
+					Expression term1 = operands.remove(operands.size() - 1);
+					operands.add(new Binary(top.op, term1, term2));
+				}
+				
+				if(precedence > 0){
+					open.add(new OpenExpression(BINARY[currentToken.type().ordinal()], precedence));
+					match(currentToken.type());
+					break;
+				}
+				
+				// not an operator, so this is the end of the innermost group
+				if(open.isEmpty())
+					return operands.get(0);
+				
+				top = open.get(open.size() - 1);
+				if(top.kind == OpenExpression.CALL){
+					top.call.add(operands.remove(operands.size() - 1));
+					if(currentToken.type() == Token.Type.Comma)
+						match(Token.Type.Comma);
+					// go on to the next argument
+					if(currentToken.type() != Token.Type.RightParen)
+						break;
+				}
+				
+				match(Token.Type.RightParen);
+				open.remove(open.size() - 1);
+				if(top.kind == OpenExpression.CAST)
+					operands.add(new Unary(top.op, operands.remove(operands.size() - 1)));
+				else if(top.kind == OpenExpression.CALL)
+					operands.add(top.call.build());
+			}
 		}
-		return e;
 	}
 
 	/**
@@ -482,7 +865,7 @@ public class Parser {
 	private Expression factor() {
 		if (isUnaryOp()) {
 			// grab operator
-			Operator op = new Operator(currentToken.value());
+			Operator op = unaryOperator(currentToken.type());
 			match(currentToken.type());
 			
 			// grab term
@@ -502,8 +885,7 @@ public class Parser {
 		
 		// variable or function call
 		if (currentToken.type() == Token.Type.Identifier) {
-			Variable v = new Variable(currentToken.value());
-			match(Token.Type.Identifier);
+			Variable v = identifier();
 			
 			// function call
 			if(currentToken.type() == Token.Type.LeftParen)
@@ -524,7 +906,7 @@ public class Parser {
 			
 		// type cast
 		} else if (isType()) {
-			Operator op = new Operator(currentToken.value());
+			Operator op = unaryOperator(currentToken.type());
 			match(currentToken.type());
 			match(Token.Type.LeftParen);
 			Expression term = expression();
@@ -536,29 +918,36 @@ public class Parser {
 	}
 
 	/**
-	 * An int, float or char literal
+	 * An int, float, char or bool literal
 	 */
 	private Value literal() {
 		try{
 			// int literal
 			if (currentToken.type() == Token.Type.IntLiteral){
-				Value v = new IntValue(Integer.parseInt(currentToken.value()));
+				Value v = IntValue.of(Integer.parseInt(currentToken.value()));
 				match(Token.Type.IntLiteral);
 				return v;
 				
 			// float literal
 			}else if (currentToken.type() == Token.Type.FloatLiteral){
-				Value v = new FloatValue(Float.parseFloat(currentToken.value()));
+				Value v = FloatValue.of(Float.parseFloat(currentToken.value()));
 				match(Token.Type.FloatLiteral);
 				return v;
 			}
 			
 			// char literal
 			else if (currentToken.type() == Token.Type.CharLiteral){
-				Value v = new CharValue(currentToken.value().charAt(0));
+				Value v = CharValue.of(currentToken.value().charAt(0));
 				match(Token.Type.CharLiteral);
 				return v;
 			}
+			
+			// bool literal
+			else if (isBooleanLiteral()){
+				Value v = currentToken.type() == Token.Type.True ? BoolValue.TRUE : BoolValue.FALSE;
+				match(currentToken.type());
+				return v;
+			}
 			else
 				error("unknown token type for literal! Token value: " + currentToken.value());
 		} catch(NumberFormatException e){
@@ -568,22 +957,22 @@ public class Parser {
 	}
 
 	/**
-	 * @return Whether or not the current token is an add op
+	 * @param t Type of token
+	 * @return Unary (or cast) operator the token stands for
 	 */
-	private boolean isAddOp() {
-		return currentToken.type() == Token.Type.Plus
-			|| currentToken.type() == Token.Type.Minus;
-	}
-
-	/**
-	 * @return Whether or not the current token is a multiply op
-	 */
-	private boolean isMultiplyOp() {
-		return currentToken.type() == Token.Type.Multiply
-			|| currentToken.type() == Token.Type.Divide;
+	private Operator unaryOperator(Token.Type t) {
+		switch (t) {
+		case Not:   return Operator.NOT;
+		case Minus: return Operator.NEG;
+		case Int:   return Operator.INT;
+		case Float: return Operator.FLOAT;
+		case Char:  return Operator.CHAR;
+		default:
+			error("! | - | int | float | char");
+			return null;
+		}
 	}
 
-	
 	/**
 	 * @return Whether or not the current token is a unary op
 	 */
@@ -592,24 +981,6 @@ public class Parser {
 			|| currentToken.type() == Token.Type.Minus;
 	}
 
-	/**
-	 * @return Whether or not the current token is an equality op
-	 */
-	private boolean isEqualityOp() {
-		return currentToken.type() == Token.Type.Equals
-			|| currentToken.type() == Token.Type.NotEqual;
-	}
-
-	/**
-	 * @return Whether or not the current token is a relational op
-	 */
-	private boolean isRelationalOp() {
-		return currentToken.type() == Token.Type.Less
-			|| currentToken.type() == Token.Type.LessEqual
-			|| currentToken.type() == Token.Type.Greater
-			|| currentToken.type() == Token.Type.GreaterEqual;
-	}
-
 	/**
 	 * @return Whether or not the current token is a type declaration
 	 */
@@ -638,4 +1009,165 @@ public class Parser {
 		return currentToken.type() == Token.Type.True
 			|| currentToken.type() == Token.Type.False;
 	}
+
+	/**
+	 * Parses one function body on a ForkJoinPool (or when a lazy parser is asked for it)
+	 */
+	@SuppressWarnings("serial")
+	private static class FunctionTask extends RecursiveTask<Function> {
+		/** Parser over just the body */
+		private final Parser parser;
+		
+		/** Type of function */
+		private final Type type;
+		
+		/** Name of function */
+		private final Variable name;
+		
+		/** Parameters of function */
+		private final Declarations params;
+		
+		/** Functions declared inside of the body */
+		final Functions functions = new Functions();
+		
+		/** Syntax error in the body, if there was one */
+		private ParseError error;
+		
+		/** Where the function ends, for reporting a duplicate definition */
+		int lineNumber, columnNumber;
+		
+		/**
+		 * @param parser Parser over the body
+		 * @param type Type of function
+		 * @param name Name of function
+		 * @param params Parameters of function
+		 */
+		FunctionTask(Parser parser, Type type, Variable name, Declarations params) {
+			this.parser = parser;
+			this.type = type;
+			this.name = name;
+			this.params = params;
+		}
+		
+		/**
+		 * @return Function, or null if the body has a syntax error
+		 */
+		@Override
+		protected Function compute() {
+			try {
+				return parser.body(functions, type, name, params);
+			} catch (ParseError e) {
+				// left for whoever waits on this task, so errors come out in the order they're in the file
+				error = e;
+				return null;
+			}
+		}
+		
+		/**
+		 * Wait for the body to be parsed; prints the syntax error and quits if there was one
+		 * @return Function
+		 */
+		Function finish() {
+			Function f = join();
+			if(error != null)
+				exit(error.getMessage());
+			return f;
+		}
+	}
+	
+	/**
+	 * Syntax error in a function body being parsed in parallel, or in anything parsed
+	 * with parse() or stretch(), with the message that would have been printed
+	 */
+	@SuppressWarnings("serial")
+	public static class ParseError extends RuntimeException {
+		/** @param error Error to print */
+		public ParseError(String error) {
+			super(error);
+		}
+	}
+
+	/**
+	 * A block, if or while the explicit-stack parser has started but not finished
+	 */
+	private static class OpenStatement {
+		/** Block being added to (null for an if or while) */
+		final Block.Builder block;
+		
+		/** Test of the if or while */
+		final Expression test;
+		
+		/** Whether this is a while */
+		final boolean loop;
+		
+		/** Then branch of an if, once it's been parsed */
+		Statement thenBranch;
+		
+		/** @param block Block to add statements to */
+		OpenStatement(Block.Builder block) {
+			this.block = block;
+			this.test = null;
+			this.loop = false;
+		}
+		
+		/**
+		 * @param test Test of the if or while
+		 * @param loop Whether this is a while
+		 */
+		OpenStatement(Expression test, boolean loop) {
+			this.block = null;
+			this.test = test;
+			this.loop = loop;
+		}
+	}
+	
+	/**
+	 * An operator or group the explicit-stack parser has started but not finished
+	 */
+	private static class OpenExpression {
+		/** Kinds of open expressions */
+		static final int BINARY = 0, UNARY = 1, GROUP = 2, CAST = 3, CALL = 4;
+		
+		/** What kind of open expression this is */
+		final int kind;
+		
+		/** Operator of a binary, unary or cast */
+		final Operator op;
+		
+		/** Precedence of a binary operator */
+		final int precedence;
+		
+		/** Call whose arguments are being parsed */
+		final Call.Builder call;
+		
+		/**
+		 * @param kind UNARY, GROUP or CAST
+		 * @param op Operator (null for a group)
+		 */
+		OpenExpression(int kind, Operator op) {
+			this.kind = kind;
+			this.op = op;
+			this.precedence = 0;
+			this.call = null;
+		}
+		
+		/**
+		 * @param op Binary operator
+		 * @param precedence Precedence of operator
+		 */
+		OpenExpression(Operator op, int precedence) {
+			this.kind = BINARY;
+			this.op = op;
+			this.precedence = precedence;
+			this.call = null;
+		}
+		
+		/** @param callee Function being called */
+		OpenExpression(Variable callee) {
+			this.kind = CALL;
+			this.op = null;
+			this.precedence = 0;
+			this.call = new Call.Builder(callee);
+		}
+	}
 }
\ No newline at end of file
@@ -1,5 +1,10 @@
 package clite.parser;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Set;
+
+import clite.syntax.Symbol;
+import clite.syntax.SymbolTable;
 
 
 /**
@@ -86,8 +91,20 @@ public class Token {
 	/** Type of token */
 	private Type type;
 	
-	/** Value of token */
-	private String value = "";
+	/** Value of token (made from the slice the first time it's asked for, for tokens from a BufferLexer) */
+	private String value;
+	
+	/** Buffer the token was lexed from (null for tokens that own their value) */
+	private CharSequence source;
+	
+	/** Offset of the token's first character in source */
+	private int offset;
+	
+	/** Number of characters in the token */
+	private int length;
+	
+	/** Interned name of an identifier token (null for every other kind of token) */
+	private Symbol symbol;
 	
 	/** This maps certain keywords to specific tokens */
 	private static HashMap<String, Token> keywords = getKeywordsMap();
@@ -112,17 +129,77 @@ public class Token {
 		return kw;
 	}
 	
+	/** @return Spelling of every keyword */
+	static Set<String> keywordSpellings() {
+		return Collections.unmodifiableSet(keywords.keySet());
+	}
+
+	/**
+	 * @param spelling Spelling of a keyword
+	 * @return Token for the keyword (null if it isn't one)
+	 */
+	static Token keywordToken(String spelling) {
+		return keywords.get(spelling);
+	}
+	
 	/**
 	 * Checks if a given string is a keyword and returns its corresponding
 	 * token if it is, else returns an identifier token wih the given string
 	 * as a parameter.
 	 * 
 	 * @param name Name to check for
+	 * @param symbols Table to intern the name in if it's an identifier
 	 * @return Keyword token if found, identifier token otherwise
 	 */
-	public static Token keyword(String name) {
+	public static Token keyword(String name, SymbolTable symbols) {
 		Token keyword = keywords.get(name);
-		return keyword == null ? mkIdentTok(name) : keyword;
+		return keyword == null ? mkIdentTok(name, symbols) : keyword;
+	}
+
+	/**
+	 * Checks if the given slice of a buffer is a keyword and returns its corresponding
+	 * token if it is, else returns an identifier token for the interned name.
+	 * Nothing is allocated for keywords.
+	 * 
+	 * @param source Buffer holding the name
+	 * @param offset Offset of name in buffer
+	 * @param length Length of name
+	 * @param symbols Table to intern the name in if it's an identifier
+	 * @return Keyword token if found, identifier token otherwise
+	 */
+	public static Token keyword(CharSequence source, int offset, int length, SymbolTable symbols) {
+		for (int i = 0; i < KEYWORD_NAMES.length; i++)
+			if (matches(KEYWORD_NAMES[i], source, offset, length))
+				return KEYWORD_TOKENS[i];
+		return identifier(source, offset, length, symbols);
+	}
+	
+	/** Every keyword, for keyword(CharSequence, int, int, SymbolTable) (same as the keywords map) */
+	private static final String[] KEYWORD_NAMES = {
+		"bool", "boolean", "char", "int", "float", "void",
+		"if", "else", "true", "false", "while", "return"
+	};
+	
+	/** Token for each keyword in KEYWORD_NAMES */
+	private static final Token[] KEYWORD_TOKENS = {
+		boolTok, boolTok, charTok, intTok, floatTok, voidTok,
+		ifTok, elseTok, trueTok, falseTok, whileTok, returnTok
+	};
+	
+	/**
+	 * @param word Word to check for
+	 * @param source Buffer to look in
+	 * @param offset Offset of slice in buffer
+	 * @param length Length of slice
+	 * @return Whether or not the slice spells the word
+	 */
+	private static boolean matches(String word, CharSequence source, int offset, int length) {
+		if (word.length() != length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (word.charAt(i) != source.charAt(offset + i))
+				return false;
+		return true;
 	}
 
 	/**
@@ -133,6 +210,58 @@ public class Token {
 	private Token(Type t, String v) {
 		type = t;
 		value = v;
+		length = v.length();
+	}
+
+	/**
+	 * Create a new token that points at a slice of a buffer instead of copying it
+	 * @param t Type of token
+	 * @param source Buffer the token was lexed from
+	 * @param offset Offset of the token's first character
+	 * @param length Number of characters in the token
+	 */
+	private Token(Type t, CharSequence source, int offset, int length) {
+		type = t;
+		this.source = source;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Create an identifier token
+	 * @param symbol Interned name of identifier
+	 */
+	private Token(Symbol symbol) {
+		type = Type.Identifier;
+		value = symbol.name();
+		length = value.length();
+		this.symbol = symbol;
+	}
+
+	/**
+	 * Make an identifier token for the name spelled by a slice of a buffer.
+	 * The name is interned, so the token doesn't hold on to the buffer, and
+	 * every token for the same name shares one String.
+	 * @param source Buffer the identifier was lexed from
+	 * @param offset Offset of the identifier's first character
+	 * @param length Number of characters in the identifier
+	 * @param symbols Table to intern the name in
+	 * @return Token representing the identifier
+	 */
+	public static Token identifier(CharSequence source, int offset, int length, SymbolTable symbols) {
+		return new Token(symbols.intern(source, offset, length));
+	}
+
+	/**
+	 * Make a token that points at a slice of a buffer
+	 * @param t Type of token (an identifier or literal)
+	 * @param source Buffer the token was lexed from
+	 * @param offset Offset of the token's first character
+	 * @param length Number of characters in the token
+	 * @return Token representing the slice
+	 */
+	public static Token slice(Type t, CharSequence source, int offset, int length) {
+		return new Token(t, source, offset, length);
 	}
 
 	/**
@@ -146,16 +275,47 @@ public class Token {
 	 * @return Value of token
 	 */
 	public String value() {
+		if (value == null)
+			value = new StringBuilder(length).append(source, offset, offset + length).toString();
 		return value;
 	}
+	
+	/**
+	 * @return Interned name of an identifier token (null for every other kind of token)
+	 */
+	public Symbol symbol() {
+		return symbol;
+	}
+	
+	/**
+	 * @return Buffer the token was lexed from, or null if the token owns its value
+	 */
+	public CharSequence source() {
+		return source;
+	}
+	
+	/**
+	 * @return Offset of the token's first character in source()
+	 */
+	public int offset() {
+		return offset;
+	}
+	
+	/**
+	 * @return Number of characters in the token
+	 */
+	public int length() {
+		return length;
+	}
 
 	/**
 	 * Make an identifier token from a string
 	 * @param name Name of identifier
+	 * @param symbols Table to intern the name in
 	 * @return Token representing given name
 	 */
-	public static Token mkIdentTok(String name) {
-		return new Token(Type.Identifier, name);
+	public static Token mkIdentTok(String name, SymbolTable symbols) {
+		return new Token(symbols.intern(name));
 	}
 
 	/**
@@ -188,7 +348,7 @@ public class Token {
 	@Override
 	public String toString() {
 		if (type.compareTo(Type.Identifier) < 0)
-			return value;
-		return type + "\t" + value;
+			return value();
+		return type + "\t" + value();
 	}
 }
@@ -0,0 +1,185 @@
+package clite.parser;
+import java.util.Arrays;
+
+
+/**
+ * Every token of a file, read from a lexer up front.
+ *
+ * Reading them all first means the top-level braces can be matched before
+ * parsing starts, and any stretch of tokens (like a function body) can be
+ * handed to its own parser.
+ */
+class TokenArray implements TokenStream {
+	/** Tokens, ending with Eof */
+	private final Token[] tokens;
+
+	/** Line number the lexer was on after reading each token */
+	private final int[] lines;
+
+	/** Column number the lexer was on after reading each token */
+	private final int[] columns;
+
+	/** Index of the matching } for each { that isn't inside any other braces (-1 for everything else) */
+	private final int[] closing;
+
+	/** Index of the first token past the end of this stretch */
+	private final int end;
+
+	/** Index of the next token to hand out */
+	private int pos;
+
+	/**
+	 * @param tokens Tokens
+	 * @param lines Line number after each token
+	 * @param columns Column number after each token
+	 * @param closing Matching } of each top-level {
+	 * @param start Index of the first token to hand out
+	 * @param end Index of the first token past the end
+	 */
+	private TokenArray(Token[] tokens, int[] lines, int[] columns, int[] closing, int start, int end) {
+		this.tokens = tokens;
+		this.lines = lines;
+		this.columns = columns;
+		this.closing = closing;
+		this.pos = start;
+		this.end = end;
+	}
+
+	/**
+	 * Read every token from a lexer and match up the top-level braces
+	 * @param lexer Lexer to read
+	 * @return Tokens of the whole file
+	 */
+	static TokenArray read(TokenStream lexer) {
+		Token[] tokens = new Token[1024];
+		int[] lines = new int[tokens.length];
+		int[] columns = new int[tokens.length];
+		int count = 0;
+
+		Token t;
+		do {
+			t = lexer.next();
+			if (count == tokens.length) {
+				tokens = Arrays.copyOf(tokens, count * 2);
+				lines = Arrays.copyOf(lines, count * 2);
+				columns = Arrays.copyOf(columns, count * 2);
+			}
+			tokens[count] = t;
+			lines[count] = lexer.lineNumber();
+			columns[count] = lexer.columnNumber();
+			count++;
+		} while (t.type() != Token.Type.Eof);
+
+		// a } closes the most recent { that's still open; only the outermost ones get remembered
+		int[] closing = new int[count];
+		Arrays.fill(closing, -1);
+		int depth = 0, open = -1;
+		for (int i = 0; i < count; i++) {
+			Token.Type type = tokens[i].type();
+			if (type == Token.Type.LeftBrace) {
+				if (depth++ == 0)
+					open = i;
+			} else if (type == Token.Type.RightBrace && depth > 0) {
+				if (--depth == 0)
+					closing[open] = i;
+			}
+		}
+
+		return new TokenArray(tokens, lines, columns, closing, 0, count);
+	}
+
+	/**
+	 * @return Number of tokens left to hand out
+	 */
+	int remaining() {
+		return end - pos;
+	}
+
+	/**
+	 * @param start Index of the first token
+	 * @param end Index of the first token past the end
+	 * @return Tokens from start up to end, followed by Eof
+	 */
+	TokenArray slice(int start, int end) {
+		return new TokenArray(tokens, lines, columns, closing, start, end);
+	}
+
+	/**
+	 * Check for a function declared anywhere in a stretch of tokens: a name followed by a (
+	 * that comes right after a type, or after a comma that isn't inside any parentheses
+	 * (a call's name never comes after a type, and its arguments are all inside its parentheses)
+	 * @param start Index of the first token
+	 * @param end Index of the first token past the end
+	 * @return Whether or not a function is declared between start and end
+	 */
+	boolean declaresFunction(int start, int end) {
+		int parens = 0;
+		for (int i = start; i < end - 1; i++) {
+			Token.Type type = tokens[i].type();
+			if (type == Token.Type.LeftParen)
+				parens++;
+			else if (type == Token.Type.RightParen)
+				parens--;
+			else if (type == Token.Type.Identifier && i > start && tokens[i + 1].type() == Token.Type.LeftParen) {
+				Token.Type before = tokens[i - 1].type();
+				if (isType(before) || (before == Token.Type.Comma && parens == 0))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param type Type of token
+	 * @return Whether or not the token names a type
+	 */
+	private static boolean isType(Token.Type type) {
+		return type == Token.Type.Int || type == Token.Type.Bool || type == Token.Type.Float
+			|| type == Token.Type.Char || type == Token.Type.Void;
+	}
+
+	/**
+	 * @return Index of the next token next() will hand out
+	 */
+	int position() {
+		return pos;
+	}
+
+	/**
+	 * @param index Index of the next token next() should hand out
+	 */
+	void seek(int index) {
+		pos = index;
+	}
+
+	/**
+	 * @param open Index of a {
+	 * @return Index of the matching }, or -1 if the { is inside other braces or is never closed
+	 */
+	int closing(int open) {
+		return closing[open];
+	}
+
+	/**
+	 * @return next token from stream
+	 */
+	public Token next() {
+		if (pos < end)
+			return tokens[pos++];
+		return Token.eofTok;
+	}
+
+	/**
+	 * @return Current line number
+	 */
+	public int lineNumber() {
+		return lines[pos - 1];
+	}
+
+	/**
+	 * @return Current column number
+	 */
+	public int columnNumber() {
+		return columns[pos - 1];
+	}
+}
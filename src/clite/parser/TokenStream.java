@@ -0,0 +1,21 @@
+package clite.parser;
+
+/**
+ * Anything that can hand the Parser tokens, one at a time
+ */
+public interface TokenStream {
+	/**
+	 * @return Next token from stream (the Eof token once the input runs out)
+	 */
+	public Token next();
+
+	/**
+	 * @return Current line number
+	 */
+	public int lineNumber();
+
+	/**
+	 * @return Current column number
+	 */
+	public int columnNumber();
+}
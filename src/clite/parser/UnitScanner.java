@@ -0,0 +1,143 @@
+package clite.parser;
+import java.nio.ByteBuffer;
+
+import clite.syntax.Program;
+import clite.syntax.SymbolTable;
+
+
+/**
+ * Splits a source file into units and parses them one at a time.
+ *
+ * A unit is everything up to and including a ; or a } that isn't inside any
+ * braces, so it's one top-level declaration or function (or a few of them,
+ * when they share a type like 'int a, f() { ... }'). Each unit starts right
+ * where the one before it ends, whitespace and comments included. The scanner
+ * is at the start of a token at every unit boundary, and nothing at the top
+ * level carries over from one unit to the next, so any unit can be parsed
+ * again without the ones around it (see CompileSession).
+ */
+public class UnitScanner implements TokenStream {
+	/** Scanner over the source from the first unit on, which throws its errors instead of printing them */
+	private final DfaScanner scanner;
+
+	/** Offset in the source the scanner starts at */
+	private final int start;
+
+	/** Length of the source */
+	private final int length;
+
+	/** First token of the next unit, if it has been read already */
+	private Token lookahead;
+
+	/** Number of braces open in the unit being parsed */
+	private int depth;
+
+	/** Whether the unit being parsed has had its last token handed out */
+	private boolean closed;
+
+	/** Offset just past the end of the last unit parsed */
+	private int end;
+
+	/** Whether the scanner hit an error looking for the start of the next unit */
+	private boolean broken;
+
+	/**
+	 * @param source Source to scan, one byte per character
+	 * @param start Offset of the first unit (where a unit ended the last time the source was scanned, or 0)
+	 * @param symbols Table to intern identifiers in (the one the units that are kept were parsed with)
+	 */
+	public UnitScanner(byte[] source, int start, SymbolTable symbols) {
+		this.scanner = new DfaScanner(new ByteSequence(ByteBuffer.wrap(source, start, source.length - start).slice()), symbols);
+		scanner.nested = true;
+		this.start = start;
+		this.length = source.length;
+		this.end = start;
+	}
+
+	/**
+	 * @return Whether or not there's nothing left but whitespace and comments
+	 */
+	public boolean done() {
+		if (lookahead == null) {
+			try {
+				lookahead = scanner.next();
+			} catch (Parser.ParseError e) {
+				// leave the error for unit() to report
+				broken = true;
+				return false;
+			}
+		}
+		return lookahead.type() == Token.Type.Eof;
+	}
+
+	/**
+	 * Parse the next unit
+	 * @return Globals and functions declared in the unit, or null if there's an error in it
+	 */
+	public Program unit() {
+		if (broken)
+			return null;
+		depth = 0;
+		closed = false;
+		try {
+			return Parser.stretch(this);
+		} catch (Parser.ParseError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return Offset just past the end of the last unit parsed
+	 */
+	public int end() {
+		return end;
+	}
+
+	/**
+	 * @return next token of the unit being parsed (Eof once it's over)
+	 */
+	public Token next() {
+		if (closed)
+			return Token.eofTok;
+
+		Token t = lookahead != null ? lookahead : scanner.next();
+		lookahead = null;
+		switch (t.type()) {
+		case LeftBrace:
+			depth++;
+			break;
+		case RightBrace:
+			closed = depth <= 1;
+			depth--;
+			break;
+		case Semicolon:
+			closed = depth == 0;
+			break;
+		case Eof:
+			// a \004 before the end would leave the rest of the file unparsed, which only the whole file's parser knows about
+			if (start + scanner.position() < length)
+				throw new Parser.ParseError("End of file before the end of the source");
+			closed = true;
+			break;
+		default:
+			break;
+		}
+		if (closed)
+			end = start + scanner.position();
+		return t;
+	}
+
+	/**
+	 * @return Current line number (counted from the first unit)
+	 */
+	public int lineNumber() {
+		return scanner.lineNumber();
+	}
+
+	/**
+	 * @return Current column number
+	 */
+	public int columnNumber() {
+		return scanner.columnNumber();
+	}
+}
@@ -0,0 +1,89 @@
+package clite.syntax;
+
+import java.util.ArrayList;
+
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Unary;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+
+/**
+ * Hands out IDs to the statements and compound expressions of a program, in order:
+ * function by function in the order they're declared, and each body depth first.
+ *
+ * Each program gets its own IDs starting at 0, so nothing is shared between programs
+ * (or between threads parsing different ones). The Parser numbers every program it
+ * parses and the Resolver every program it resolves; the trees the passes in between
+ * build aren't numbered. Nodes are walked with a list rather than recursion, since the
+ * explicit-stack parser can build trees too deep to recurse over.
+ */
+public class NodeIds {
+	/** ID the next node gets */
+	private int next = 0;
+
+	/**
+	 * Number every node in a program, carrying on from the last ID handed out
+	 * (so a new NodeIds numbers the program from 0)
+	 * @param p Program to number (functions without a body yet are skipped)
+	 * @return Number of IDs handed out (every ID is less than this)
+	 */
+	public int number(Program p) {
+		for (Function f : p.functions().values())
+			if (f.body() != null)
+				number(f.body());
+		return next;
+	}
+
+	/**
+	 * Number a statement or expression and every node in it, carrying on from the last ID handed out
+	 * @param s Statement or expression to number
+	 */
+	public void number(Numbered s) {
+		ArrayList<Object> todo = new ArrayList<Object>();
+		todo.add(s);
+		while (!todo.isEmpty()) {
+			Object node = todo.remove(todo.size() - 1);
+			if (!(node instanceof Numbered))
+				continue;
+			((Numbered) node).number(next++);
+
+			// children go on in reverse, so they come off in the order they're written
+			if (node instanceof Block) {
+				Block b = (Block) node;
+				for (int i = b.size() - 1; i >= 0; i--)
+					todo.add(b.member(i));
+			} else if (node instanceof Assignment) {
+				todo.add(((Assignment) node).source());
+			} else if (node instanceof Conditional) {
+				Conditional c = (Conditional) node;
+				todo.add(c.elseBranch());
+				todo.add(c.thenBranch());
+				todo.add(c.test());
+			} else if (node instanceof Loop) {
+				Loop l = (Loop) node;
+				todo.add(l.body());
+				todo.add(l.test());
+			} else if (node instanceof Return) {
+				todo.add(((Return) node).result());
+			} else if (node instanceof Call) {
+				Call c = (Call) node;
+				for (int i = c.argumentCount() - 1; i >= 0; i--)
+					todo.add(c.argument(i));
+			} else if (node instanceof Binary) {
+				Binary b = (Binary) node;
+				todo.add(b.term2());
+				todo.add(b.term1());
+			} else if (node instanceof Unary) {
+				todo.add(((Unary) node).term());
+			}
+		}
+	}
+
+	/** @return Number of IDs handed out so far (every ID is less than this) */
+	public int count(){ return next; }
+}
@@ -0,0 +1,19 @@
+package clite.syntax;
+
+/**
+ * A statement or compound expression, which gets an ID when the program it's in is numbered.
+ *
+ * IDs start at 0 and go up by one within a program, so a side table (like a profile
+ * or a cache) can be an array indexed by ID instead of a map keyed by node. Variables
+ * and values don't get IDs since the same one can show up all over a program.
+ */
+public abstract class Numbered {
+	/** Node ID (-1 until the program is numbered) */
+	private int id = -1;
+
+	/** @return Node ID, less than the number of nodes NodeIds numbered in the program (-1 if it hasn't been numbered) */
+	public int id(){ return id; }
+
+	/** @param id Node ID NodeIds gave the node */
+	void number(int id){ this.id = id; }
+}
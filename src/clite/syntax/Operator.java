@@ -4,59 +4,168 @@ package clite.syntax;
 /**
  * Operator = BooleanOp | RelationalOp | ArithmeticOp | UnaryOp
  * BooleanOp = && | ||
+ *
+ * The parser only ever makes the generic operators (PLUS, LT, NEG...).
+ * TypeTransformer replaces them with typed operators (INT_PLUS, FLOAT_LT, INT_NEG...)
+ * once it knows the types of the operands, so anything that runs a transformed program
+ * can pick what to do with one switch on the operator. Since TypeTransformer only runs on
+ * programs that passed StaticTypeCheck, a typed operator's operands are always of its operand type.
  */
-public class Operator {
-	/** Possible operators */
-	public final static String
+public enum Operator {
 	// BooleanOp = && | ||
-	AND = "&&",
-	OR = "||",
-	
+	AND("&&"),
+	OR("||"),
+
 	// RelationalOp = < | <= | == | != | >= | >
-	LT = "<",
-	LE = "<=",
-	EQ = "==",
-	NE = "!=",
-	GT = ">",
-	GE = ">=",
-	
+	LT("<"),
+	LE("<="),
+	EQ("=="),
+	NE("!="),
+	GT(">"),
+	GE(">="),
+
 	// ArithmeticOp = + | - | * | /
-	PLUS = "+",
-	MINUS = "-",
-	TIMES = "*",
-	DIV = "/",
-	
-	// UnaryOp = !
-	NOT = "!",
-	NEG = "-",
-	
+	PLUS("+"),
+	MINUS("-"),
+	TIMES("*"),
+	DIV("/"),
+
+	// UnaryOp = ! | -
+	NOT("!"),
+	NEG("-"),
+
 	// CastOp = int | float | char
-	INT = "int",
-	FLOAT = "float",
-	CHAR = "char";
-	
-	/** Value of Operator */
-	public String val;
+	INT("int"),
+	FLOAT("float"),
+	CHAR("char"),
+
+	// int arithmetic
+	INT_PLUS("INT+", PLUS, Type.INT, Type.INT),
+	INT_MINUS("INT-", MINUS, Type.INT, Type.INT),
+	INT_TIMES("INT*", TIMES, Type.INT, Type.INT),
+	INT_DIV("INT/", DIV, Type.INT, Type.INT),
+	INT_NEG("INT_NEG", NEG, Type.INT, Type.INT),
+
+	// float arithmetic
+	FLOAT_PLUS("FLOAT+", PLUS, Type.FLOAT, Type.FLOAT),
+	FLOAT_MINUS("FLOAT-", MINUS, Type.FLOAT, Type.FLOAT),
+	FLOAT_TIMES("FLOAT*", TIMES, Type.FLOAT, Type.FLOAT),
+	FLOAT_DIV("FLOAT/", DIV, Type.FLOAT, Type.FLOAT),
+	FLOAT_NEG("FLOAT_NEG", NEG, Type.FLOAT, Type.FLOAT),
+
+	// int relational ops
+	INT_LT("INT<", LT, Type.INT, Type.BOOL),
+	INT_LE("INT<=", LE, Type.INT, Type.BOOL),
+	INT_EQ("INT==", EQ, Type.INT, Type.BOOL),
+	INT_NE("INT!=", NE, Type.INT, Type.BOOL),
+	INT_GT("INT>", GT, Type.INT, Type.BOOL),
+	INT_GE("INT>=", GE, Type.INT, Type.BOOL),
+
+	// float relational ops
+	FLOAT_LT("FLOAT<", LT, Type.FLOAT, Type.BOOL),
+	FLOAT_LE("FLOAT<=", LE, Type.FLOAT, Type.BOOL),
+	FLOAT_EQ("FLOAT==", EQ, Type.FLOAT, Type.BOOL),
+	FLOAT_NE("FLOAT!=", NE, Type.FLOAT, Type.BOOL),
+	FLOAT_GT("FLOAT>", GT, Type.FLOAT, Type.BOOL),
+	FLOAT_GE("FLOAT>=", GE, Type.FLOAT, Type.BOOL),
+
+	// char relational ops
+	CHAR_LT("CHAR<", LT, Type.CHAR, Type.BOOL),
+	CHAR_LE("CHAR<=", LE, Type.CHAR, Type.BOOL),
+	CHAR_EQ("CHAR==", EQ, Type.CHAR, Type.BOOL),
+	CHAR_NE("CHAR!=", NE, Type.CHAR, Type.BOOL),
+	CHAR_GT("CHAR>", GT, Type.CHAR, Type.BOOL),
+	CHAR_GE("CHAR>=", GE, Type.CHAR, Type.BOOL),
+
+	// bool ops
+	BOOL_AND("BOOL&&", AND, Type.BOOL, Type.BOOL),
+	BOOL_OR("BOOL||", OR, Type.BOOL, Type.BOOL),
+	BOOL_NOT("BOOL!", NOT, Type.BOOL, Type.BOOL),
+	BOOL_EQ("BOOL==", EQ, Type.BOOL, Type.BOOL),
+	BOOL_NE("BOOL!=", NE, Type.BOOL, Type.BOOL),
+
+	// type conversions
+	I2F("I2F", FLOAT, Type.INT, Type.FLOAT),
+	F2I("F2I", INT, Type.FLOAT, Type.INT),
+	C2I("C2I", INT, Type.CHAR, Type.INT),
+	I2C("I2C", CHAR, Type.INT, Type.CHAR);
+
+	/** Typed version of each generic operator for each operand type, indexed by operator then type */
+	private static final Operator[][] TYPED = new Operator[values().length][Type.values().length];
+	static {
+		for (Operator op : values())
+			if (op.isTyped())
+				TYPED[op.generic.ordinal()][op.operandType.ordinal()] = op;
+	}
+
+	/** What the operator looks like in the syntax tree */
+	private final String symbol;
+
+	/** Generic operator this is a typed version of (itself for generic operators) */
+	private final Operator generic;
+
+	/** Type of the operands (null for generic operators) */
+	private final Type operandType;
+
+	/** Type of the result (null for generic operators) */
+	private final Type resultType;
 
 	/**
-	 * Create a new Operator
-	 * @param s Value of operator (from static Strings in Operator class)
+	 * Create a generic operator
+	 * @param symbol What the operator looks like
 	 */
-	public Operator(String s) { val = s; }
+	private Operator(String symbol) {
+		this.symbol = symbol;
+		this.generic = this;
+		this.operandType = null;
+		this.resultType = null;
+	}
 
-	@Override
-	public String toString() { return val; }
+	/**
+	 * Create a typed operator
+	 * @param symbol What the operator looks like
+	 * @param generic Generic operator this is a typed version of
+	 * @param operandType Type of the operands
+	 * @param resultType Type of the result
+	 */
+	private Operator(String symbol, Operator generic, Type operandType, Type resultType) {
+		this.symbol = symbol;
+		this.generic = generic;
+		this.operandType = operandType;
+		this.resultType = resultType;
+	}
 
 	@Override
-	public boolean equals(Object obj) { return val.equals(obj); }
+	public String toString() { return symbol; }
+
+	/** @return Generic operator this is a typed version of (itself for generic operators) */
+	public Operator generic() { return generic; }
+
+	/** @return Whether or not this is a typed operator */
+	public boolean isTyped() { return operandType != null; }
+
+	/** @return Type of the operands (null for generic operators) */
+	public Type operandType() { return operandType; }
+
+	/** @return Type of the result (null for generic operators) */
+	public Type resultType() { return resultType; }
+
+	/**
+	 * Get the typed version of this operator
+	 * @param operands Type of the operands
+	 * @return Typed version of this operator, or this operator if there isn't one for the type
+	 */
+	public Operator typed(Type operands) {
+		Operator op = TYPED[generic.ordinal()][operands.ordinal()];
+		return op == null ? this : op;
+	}
 
 	/**
 	 * &&, ||
 	 * @return Whether or not this is a boolean op
 	 */
 	public boolean isBooleanOp() {
-		return val.equals(AND) ||
-		       val.equals(OR);
+		return generic == AND || generic == OR;
 	}
 
 	/**
@@ -64,12 +173,7 @@ public class Operator {
 	 * @return Whether or not this is a relational op
 	 */
 	public boolean isRelationalOp() {
-		return val.equals(LT) ||
-		       val.equals(LE) ||
-		       val.equals(EQ) ||
-		       val.equals(NE) ||
-		       val.equals(GT) ||
-		       val.equals(GE);
+		return generic.ordinal() >= LT.ordinal() && generic.ordinal() <= GE.ordinal();
 	}
 
 	/**
@@ -77,10 +181,7 @@ public class Operator {
 	 * @return Whether or not this is an arithmetic op
 	 */
 	public boolean isArithmeticOp() {
-		return val.equals(PLUS)  ||
-		       val.equals(MINUS) ||
-		       val.equals(TIMES) ||
-		       val.equals(DIV);
+		return generic.ordinal() >= PLUS.ordinal() && generic.ordinal() <= DIV.ordinal();
 	}
 
 	/**
@@ -88,7 +189,7 @@ public class Operator {
 	 * @return Whether or not this is a not op
 	 */
 	public boolean isNotOp() {
-		return val.equals(NOT);
+		return generic == NOT;
 	}
 
 	/**
@@ -96,7 +197,7 @@ public class Operator {
 	 * @return Whether or not this is a negate op
 	 */
 	public boolean isNegateOp() {
-		return val.equals(NEG);
+		return generic == NEG;
 	}
 
 	/**
@@ -104,7 +205,7 @@ public class Operator {
 	 * @return Whether or not this is an int cast operator
 	 */
 	public boolean isIntOp() {
-		return val.equals(INT);
+		return generic == INT;
 	}
 
 	/**
@@ -112,7 +213,7 @@ public class Operator {
 	 * @return Whether or not this is a float cast operator
 	 */
 	public boolean isFloatOp() {
-		return val.equals(FLOAT);
+		return generic == FLOAT;
 	}
 
 	/**
@@ -120,6 +221,6 @@ public class Operator {
 	 * @return Whether or not this is a char cast operator
 	 */
 	public boolean isCharOp() {
-		return val.equals(CHAR);
+		return generic == CHAR;
 	}
 }
@@ -0,0 +1,68 @@
+package clite.syntax;
+
+import clite.syntax.expression.Variable;
+
+/**
+ * An interned identifier (see SymbolTable).
+ *
+ * There's only ever one Symbol for a name, so two symbols are the same
+ * name exactly when they're the same object, or equivalently when their IDs match.
+ */
+public class Symbol {
+	/** ID of symbol (symbols are numbered from 0 in the order they're interned) */
+	private final int id;
+
+	/** Spelling of symbol */
+	private final String name;
+
+	/** Hash of the spelling (same as name.hashCode()) */
+	final int hash;
+
+	/** Unresolved variable with this name, shared by every use of it */
+	private final Variable variable;
+
+	/**
+	 * @param id ID of symbol
+	 * @param name Spelling of symbol
+	 */
+	Symbol(int id, String name) {
+		this.id = id;
+		this.name = name;
+		this.hash = name.hashCode();
+		this.variable = new Variable(this);
+	}
+
+	/** @return ID of symbol */
+	public int id(){ return id; }
+
+	/** @return Spelling of symbol */
+	public String name(){ return name; }
+
+	/** @return Unresolved variable with this name */
+	public Variable variable(){ return variable; }
+
+	/**
+	 * @param source Buffer to look in
+	 * @param offset Offset of slice in buffer
+	 * @param length Length of slice
+	 * @return Whether or not the slice spells this symbol
+	 */
+	boolean spells(CharSequence source, int offset, int length) {
+		if (name.length() != length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (name.charAt(i) != source.charAt(offset + i))
+				return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,95 @@
+package clite.syntax;
+
+import java.util.Arrays;
+
+/**
+ * Every identifier that has been read in one compilation, each one stored exactly once.
+ *
+ * Lexers intern identifiers as they read them, so every use of a name shares
+ * one Symbol (and one String), and comparing names is comparing int IDs.
+ * The lookup hashes the characters where they are, so interning a slice of a
+ * buffer only allocates the first time a name turns up.
+ *
+ * Each lexer makes its own table unless it's handed one (CompileSession keeps
+ * one for every version of the file it compiles), so a table goes away with the
+ * program it was made for. IDs only mean something within one table, so a
+ * program must never mix symbols from two of them. A table isn't thread safe:
+ * only the lexer filling it may use it while it's being filled.
+ */
+public class SymbolTable {
+	/** Open-addressed hash table of symbols (the size is a power of two, and it's never more than half full) */
+	private Symbol[] table = new Symbol[1024];
+
+	/** Symbols indexed by ID */
+	private Symbol[] symbols = new Symbol[512];
+
+	/** Number of symbols interned so far */
+	private int count = 0;
+
+	/**
+	 * Get the symbol spelled by a slice of a buffer, adding it if it's new
+	 * @param source Buffer holding the name
+	 * @param offset Offset of name in buffer
+	 * @param length Length of name
+	 * @return Symbol for the name
+	 */
+	public Symbol intern(CharSequence source, int offset, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + source.charAt(offset + i);
+
+		int mask = table.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		Symbol s;
+		while ((s = table[slot]) != null) {
+			if (s.hash == hash && s.spells(source, offset, length))
+				return s;
+			slot = (slot + 1) & mask;
+		}
+
+		s = new Symbol(count, new StringBuilder(length).append(source, offset, offset + length).toString());
+		if (count == symbols.length)
+			symbols = Arrays.copyOf(symbols, count * 2);
+		symbols[count++] = s;
+		table[slot] = s;
+		if (count * 2 > table.length)
+			grow();
+		return s;
+	}
+
+	/**
+	 * Get the symbol for a name, adding it if it's new
+	 * @param name Name to intern
+	 * @return Symbol for the name
+	 */
+	public Symbol intern(String name) {
+		return intern(name, 0, name.length());
+	}
+
+	/**
+	 * @param id ID of a symbol
+	 * @return Symbol with that ID
+	 */
+	public Symbol get(int id) {
+		return symbols[id];
+	}
+
+	/** @return Number of symbols interned so far (every ID is less than this) */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Double the size of the hash table and put every symbol back in it
+	 */
+	private void grow() {
+		table = new Symbol[table.length * 2];
+		int mask = table.length - 1;
+		for (int i = 0; i < count; i++) {
+			int slot = (symbols[i].hash ^ (symbols[i].hash >>> 16)) & mask;
+			while (table[slot] != null)
+				slot = (slot + 1) & mask;
+			table[slot] = symbols[i];
+		}
+	}
+}
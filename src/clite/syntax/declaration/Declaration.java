@@ -8,10 +8,10 @@ import clite.syntax.expression.Variable;
  */
 public class Declaration {
 	/** Variable for declaration */
-	private Variable var;
+	private final Variable var;
 	
 	/** Type of declaration */
-	private Type type;
+	private final Type type;
 
 	/**
 	 * @param var Variable for declaration
@@ -2,14 +2,17 @@ package clite.syntax.declaration;
 
 import java.util.LinkedHashMap;
 
+import clite.syntax.Symbol;
+
 /**
  * Declarations = Declaration*
  * (a list of declarations d1, d2, ..., dn)
  * 
- * Basically, a renamed ArrayList<Declaration>
+ * Basically, a renamed ArrayList<Declaration>, keyed by the
+ * interned name of each declared variable
  */
 @SuppressWarnings("serial")
-public class Declarations extends LinkedHashMap<String, Declaration> {
+public class Declarations extends LinkedHashMap<Symbol, Declaration> {
 	public void display(int indent) {
 		for(Declaration d : this.values()){
 			for(int i = 0; i < indent; i++)
@@ -1,14 +1,15 @@
 package clite.syntax.expression;
 
+import clite.syntax.Numbered;
 import clite.syntax.Operator;
 
 
 /**
  * Binary = Expression term1 Operator op Expression term2
  */
-public class Binary implements Expression {
-	private Operator op;
-	private Expression term1, term2;
+public class Binary extends Numbered implements Expression {
+	private final Operator op;
+	private final Expression term1, term2;
 
 	/**
 	 * @param op Operator to use for binary expression
@@ -34,7 +35,7 @@ public class Binary implements Expression {
 		
 		for(int i = 0; i < indent + 1; i++)
 			System.out.print("   ");
-		System.out.println("| " + op.val);
+		System.out.println("| " + op);
 		
 		term2.display(indent + 1);
 	}
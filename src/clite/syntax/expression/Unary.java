@@ -1,15 +1,16 @@
 package clite.syntax.expression;
 
+import clite.syntax.Numbered;
 import clite.syntax.Operator;
 
 /**
  * Unary = Operator op Expression term
  */
-public class Unary implements Expression {
+public class Unary extends Numbered implements Expression {
 	/** Operator to be applied to term */
-	private Operator op;
+	private final Operator op;
 	/** Term to apply operator to */
-	public Expression term;
+	private final Expression term;
 
 	/**
 	 * @param op Operator to be applied to term
@@ -34,7 +35,7 @@ public class Unary implements Expression {
 		
 		for(int i = 0; i < indent + 1; i++)
 			System.out.print("   ");
-		System.out.println("|" + op.val);
+		System.out.println("|" + op);
 		
 		term.display(indent + 1);
 	}
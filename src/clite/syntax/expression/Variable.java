@@ -1,41 +1,89 @@
 package clite.syntax.expression;
 
+import clite.syntax.Symbol;
+
 
 /**
- * Variable = String id
+ * Variable = Symbol id
+ * 
+ * Variables are compared by the ID of their symbol, and every unresolved
+ * use of a name shares one Variable (see Symbol.variable()).
+ * 
+ * After resolution (see Resolver), a variable also knows which
+ * slot of which frame it lives in, so it can be looked up without hashing
  */
 public class Variable implements Expression {
-	/** ID of variable */
-	private String id;
+	/** Interned name of variable */
+	private final Symbol symbol;
+	
+	/** Index of this variable in its frame (-1 if unresolved) */
+	private final int slot;
+	
+	/** Whether or not this variable lives in the global frame */
+	private final boolean global;
 
 	/**
-	 * @param id ID of variable
+	 * @param symbol Interned name of variable
+	 */
+	public Variable(Symbol symbol) {
+		this(symbol, -1, false);
+	}
+	
+	/**
+	 * Create a resolved variable
+	 * @param symbol Interned name of variable
+	 * @param slot Index of variable in its frame
+	 * @param global Whether or not the variable is in the global frame
 	 */
-	public Variable(String id) {
-		this.id = id;
+	public Variable(Symbol symbol, int slot, boolean global) {
+		this.symbol = symbol;
+		this.slot = slot;
+		this.global = global;
 	}
+	
+	/**
+	 * @param slot Index of variable in its frame
+	 * @param global Whether or not the variable is in the global frame
+	 * @return Variable with the same name, resolved to the given slot
+	 */
+	public Variable at(int slot, boolean global) {
+		return new Variable(symbol, slot, global);
+	}
+	
+	/** @return Interned name of variable */
+	public Symbol symbol(){ return symbol; }
+	
+	/** @return Index of this variable in its frame (-1 if unresolved) */
+	public int slot(){ return slot; }
+	
+	/** @return Whether or not this variable lives in the global frame */
+	public boolean isGlobal(){ return global; }
+	
+	/** @return Whether or not this variable has been assigned a slot */
+	public boolean isResolved(){ return slot >= 0; }
 
 	@Override
 	public String toString() {
-		return id;
+		return symbol.name();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		String s = ((Variable) obj).id;
-		return id.equals(s); // case-sensitive identifiers
+		if (!(obj instanceof Variable))
+			return false;
+		return symbol.id() == ((Variable) obj).symbol.id(); // case-sensitive identifiers
 	}
 
 	@Override
 	public int hashCode() {
-		return id.hashCode();
+		return symbol.id();
 	}
 	
 	@Override
 	public void display(int indent){
 		for(int i = 0; i < indent; i++)
 			System.out.print("   ");
-		System.out.println("| " + id);
+		System.out.println("| " + symbol);
 	}
 
 }
@@ -1,8 +1,8 @@
 package clite.syntax.function;
 
-import java.util.Iterator;
-import java.util.Stack;
+import java.util.Arrays;
 
+import clite.syntax.Numbered;
 import clite.syntax.expression.Expression;
 import clite.syntax.expression.Variable;
 import clite.syntax.statement.Statement;
@@ -10,18 +10,18 @@ import clite.syntax.statement.Statement;
 /**
  * Call = String name; Expressions args
  */
-public class Call implements Statement, Expression {
+public class Call extends Numbered implements Statement, Expression {
 	/** Function being called */
-	private Variable identifier;
+	private final Variable identifier;
 	
 	/** Arguments to pass to function */
-	private Stack<Expression> arguments;
+	private final Expression[] arguments;
 	
 	/**
 	 * @param id Name of function being called
-	 * @param arguments Arguments to call function with
+	 * @param arguments Arguments to call function with (the call keeps this array, so it can't be changed afterwards)
 	 */
-	public Call(Variable id, Stack<Expression> arguments){
+	public Call(Variable id, Expression[] arguments){
 		this.identifier = id;
 		this.arguments = arguments;
 	}
@@ -29,8 +29,14 @@ public class Call implements Statement, Expression {
 	/** Name of function being called */
 	public Variable identifier(){ return identifier; }
 	
-	/** Iterator to go through all arguments */
-	public Iterator<Expression> arguments(){ return arguments.iterator(); }
+	/** @return Number of arguments */
+	public int argumentCount(){ return arguments.length; }
+	
+	/**
+	 * @param i Index of argument
+	 * @return Argument at the index
+	 */
+	public Expression argument(int i){ return arguments[i]; }
 	
 
 	@Override
@@ -47,4 +53,42 @@ public class Call implements Statement, Expression {
 			System.out.print("   ");
 		System.out.println("| )");
 	}
+	
+	/**
+	 * Collects the arguments of a call
+	 */
+	public static class Builder {
+		/** Function being called */
+		private final Variable identifier;
+		
+		/** Arguments added so far */
+		private Expression[] arguments = new Expression[2];
+		
+		/** Number of arguments added */
+		private int size = 0;
+		
+		/** @param id Name of function being called */
+		public Builder(Variable id){
+			this.identifier = id;
+		}
+		
+		/**
+		 * Add the next argument
+		 * @param arg Argument to add
+		 * @return This builder
+		 */
+		public Builder add(Expression arg){
+			if(size == arguments.length)
+				arguments = Arrays.copyOf(arguments, size * 2);
+			arguments[size++] = arg;
+			return this;
+		}
+		
+		/**
+		 * @return Call with every argument that was added
+		 */
+		public Call build(){
+			return new Call(identifier, Arrays.copyOf(arguments, size));
+		}
+	}
 }
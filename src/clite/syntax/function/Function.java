@@ -10,13 +10,13 @@ import clite.syntax.statement.Statement;
  */
 public class Function implements Statement {
 	/** Return type of function */
-	private Type type;
+	private final Type type;
 	/** Name of function */
-	private String id;
+	private final String id;
 	/** Parameters and local values */
-	private Declarations params, locals;
+	private final Declarations params, locals;
 	/** Body of statements */
-	private Block body;
+	private final Block body;
 	
 	/**
 	 * Create a new function
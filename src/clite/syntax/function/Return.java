@@ -1,5 +1,6 @@
 package clite.syntax.function;
 
+import clite.syntax.Numbered;
 import clite.syntax.expression.Expression;
 import clite.syntax.expression.Variable;
 import clite.syntax.statement.Statement;
@@ -7,12 +8,12 @@ import clite.syntax.statement.Statement;
 /**
  * Return = Variable target; Expression result
  */
-public class Return implements Statement {
+public class Return extends Numbered implements Statement {
 	/** Result to return */
-	private Expression result;
+	private final Expression result;
 	
 	/** Name of function this return statement belongs to */
-	private Variable functionName;
+	private final Variable functionName;
 	
 	/**
 	 * @param target Target to return from
@@ -1,16 +1,17 @@
 package clite.syntax.statement;
 
+import clite.syntax.Numbered;
 import clite.syntax.expression.Expression;
 import clite.syntax.expression.Variable;
 
 /**
  * Assignment = Variable target; Expression source
  */
-public class Assignment implements Statement {
+public class Assignment extends Numbered implements Statement {
 	/** Target for assignment */
-	private Variable target;
+	private final Variable target;
 	/** What to assign */
-	private Expression source;
+	private final Expression source;
 
 	/**
 	 * @param target Target for assignment
@@ -1,36 +1,48 @@
 package clite.syntax.statement;
 
-import java.util.Iterator;
-import java.util.Stack;
+import java.util.Arrays;
+
+import clite.syntax.Numbered;
 
 
 /**
- * Block = Statement* (a Vector of members)
+ * Block = Statement* (an array of members)
  */
-public class Block implements Statement {
+public class Block extends Numbered implements Statement {
+	/** Block with no members */
+	private static final Statement[] NONE = new Statement[0];
+	
 	/** List of all members */
-	private Stack<Statement> members;
+	private final Statement[] members;
 	
 	/**
 	 * Create a new block
+	 * @param members Members of the block (the block keeps this array, so it can't be changed afterwards)
+	 */
+	private Block(Statement[] members){
+		this.members = members;
+	}
+	
+	/**
+	 * @return Block with no members
 	 */
-	public Block(){
-		members = new Stack<Statement>();
+	public static Block empty(){
+		return new Block(NONE);
 	}
 	
 	/**
-	 * Add a new member to this block
-	 * @param newMember Member to add
+	 * @return Number of members in this block
 	 */
-	public void addMember(Statement newMember){
-		members.push(newMember);
+	public int size(){
+		return members.length;
 	}
 	
 	/**
-	 * @return Iterator of all members in this block
+	 * @param i Index of member
+	 * @return Member at the index
 	 */
-	public Iterator<Statement> getMembers(){
-		return members.iterator();
+	public Statement member(int i){
+		return members[i];
 	}
 	
 	@Override
@@ -38,4 +50,34 @@ public class Block implements Statement {
 		for(Statement s : members)
 			s.display(indent + 1);
 	}
+	
+	/**
+	 * Collects the members of a block
+	 */
+	public static class Builder {
+		/** Members added so far */
+		private Statement[] members = new Statement[4];
+		
+		/** Number of members added */
+		private int size = 0;
+		
+		/**
+		 * Add a new member to the end of the block
+		 * @param newMember Member to add
+		 * @return This builder
+		 */
+		public Builder add(Statement newMember){
+			if(size == members.length)
+				members = Arrays.copyOf(members, size * 2);
+			members[size++] = newMember;
+			return this;
+		}
+		
+		/**
+		 * @return Block with every member that was added
+		 */
+		public Block build(){
+			return size == 0 ? empty() : new Block(Arrays.copyOf(members, size));
+		}
+	}
 }
@@ -1,15 +1,16 @@
 package clite.syntax.statement;
 
+import clite.syntax.Numbered;
 import clite.syntax.expression.Expression;
 
 /**
  *  Conditional = Expression test; Statement thenbranch, elsebranch
  */
-public class Conditional implements Statement {
+public class Conditional extends Numbered implements Statement {
 	/** Test to be performed */
-	private Expression test;
+	private final Expression test;
 	/** Then and Else statements */
-	private Statement thenBranch, elseBranch;
+	private final Statement thenBranch, elseBranch;
 
 	/**
 	 * Create a conditional, without an else branch
@@ -32,7 +33,7 @@ public class Conditional implements Statement {
 		
 		// create skip if there's no else branch
 		if(elseBranch == null)
-			elseBranch = new Skip();
+			this.elseBranch = new Skip();
 		else
 			this.elseBranch = elseBranch;
 	}
@@ -1,16 +1,17 @@
 package clite.syntax.statement;
 
+import clite.syntax.Numbered;
 import clite.syntax.expression.Expression;
 
 
 /**
  * While Loop = Expression test; Statement body
  */
-public class Loop implements Statement {
+public class Loop extends Numbered implements Statement {
 	/** Test for loop */
-	private Expression test;
+	private final Expression test;
 	/** Body of loop */
-	private Statement body;
+	private final Statement body;
 
 	/**
 	 * Create new while loop
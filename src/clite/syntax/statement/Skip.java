@@ -1,11 +1,13 @@
 package clite.syntax.statement;
 
+import clite.syntax.Numbered;
+
 
 
 /**
  * A statement that skips
  */
-public class Skip implements Statement {
+public class Skip extends Numbered implements Statement {
 	@Override
 	public void display(int indent){
 		for(int i = 0; i < indent; i++)
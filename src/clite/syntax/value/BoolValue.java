@@ -6,25 +6,41 @@ import clite.syntax.Type;
  * Boolean literal
  */
 public class BoolValue extends Value {
+	/** The undefined bool value */
+	public static final BoolValue UNDEFINED = new BoolValue();
+
+	/** true */
+	public static final BoolValue TRUE = new BoolValue(true);
+
+	/** false */
+	public static final BoolValue FALSE = new BoolValue(false);
+
 	/** Boolean value */
-	private boolean value = false;
+	private final boolean value;
 
 	/**
 	 * Create a new, undefined boolean literal
 	 */
-	public BoolValue() {
-		super();
-		type = Type.BOOL;
+	private BoolValue() {
+		super(Type.BOOL, true);
+		value = false;
 	}
 
 	/**
 	 * Create and assign a new bool value
 	 * @param v What to assign value to
 	 */
-	public BoolValue(boolean v) {
-		this();
+	private BoolValue(boolean v) {
+		super(Type.BOOL, false);
 		value = v;
-		undefined = false;
+	}
+
+	/**
+	 * @param v Boolean to get value of
+	 * @return TRUE or FALSE
+	 */
+	public static BoolValue of(boolean v) {
+		return v ? TRUE : FALSE;
 	}
 
 	@Override
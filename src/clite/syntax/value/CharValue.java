@@ -6,25 +6,45 @@ import clite.syntax.Type;
  * Char literal value
  */
 public class CharValue extends Value {
+	/** The undefined char value */
+	public static final CharValue UNDEFINED = new CharValue();
+
+	/** Value of every char, filled in the first time each one is asked for */
+	private static final CharValue[] TABLE = new CharValue[Character.MAX_VALUE + 1];
+
 	/** Char value */
-	private char value = '\0';
+	private final char value;
 
 	/**
 	 * Create new, undefined char value
 	 */
-	public CharValue() {
-		super();
-		type = Type.CHAR;
+	private CharValue() {
+		super(Type.CHAR, true);
+		value = '\0';
 	}
 
 	/**
 	 * Create and define new char value
 	 * @param v What to define value as
 	 */
-	public CharValue(char v) {
-		this();
+	private CharValue(char v) {
+		super(Type.CHAR, false);
 		value = v;
-		undefined = false;
+	}
+
+	/**
+	 * Get the value of a char; there's only ever one value for each char
+	 * (two threads racing to fill in the same char can each make one, which is harmless since values are immutable)
+	 * @param v Char to get value of
+	 * @return Defined char value
+	 */
+	public static CharValue of(char v) {
+		CharValue value = TABLE[v];
+		if (value == null) {
+			value = new CharValue(v);
+			TABLE[v] = value;
+		}
+		return value;
 	}
 
 	@Override
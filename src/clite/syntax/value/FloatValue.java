@@ -6,25 +6,41 @@ import clite.syntax.Type;
  * Float literal value
  */
 public class FloatValue extends Value {
+	/** The undefined float value */
+	public static final FloatValue UNDEFINED = new FloatValue();
+
+	/** 0.0 */
+	private static final FloatValue ZERO = new FloatValue(0.0f);
+
 	/** Float value */
-	private float value = 0;
+	private final float value;
 
 	/**
 	 * Create new, undefined float value
 	 */
-	public FloatValue() {
-		super();
-		type = Type.FLOAT;
+	private FloatValue() {
+		super(Type.FLOAT, true);
+		value = 0.0f;
 	}
 
 	/**
 	 * Create and define new float value
 	 * @param v What to define value as
 	 */
-	public FloatValue(float v) {
-		this();
+	private FloatValue(float v) {
+		super(Type.FLOAT, false);
 		value = v;
-		undefined = false;
+	}
+
+	/**
+	 * @param v Float to get value of
+	 * @return Defined float value
+	 */
+	public static FloatValue of(float v) {
+		// only positive zero is shared, so -0.0 still prints as -0.0
+		if (Float.floatToRawIntBits(v) == 0)
+			return ZERO;
+		return new FloatValue(v);
 	}
 
 	@Override
@@ -6,25 +6,51 @@ import clite.syntax.Type;
  * An int literal
  */
 public class IntValue extends Value {
+	/** The undefined int value */
+	public static final IntValue UNDEFINED = new IntValue();
+
+	/** Smallest int that's cached */
+	private static final int CACHE_LOW = -128;
+
+	/** Largest int that's cached */
+	private static final int CACHE_HIGH = 1023;
+
+	/** Values of every int from CACHE_LOW to CACHE_HIGH */
+	private static final IntValue[] CACHE = new IntValue[CACHE_HIGH - CACHE_LOW + 1];
+	static {
+		for (int i = 0; i < CACHE.length; i++)
+			CACHE[i] = new IntValue(i + CACHE_LOW);
+	}
+
 	/** Value of int literal */
-	private int value = 0;
+	private final int value;
 
 	/**
 	 * Create a new, undefined int value
 	 */
-	public IntValue() {
-		super();
-		type = Type.INT;
+	private IntValue() {
+		super(Type.INT, true);
+		value = 0;
 	}
 
 	/**
 	 * Create and define a new int value
 	 * @param v What to define new value as
 	 */
-	public IntValue(int v) {
-		this();
+	private IntValue(int v) {
+		super(Type.INT, false);
 		value = v;
-		undefined = false;
+	}
+
+	/**
+	 * Get the value of an int, reusing a cached one for small ints
+	 * @param v Int to get value of
+	 * @return Defined int value
+	 */
+	public static IntValue of(int v) {
+		if (v >= CACHE_LOW && v <= CACHE_HIGH)
+			return CACHE[v - CACHE_LOW];
+		return new IntValue(v);
 	}
 
 	@Override
@@ -46,4 +72,4 @@ public class IntValue extends Value {
 			System.out.print("   ");
 		System.out.println("| " + value + " (Int)");
 	}
-}
\ No newline at end of file
+}
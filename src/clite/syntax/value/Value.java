@@ -5,15 +5,23 @@ import clite.syntax.expression.Expression;
 
 /**
  * Value = IntValue | BoolValue | CharValue | FloatValue
+ *
+ * Values are immutable, so they can be shared freely. They're made with the
+ * static of() methods on each subclass, which hand out cached values where they can.
  */
 public abstract class Value implements Expression {
 	/** Type of this value */
-	protected Type type;
+	protected final Type type;
 	/** Whether or not this value is defined */
-	protected boolean undefined;
+	protected final boolean undefined;
 	
-	public Value(){
-		undefined = true;
+	/**
+	 * @param type Type of this value
+	 * @param undefined Whether or not this value is undefined
+	 */
+	protected Value(Type type, boolean undefined){
+		this.type = type;
+		this.undefined = undefined;
 	}
 
 	/*
@@ -57,19 +65,19 @@ public abstract class Value implements Expression {
 	public Type type() { return type; }
 
 	/**
-	 * Makes a new, undefined value of the given type
-	 * @param type Type to make new value of
+	 * Get the undefined value of the given type
+	 * @param type Type to get undefined value of
 	 * @return Undefined value with given type
 	 */
 	public static Value mkValue(Type type) {
 		if (type == Type.INT)
-			return new IntValue();
+			return IntValue.UNDEFINED;
 		if (type == Type.BOOL)
-			return new BoolValue();
+			return BoolValue.UNDEFINED;
 		if (type == Type.CHAR)
-			return new CharValue();
+			return CharValue.UNDEFINED;
 		if (type == Type.FLOAT)
-			return new FloatValue();
+			return FloatValue.UNDEFINED;
 		throw new IllegalArgumentException("Illegal type in mkValue");
 	}
 }
@@ -34,11 +34,31 @@ public class StaticTypeCheck {
 	 * @return Type map from given declarations
 	 */
 	public static TypeMap typing(Declarations d) {
-		TypeMap map = new TypeMap();
+		return typing(d, null);
+	}
+	
+	/**
+	 * Gets a type map from declarations, nested in an enclosing scope
+	 * @param d Declarations to build map from
+	 * @param parent Type map of the enclosing scope (null if there isn't one)
+	 * @return Type map from given declarations that reads through to parent
+	 */
+	public static TypeMap typing(Declarations d, TypeMap parent) {
+		TypeMap map = new TypeMap(parent);
 		for (Declaration di : d.values())
 			map.put(di.variable(), di.type());
 		return map;
 	}
+	
+	/**
+	 * Gets the type map for the inside of a function
+	 * @param f Function to build map for
+	 * @param globals Type map of global variables
+	 * @return Type map of the function's local variables, chained to its parameters, chained to the globals
+	 */
+	public static TypeMap typing(Function f, TypeMap globals) {
+		return typing(f.locals(), typing(f.params(), globals));
+	}
 
 	/**
 	 * Prints given message as error if test fails
@@ -78,9 +98,13 @@ public class StaticTypeCheck {
 		// binary op
 		} else if (e instanceof Binary) {
 			Binary b = (Binary)e;
+			// typed ops know their result type
+			if (b.operator().isTyped())
+				return b.operator().resultType();
+			
 			// +, -, *, /
 			if (b.operator().isArithmeticOp()){
-				if(typeOf(b.term1(), funcs, tm) == Type.INT && typeOf(b.term1(), funcs, tm) == Type.INT)
+				if(typeOf(b.term1(), funcs, tm) == Type.INT && typeOf(b.term2(), funcs, tm) == Type.INT)
 					return Type.INT;
 				else
 					return Type.FLOAT;
@@ -96,12 +120,16 @@ public class StaticTypeCheck {
 		// unary op
 		} else if (e instanceof Unary) {
 			Unary u = (Unary) e;
+			// typed ops know their result type
+			if (u.operator().isTyped())
+				return u.operator().resultType();
+			
 			// !
 			if (u.operator().isNotOp())
 				return Type.BOOL;
 			// -
 			else if (u.operator().isNegateOp())
-				return typeOf(u.term, funcs, tm);
+				return typeOf(u.term(), funcs, tm);
 			
 			// int cast
 			else if (u.operator().isIntOp())
@@ -123,8 +151,17 @@ public class StaticTypeCheck {
 	 * @param p Program to validate
 	 */
 	public static void validate(Program p) {
+		validate(p, typing(p.globals()));
+	}
+	
+	/**
+	 * validate a program's types
+	 * @param p Program to validate
+	 * @param globals Type map of the program's globals (see typing(Declarations))
+	 */
+	public static void validate(Program p, TypeMap globals) {
 		check(p.functions().containsKey("main"), "Error! Main function not found!");
-		validate(p.functions(), typing(p.globals()));
+		validate(p.functions(), globals);
 	}
 	
 	/**
@@ -133,14 +170,9 @@ public class StaticTypeCheck {
 	 * @param tm TypeMap of global variables
 	 */
 	public static void validate(Functions functions, TypeMap tm){
-		for(Function func : functions.values()){
-			// add the function's parameters and local variables to the type map
-			TypeMap newMap = new TypeMap();
-			newMap.putAll(tm);
-			newMap.putAll(typing(func.params()));
-			newMap.putAll(typing(func.locals()));
-			validate(func, functions, newMap);
-		}
+		// chain each function's parameters and local variables onto the globals
+		for(Function func : functions.values())
+			validate(func, functions, typing(func, tm));
 	}
 	
 	/**
@@ -152,9 +184,9 @@ public class StaticTypeCheck {
 	public static void validate(Function func, Functions functions, TypeMap tm){
 		// whether or not we've seen a return statement
 		boolean hasReturn = false;
-		Iterator<Statement> it = func.body().getMembers();
-		while(it.hasNext()){
-			Statement s = it.next();
+		Block body = func.body();
+		for(int i = 0; i < body.size(); i++){
+			Statement s = body.member(i);
 			// special case for return statement
 			if(s instanceof Return){
 				// can only have one return statement
@@ -194,13 +226,13 @@ public class StaticTypeCheck {
 		
 		// go through iterator for function's parameters and the calls arguments
 		Iterator<Declaration> funcIt = f.params().values().iterator();
-		Iterator<Expression> callIt = c.arguments();
+		int arg = 0;
 		while(funcIt.hasNext()){
 			Declaration dec = funcIt.next();
 			
 			// make sure there's more arguments in the call
-			check(callIt.hasNext(), "Incorrect number of arguments for function call!");
-			Expression exp = callIt.next();
+			check(arg < c.argumentCount(), "Incorrect number of arguments for function call!");
+			Expression exp = c.argument(arg++);
 			
 			// get the type of the expression and check if it's the same as the parameter type
 			Type expType = typeOf(exp, funcs, tm);
@@ -208,7 +240,7 @@ public class StaticTypeCheck {
 		}
 		
 		// given too many arguments
-		check(!callIt.hasNext(), "Incorrect number of arguments for function call!");
+		check(arg == c.argumentCount(), "Incorrect number of arguments for function call!");
 	}
 
 	/**
@@ -284,9 +316,9 @@ public class StaticTypeCheck {
 		else if(e instanceof Unary){
 			Unary u = (Unary) e;
 			
-			Type t = typeOf(u.term, funcs, tm);
+			Type t = typeOf(u.term(), funcs, tm);
 			
-			validate(u.term, funcs, tm);
+			validate(u.term(), funcs, tm);
 			
 			// !
 			// Bool -> Bool
@@ -370,9 +402,8 @@ public class StaticTypeCheck {
 			Block b = (Block) s;
 			
 			// check every statement in block
-			Iterator<Statement> members = b.getMembers();
-			while(members.hasNext())
-				validate(members.next(), funcs, tm);
+			for(int i = 0; i < b.size(); i++)
+				validate(b.member(i), funcs, tm);
 			
 		// while loop
 		} else if(s instanceof Loop) {
@@ -0,0 +1,501 @@
+package clite.typing;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import clite.syntax.Operator;
+import clite.syntax.Program;
+import clite.syntax.Type;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Functions;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+import clite.syntax.value.Value;
+
+
+/**
+ * Does what StaticTypeCheck.validate() followed by TypeTransformer.transform() does,
+ * in one walk over the program.
+ *
+ * Every expression is checked and transformed bottom-up, so its operands are already
+ * transformed by the time it's checked. A transformed operand carries its type in its
+ * typed operator, which means StaticTypeCheck.typeOf() finds it without looking at the
+ * operand's operands, and each expression's type only gets worked out once.
+ *
+ * Errors are reported with the same messages StaticTypeCheck uses. Unlike validate(),
+ * every expression gets checked, including call arguments, returns at the top of a
+ * function body, and calls to functions that don't exist. The transform() methods
+ * print the first error and quit; the checked() ones throw it as a TypeError instead.
+ */
+public class TypeCheckTransformer {
+	/**
+	 * Fewest functions a program needs before they're done as tasks on a pool. Below this,
+	 * copying the maps and handing out the tasks costs more than the workers can save.
+	 */
+	private static final int PARALLEL_FUNCTIONS = 32;
+
+	/**
+	 * Check and transform a program's types
+	 * @param p Program to check and transform
+	 * @return Transformed program
+	 */
+	public static Program transform(Program p) {
+		return transform(p, StaticTypeCheck.typing(p.globals()));
+	}
+
+	/**
+	 * Check and transform a program's types
+	 * @param p Program to check and transform
+	 * @param globals Type map of the program's globals
+	 * @return Transformed program
+	 */
+	public static Program transform(Program p, TypeMap globals) {
+		return transform(p, globals, null);
+	}
+
+	/**
+	 * Check and transform a program's types, with every function done as its own task.
+	 *
+	 * Calls only need the signatures of the functions they call, which don't change, so
+	 * every task reads the original functions and the transformed ones go in a new map
+	 * (in the order they were declared). A type error doesn't get printed until every
+	 * function before it is done, so the error that gets printed is the one from the
+	 * first function with an error, just like when the functions are done one at a time.
+	 *
+	 * With a pool that only has one worker, or a program with fewer than PARALLEL_FUNCTIONS
+	 * functions, every function is done on this thread anyway, since tasks would only be slower.
+	 *
+	 * The tasks share the function map and the globals' type map, so when there's a pool
+	 * they get copies of both, made before the first task starts: putting things in the
+	 * caller's maps while the tasks run can't change what they see. The functions
+	 * themselves (their declarations and bodies) are shared as they are, and must not
+	 * change until this returns.
+	 * @param p Program to check and transform
+	 * @param globals Type map of the program's globals
+	 * @param pool Pool to run the tasks in (null to do every function on this thread, in order)
+	 * @return Transformed program
+	 */
+	public static Program transform(Program p, TypeMap globals, ForkJoinPool pool) {
+		try {
+			return checked(p, globals, pool);
+		} catch (TypeError e) {
+			StaticTypeCheck.check(false, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Check and transform a program's types, throwing the first type error instead of printing it
+	 * @param p Program to check and transform
+	 * @return Transformed program
+	 * @throws TypeError if the program has a type error
+	 */
+	public static Program checked(Program p) {
+		return checked(p, StaticTypeCheck.typing(p.globals()), null);
+	}
+
+	/**
+	 * Check and transform a program's types the way transform(Program, TypeMap, ForkJoinPool)
+	 * does, throwing the first type error instead of printing it
+	 * @param p Program to check and transform
+	 * @param globals Type map of the program's globals
+	 * @param pool Pool to run the tasks in (null to do every function on this thread, in order)
+	 * @return Transformed program
+	 * @throws TypeError if the program has a type error
+	 */
+	public static Program checked(Program p, TypeMap globals, ForkJoinPool pool) {
+		if (!p.functions().containsKey("main"))
+			throw new TypeError("Error! Main function not found!");
+
+		// a single worker can't overlap anything, and a small program isn't worth splitting up
+		if (pool != null && (pool.getParallelism() < 2 || p.functions().size() < PARALLEL_FUNCTIONS))
+			pool = null;
+
+		Functions functions = p.functions();
+		if (pool != null) {
+			functions = new Functions();
+			functions.putAll(p.functions());
+			globals = globals.snapshot();
+		}
+
+		ArrayList<FunctionTask> tasks = new ArrayList<FunctionTask>();
+		for (Function f : functions.values()) {
+			FunctionTask task = new FunctionTask(f, functions, globals);
+			tasks.add(task);
+			if (pool != null)
+				pool.execute(task);
+		}
+
+		Functions funcs = new Functions();
+		for (FunctionTask task : tasks) {
+			if (pool == null)
+				task.invoke();
+			Function f = task.finish();
+			funcs.put(f.id(), f);
+		}
+
+		return new Program(p.globals(), funcs);
+	}
+
+	/**
+	 * Check and transform a function's types
+	 * @param f Function to check and transform
+	 * @param funcs Function map
+	 * @param tm Type map with the function's params and locals in it
+	 * @return Transformed function
+	 */
+	public static Function transform(Function f, Functions funcs, TypeMap tm) {
+		try {
+			return checked(f, funcs, tm);
+		} catch (TypeError e) {
+			StaticTypeCheck.check(false, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Check and transform a function's types, throwing the first type error instead of printing it
+	 * @param f Function to check and transform
+	 * @param funcs Function map
+	 * @param tm Type map with the function's params and locals in it
+	 * @return Transformed function
+	 * @throws TypeError if the function has a type error
+	 */
+	public static Function checked(Function f, Functions funcs, TypeMap tm) {
+		// whether or not we've seen a return statement
+		boolean hasReturn = false;
+		Block body = f.body();
+		Block.Builder out = new Block.Builder();
+		for (int i = 0; i < body.size(); i++) {
+			Statement s = body.member(i);
+			// can only have one return statement, and it has to be last
+			if (s instanceof Return) {
+				check(!hasReturn, "Function " + f.id() + " has multiple return statements!");
+				// make sure void functions DON'T have return types (before the return's type gets compared to void)
+				check(f.type() != Type.VOID, "Void function " + f.id() + " has return statement when it shouldn't!");
+			} else
+				check(!hasReturn, "Return must be last expression in function block (in function " + f.id() + "!");
+			hasReturn |= s instanceof Return;
+			out.add(transform(s, funcs, tm));
+		}
+
+		// make sure non-void functions have return types
+		if (f.type() != Type.VOID && !f.id().equals("main"))
+			check(hasReturn, "Non-void function " + f.id() + " missing return statement!");
+
+		return new Function(f.type(), f.id(), f.params(), f.locals(), out.build());
+	}
+
+	/**
+	 * Check and transform a statement's types
+	 * @param s Statement to check and transform
+	 * @param funcs Function map
+	 * @param tm Type map to check against
+	 * @return Transformed statement
+	 */
+	private static Statement transform(Statement s, Functions funcs, TypeMap tm) {
+		if (s instanceof Skip)
+			return s;
+
+		// a Call means that a function is just being called, so the return type is ignored
+		if (s instanceof Call)
+			return transform((Call) s, funcs, tm);
+
+		if (s instanceof Return) {
+			Return r = (Return) s;
+			Expression result = transformExpression(r.result(), funcs, tm);
+			Type t = StaticTypeCheck.typeOf(result, funcs, tm);
+			Function f = funcs.get(r.functionName().toString());
+			check(t == f.type(), "Return expression doesn't match function's return type! (got a " + t + ", expected a " + f.type() + ")");
+			return new Return(r.functionName(), result);
+		}
+
+		if (s instanceof Assignment) {
+			Assignment a = (Assignment) s;
+			Variable target = a.target();
+
+			// make sure target exists
+			check(tm.containsKey(target), "Target not found in type map! (target: " + target + ")");
+
+			Expression src = test(a.source(), funcs, tm);
+			Type targettype = tm.get(target);
+			Type srctype = StaticTypeCheck.typeOf(src, funcs, tm);
+
+			// assigning an int to a float is ok
+			if (targettype == Type.FLOAT && srctype == Type.INT)
+				src = new Unary(Operator.I2F, src);
+
+			// assigning a char or a float to an int is ok
+			else if (targettype == Type.INT && srctype == Type.CHAR)
+				src = new Unary(Operator.C2I, src);
+			else if (targettype == Type.INT && srctype == Type.FLOAT)
+				src = new Unary(Operator.F2I, src);
+
+			else
+				check(targettype == srctype,
+				     "Caught mixed mode assignment in static type checker from " + srctype + " to " + targettype + " (target: " + target + ")");
+
+			return new Assignment(target, src);
+		}
+
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			Expression test = test(c.test(), funcs, tm);
+			Statement tbr = transform(c.thenBranch(), funcs, tm);
+			Statement ebr = transform(c.elseBranch(), funcs, tm);
+			return new Conditional(test, tbr, ebr);
+		}
+
+		if (s instanceof Loop) {
+			Loop l = (Loop) s;
+			Expression test = test(l.test(), funcs, tm);
+			Statement body = transform(l.body(), funcs, tm);
+			return new Loop(test, body);
+		}
+
+		if (s instanceof Block) {
+			Block b = (Block) s;
+			Block.Builder out = new Block.Builder();
+			for (int i = 0; i < b.size(); i++)
+				out.add(transform(b.member(i), funcs, tm));
+			return out.build();
+		}
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Check and transform an expression that a statement uses directly
+	 * (a test or the source of an assignment)
+	 * @param e Expression to check and transform
+	 * @param funcs Function map
+	 * @param tm Type map to check against
+	 * @return Transformed expression
+	 */
+	private static Expression test(Expression e, Functions funcs, TypeMap tm) {
+		// same message StaticTypeCheck.validate() gives for a variable on its own
+		if (e instanceof Variable)
+			check(tm.containsKey((Variable) e), "Caught undeclared variable in static type check: " + e);
+		return transformExpression(e, funcs, tm);
+	}
+
+	/**
+	 * Check and transform an expression's types, turning its operators into typed
+	 * operators and adding conversions so both sides of every binary op are the same type
+	 * @param e Expression to check and transform
+	 * @param funcs Function map
+	 * @param tm Type map to check against
+	 * @return Transformed expression
+	 */
+	private static Expression transformExpression(Expression e, Functions funcs, TypeMap tm) {
+		if (e instanceof Value)
+			return e;
+
+		if (e instanceof Variable) {
+			check(tm.containsKey((Variable) e), "Caught undefined variable in static type checker: " + e);
+			return e;
+		}
+
+		if (e instanceof Call)
+			return transform((Call) e, funcs, tm);
+
+		if (e instanceof Binary) {
+			Binary b = (Binary) e;
+			Expression term1 = transformExpression(b.term1(), funcs, tm);
+			Expression term2 = transformExpression(b.term2(), funcs, tm);
+			Type type1 = StaticTypeCheck.typeOf(term1, funcs, tm);
+			Type type2 = StaticTypeCheck.typeOf(term2, funcs, tm);
+			boolean numbers = (type1 == Type.INT || type1 == Type.FLOAT) && (type2 == Type.INT || type2 == Type.FLOAT);
+
+			// +, -, *, /
+			// Int -> Int   ->   Int | Float -> Float -> Float |
+			// Int -> Float -> Float | Float -> Int   -> Float
+			if (b.operator().isArithmeticOp())
+				check(numbers,
+				      "Type error for arithmetic op " + b.operator()  + "; got types " + type1 + " and " + type2);
+
+			// <, >, <=, >=, ==, !=
+			// numbers like arithmetic, plus Bool -> Bool -> Bool | Char -> Char -> Bool
+			else if (b.operator().isRelationalOp())
+				check(numbers || (type1 == Type.BOOL && type2 == Type.BOOL) || (type1 == Type.CHAR && type2 == Type.CHAR),
+				      "Type error for relational op " + b.operator()  + "; got types " + type1 + " and " + type2);
+
+			// &&, ||
+			// Bool -> Bool -> Bool
+			else if (b.operator().isBooleanOp())
+				check(type1 == Type.BOOL && type2 == Type.BOOL,
+				      "Caught non-bool operand for " + b.operator() + " in static type checker; got types " + type1 + " and " + type2);
+
+			else
+				throw new IllegalArgumentException("should never reach here");
+
+			// an int mixed with a float gets converted to a float
+			if (type1 == Type.INT && type2 == Type.FLOAT) {
+				term1 = new Unary(Operator.I2F, term1);
+				type1 = Type.FLOAT;
+			} else if (type1 == Type.FLOAT && type2 == Type.INT)
+				term2 = new Unary(Operator.I2F, term2);
+
+			return new Binary(b.operator().typed(type1), term1, term2);
+		}
+
+		if (e instanceof Unary) {
+			Unary u = (Unary) e;
+			Expression term = transformExpression(u.term(), funcs, tm);
+			Type t = StaticTypeCheck.typeOf(term, funcs, tm);
+
+			// !
+			// Bool -> Bool
+			if (u.operator().isNotOp())
+				check(t == Type.BOOL,
+				     "Attempted not operation on non-bool (attempted on " + t + ")");
+
+			// -
+			// Int -> Int | Float -> Float
+			else if (u.operator().isNegateOp())
+				check(t == Type.FLOAT || t == Type.INT,
+				     "Attempted negate operation on something other than a float or int (attempted on " + t + ")");
+
+			// int cast
+			// Float -> Int | Char -> Int
+			else if (u.operator().isIntOp())
+				check(t == Type.FLOAT || t == Type.CHAR,
+				     "Attempted int cast from something other than a float or a char (attempted on " + t + ")");
+
+			// float cast
+			// Int -> Float
+			else if (u.operator().isFloatOp())
+				check(t == Type.INT,
+				     "Attempted float cast from something other than an int (attempted on " + t + ")");
+
+			// char cast
+			// Int -> Char
+			else if (u.operator().isCharOp())
+				check(t == Type.INT,
+				     "Attempted char cast from something other than an int (attempted on " + t + ")");
+
+			return new Unary(u.operator().typed(t), term);
+		}
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Check a function call against the function's parameters and transform its arguments
+	 * @param c Call to check and transform
+	 * @param funcs Function map
+	 * @param tm Type map to check against
+	 * @return Transformed call
+	 */
+	private static Call transform(Call c, Functions funcs, TypeMap tm) {
+		Function f = funcs.get(c.identifier().toString());
+		check(f != null, "Caught undefined function in static type checker: " + c.identifier());
+
+		Expression[] args = new Expression[c.argumentCount()];
+		Iterator<Declaration> params = f.params().values().iterator();
+		int arg = 0;
+		while (params.hasNext()) {
+			Declaration dec = params.next();
+
+			// make sure there's more arguments in the call
+			check(arg < args.length, "Incorrect number of arguments for function call!");
+			args[arg] = transformExpression(c.argument(arg), funcs, tm);
+
+			// the argument has to be the same type as the parameter
+			Type expType = StaticTypeCheck.typeOf(args[arg++], funcs, tm);
+			check(dec.type() == expType, "Wrong type in function call for " + dec.variable() + " (got a " + expType + ", expected a " + dec.type() + ")");
+		}
+
+		// given too many arguments
+		check(arg == args.length, "Incorrect number of arguments for function call!");
+		return new Call(c.identifier(), args);
+	}
+
+	/**
+	 * Throws a type error if a test fails
+	 * @param test If false, error, else nothing
+	 * @param msg Error message
+	 */
+	private static void check(boolean test, String msg) {
+		if (!test)
+			throw new TypeError(msg);
+	}
+
+	/**
+	 * Checks and transforms one function
+	 */
+	@SuppressWarnings("serial")
+	private static class FunctionTask extends RecursiveTask<Function> {
+		/** Function to check and transform */
+		private final Function function;
+
+		/** Every function in the program, as declared (shared by every task, so nothing may change it while they run) */
+		private final Functions functions;
+
+		/** Type map of the program's globals (shared by every task, so nothing may change it while they run) */
+		private final TypeMap globals;
+
+		/** Type error in the function, if there was one */
+		private TypeError error;
+
+		/**
+		 * @param function Function to check and transform
+		 * @param functions Every function in the program
+		 * @param globals Type map of the program's globals
+		 */
+		FunctionTask(Function function, Functions functions, TypeMap globals) {
+			this.function = function;
+			this.functions = functions;
+			this.globals = globals;
+		}
+
+		/**
+		 * @return Transformed function, or null if it has a type error
+		 */
+		@Override
+		protected Function compute() {
+			try {
+				return checked(function, functions, StaticTypeCheck.typing(function, globals));
+			} catch (TypeError e) {
+				// left for whoever waits on this task, so errors come out in the order the functions are in
+				error = e;
+				return null;
+			}
+		}
+
+		/**
+		 * Wait for the function to be done
+		 * @return Transformed function
+		 * @throws TypeError if the function has a type error
+		 */
+		Function finish() {
+			Function f = join();
+			if (error != null)
+				throw error;
+			return f;
+		}
+	}
+
+	/**
+	 * Type error found while checking a program, with the message transform() would print
+	 */
+	@SuppressWarnings("serial")
+	public static class TypeError extends RuntimeException {
+		/** @param error Error to print */
+		public TypeError(String error) {
+			super(error);
+		}
+	}
+}
@@ -6,15 +6,87 @@ import clite.syntax.expression.Variable;
 
 
 
-@SuppressWarnings("serial")
 /**
- * TypeMap is implemented as a Java HashMap.
+ * TypeMap is one scope of types, chained to the scope it's nested in.
+ *
+ * Lookups that miss in a scope read through to the enclosing one, so a
+ * function's map is just its locals, chained to its params, chained to the
+ * globals. The globals only get put in a map once, no matter how many
+ * functions (or passes) look through it.
  * Plus a 'display' method to facilitate experimentation.
  */
-public class TypeMap extends HashMap<Variable, Type> {
-	/** Displays all the values in this type map and their types */
+public class TypeMap {
+	/** Scope this one is nested in (null for the outermost scope) */
+	private final TypeMap parent;
+
+	/** Types of the variables declared in this scope */
+	private final HashMap<Variable, Type> types = new HashMap<Variable, Type>();
+
+	/**
+	 * Create an outermost scope
+	 */
+	public TypeMap() {
+		this(null);
+	}
+
+	/**
+	 * Create a scope nested in another one
+	 * @param parent Scope to read through to
+	 */
+	public TypeMap(TypeMap parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * @param v Variable to look up
+	 * @return Type of the variable in the innermost scope that has it, or null if no scope does
+	 */
+	public Type get(Variable v) {
+		for (TypeMap m = this; m != null; m = m.parent) {
+			Type t = m.types.get(v);
+			if (t != null)
+				return t;
+		}
+		return null;
+	}
+
+	/**
+	 * @param v Variable to look up
+	 * @return Whether or not this scope or any scope it's nested in has the variable
+	 */
+	public boolean containsKey(Variable v) {
+		return get(v) != null;
+	}
+
+	/**
+	 * Declare a variable in this scope, shadowing any enclosing declaration
+	 * @param v Variable to declare
+	 * @param t Type of variable
+	 * @return Type the variable had in this scope before, or null
+	 */
+	public Type put(Variable v, Type t) {
+		return types.put(v, t);
+	}
+
+	/**
+	 * Copy every type this scope can see into one outermost scope
+	 * @return Copy that doesn't change when this scope (or any scope it's nested in) does
+	 */
+	public TypeMap snapshot() {
+		TypeMap copy = parent == null ? new TypeMap() : parent.snapshot();
+		copy.types.putAll(types);
+		return copy;
+	}
+
+	/** @return Scope this one is nested in (null for the outermost scope) */
+	public TypeMap parent() {
+		return parent;
+	}
+
+	/** Displays all the values in this type map and their types, innermost scope first */
 	public void display() {
-		for(Variable v : this.keySet())
-			System.out.println("    " + v.toString() + " :: " + this.get(v));
+		for(TypeMap m = this; m != null; m = m.parent)
+			for(Variable v : m.types.keySet())
+				System.out.println("    " + v.toString() + " :: " + m.types.get(v));
 	}
 }
@@ -1,9 +1,9 @@
 package clite.typing;
-import java.util.Iterator;
 
 import clite.syntax.Operator;
 import clite.syntax.Program;
 import clite.syntax.Type;
+import clite.syntax.expression.Binary;
 import clite.syntax.expression.Expression;
 import clite.syntax.expression.Unary;
 import clite.syntax.expression.Variable;
@@ -17,6 +17,7 @@ import clite.syntax.statement.Conditional;
 import clite.syntax.statement.Loop;
 import clite.syntax.statement.Skip;
 import clite.syntax.statement.Statement;
+import clite.syntax.value.Value;
 
 
 /**
@@ -28,40 +29,47 @@ public class TypeTransformer {
 	/**
 	 * Transform a program's types
 	 * @param p Program to transform
-	 * @param tm Type map to use for transformation
 	 * @return Transformed program
 	 */
 	public static Program transform(Program p) {
-		// map of all global variables
-		TypeMap globalMap = StaticTypeCheck.typing(p.globals());
-		
+		return transform(p, StaticTypeCheck.typing(p.globals()));
+	}
+	
+	/**
+	 * Transform a program's types
+	 * @param p Program to transform
+	 * @param globalMap Type map of the program's globals (the same one StaticTypeCheck.validate used)
+	 * @return Transformed program
+	 */
+	public static Program transform(Program p, TypeMap globalMap) {
 		// functions list transformed functions get added to
-		Functions funcs = p.functions();
+		// (a new one, so the program's functions don't change while they're being looped over)
+		Functions funcs = new Functions();
 		
-		// transform every function's body
-		for(Function f : p.functions().values()){
-			// add function's params and locals to type map
-			TypeMap newMap = new TypeMap();
-			newMap.putAll(globalMap);
-			newMap.putAll(StaticTypeCheck.typing(f.params()));
-			newMap.putAll(StaticTypeCheck.typing(f.locals()));
-			Block transformedBody = (Block) transform(f.body(), funcs, newMap);
-			
-			// add the function into the new functions map
-			funcs.put(
-					f.id(),
-					new Function(
-							f.type(),
-							f.id(),
-							f.params(),
-							f.locals(),
-							transformedBody
-					)
-			);
-		}
+		// transform every function's body, with its params and locals chained onto the globals
+		for(Function f : p.functions().values())
+			funcs.put(f.id(), transform(f, p.functions(), StaticTypeCheck.typing(f, globalMap)));
 		
 		return new Program(p.globals(), funcs);
 	}
+	
+	/**
+	 * Transform a function's types
+	 * @param f Function to transform
+	 * @param funcs Function map
+	 * @param tm Type map with the function's params and locals in it
+	 * @return Transformed function
+	 */
+	public static Function transform(Function f, Functions funcs, TypeMap tm) {
+		Block transformedBody = (Block) transform(f.body(), funcs, tm);
+		return new Function(
+				f.type(),
+				f.id(),
+				f.params(),
+				f.locals(),
+				transformedBody
+		);
+	}
 
 	/**
 	 * Transform a statement's types
@@ -70,43 +78,44 @@ public class TypeTransformer {
 	 * @return Transformed statement
 	 */
 	public static Statement transform(Statement s, Functions funcs, TypeMap tm) {
-		/*
-		 * Skip any skips.
-		 * 
-		 * A Return has to be same type as the function it's returning from,
-		 * as checked in StaticTypeCheck, so we can skip it
-		 * 
-		 * A Call means that a function is just being called
-		 * (otherwise it would be an assignment)
-		 * so the return type is ignored
-		 */
-		if (s instanceof Skip ||
-			s instanceof Return ||
-			s instanceof Call)
+		// skip any skips
+		if (s instanceof Skip)
 			return s;
 		
+		// a Return has to be same type as the function it's returning from,
+		// as checked in StaticTypeCheck, so only its expression gets transformed
+		if (s instanceof Return) {
+			Return r = (Return) s;
+			return new Return(r.functionName(), transformExpression(r.result(), funcs, tm));
+		}
+		
+		// a Call means that a function is just being called
+		// (otherwise it would be an assignment) so the return type is ignored
+		if (s instanceof Call)
+			return transform((Call) s, funcs, tm);
+		
 		// assignment statement
 		if (s instanceof Assignment) {
 			Assignment a = (Assignment) s;
 			
 			Variable target = a.target();
-			Expression src = a.source();
+			Expression src = transformExpression(a.source(), funcs, tm);
 			
 			Type targettype = (Type) tm.get(a.target());
 			Type srctype = StaticTypeCheck.typeOf(a.source(), funcs, tm);
 			
 			if (targettype == Type.FLOAT) {
 				if (srctype == Type.INT) {
-					src = new Unary(new Operator(Operator.FLOAT), src);
+					src = new Unary(Operator.I2F, src);
 					srctype = Type.FLOAT;
 				}
 				
 			} else if (targettype == Type.INT) {
 				if (srctype == Type.CHAR) {
-					src = new Unary(new Operator(Operator.INT), src);
+					src = new Unary(Operator.C2I, src);
 					srctype = Type.INT;
 				} else if(srctype == Type.FLOAT){
-					src = new Unary(new Operator(Operator.INT), src);
+					src = new Unary(Operator.F2I, src);
 					srctype = Type.INT;
 				}
 			}
@@ -120,7 +129,7 @@ public class TypeTransformer {
 		if (s instanceof Conditional) {
 			Conditional c = (Conditional) s;
 			
-			Expression test = c.test();
+			Expression test = transformExpression(c.test(), funcs, tm);
 			
 			Statement tbr = transform(c.thenBranch(), funcs, tm);
 			Statement ebr = transform(c.elseBranch(), funcs, tm);
@@ -132,8 +141,8 @@ public class TypeTransformer {
 		if (s instanceof Loop) {
 			Loop l = (Loop) s;
 			
-			Expression test = l.test();
-			Statement body = l.body();
+			Expression test = transformExpression(l.test(), funcs, tm);
+			Statement body = transform(l.body(), funcs, tm);
 			
 			return new Loop(test, body);
 		}
@@ -142,16 +151,75 @@ public class TypeTransformer {
 		if (s instanceof Block) {
 			Block b = (Block) s;
 			
-			Block out = new Block();
+			Block.Builder out = new Block.Builder();
+			for(int i = 0; i < b.size(); i++)
+				out.add(transform(b.member(i), funcs, tm));
+			
+			return out.build();
+		}
+		
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Transform an expression's operators into typed operators,
+	 * adding conversions so both sides of every binary op are the same type
+	 * @param e Expression to transform
+	 * @param funcs Function map
+	 * @param tm Type map to use for transformation
+	 * @return Transformed expression
+	 */
+	public static Expression transformExpression(Expression e, Functions funcs, TypeMap tm) {
+		if (e instanceof Value || e instanceof Variable)
+			return e;
+		
+		if (e instanceof Call)
+			return transform((Call) e, funcs, tm);
+		
+		// binary op
+		if (e instanceof Binary) {
+			Binary b = (Binary) e;
+			Expression term1 = transformExpression(b.term1(), funcs, tm);
+			Expression term2 = transformExpression(b.term2(), funcs, tm);
+			
+			Type type1 = StaticTypeCheck.typeOf(term1, funcs, tm);
+			Type type2 = StaticTypeCheck.typeOf(term2, funcs, tm);
 			
-			Iterator<Statement> members = b.getMembers();
-			while(members.hasNext())
-				out.addMember(transform(members.next(), funcs, tm));
+			// an int mixed with a float gets converted to a float
+			if (type1 == Type.INT && type2 == Type.FLOAT) {
+				term1 = new Unary(Operator.I2F, term1);
+				type1 = Type.FLOAT;
+			} else if (type1 == Type.FLOAT && type2 == Type.INT) {
+				term2 = new Unary(Operator.I2F, term2);
+				type2 = Type.FLOAT;
+			}
 			
-			return out;
+			StaticTypeCheck.check(type1 == type2, "bug in binary op " + b.operator());
+			return new Binary(b.operator().typed(type1), term1, term2);
+		}
+		
+		// unary op, typed by its operand
+		if (e instanceof Unary) {
+			Unary u = (Unary) e;
+			Expression term = transformExpression(u.term(), funcs, tm);
+			Type type = StaticTypeCheck.typeOf(term, funcs, tm);
+			return new Unary(u.operator().typed(type), term);
 		}
 		
 		throw new IllegalArgumentException("should never reach here");
 	}
+	
+	/**
+	 * Transform the arguments of a function call
+	 * @param c Call to transform
+	 * @param funcs Function map
+	 * @param tm Type map to use for transformation
+	 * @return Transformed call
+	 */
+	private static Call transform(Call c, Functions funcs, TypeMap tm) {
+		Expression[] args = new Expression[c.argumentCount()];
+		for (int i = 0; i < args.length; i++)
+			args[i] = transformExpression(c.argument(i), funcs, tm);
+		return new Call(c.identifier(), args);
+	}
 }
-
@@ -0,0 +1,151 @@
+package clite.vm;
+
+
+/**
+ * Instruction set of the register VM.
+ *
+ * An instruction is an opcode followed by its operands, all stored as ints
+ * in one code array. Operands named d, a and b are registers in the current
+ * frame; ints, chars and bools live in the int register file and floats live
+ * in the float register file. Globals are read and written with their own
+ * instructions. Jump targets are absolute offsets into the code array.
+ *
+ * Every register and global also has a flag that says whether or not its value
+ * is defined. Moves, global loads and stores, and returns copy the flag along
+ * with the value; every other instruction that writes a register marks it defined.
+ */
+public class Opcode {
+	/** Possible opcodes */
+	public static final int
+	// constants and moves
+	ICONST  = 0,  // d, int            (d = int)
+	FCONST  = 1,  // d, float bits     (d = float)
+	IMOV    = 2,  // d, a             (flag too)
+	FMOV    = 3,  // d, a             (flag too)
+
+	// globals (flags too)
+	GILOAD  = 4,  // d, global
+	GFLOAD  = 5,  // d, global
+	GISTORE = 6,  // global, a
+	GFSTORE = 7,  // global, a
+
+	// int arithmetic
+	IADD    = 8,  // d, a, b
+	ISUB    = 9,
+	IMUL    = 10,
+	IDIV    = 11,
+	INEG    = 12, // d, a
+
+	// float arithmetic
+	FADD    = 13, // d, a, b
+	FSUB    = 14,
+	FMUL    = 15,
+	FDIV    = 16,
+	FNEG    = 17, // d, a
+
+	// conversions
+	I2F     = 18, // d, a
+	F2I     = 19, // d, a
+	I2C     = 20, // d, a
+
+	// bools
+	NOT     = 21, // d, a
+	AND     = 22, // d, a, b
+	OR      = 23, // d, a, b
+
+	// int (and char and bool) compares; d is 1 if true, 0 if false
+	ILT     = 24, // d, a, b
+	ILE     = 25,
+	IGT     = 26,
+	IGE     = 27,
+	IEQ     = 28,
+	INE     = 29,
+
+	// float compares
+	FLT     = 30, // d, a, b
+	FLE     = 31,
+	FGT     = 32,
+	FGE     = 33,
+	FEQ     = 34,
+	FNE     = 35,
+
+	// control flow
+	JMP     = 36, // target
+	JZ      = 37, // a, target        (jump if a is 0)
+	JNZ     = 38, // a, target        (jump if a isn't 0)
+	CALL    = 39, // function, base, d (callee's frame starts at register base, which holds the arguments;
+	              //                    d is -1 if the result isn't used)
+	IRET    = 40, // a                (flag too)
+	FRET    = 41, // a                (flag too)
+	RET     = 42, //                  (return without a value)
+
+	// definedness
+	DEFINE  = 43, // d                (mark d defined)
+
+	// compare and jump, so tests don't need a register for their result (see VmCompiler.branch)
+	JILT    = 44, // a, b, target      (jump if a < b)
+	JILE    = 45,
+	JIGT    = 46,
+	JIGE    = 47,
+	JIEQ    = 48,
+	JINE    = 49,
+	JFLT    = 50, // a, b, target
+	JFLE    = 51,
+	JFGT    = 52,
+	JFGE    = 53,
+	JFEQ    = 54,
+	JFNE    = 55,
+
+	// falling off the end of a function that should have returned a value
+	NORET   = 56; //                  (throws if the caller uses the result)
+
+	/** Number of operands each opcode takes, indexed by opcode */
+	private static final int[] OPERANDS = {
+		2, 2, 2, 2,
+		2, 2, 2, 2,
+		3, 3, 3, 3, 2,
+		3, 3, 3, 3, 2,
+		2, 2, 2,
+		2, 3, 3,
+		3, 3, 3, 3, 3, 3,
+		3, 3, 3, 3, 3, 3,
+		1, 2, 2, 3, 1, 1, 0,
+		1,
+		3, 3, 3, 3, 3, 3,
+		3, 3, 3, 3, 3, 3,
+		0
+	};
+
+	/** Name of each opcode, indexed by opcode */
+	private static final String[] NAMES = {
+		"ICONST", "FCONST", "IMOV", "FMOV",
+		"GILOAD", "GFLOAD", "GISTORE", "GFSTORE",
+		"IADD", "ISUB", "IMUL", "IDIV", "INEG",
+		"FADD", "FSUB", "FMUL", "FDIV", "FNEG",
+		"I2F", "F2I", "I2C",
+		"NOT", "AND", "OR",
+		"ILT", "ILE", "IGT", "IGE", "IEQ", "INE",
+		"FLT", "FLE", "FGT", "FGE", "FEQ", "FNE",
+		"JMP", "JZ", "JNZ", "CALL", "IRET", "FRET", "RET",
+		"DEFINE",
+		"JILT", "JILE", "JIGT", "JIGE", "JIEQ", "JINE",
+		"JFLT", "JFLE", "JFGT", "JFGE", "JFEQ", "JFNE",
+		"NORET"
+	};
+
+	/**
+	 * @param opcode Opcode to get operand count of
+	 * @return Number of operands the opcode takes
+	 */
+	public static int operands(int opcode) {
+		return OPERANDS[opcode];
+	}
+
+	/**
+	 * @param opcode Opcode to get name of
+	 * @return Name of opcode
+	 */
+	public static String name(int opcode) {
+		return NAMES[opcode];
+	}
+}
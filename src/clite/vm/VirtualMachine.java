@@ -0,0 +1,525 @@
+package clite.vm;
+
+import clite.interpreter.FrameLayout;
+import clite.interpreter.Interpreter;
+import clite.interpreter.State;
+import clite.syntax.Program;
+import clite.syntax.Type;
+import clite.syntax.declaration.Declaration;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Function;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.CharValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+
+
+/**
+ * Runs programs compiled by VmCompiler.
+ *
+ * Every frame is a window into two register files, one for ints and one for floats,
+ * starting at the frame's base pointer. Calls don't use the Java stack; the return
+ * address, caller's base pointer and result register are kept in their own arrays.
+ * A third file of flags says whether or not each register holds a defined value.
+ */
+public class VirtualMachine {
+	/** Program being run */
+	private VmProgram program;
+
+	/** Int (and char and bool) registers */
+	private int[] iregs = new int[1024];
+
+	/** Float registers */
+	private float[] fregs = new float[1024];
+
+	/** Whether or not each register holds a defined value */
+	private boolean[] dregs = new boolean[1024];
+
+	/** Int globals */
+	private int[] iglobals;
+
+	/** Float globals */
+	private float[] fglobals;
+
+	/** Whether or not each global is defined */
+	private boolean[] gdefined;
+
+	/** Return address of each call in progress */
+	private int[] returnPcs = new int[256];
+
+	/** Caller's base pointer for each call in progress */
+	private int[] returnBps = new int[256];
+
+	/** Register in the caller's frame that gets each call's result */
+	private int[] returnDsts = new int[256];
+
+	/**
+	 * Compile and run a program
+	 * @param p Program to run (must already be transformed and resolved)
+	 * @return Final state of program
+	 */
+	public static State run(Program p) {
+		return new VirtualMachine(VmCompiler.compile(p)).run();
+	}
+
+	/**
+	 * @param program Compiled program to run
+	 */
+	public VirtualMachine(VmProgram program) {
+		this.program = program;
+		int globals = program.program.globals().size();
+		iglobals = new int[globals];
+		fglobals = new float[globals];
+		gdefined = new boolean[globals];
+	}
+
+	/**
+	 * Run the program's main function
+	 * @return Final state of program
+	 */
+	public State run() {
+		final int[] code = program.code;
+		final VmFunction[] functions = program.functions;
+		int[] iregs = this.iregs;
+		float[] fregs = this.fregs;
+		boolean[] dregs = this.dregs;
+		int depth = 0;
+		int bp = 0;
+
+		VmFunction main = functions[program.main];
+		if (main.registers > iregs.length) {
+			grow(main.registers);
+			iregs = this.iregs;
+			fregs = this.fregs;
+			dregs = this.dregs;
+		}
+		// main's parameters never get arguments, but they still count as defined
+		for (int r = 0; r < main.paramCount; r++)
+			dregs[r] = true;
+		int pc = main.entry;
+
+		while (true) {
+			switch (code[pc]) {
+			case Opcode.ICONST:
+				iregs[bp + code[pc + 1]] = code[pc + 2];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+			case Opcode.FCONST:
+				fregs[bp + code[pc + 1]] = Float.intBitsToFloat(code[pc + 2]);
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+			case Opcode.IMOV:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]];
+				dregs[bp + code[pc + 1]] = dregs[bp + code[pc + 2]];
+				pc += 3;
+				break;
+			case Opcode.FMOV:
+				fregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]];
+				dregs[bp + code[pc + 1]] = dregs[bp + code[pc + 2]];
+				pc += 3;
+				break;
+
+			case Opcode.GILOAD:
+				iregs[bp + code[pc + 1]] = iglobals[code[pc + 2]];
+				dregs[bp + code[pc + 1]] = gdefined[code[pc + 2]];
+				pc += 3;
+				break;
+			case Opcode.GFLOAD:
+				fregs[bp + code[pc + 1]] = fglobals[code[pc + 2]];
+				dregs[bp + code[pc + 1]] = gdefined[code[pc + 2]];
+				pc += 3;
+				break;
+			case Opcode.GISTORE:
+				iglobals[code[pc + 1]] = iregs[bp + code[pc + 2]];
+				gdefined[code[pc + 1]] = dregs[bp + code[pc + 2]];
+				pc += 3;
+				break;
+			case Opcode.GFSTORE:
+				fglobals[code[pc + 1]] = fregs[bp + code[pc + 2]];
+				gdefined[code[pc + 1]] = dregs[bp + code[pc + 2]];
+				pc += 3;
+				break;
+
+			case Opcode.IADD:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] + iregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.ISUB:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] - iregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.IMUL:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] * iregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.IDIV:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] / iregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.INEG:
+				iregs[bp + code[pc + 1]] = -iregs[bp + code[pc + 2]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+
+			case Opcode.FADD:
+				fregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] + fregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FSUB:
+				fregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] - fregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FMUL:
+				fregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] * fregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FDIV:
+				fregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] / fregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FNEG:
+				fregs[bp + code[pc + 1]] = -fregs[bp + code[pc + 2]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+
+			case Opcode.I2F:
+				fregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+			case Opcode.F2I:
+				iregs[bp + code[pc + 1]] = (int) fregs[bp + code[pc + 2]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+			case Opcode.I2C:
+				iregs[bp + code[pc + 1]] = (char) iregs[bp + code[pc + 2]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+
+			case Opcode.NOT:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] ^ 1;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 3;
+				break;
+			case Opcode.AND:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] & iregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.OR:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] | iregs[bp + code[pc + 3]];
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+
+			case Opcode.ILT:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] < iregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.ILE:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] <= iregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.IGT:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] > iregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.IGE:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] >= iregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.IEQ:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] == iregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.INE:
+				iregs[bp + code[pc + 1]] = iregs[bp + code[pc + 2]] != iregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+
+			case Opcode.FLT:
+				iregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] < fregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FLE:
+				iregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] <= fregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FGT:
+				iregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] > fregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FGE:
+				iregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] >= fregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FEQ:
+				iregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] == fregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+			case Opcode.FNE:
+				iregs[bp + code[pc + 1]] = fregs[bp + code[pc + 2]] != fregs[bp + code[pc + 3]] ? 1 : 0;
+				dregs[bp + code[pc + 1]] = true;
+				pc += 4;
+				break;
+
+			case Opcode.JMP:
+				pc = code[pc + 1];
+				break;
+			case Opcode.JZ:
+				pc = iregs[bp + code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+				break;
+			case Opcode.JNZ:
+				pc = iregs[bp + code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+				break;
+
+			case Opcode.JILT:
+				pc = iregs[bp + code[pc + 1]] < iregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JILE:
+				pc = iregs[bp + code[pc + 1]] <= iregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JIGT:
+				pc = iregs[bp + code[pc + 1]] > iregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JIGE:
+				pc = iregs[bp + code[pc + 1]] >= iregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JIEQ:
+				pc = iregs[bp + code[pc + 1]] == iregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JINE:
+				pc = iregs[bp + code[pc + 1]] != iregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+
+			case Opcode.JFLT:
+				pc = fregs[bp + code[pc + 1]] < fregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JFLE:
+				pc = fregs[bp + code[pc + 1]] <= fregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JFGT:
+				pc = fregs[bp + code[pc + 1]] > fregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JFGE:
+				pc = fregs[bp + code[pc + 1]] >= fregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JFEQ:
+				pc = fregs[bp + code[pc + 1]] == fregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+			case Opcode.JFNE:
+				pc = fregs[bp + code[pc + 1]] != fregs[bp + code[pc + 2]] ? code[pc + 3] : pc + 4;
+				break;
+
+			case Opcode.CALL: {
+				VmFunction f = functions[code[pc + 1]];
+				int newBp = bp + code[pc + 2];
+
+				if (newBp + f.registers > iregs.length) {
+					grow(newBp + f.registers);
+					iregs = this.iregs;
+					fregs = this.fregs;
+					dregs = this.dregs;
+				}
+				if (depth == returnPcs.length)
+					growCalls();
+
+				returnPcs[depth] = pc + 4;
+				returnBps[depth] = bp;
+				returnDsts[depth] = code[pc + 3];
+				depth++;
+
+				// locals start out as zero, which is what an undefined value reads as
+				for (int r = newBp + f.paramCount; r < newBp + f.varCount; r++) {
+					iregs[r] = 0;
+					fregs[r] = 0.0f;
+					dregs[r] = false;
+				}
+
+				bp = newBp;
+				pc = f.entry;
+				break;
+			}
+			case Opcode.IRET: {
+				int result = iregs[bp + code[pc + 1]];
+				boolean resultDefined = dregs[bp + code[pc + 1]];
+				if (depth == 0)
+					return finalState();
+				depth--;
+				bp = returnBps[depth];
+				pc = returnPcs[depth];
+				if (returnDsts[depth] >= 0) {
+					iregs[bp + returnDsts[depth]] = result;
+					dregs[bp + returnDsts[depth]] = resultDefined;
+				}
+				break;
+			}
+			case Opcode.FRET: {
+				float result = fregs[bp + code[pc + 1]];
+				boolean resultDefined = dregs[bp + code[pc + 1]];
+				if (depth == 0)
+					return finalState();
+				depth--;
+				bp = returnBps[depth];
+				pc = returnPcs[depth];
+				if (returnDsts[depth] >= 0) {
+					fregs[bp + returnDsts[depth]] = result;
+					dregs[bp + returnDsts[depth]] = resultDefined;
+				}
+				break;
+			}
+			case Opcode.NORET:
+				if (depth > 0 && returnDsts[depth - 1] >= 0)
+					throw new IllegalArgumentException("attemped to interpret function call with no return as expression");
+				// the result isn't used, so this is just a return
+				if (depth == 0)
+					return finalState();
+				depth--;
+				bp = returnBps[depth];
+				pc = returnPcs[depth];
+				break;
+			case Opcode.RET:
+				if (depth == 0)
+					return finalState();
+				depth--;
+				bp = returnBps[depth];
+				pc = returnPcs[depth];
+				break;
+
+			case Opcode.DEFINE:
+				dregs[bp + code[pc + 1]] = true;
+				pc += 2;
+				break;
+
+			default:
+				throw new IllegalArgumentException("should never reach here");
+			}
+		}
+	}
+
+	/**
+	 * Make the register files bigger
+	 * @param needed Number of registers needed
+	 */
+	private void grow(int needed) {
+		int size = iregs.length;
+		while (size < needed)
+			size *= 2;
+
+		int[] ibigger = new int[size];
+		System.arraycopy(iregs, 0, ibigger, 0, iregs.length);
+		iregs = ibigger;
+
+		float[] fbigger = new float[size];
+		System.arraycopy(fregs, 0, fbigger, 0, fregs.length);
+		fregs = fbigger;
+
+		boolean[] dbigger = new boolean[size];
+		System.arraycopy(dregs, 0, dbigger, 0, dregs.length);
+		dregs = dbigger;
+	}
+
+	/**
+	 * Make room for more calls in progress
+	 */
+	private void growCalls() {
+		int size = returnPcs.length * 2;
+
+		int[] bigger = new int[size];
+		System.arraycopy(returnPcs, 0, bigger, 0, returnPcs.length);
+		returnPcs = bigger;
+
+		bigger = new int[size];
+		System.arraycopy(returnBps, 0, bigger, 0, returnBps.length);
+		returnBps = bigger;
+
+		bigger = new int[size];
+		System.arraycopy(returnDsts, 0, bigger, 0, returnDsts.length);
+		returnDsts = bigger;
+	}
+
+	/**
+	 * Read the globals and main's frame out of the VM
+	 * @return State that holds the values of the globals and main's frame
+	 */
+	private State finalState() {
+		Program p = program.program;
+		Function main = p.functions().get("main");
+		State state = Interpreter.initialState(p.globals());
+		FrameLayout layout = state.layout(main);
+		state.push(layout.acquire());
+		state.nameFrame(layout.names());
+
+		int slot = 0;
+		for (Declaration d : p.globals().values()) {
+			if (gdefined[slot])
+				state.onion(d.variable().at(slot, true),
+						toValue(iglobals[slot], fglobals[slot], d.type()));
+			slot++;
+		}
+
+		// main's frame is at the bottom of the register files
+		slot = 0;
+		for (Declaration d : main.params().values())
+			copy(state, d.variable().at(slot++, false), d.type());
+		for (Declaration d : main.locals().values())
+			copy(state, d.variable().at(slot++, false), d.type());
+
+		return state;
+	}
+
+	/**
+	 * Copy the value of one of main's variables into a state, if it's defined
+	 * @param state State to copy into
+	 * @param v Variable in main's frame
+	 * @param t Type of variable
+	 */
+	private void copy(State state, Variable v, Type t) {
+		if (dregs[v.slot()])
+			state.onion(v, toValue(iregs[v.slot()], fregs[v.slot()], t));
+	}
+
+	/**
+	 * @param i Contents of int register
+	 * @param f Contents of float register
+	 * @param t Type of value
+	 * @return Value of the register that holds the type
+	 */
+	private static Value toValue(int i, float f, Type t) {
+		if (t == Type.INT)
+			return IntValue.of(i);
+		if (t == Type.FLOAT)
+			return FloatValue.of(f);
+		if (t == Type.BOOL)
+			return BoolValue.of(i != 0);
+		if (t == Type.CHAR)
+			return CharValue.of((char) i);
+		throw new IllegalArgumentException("should never reach here");
+	}
+}
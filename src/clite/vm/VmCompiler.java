@@ -0,0 +1,593 @@
+package clite.vm;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import clite.interpreter.Resolver;
+import clite.syntax.Operator;
+import clite.syntax.Program;
+import clite.syntax.Type;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.expression.Variable;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Skip;
+import clite.syntax.statement.Statement;
+import clite.syntax.value.BoolValue;
+import clite.syntax.value.CharValue;
+import clite.syntax.value.FloatValue;
+import clite.syntax.value.IntValue;
+import clite.syntax.value.Value;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeMap;
+
+
+/**
+ * Compiles a program into code for the register VM.
+ *
+ * A function's parameters and locals live in the registers numbered by their slots,
+ * and temporaries are allocated above them like a stack. Arguments to a call are put
+ * in consecutive temporaries, which become the first registers of the callee's frame.
+ *
+ * Every register and global has a flag that says whether or not it's defined, so
+ * undefined values behave the same way they do in the interpreter. Every instruction
+ * that writes a register sets its flag: moves, global loads and returns copy it along
+ * with the value, and everything that works a value out marks it defined. So copying
+ * a variable or the result of a call copies whether or not it's defined, with no
+ * extra instructions.
+ *
+ * Calling compile on a program assumes that the given program
+ * has already been through TypeTransformer.transform() and Resolver.resolve()
+ */
+public class VmCompiler {
+	/**
+	 * A position in the code that can be jumped to
+	 */
+	private static class Label {
+		/** Offset of label (-1 until placed) */
+		int offset = -1;
+
+		/** Offsets of the operands that need to be patched to point at this label */
+		ArrayList<Integer> fixups = new ArrayList<Integer>();
+	}
+
+	/** Program being compiled */
+	private Program program;
+
+	/** Code generated so far */
+	private int[] code = new int[256];
+
+	/** Length of code generated so far */
+	private int length = 0;
+
+	/** Index of each function in the function table */
+	private HashMap<String, Integer> indices = new HashMap<String, Integer>();
+
+	/** Types of all variables visible in the current function */
+	private TypeMap tm;
+
+	/** Types of the globals, which every function's type map reads through to */
+	private final TypeMap globalTypes;
+
+	/** Number of variables in the current function (temporaries come after them) */
+	private int vars;
+
+	/** Next free temporary register */
+	private int top;
+
+	/** Highest register used by the current function, plus one */
+	private int maxRegisters;
+
+	/**
+	 * Compile a program for the register VM
+	 * @param p Program to compile
+	 * @return Compiled program
+	 */
+	public static VmProgram compile(Program p) {
+		StaticTypeCheck.check(p.functions().containsKey("main"), "Error! Main function not found!");
+		return new VmCompiler(p).generate();
+	}
+
+	/**
+	 * @param p Program to compile
+	 */
+	private VmCompiler(Program p) {
+		this.program = p;
+		this.globalTypes = StaticTypeCheck.typing(p.globals());
+		int i = 0;
+		for (Function f : p.functions().values())
+			indices.put(f.id(), i++);
+	}
+
+	/**
+	 * @return Compiled program
+	 */
+	private VmProgram generate() {
+		VmFunction[] functions = new VmFunction[indices.size()];
+		int i = 0;
+		for (Function f : program.functions().values())
+			functions[i++] = function(f);
+
+		int[] trimmed = new int[length];
+		System.arraycopy(code, 0, trimmed, 0, length);
+		return new VmProgram(program, trimmed, functions, indices.get("main"));
+	}
+
+	/**
+	 * Compile a function
+	 * @param f Function to compile
+	 * @return Compiled function
+	 */
+	private VmFunction function(Function f) {
+		int entry = length;
+
+		tm = StaticTypeCheck.typing(f, globalTypes);
+
+		vars = Resolver.frameSize(f);
+		top = vars;
+		maxRegisters = vars;
+
+		Block body = f.body();
+		for (int i = 0; i < body.size(); i++)
+			statement(body.member(i), f);
+
+		// falling off the end of the function (only allowed for main)
+		emit(f.type() == Type.VOID ? Opcode.RET : Opcode.NORET);
+
+		return new VmFunction(f.id(), entry, f.params().size(), vars, maxRegisters);
+	}
+
+	/**
+	 * Compile a statement
+	 * @param s Statement to compile
+	 * @param f Function the statement is in
+	 */
+	private void statement(Statement s, Function f) {
+		if (s instanceof Skip)
+			return;
+
+		if (s instanceof Assignment) {
+			assignment((Assignment) s);
+			return;
+		}
+
+		if (s instanceof Conditional) {
+			Conditional c = (Conditional) s;
+			Label elseBranch = new Label();
+			Label end = new Label();
+
+			branch(c.test(), false, elseBranch);
+			statement(c.thenBranch(), f);
+			emit(Opcode.JMP);
+			jumpTo(end);
+			mark(elseBranch);
+			statement(c.elseBranch(), f);
+			mark(end);
+			return;
+		}
+
+		if (s instanceof Loop) {
+			Loop l = (Loop) s;
+			Label body = new Label();
+			Label test = new Label();
+
+			// the test goes after the body, so each time around the loop only takes one jump
+			emit(Opcode.JMP);
+			jumpTo(test);
+			mark(body);
+			statement(l.body(), f);
+			mark(test);
+			branch(l.test(), true, body);
+			return;
+		}
+
+		if (s instanceof Block) {
+			Block b = (Block) s;
+			for (int i = 0; i < b.size(); i++)
+				statement(b.member(i), f);
+			return;
+		}
+
+		if (s instanceof Call) {
+			// the result is thrown away
+			call((Call) s, -1);
+			return;
+		}
+
+		if (s instanceof Return) {
+			Expression result = ((Return) s).result();
+			int r = expression(result);
+			release(r);
+			emit(f.type() == Type.FLOAT ? Opcode.FRET : Opcode.IRET, r);
+			return;
+		}
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Compile an assignment
+	 * @param a Assignment to compile
+	 */
+	private void assignment(Assignment a) {
+		Variable target = a.target();
+		boolean isFloat = tm.get(target) == Type.FLOAT;
+
+		if (target.isGlobal()) {
+			int r = expression(a.source());
+			release(r);
+			emit(isFloat ? Opcode.GFSTORE : Opcode.GISTORE, target.slot(), r);
+		} else
+			expressionInto(a.source(), target.slot());
+	}
+
+	/** @return A new temporary register */
+	private int temp() {
+		int r = top++;
+		if (top > maxRegisters)
+			maxRegisters = top;
+		return r;
+	}
+
+	/**
+	 * Free a register if it's the most recently allocated temporary
+	 * @param r Register that's no longer needed
+	 */
+	private void release(int r) {
+		if (r == top - 1 && r >= vars)
+			top--;
+	}
+
+	/**
+	 * Compile an expression so its value ends up in the given register
+	 * @param e Expression to compile
+	 * @param d Register to put value in
+	 */
+	private void expressionInto(Expression e, int d) {
+		int saved = top;
+		int r = expression(e, d);
+		if (r != d)
+			emit(typeOf(e) == Type.FLOAT ? Opcode.FMOV : Opcode.IMOV, d, r);
+		top = saved;
+	}
+
+	/**
+	 * Compile an expression into whichever register is convenient
+	 * @param e Expression to compile
+	 * @return Register holding the value
+	 */
+	private int expression(Expression e) {
+		return expression(e, -1);
+	}
+
+	/**
+	 * Compile an expression
+	 * @param e Expression to compile
+	 * @param d Register the value should go in, or -1 to use a temporary.
+	 *          Variables that live in registers are used in place, so callers must check which register is returned.
+	 * @return Register holding the value
+	 */
+	private int expression(Expression e, int d) {
+		if (e instanceof Variable) {
+			Variable v = (Variable) e;
+			if (!v.isGlobal())
+				return v.slot();
+			int r = d >= 0 ? d : temp();
+			emit(tm.get(v) == Type.FLOAT ? Opcode.GFLOAD : Opcode.GILOAD, r, v.slot());
+			return r;
+		}
+
+		if (e instanceof Value) {
+			Value v = (Value) e;
+			int r = d >= 0 ? d : temp();
+			if (v instanceof IntValue)
+				emit(Opcode.ICONST, r, v.intValue());
+			else if (v instanceof FloatValue)
+				emit(Opcode.FCONST, r, Float.floatToRawIntBits(v.floatValue()));
+			else if (v instanceof BoolValue)
+				emit(Opcode.ICONST, r, v.boolValue() ? 1 : 0);
+			else if (v instanceof CharValue)
+				emit(Opcode.ICONST, r, v.charValue());
+			else
+				throw new IllegalArgumentException("should never reach here");
+			return r;
+		}
+
+		if (e instanceof Binary)
+			return binary((Binary) e, d);
+
+		if (e instanceof Unary)
+			return unary((Unary) e, d);
+
+		if (e instanceof Call) {
+			int r = d >= 0 ? d : temp();
+			call((Call) e, r);
+			return r;
+		}
+
+		throw new IllegalArgumentException("should never reach here");
+	}
+
+	/**
+	 * Compile a function call
+	 * @param c Call to compile
+	 * @param d Register to put result in, or -1 if the result isn't used
+	 */
+	private void call(Call c, int d) {
+		int saved = top;
+		int base = top;
+		int i;
+		for (i = 0; i < c.argumentCount(); i++) {
+			// each argument goes in the next register, above anything the earlier ones needed
+			top = base + i;
+			temp();
+			expressionInto(c.argument(i), base + i);
+		}
+		top = saved;
+
+		// make sure the callee's frame doesn't overlap anything that's still in use
+		if (base + i > maxRegisters)
+			maxRegisters = base + i;
+		emit(Opcode.CALL, indices.get(c.identifier().toString()), base, d);
+	}
+
+	/**
+	 * Compile a unary operation
+	 * @param u Unary to compile
+	 * @param d Register the value should go in, or -1 to use a temporary
+	 * @return Register holding the value
+	 */
+	private int unary(Unary u, int d) {
+		Operator op = u.operator();
+		Type t = typeOf(u.term());
+		int saved = top;
+		int a = expression(u.term());
+		top = saved;
+		int r = d >= 0 ? d : temp();
+
+		if (op.generic() == Operator.NOT)
+			emit(Opcode.NOT, r, a);
+		else if (op.generic() == Operator.NEG)
+			emit(t == Type.FLOAT ? Opcode.FNEG : Opcode.INEG, r, a);
+		else if (op.generic() == Operator.FLOAT)
+			emit(Opcode.I2F, r, a);
+		else if (op.generic() == Operator.INT) {
+			// chars are already ints, but the move copies an undefined char's flag, and the result is always defined
+			if (t == Type.FLOAT)
+				emit(Opcode.F2I, r, a);
+			else {
+				emit(Opcode.IMOV, r, a);
+				emit(Opcode.DEFINE, r);
+			}
+		}
+		else if (op.generic() == Operator.CHAR)
+			emit(Opcode.I2C, r, a);
+		else
+			throw new IllegalArgumentException("should never reach here");
+		return r;
+	}
+
+	/**
+	 * Compile a binary operation.
+	 * The right-hand side of && and || is only evaluated if the left-hand side doesn't decide the result.
+	 * @param b Binary to compile
+	 * @param d Register the value should go in, or -1 to use a temporary
+	 * @return Register holding the value
+	 */
+	private int binary(Binary b, int d) {
+		Operator op = b.operator();
+		if (op.isBooleanOp()) {
+			Label no = new Label();
+			Label end = new Label();
+			int saved = top;
+			branch(b, false, no);
+			top = saved;
+
+			// nothing is written to the result until both sides have been read
+			int r = d >= 0 ? d : temp();
+			emit(Opcode.ICONST, r, 1);
+			emit(Opcode.JMP);
+			jumpTo(end);
+			mark(no);
+			emit(Opcode.ICONST, r, 0);
+			mark(end);
+			return r;
+		}
+
+		Type t1 = typeOf(b.term1());
+		Type t2 = typeOf(b.term2());
+
+		// mixing an int and a float turns the int into a float
+		boolean isFloat = t1 == Type.FLOAT || t2 == Type.FLOAT;
+		int saved = top;
+		int r1 = operand(b.term1(), t1, isFloat);
+		int r2 = operand(b.term2(), t2, isFloat);
+		top = saved;
+		int r = d >= 0 ? d : temp();
+
+		int opcode;
+		if (op.isArithmeticOp()) {
+			if (op.generic() == Operator.PLUS)
+				opcode = isFloat ? Opcode.FADD : Opcode.IADD;
+			else if (op.generic() == Operator.MINUS)
+				opcode = isFloat ? Opcode.FSUB : Opcode.ISUB;
+			else if (op.generic() == Operator.TIMES)
+				opcode = isFloat ? Opcode.FMUL : Opcode.IMUL;
+			else
+				opcode = isFloat ? Opcode.FDIV : Opcode.IDIV;
+		} else if (op.isRelationalOp()) {
+			if (op.generic() == Operator.LT)
+				opcode = isFloat ? Opcode.FLT : Opcode.ILT;
+			else if (op.generic() == Operator.LE)
+				opcode = isFloat ? Opcode.FLE : Opcode.ILE;
+			else if (op.generic() == Operator.GT)
+				opcode = isFloat ? Opcode.FGT : Opcode.IGT;
+			else if (op.generic() == Operator.GE)
+				opcode = isFloat ? Opcode.FGE : Opcode.IGE;
+			else if (op.generic() == Operator.EQ)
+				opcode = isFloat ? Opcode.FEQ : Opcode.IEQ;
+			else
+				opcode = isFloat ? Opcode.FNE : Opcode.INE;
+		} else
+			throw new IllegalArgumentException("should never reach here");
+
+		emit(opcode, r, r1, r2);
+		return r;
+	}
+
+	/**
+	 * Compile a test that jumps instead of putting its result in a register.
+	 * && and || jump as soon as one side decides the result, and compares jump on their own.
+	 * @param e Test to compile
+	 * @param when Value of the test that should take the jump
+	 * @param target Label to jump to
+	 */
+	private void branch(Expression e, boolean when, Label target) {
+		if (e instanceof Unary && ((Unary) e).operator().isNotOp()) {
+			branch(((Unary) e).term(), !when, target);
+			return;
+		}
+
+		if (e instanceof Binary) {
+			Binary b = (Binary) e;
+			Operator op = b.operator();
+
+			if (op.isBooleanOp()) {
+				// && takes a true jump only if both sides are true, and || takes a false jump only if both are false
+				if ((op.generic() == Operator.AND) == when) {
+					Label skip = new Label();
+					branch(b.term1(), !when, skip);
+					branch(b.term2(), when, target);
+					mark(skip);
+				} else {
+					branch(b.term1(), when, target);
+					branch(b.term2(), when, target);
+				}
+				return;
+			}
+
+			Type t1 = typeOf(b.term1());
+			Type t2 = typeOf(b.term2());
+			boolean isFloat = t1 == Type.FLOAT || t2 == Type.FLOAT;
+
+			// !(a < b) isn't a >= b when one side is NaN, so false float jumps use the compare below
+			if (op.isRelationalOp() && (when || !isFloat)) {
+				int saved = top;
+				int r1 = operand(b.term1(), t1, isFloat);
+				int r2 = operand(b.term2(), t2, isFloat);
+				top = saved;
+				emit(compareJump(when ? op.generic() : negate(op.generic()), isFloat), r1, r2);
+				jumpTo(target);
+				return;
+			}
+		}
+
+		int r = expression(e);
+		release(r);
+		emit(when ? Opcode.JNZ : Opcode.JZ, r);
+		jumpTo(target);
+	}
+
+	/**
+	 * @param op Generic relational operator
+	 * @param isFloat Whether or not the operands are floats
+	 * @return Opcode that jumps if the comparison is true
+	 */
+	private static int compareJump(Operator op, boolean isFloat) {
+		switch (op) {
+		case LT: return isFloat ? Opcode.JFLT : Opcode.JILT;
+		case LE: return isFloat ? Opcode.JFLE : Opcode.JILE;
+		case GT: return isFloat ? Opcode.JFGT : Opcode.JIGT;
+		case GE: return isFloat ? Opcode.JFGE : Opcode.JIGE;
+		case EQ: return isFloat ? Opcode.JFEQ : Opcode.JIEQ;
+		case NE: return isFloat ? Opcode.JFNE : Opcode.JINE;
+		default:
+			throw new IllegalArgumentException("should never reach here");
+		}
+	}
+
+	/**
+	 * @param op Generic relational operator
+	 * @return Operator that's true whenever the given one is false (for ints)
+	 */
+	private static Operator negate(Operator op) {
+		switch (op) {
+		case LT: return Operator.GE;
+		case LE: return Operator.GT;
+		case GT: return Operator.LE;
+		case GE: return Operator.LT;
+		case EQ: return Operator.NE;
+		case NE: return Operator.EQ;
+		default:
+			throw new IllegalArgumentException("should never reach here");
+		}
+	}
+
+	/**
+	 * Compile one operand of a binary operation
+	 * @param e Operand to compile
+	 * @param t Type of operand
+	 * @param isFloat Whether or not the operation is done on floats
+	 * @return Register holding the operand
+	 */
+	private int operand(Expression e, Type t, boolean isFloat) {
+		int r = expression(e);
+		if (isFloat && t == Type.INT) {
+			int f = temp();
+			emit(Opcode.I2F, f, r);
+			return f;
+		}
+		return r;
+	}
+
+	/**
+	 * @param e Expression to get type of
+	 * @return Type of expression
+	 */
+	private Type typeOf(Expression e) {
+		return StaticTypeCheck.typeOf(e, program.functions(), tm);
+	}
+
+	/**
+	 * Add an instruction to the code
+	 * @param instruction Opcode followed by operands
+	 */
+	private void emit(int... instruction) {
+		while (length + instruction.length > code.length) {
+			int[] bigger = new int[code.length * 2];
+			System.arraycopy(code, 0, bigger, 0, length);
+			code = bigger;
+		}
+		for (int i : instruction)
+			code[length++] = i;
+	}
+
+	/**
+	 * Add a jump target operand that points at a label
+	 * @param l Label to jump to
+	 */
+	private void jumpTo(Label l) {
+		if (l.offset >= 0)
+			emit(l.offset);
+		else {
+			l.fixups.add(length);
+			emit(-1);
+		}
+	}
+
+	/**
+	 * Place a label at the current position in the code
+	 * @param l Label to place
+	 */
+	private void mark(Label l) {
+		l.offset = length;
+		for (int fixup : l.fixups)
+			code[fixup] = length;
+	}
+}
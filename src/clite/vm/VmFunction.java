@@ -0,0 +1,37 @@
+package clite.vm;
+
+
+/**
+ * A function that's been compiled for the register VM
+ */
+public class VmFunction {
+	/** Name of function */
+	public final String name;
+
+	/** Offset of the function's first instruction in the code array */
+	public final int entry;
+
+	/** Number of parameters (they take up the first registers of the frame) */
+	public final int paramCount;
+
+	/** Number of parameters and locals (locals come right after parameters) */
+	public final int varCount;
+
+	/** Number of registers in the function's frame (variables and temporaries) */
+	public final int registers;
+
+	/**
+	 * @param name Name of function
+	 * @param entry Offset of function's first instruction
+	 * @param paramCount Number of parameters
+	 * @param varCount Number of parameters and locals
+	 * @param registers Number of registers in the frame
+	 */
+	public VmFunction(String name, int entry, int paramCount, int varCount, int registers) {
+		this.name = name;
+		this.entry = entry;
+		this.paramCount = paramCount;
+		this.varCount = varCount;
+		this.registers = registers;
+	}
+}
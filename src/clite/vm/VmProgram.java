@@ -0,0 +1,53 @@
+package clite.vm;
+
+import clite.syntax.Program;
+
+
+/**
+ * A program that's been compiled for the register VM
+ */
+public class VmProgram {
+	/** Program that was compiled */
+	public final Program program;
+
+	/** Instructions of every function, one after another */
+	public final int[] code;
+
+	/** Every function, indexed by the numbers used in CALL instructions */
+	public final VmFunction[] functions;
+
+	/** Index of main in functions */
+	public final int main;
+
+	/**
+	 * @param program Program that was compiled
+	 * @param code Instructions of every function
+	 * @param functions Compiled functions
+	 * @param main Index of main in functions
+	 */
+	public VmProgram(Program program, int[] code, VmFunction[] functions, int main) {
+		this.program = program;
+		this.code = code;
+		this.functions = functions;
+		this.main = main;
+	}
+
+	/**
+	 * Print out the code, one instruction per line
+	 */
+	public void disassemble() {
+		for (VmFunction f : functions) {
+			System.out.println(f.name + ": (" + f.paramCount + " params, " + f.varCount + " vars, " + f.registers + " registers)");
+			int pc = f.entry;
+			int op;
+			do {
+				op = code[pc];
+				StringBuilder line = new StringBuilder("\t" + pc + "\t" + Opcode.name(op));
+				for (int i = 1; i <= Opcode.operands(op); i++)
+					line.append(' ').append(code[pc + i]);
+				System.out.println(line);
+				pc += 1 + Opcode.operands(op);
+			} while (op != Opcode.RET && op != Opcode.NORET);
+		}
+	}
+}
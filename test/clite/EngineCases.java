@@ -0,0 +1,159 @@
+package clite;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import clite.interpreter.Interpreter;
+import clite.interpreter.Resolver;
+import clite.interpreter.State;
+import clite.parser.DfaScanner;
+import clite.parser.Parser;
+import clite.syntax.Program;
+import clite.typing.TypeCheckTransformer;
+
+/**
+ * Small programs that pick at the corners of running a program, which each
+ * engine's test runs through that engine and checks against -interpret.
+ * The engine has to end in the same final state as the interpreter, or throw
+ * the same exception.
+ */
+public class EngineCases {
+	/** What each case checks, followed by its source */
+	public static final String[][] CASES = {
+		{ "call statements on float and bool functions",
+			"int g;\nbool seen;\n\n"
+			+ "float half(int x) {\n\tg = x;\n\treturn float(x) / 2.0;\n}\n\n"
+			+ "bool mark(bool b) {\n\tseen = b;\n\treturn !b;\n}\n\n"
+			+ "int main() {\n\tint a;\n\thalf(4);\n\tmark(true);\n\ta = g;\n}\n" },
+
+		{ "undefined values passed as arguments",
+			"int g;\n\n"
+			+ "int id(int x) {\n\treturn x;\n}\n\n"
+			+ "void setg(int v) {\n\tg = v;\n}\n\n"
+			+ "int main() {\n\tint a, b, c;\n\tc = id(b);\n\tsetg(a);\n}\n" },
+
+		{ "undefined values of every type passed through nested calls",
+			"float f;\nbool b;\nchar c;\n\n"
+			+ "float fid(float x) {\n\treturn x;\n}\n\n"
+			+ "bool bid(bool x) {\n\treturn x;\n}\n\n"
+			+ "char cid(char x) {\n\treturn x;\n}\n\n"
+			+ "int main() {\n\tfloat uf;\n\tbool ub;\n\tchar uc;\n"
+			+ "\tf = fid(fid(uf));\n\tb = bid(bid(ub));\n\tc = cid(cid(uc));\n}\n" },
+
+		{ "undefined locals returned from a function",
+			"int g;\n\n"
+			+ "float fresh() {\n\tfloat y;\n\treturn y;\n}\n\n"
+			+ "int main() {\n\tfloat e;\n\te = fresh();\n\tg = 1;\n}\n" },
+
+		{ "undefined values used in an operation",
+			"int g;\n\n"
+			+ "int id(int x) {\n\treturn x;\n}\n\n"
+			+ "int main() {\n\tint a, b, c;\n\tb = id(a) + 0;\n\tc = -id(a);\n\tg = id(b);\n}\n" },
+
+		{ "a defined argument after an undefined one, then the other way around",
+			"int g;\nint h;\n\n"
+			+ "int second(int x, int y) {\n\treturn y;\n}\n\n"
+			+ "int main() {\n\tint u;\n\tg = second(u, 3);\n\th = second(3, u);\n}\n" },
+
+		{ "a local that's only defined on some calls",
+			"int a;\nint b;\n\n"
+			+ "int maybe(int n) {\n\tint x;\n\tif (n > 0)\n\t\tx = n;\n\treturn x;\n}\n\n"
+			+ "int main() {\n\ta = maybe(1);\n\tb = maybe(0);\n}\n" },
+
+		{ "recursion that passes undefined values down",
+			"int g;\n\n"
+			+ "int down(int n, int carry) {\n\tif (n > 0)\n\t\tcarry = down(n - 1, carry);\n\treturn carry;\n}\n\n"
+			+ "int main() {\n\tint u, r;\n\tr = down(5, u);\n\tg = down(3, 7);\n}\n" },
+
+		{ "main calling itself as a statement",
+			"int g;\n\n"
+			+ "int main() {\n\tint a;\n\tg = g + 1;\n\ta = g;\n\tif (g < 3)\n\t\tmain();\n}\n" },
+
+		{ "main's result used after it falls off its end",
+			"int g;\n\n"
+			+ "int main() {\n\tint a;\n\tg = g + 1;\n\tif (g < 2)\n\t\ta = main();\n}\n" },
+
+		{ "main returning a value to itself",
+			"int g;\n\n"
+			+ "int main() {\n\tint a;\n\tg = g + 1;\n\tif (g < 3)\n\t\ta = main();\n\treturn g;\n}\n" },
+	};
+
+	/**
+	 * One way of running a program
+	 */
+	public static abstract class Engine {
+		/**
+		 * @param p Program to run (already type checked, transformed and resolved)
+		 * @return Final state of the program
+		 */
+		public abstract State run(Program p);
+	}
+
+	/**
+	 * Run every case through an engine and through -interpret, and print the ones that don't match
+	 * @param name Name of engine, for the messages
+	 * @param engine Engine to check
+	 * @return Number of cases that don't match
+	 */
+	public static int check(String name, Engine engine) {
+		int failures = 0;
+		for (String[] c : CASES)
+			if (!same(name, engine, c[0], c[1]))
+				failures++;
+		return failures;
+	}
+
+	/**
+	 * Run a program through an engine and through -interpret, and print it if they don't match
+	 * @param name Name of engine, for the messages
+	 * @param engine Engine to check
+	 * @param description What the program checks
+	 * @param source Source of program
+	 * @return Whether or not they match
+	 */
+	public static boolean same(String name, Engine engine, String description, String source) {
+		String expected = outcome(new Engine() {
+			public State run(Program p) {
+				return Interpreter.interpret(p);
+			}
+		}, source);
+		String actual = outcome(engine, source);
+		if (expected.equals(actual))
+			return true;
+		System.out.println(name + " doesn't match -interpret on " + description + ":\n" + source);
+		System.out.println("-interpret:\n" + expected);
+		System.out.println(name + ":\n" + actual);
+		return false;
+	}
+
+	/**
+	 * @param engine Engine to run with
+	 * @param source Source of program
+	 * @return What the final state's display() prints, or the exception the engine threw
+	 */
+	public static String outcome(Engine engine, String source) {
+		Program p = Resolver.resolve(TypeCheckTransformer.checked(new Parser(new DfaScanner(source.getBytes())).program()));
+		State s;
+		try {
+			s = engine.run(p);
+		} catch (RuntimeException e) {
+			return e.toString();
+		}
+		return state(s);
+	}
+
+	/**
+	 * @param s Final state of a program
+	 * @return What the state's display() prints
+	 */
+	public static String state(State s) {
+		PrintStream out = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			s.display();
+		} finally {
+			System.setOut(out);
+		}
+		return bytes.toString();
+	}
+}
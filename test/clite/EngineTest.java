@@ -0,0 +1,220 @@
+package clite;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import clite.cache.ProgramCache;
+import clite.closure.ClosureInterpreter;
+import clite.compiler.Compiler;
+import clite.interpreter.Interpreter;
+import clite.interpreter.LazyFunctions;
+import clite.interpreter.Resolver;
+import clite.interpreter.State;
+import clite.nodes.NodeInterpreter;
+import clite.parser.BufferLexer;
+import clite.parser.DfaScanner;
+import clite.parser.Lexer;
+import clite.parser.Parser;
+import clite.parser.TokenStream;
+import clite.syntax.Program;
+import clite.typing.StaticTypeCheck;
+import clite.typing.TypeCheckTransformer;
+import clite.typing.TypeMap;
+import clite.vm.VirtualMachine;
+
+/**
+ * Checks that every engine and mode Runner has ends with the same final state
+ * as the original tree-walking interpreter (-interpret) on every program in
+ * programs/ and programs/f/. Each mode is run the way Runner runs it when it's
+ * given just that flag. Programs with a type error are skipped, since no engine
+ * gets to run them, and bigloop.cpp is left out, since it's there to time loops
+ * and takes seconds on the slower engines.
+ *
+ * Run it from the root of the project.
+ */
+public class EngineTest {
+	/** Every mode that gets checked against -interpret */
+	private static final Mode[] MODES = {
+		new Mode("(default)") {
+			State run(String file) {
+				return ClosureInterpreter.interpret(resolved(new Lexer(file)));
+			}
+		},
+		new Mode("-compile") {
+			State run(String file) {
+				return Compiler.compile(resolved(new Lexer(file))).run();
+			}
+		},
+		new Mode("-vm") {
+			State run(String file) {
+				return VirtualMachine.run(resolved(new Lexer(file)));
+			}
+		},
+		new Mode("-nodes") {
+			State run(String file) {
+				return NodeInterpreter.interpret(resolved(new Lexer(file)));
+			}
+		},
+		new Mode("-mmap") {
+			State run(String file) {
+				return ClosureInterpreter.interpret(resolved(BufferLexer.map(file)));
+			}
+		},
+		new Mode("-dfa") {
+			State run(String file) {
+				return ClosureInterpreter.interpret(resolved(DfaScanner.map(file)));
+			}
+		},
+		new Mode("-deep") {
+			State run(String file) {
+				return ClosureInterpreter.interpret(resolved(new Parser(new Lexer(file), true).program()));
+			}
+		},
+		new Mode("-parallel") {
+			State run(String file) {
+				Program p = Parser.parallel(new Lexer(file), false, ForkJoinPool.commonPool()).program();
+				TypeMap globals = StaticTypeCheck.typing(p.globals());
+				return ClosureInterpreter.interpret(Resolver.resolve(TypeCheckTransformer.checked(p, globals, ForkJoinPool.commonPool())));
+			}
+		},
+		new Mode("-lazy") {
+			State run(String file) {
+				return Interpreter.interpret(LazyFunctions.program(Parser.lazy(new Lexer(file), false)));
+			}
+		},
+		new Mode("-cache") {
+			State run(String file) throws IOException {
+				// store the program in an empty cache, then run what gets loaded back out of it
+				byte[] source = Files.readAllBytes(Paths.get(file));
+				File directory = Files.createTempDirectory("clite-cache").toFile();
+				try {
+					ProgramCache cache = new ProgramCache(directory);
+					cache.store(source, TypeCheckTransformer.checked(new Parser(new Lexer(file)).program()));
+					Program loaded = cache.load(source);
+					if (loaded == null)
+						throw new IllegalStateException("The program didn't come back out of the cache");
+					return ClosureInterpreter.interpret(Resolver.resolve(loaded));
+				} finally {
+					for (File f : directory.listFiles())
+						f.delete();
+					directory.delete();
+				}
+			}
+		},
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 */
+	public static void main(String args[]) {
+		int checks = 0;
+		int failures = 0;
+		int skipped = 0;
+		for (String file : programs()) {
+			String expected;
+			try {
+				expected = state(Interpreter.interpret(resolved(new Lexer(file))));
+			} catch (TypeCheckTransformer.TypeError e) {
+				skipped++;
+				continue;
+			}
+			for (Mode mode : MODES) {
+				String actual;
+				try {
+					actual = state(mode.run(file));
+				} catch (Throwable e) {
+					actual = e.toString();
+				}
+
+				checks++;
+				if (!expected.equals(actual)) {
+					failures++;
+					System.out.println(file + " " + mode.flag + " doesn't match -interpret");
+					System.out.println("-interpret:\n" + expected);
+					System.out.println(mode.flag + ":\n" + actual);
+				}
+			}
+		}
+
+		System.out.println("EngineTest: " + checks + " checks, " + failures + " failures (" + skipped + " programs with type errors skipped)");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * @return Every program to check, in order
+	 */
+	private static ArrayList<String> programs() {
+		ArrayList<String> files = new ArrayList<String>();
+		for (String dir : new String[] { "programs", "programs/f" }) {
+			String[] names = new File(dir).list();
+			Arrays.sort(names);
+			for (String name : names)
+				if (name.endsWith(".cpp") && !name.equals("bigloop.cpp"))
+					files.add(dir + "/" + name);
+		}
+		return files;
+	}
+
+	/**
+	 * Parse, type check, transform and resolve a program the usual way
+	 * @param lexer Lexer over the program
+	 * @return Resolved program
+	 * @throws TypeCheckTransformer.TypeError if the program has a type error
+	 */
+	private static Program resolved(TokenStream lexer) {
+		return resolved(new Parser(lexer).program());
+	}
+
+	/**
+	 * Type check, transform and resolve a program the usual way
+	 * @param p Program as it was parsed
+	 * @return Resolved program
+	 * @throws TypeCheckTransformer.TypeError if the program has a type error
+	 */
+	private static Program resolved(Program p) {
+		return Resolver.resolve(TypeCheckTransformer.checked(p));
+	}
+
+	/**
+	 * @param s Final state of a program
+	 * @return What the state's display() prints
+	 */
+	private static String state(State s) {
+		PrintStream out = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			s.display();
+		} finally {
+			System.setOut(out);
+		}
+		return bytes.toString();
+	}
+
+	/**
+	 * One way of running a program
+	 */
+	private static abstract class Mode {
+		/** Runner flag that picks this mode */
+		final String flag;
+
+		/** @param flag Runner flag that picks this mode */
+		Mode(String flag) {
+			this.flag = flag;
+		}
+
+		/**
+		 * @param file Program to run
+		 * @return Final state of the program
+		 * @throws IOException if the program (or anything the mode writes) can't be read or written
+		 */
+		abstract State run(String file) throws IOException;
+	}
+}
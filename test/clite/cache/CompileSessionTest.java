@@ -0,0 +1,288 @@
+package clite.cache;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import clite.parser.Parser;
+import clite.syntax.Program;
+import clite.syntax.SymbolTable;
+import clite.typing.TypeCheckTransformer;
+
+/**
+ * Checks that a CompileSession gives the same program (or the same error) as
+ * compiling the whole file from scratch, over a sequence of edits.
+ *
+ * The scripted edits change function signatures, add and remove globals, merge
+ * units and split them apart again, and break and fix the file in ways that
+ * the lexer, the parser and the type checker each catch. After that, a few
+ * hundred random edits (from a fixed seed) are made to the last version.
+ */
+public class CompileSessionTest {
+	/** Versions of the file, in the order they're compiled */
+	private static final String[] EDITS = {
+		// start
+		"int total;\n\n"
+		+ "int square(int x) {\n\treturn x * x;\n}\n\n"
+		+ "int twice(int x) {\n\treturn square(x) + square(x);\n}\n\n"
+		+ "int main() {\n\ttotal = twice(3);\n}\n",
+
+		// change a body
+		"int total;\n\n"
+		+ "int square(int x) {\n\treturn x * x * 1;\n}\n\n"
+		+ "int twice(int x) {\n\treturn square(x) + square(x);\n}\n\n"
+		+ "int main() {\n\ttotal = twice(3);\n}\n",
+
+		// change a return type, which breaks a caller that isn't touched
+		"int total;\n\n"
+		+ "float square(int x) {\n\treturn float(x * x);\n}\n\n"
+		+ "int twice(int x) {\n\treturn square(x) + square(x);\n}\n\n"
+		+ "int main() {\n\ttotal = twice(3);\n}\n",
+
+		// fix the caller
+		"int total;\n\n"
+		+ "float square(int x) {\n\treturn float(x * x);\n}\n\n"
+		+ "int twice(int x) {\n\treturn int(square(x) + square(x));\n}\n\n"
+		+ "int main() {\n\ttotal = twice(3);\n}\n",
+
+		// change a parameter type, which breaks a call that isn't touched
+		"int total;\n\n"
+		+ "float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "int twice(int x) {\n\treturn int(square(x) + square(x));\n}\n\n"
+		+ "int main() {\n\ttotal = twice(3);\n}\n",
+
+		// fix the call
+		"int total;\n\n"
+		+ "float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "int twice(int x) {\n\treturn int(square(float(x)) + square(float(x)));\n}\n\n"
+		+ "int main() {\n\ttotal = twice(3);\n}\n",
+
+		// add a global between two functions, and use it
+		"int total;\n\n"
+		+ "float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tscale = 1.5;\n\ttotal = twice(3);\n}\n",
+
+		// remove a global that's still used
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tscale = 1.5;\n\ttotal = twice(3);\n}\n",
+
+		// declare it as a local instead
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ttotal = twice(3);\n}\n",
+
+		// change a global's type
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "int scale;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ttotal = twice(3);\n}\n",
+
+		// and back, with two more globals
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// merge two units into one
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a, b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// merge a global and a function into one unit
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a, b, twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// split them apart again
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// lose a closing brace, so two functions run together
+		"float square(float x) {\n\treturn x * x;\n\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// a character the lexer doesn't know
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) # square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// define a function twice
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "float square(float y) {\n\treturn y;\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// rename a function that's still called
+		"float sq(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// rename main
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int start() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+
+		// fix everything
+		"float square(float x) {\n\treturn x * x;\n}\n\n"
+		+ "float scale;\n\nint a;\nint b;\n\n"
+		+ "int twice(int x) {\n\treturn int(scale * (square(float(x)) + square(float(x))));\n}\n\n"
+		+ "int main() {\n\tint total;\n\tscale = 1.5;\n\ta = 1;\n\tb = 2;\n\ttotal = twice(a + b);\n}\n",
+	};
+
+	/** Number of random edits made after the scripted ones */
+	private static final int RANDOM_EDITS = 500;
+
+	/** Bits of source the random edits put in */
+	private static final String[] SNIPPETS = {
+		" ", "\n", "//", "}", "{", ";", ",", "x", "1", "'", "/", "int", "float", "main",
+		"int q;", "float y;", "int g() {\n\treturn 1;\n}\n", "void h() { }\n"
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 */
+	public static void main(String args[]) {
+		CompileSession session = new CompileSession();
+		int failures = 0;
+		for (int i = 0; i < EDITS.length; i++)
+			if (!same(session, EDITS[i].getBytes(), "edit " + i))
+				failures++;
+
+		Random random = new Random(25);
+		byte[] source = EDITS[EDITS.length - 1].getBytes();
+		for (int i = 0; i < RANDOM_EDITS; i++) {
+			source = edit(source, random);
+			if (!same(session, source, "random edit " + i))
+				failures++;
+		}
+
+		System.out.println("CompileSessionTest: " + (EDITS.length + RANDOM_EDITS) + " edits, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Compile a version of the file with the session and from scratch, and compare them
+	 * @param session Session that has compiled the versions before this one
+	 * @param source Version to compile
+	 * @param name What to call the version if the two don't match
+	 * @return Whether or not they match
+	 */
+	private static boolean same(CompileSession session, byte[] source, String name) {
+		String expected;
+		try {
+			expected = shown(TypeCheckTransformer.checked(Parser.parse(source, new SymbolTable())));
+		} catch (RuntimeException e) {
+			expected = error(e);
+		}
+
+		String actual;
+		try {
+			actual = shown(session.compile(source));
+		} catch (RuntimeException e) {
+			actual = error(e);
+		}
+
+		if (expected.equals(actual))
+			return true;
+		System.out.println("Mismatch after " + name + ":\n" + new String(source));
+		System.out.println("Full compile:\n" + expected);
+		System.out.println("CompileSession:\n" + actual);
+		return false;
+	}
+
+	/**
+	 * @param e Exception thrown by a compile
+	 * @return Description of the error (only parse and type errors are expected)
+	 */
+	private static String error(RuntimeException e) {
+		if (e instanceof Parser.ParseError || e instanceof TypeCheckTransformer.TypeError)
+			return e.getClass().getSimpleName() + ": " + e.getMessage();
+		StringBuilder trace = new StringBuilder(e.toString());
+		for (StackTraceElement frame : e.getStackTrace())
+			trace.append("\n\tat ").append(frame);
+		return trace.toString();
+	}
+
+	/**
+	 * @param p Program
+	 * @return What the program's display() prints
+	 */
+	private static String shown(Program p) {
+		PrintStream out = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			p.display();
+		} finally {
+			System.setOut(out);
+		}
+		return bytes.toString();
+	}
+
+	/**
+	 * Make a random edit the way someone typing might
+	 * @param source Source before the edit
+	 * @param random Where to get random numbers
+	 * @return Source after the edit
+	 */
+	private static byte[] edit(byte[] source, Random random) {
+		int at = random.nextInt(source.length + 1);
+		switch (random.nextInt(4)) {
+		case 0: {
+			// delete a few characters
+			int length = Math.min(random.nextInt(12), source.length - at);
+			return splice(source, at, length, new byte[0]);
+		}
+		case 1: {
+			// paste a copy of some other part of the file
+			int from = random.nextInt(source.length + 1);
+			int length = Math.min(random.nextInt(200), source.length - from);
+			byte[] copy = new byte[length];
+			System.arraycopy(source, from, copy, 0, length);
+			return splice(source, at, 0, copy);
+		}
+		case 2: {
+			// change a digit
+			byte[] changed = source.clone();
+			for (int i = at; i < changed.length; i++)
+				if (changed[i] >= '0' && changed[i] <= '9') {
+					changed[i] = (byte) ('0' + random.nextInt(10));
+					break;
+				}
+			return changed;
+		}
+		default:
+			// type something
+			return splice(source, at, 0, SNIPPETS[random.nextInt(SNIPPETS.length)].getBytes());
+		}
+	}
+
+	/**
+	 * @param source Bytes
+	 * @param at Where to make the change
+	 * @param length Number of bytes to take out
+	 * @param insert Bytes to put in their place
+	 * @return Changed copy of the bytes
+	 */
+	private static byte[] splice(byte[] source, int at, int length, byte[] insert) {
+		byte[] out = new byte[source.length - length + insert.length];
+		System.arraycopy(source, 0, out, 0, at);
+		System.arraycopy(insert, 0, out, at, insert.length);
+		System.arraycopy(source, at + length, out, at + insert.length, source.length - at - length);
+		return out;
+	}
+}
@@ -0,0 +1,199 @@
+package clite.cache;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import clite.EngineCases;
+import clite.closure.ClosureInterpreter;
+import clite.interpreter.Resolver;
+import clite.interpreter.State;
+import clite.parser.ParserCases;
+import clite.syntax.Program;
+import clite.typing.TypeCheckTransformer;
+
+/**
+ * Checks that a program comes back out of a ProgramCache the same as it went in,
+ * that a changed source misses, and that a cache file that's been cut short or
+ * scribbled on is a miss rather than an exception or a different program.
+ *
+ * Run it from the root of the project.
+ */
+public class ProgramCacheTest {
+	/** Number of times a byte of a cache file is scribbled on */
+	private static final int SCRIBBLES = 2000;
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 * @throws IOException if a sample program or the cache directory can't be read or written
+	 */
+	public static void main(String args[]) throws IOException {
+		int checks = 0;
+		int failures = 0;
+		File directory = Files.createTempDirectory("clite-cache").toFile();
+		try {
+			ProgramCache cache = new ProgramCache(directory);
+
+			for (String file : ParserCases.programs()) {
+				checks++;
+				if (!roundTrip(cache, file, Files.readAllBytes(Paths.get(file))))
+					failures++;
+			}
+			for (String[] c : EngineCases.CASES) {
+				checks++;
+				if (!roundTrip(cache, c[0], c[1].getBytes()))
+					failures++;
+			}
+			checks++;
+			if (!roundTrip(cache, "300 generated functions", ParserCases.generate(300)))
+				failures++;
+
+			// a source that's had one byte changed is a different file
+			byte[] source = ParserCases.generate(20);
+			byte[] changed = source.clone();
+			changed[changed.length - 4] = (byte) '8';
+			checks += 2;
+			if (cache.load(changed) != null) {
+				failures++;
+				System.out.println("A source with one byte changed was found in the cache");
+			}
+			if (new ProgramCache(new File(directory, "missing")).load(source) != null) {
+				failures++;
+				System.out.println("A source was found in a cache directory that doesn't exist");
+			}
+
+			checks++;
+			if (!corrupt(directory, source))
+				failures++;
+		} finally {
+			for (File f : directory.listFiles())
+				f.delete();
+			directory.delete();
+		}
+
+		System.out.println("ProgramCacheTest: " + checks + " checks, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Store a program and load it back, and print it if what comes back doesn't print
+	 * or run the same (sources with a type error are checked as long as they parse)
+	 * @param cache Cache to use
+	 * @param name Name of the source, for the message
+	 * @param source Source of program
+	 * @return Whether or not the program came back the same
+	 */
+	private static boolean roundTrip(ProgramCache cache, String name, byte[] source) {
+		Program stored;
+		try {
+			stored = TypeCheckTransformer.checked(ParserCases.parse(source));
+		} catch (TypeCheckTransformer.TypeError e) {
+			stored = ParserCases.parse(source);
+		}
+		cache.store(source, stored);
+		Program loaded = cache.load(source);
+		if (loaded == null) {
+			System.out.println(name + " didn't come back out of the cache");
+			return false;
+		}
+		if (!ParserCases.display(stored).equals(ParserCases.display(loaded))) {
+			System.out.println(name + " came back out of the cache as a different tree");
+			return false;
+		}
+		if (!run(stored).equals(run(loaded))) {
+			System.out.println(name + " came back out of the cache and ran differently");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param p Type transformed program
+	 * @return What the final state's display() prints after running the program, or the exception it threw
+	 */
+	private static String run(Program p) {
+		try {
+			State s = ClosureInterpreter.interpret(Resolver.resolve(p));
+			return EngineCases.state(s);
+		} catch (RuntimeException e) {
+			return e.toString();
+		}
+	}
+
+	/**
+	 * Cut a cache file short at every length, and scribble on its bytes, and check that
+	 * loading it never throws and never hands back a program that prints differently
+	 * @param directory Directory the cache is in
+	 * @param source Source of program to store
+	 * @return Whether or not every damaged file was a miss
+	 * @throws IOException if the cache file can't be read or written
+	 */
+	private static boolean corrupt(File directory, byte[] source) throws IOException {
+		ProgramCache cache = new ProgramCache(directory);
+		Program stored = TypeCheckTransformer.checked(ParserCases.parse(source));
+		String expected = ParserCases.display(stored);
+		cache.store(source, stored);
+		File file = null;
+		for (File f : directory.listFiles())
+			if (f.length() > 0 && (file == null || f.lastModified() >= file.lastModified()))
+				file = f;
+		byte[] whole = Files.readAllBytes(file.toPath());
+
+		for (int length = 0; length < whole.length; length++) {
+			write(file, whole, length);
+			if (!harmless(cache, source, expected, "cut short to " + length + " of " + whole.length + " bytes"))
+				return false;
+		}
+
+		Random random = new Random(19);
+		for (int i = 0; i < SCRIBBLES; i++) {
+			byte[] damaged = whole.clone();
+			damaged[random.nextInt(damaged.length)] = (byte) random.nextInt(256);
+			Files.write(file.toPath(), damaged);
+			if (!harmless(cache, source, expected, "scribbled on (pass " + i + ")"))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Load a damaged cache file, and print it if loading throws or hands back a different program
+	 * @param cache Cache to load from
+	 * @param source Source of program
+	 * @param expected What the undamaged program prints
+	 * @param damage How the file was damaged, for the message
+	 * @return Whether or not loading the file was harmless
+	 */
+	private static boolean harmless(ProgramCache cache, byte[] source, String expected, String damage) {
+		Program p;
+		try {
+			p = cache.load(source);
+		} catch (Throwable e) {
+			System.out.println("Loading a cache file " + damage + " threw " + e);
+			return false;
+		}
+		if (p == null || ParserCases.display(p).equals(expected))
+			return true;
+		System.out.println("Loading a cache file " + damage + " gave back a different program");
+		return false;
+	}
+
+	/**
+	 * @param file File to write
+	 * @param bytes Bytes to write
+	 * @param length Number of bytes to write
+	 * @throws IOException if the file can't be written
+	 */
+	private static void write(File file, byte[] bytes, int length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.write(bytes, 0, length);
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package clite.closure;
+
+import clite.EngineCases;
+import clite.interpreter.State;
+import clite.syntax.Program;
+
+/**
+ * Checks that the closure engine ends the same way as the tree-walking interpreter,
+ * on every case in EngineCases and on a few that pick at how it pools its frames.
+ */
+public class ClosureInterpreterTest {
+	/** Cases that only the closure engine has reason to worry about, each described and then its source */
+	private static final String[][] CASES = {
+		{ "a pooled frame reused in a loop, its local set on one call and left undefined on the next",
+			"int a;\nint b;\n\n"
+			+ "int maybe(int n) {\n\tint x;\n\tif (n / 2 * 2 == n)\n\t\tx = n;\n\treturn x;\n}\n\n"
+			+ "int main() {\n\tint i;\n\ti = 0;\n\twhile (i < 5) {\n\t\ta = maybe(i);\n\t\ti = i + 1;\n\t}\n\tb = maybe(3);\n}\n" },
+
+		{ "recursion deep enough to grow the frame pool, with an undefined local in every frame",
+			"int g;\n\n"
+			+ "int down(int n) {\n\tint x, r;\n\tif (n > 0)\n\t\tr = down(n - 1);\n\tif (n == 0)\n\t\tx = 1;\n\treturn x;\n}\n\n"
+			+ "int main() {\n\tint a, b;\n\ta = down(20);\n\tb = down(0);\n\tg = down(1);\n}\n" },
+
+		{ "call statements on float and bool functions inside a callee, not just in main",
+			"float f;\nbool seen;\n\n"
+			+ "float half(float x) {\n\tf = x / 2.0;\n\treturn f;\n}\n\n"
+			+ "bool mark(bool b) {\n\tseen = b;\n\treturn !b;\n}\n\n"
+			+ "void both(float x) {\n\thalf(x);\n\tmark(x > 1.0);\n}\n\n"
+			+ "int main() {\n\tboth(3.0);\n}\n" },
+
+		{ "a function called while its own frame is still in use, with an undefined argument",
+			"int g;\n\n"
+			+ "int twice(int n, int u) {\n\tif (n > 0)\n\t\treturn twice(n - 1, u) + twice(n - 1, u);\n\treturn u;\n}\n\n"
+			+ "int main() {\n\tint u, r;\n\tr = twice(3, u);\n\tg = twice(2, 1);\n}\n" },
+	};
+
+	/** Links and runs a program */
+	private static final EngineCases.Engine ENGINE = new EngineCases.Engine() {
+		public State run(Program p) {
+			return ClosureInterpreter.interpret(p);
+		}
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 */
+	public static void main(String args[]) {
+		int failures = EngineCases.check("(default)", ENGINE);
+		for (String[] c : CASES)
+			if (!EngineCases.same("(default)", ENGINE, c[0], c[1]))
+				failures++;
+
+		int checks = EngineCases.CASES.length + CASES.length;
+		System.out.println("ClosureInterpreterTest: " + checks + " programs, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,61 @@
+package clite.compiler;
+
+import clite.EngineCases;
+import clite.interpreter.State;
+import clite.syntax.Program;
+
+/**
+ * Checks that compiled programs end the same way as interpreted ones, on every
+ * case in EngineCases and on a few that pick at how the compiler lays out frames.
+ */
+public class CompilerTest {
+	/** Cases that only the compiler has reason to worry about, each described and then its source */
+	private static final String[][] CASES = {
+		{ "float and int parameters mixed together, each followed by its defined flag",
+			"float r;\n\n"
+			+ "float mix(float a, int b, float c, int d) {\n\treturn a * float(b) + c * float(d);\n}\n\n"
+			+ "int main() {\n\tint u;\n\tr = mix(1.5, 2, 0.5, u);\n}\n" },
+
+		{ "a function with more than 255 local variable slots",
+			"int g;\n\n" + wide(150) },
+	};
+
+	/** Compiles and runs a program */
+	private static final EngineCases.Engine ENGINE = new EngineCases.Engine() {
+		public State run(Program p) {
+			return Compiler.compile(p).run();
+		}
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 */
+	public static void main(String args[]) {
+		int failures = EngineCases.check("-compile", ENGINE);
+		for (String[] c : CASES)
+			if (!EngineCases.same("-compile", ENGINE, c[0], c[1]))
+				failures++;
+
+		int checks = EngineCases.CASES.length + CASES.length;
+		System.out.println("CompilerTest: " + checks + " programs, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Make up a function with lots of locals, some left undefined, and a main that calls it
+	 * @param locals Number of locals
+	 * @return Source of the function and main
+	 */
+	private static String wide(int locals) {
+		StringBuilder out = new StringBuilder("int many(int p) {\n");
+		for (int i = 0; i < locals; i++)
+			out.append("\tint x").append(i).append(";\n");
+		for (int i = 0; i < locals; i += 2)
+			out.append("\tx").append(i).append(" = p + ").append(i).append(";\n");
+		out.append("\tg = x").append(locals - 2).append(";\n");
+		out.append("\treturn x").append(locals - 1).append(";\n}\n\n");
+		out.append("int main() {\n\tint r;\n\tr = many(1);\n}\n");
+		return out.toString();
+	}
+}
@@ -0,0 +1,134 @@
+package clite.interpreter;
+
+import clite.EngineCases;
+import clite.parser.DfaScanner;
+import clite.parser.Parser;
+import clite.syntax.Program;
+import clite.syntax.function.Function;
+
+/**
+ * Checks that running a program with its functions compiled on their first call (-lazy)
+ * ends the same way as compiling them all up front, that a function is only compiled
+ * once, and that a function that's never called is never compiled.
+ */
+public class LazyFunctionsTest {
+	/** Programs that have to end the same way lazily as they do eagerly, each described and then its source */
+	private static final String[][] CASES = {
+		{ "a function declared inside another one that's never called",
+			"int r;\n\n"
+			+ "int f(int x) {\n\tint g(int m) {\n\t\treturn m * 2;\n\t}\n\treturn x;\n}\n\n"
+			+ "int main() {\n\tr = g(4);\n}\n" },
+
+		{ "a function declared after a comma inside another one that's never called",
+			"int r;\n\n"
+			+ "int f(int x) {\n\tint a, g(int m) {\n\t\treturn m * 3;\n\t}\n\treturn x;\n}\n\n"
+			+ "int main() {\n\tr = g(4);\n}\n" },
+
+		{ "functions declared two deep, called from main",
+			"int r;\n\n"
+			+ "int f(int x) {\n\tint g(int m) {\n\t\tint h(int k) {\n\t\t\treturn k + 1;\n\t\t}\n\t\treturn h(m);\n\t}\n\treturn x;\n}\n\n"
+			+ "int main() {\n\tr = g(4) + h(1);\n}\n" },
+
+		{ "calls with calls and casts in their arguments, which aren't declarations",
+			"int r;\n\n"
+			+ "int add(int a, int b) {\n\treturn a + b;\n}\n\n"
+			+ "int twice(int a) {\n\treturn add(a, add(a, 0));\n}\n\n"
+			+ "int main() {\n\tr = twice(add(1, int(2.5)));\n}\n" },
+	};
+
+	/** A type error in a function that's never called, which only a lazy run gets away with */
+	private static final String UNCALLED =
+			"int r;\n\n"
+			+ "int bad(int x) {\n\tbool b;\n\tb = x + 1;\n\treturn x;\n}\n\n"
+			+ "int add(int a, int b) {\n\treturn a + b;\n}\n\n"
+			+ "int good(int x) {\n\treturn add(x, add(x, 1));\n}\n\n"
+			+ "int main() {\n\tr = good(3);\n}\n";
+
+	/** Runs a program with the interpreter, the way -lazy runs it once it's been parsed */
+	private static final EngineCases.Engine INTERPRETER = new EngineCases.Engine() {
+		public State run(Program p) {
+			return Interpreter.interpret(p);
+		}
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 */
+	public static void main(String args[]) {
+		int checks = 0;
+		int failures = 0;
+
+		for (String[][] cases : new String[][][] { EngineCases.CASES, CASES })
+			for (String[] c : cases) {
+				checks++;
+				if (!same(c[0], c[1]))
+					failures++;
+			}
+
+		checks++;
+		String state = lazily(UNCALLED);
+		if (!state.contains("r: 7 (Int)")) {
+			failures++;
+			System.out.println("-lazy didn't run a program whose only type error is in a function that's never called:\n" + state);
+		}
+
+		checks++;
+		if (!compiledOnce())
+			failures++;
+
+		System.out.println("LazyFunctionsTest: " + checks + " checks, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Run a program lazily and eagerly, and print it if they don't end the same way
+	 * @param description What the program checks
+	 * @param source Source of program
+	 * @return Whether or not they match
+	 */
+	private static boolean same(String description, String source) {
+		String expected = EngineCases.outcome(INTERPRETER, source);
+		String actual = lazily(source);
+		if (expected.equals(actual))
+			return true;
+		System.out.println("-lazy doesn't match -interpret on " + description + ":\n" + source);
+		System.out.println("-interpret:\n" + expected);
+		System.out.println("-lazy:\n" + actual);
+		return false;
+	}
+
+	/**
+	 * @param source Source of program
+	 * @return What the final state's display() prints after a lazy run, or the exception it threw
+	 */
+	private static String lazily(String source) {
+		try {
+			return EngineCases.state(Interpreter.interpret(program(source)));
+		} catch (RuntimeException e) {
+			return e.toString();
+		}
+	}
+
+	/**
+	 * @param source Source of program
+	 * @return Program whose functions are compiled on their first call
+	 */
+	private static Program program(String source) {
+		return LazyFunctions.program(Parser.lazy(new DfaScanner(source.getBytes()), false));
+	}
+
+	/**
+	 * Check that looking a function up twice hands back the function compiled the first time
+	 * @return Whether or not it does
+	 */
+	private static boolean compiledOnce() {
+		Program p = program(UNCALLED);
+		Function first = p.functions().get("good");
+		Function second = p.functions().get("good");
+		if (first != null && first == second && first.body() != null)
+			return true;
+		System.out.println("-lazy compiled good() more than once");
+		return false;
+	}
+}
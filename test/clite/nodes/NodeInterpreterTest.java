@@ -0,0 +1,58 @@
+package clite.nodes;
+
+import clite.EngineCases;
+import clite.interpreter.State;
+import clite.syntax.Program;
+
+/**
+ * Checks that the self-specializing node engine ends the same way as the tree-walking
+ * interpreter, on every case in EngineCases and on a few that pick at how its nodes specialize.
+ */
+public class NodeInterpreterTest {
+	/** Cases that only the node engine has reason to worry about, each described and then its source */
+	private static final String[][] CASES = {
+		{ "an operation that sees an undefined operand the first time it runs and defined ones after",
+			"int a;\nint b;\n\n"
+			+ "int add(int x, int y) {\n\treturn x + y;\n}\n\n"
+			+ "int main() {\n\tint u;\n\ta = add(u, 2);\n\tb = add(3, 4);\n}\n" },
+
+		{ "a comparison on chars and one on floats in the same function, run more than once",
+			"bool p;\nbool q;\n\n"
+			+ "bool before(char c, char d, float x, float y) {\n\treturn c < d && x < y;\n}\n\n"
+			+ "int main() {\n\tp = before('a', 'b', 1.5, 2.5);\n\tq = before('b', 'a', 1.5, 2.5);\n}\n" },
+
+		{ "a call on the right of && that only runs when the left side is true",
+			"int g;\nbool r;\nbool s;\n\n"
+			+ "bool bump() {\n\tg = g + 1;\n\treturn true;\n}\n\n"
+			+ "int main() {\n\tg = 0;\n\tr = false && bump();\n\ts = true && bump();\n}\n" },
+
+		{ "call statements on float and bool functions inside a callee, not just in main",
+			"float f;\nbool seen;\n\n"
+			+ "float half(float x) {\n\tf = x / 2.0;\n\treturn f;\n}\n\n"
+			+ "bool mark(bool b) {\n\tseen = b;\n\treturn !b;\n}\n\n"
+			+ "void both(float x) {\n\thalf(x);\n\tmark(x > 1.0);\n}\n\n"
+			+ "int main() {\n\tboth(3.0);\n}\n" },
+	};
+
+	/** Builds a program into nodes and runs it */
+	private static final EngineCases.Engine ENGINE = new EngineCases.Engine() {
+		public State run(Program p) {
+			return NodeInterpreter.interpret(p);
+		}
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 */
+	public static void main(String args[]) {
+		int failures = EngineCases.check("-nodes", ENGINE);
+		for (String[] c : CASES)
+			if (!EngineCases.same("-nodes", ENGINE, c[0], c[1]))
+				failures++;
+
+		int checks = EngineCases.CASES.length + CASES.length;
+		System.out.println("NodeInterpreterTest: " + checks + " programs, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,146 @@
+package clite.parser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import clite.syntax.Program;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Expression;
+import clite.syntax.expression.Unary;
+import clite.syntax.function.Call;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.syntax.statement.Statement;
+
+/**
+ * Checks that the explicit-stack parser (-deep) builds the same trees as the recursive
+ * parser, reports the same syntax errors, and gets through nesting far deeper than
+ * the recursive parser's stack allows.
+ *
+ * Run it from the root of the project.
+ */
+public class DeepParserTest {
+	/** How deep the nesting goes in the program the recursive parser can't parse */
+	private static final int DEPTH = 100000;
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 * @throws IOException if a sample program can't be read
+	 */
+	public static void main(String args[]) throws IOException {
+		int checks = 0;
+		int failures = 0;
+
+		for (String file : ParserCases.programs()) {
+			checks++;
+			if (!sameTree(file, Files.readAllBytes(Paths.get(file))))
+				failures++;
+		}
+		checks += 2;
+		if (!sameTree("200 generated functions", ParserCases.generate(200)))
+			failures++;
+		if (!sameTree("nesting 300 deep", nested(300).getBytes()))
+			failures++;
+
+		for (String[] c : ParserCases.ERRORS) {
+			checks++;
+			String expected = ParserCases.runner(null, c[1]);
+			String actual = ParserCases.runner("-deep", c[1]);
+			if (!expected.equals(actual)) {
+				failures++;
+				System.out.println("-deep doesn't report the same error on " + c[0] + ":\n" + c[1]);
+				System.out.println("recursive:\n" + expected);
+				System.out.println("-deep:\n" + actual);
+			}
+		}
+
+		checks++;
+		if (!deep())
+			failures++;
+
+		System.out.println("DeepParserTest: " + checks + " checks, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Parse a source with both parsers, and print it if the trees don't match
+	 * @param name Name of the source, for the message
+	 * @param source Source to parse
+	 * @return Whether or not the trees match
+	 */
+	private static boolean sameTree(String name, byte[] source) {
+		String expected = ParserCases.display(ParserCases.parse(source));
+		String actual = ParserCases.display(new Parser(new DfaScanner(source), true).program());
+		if (expected.equals(actual))
+			return true;
+		System.out.println("-deep doesn't build the same tree for " + name);
+		return false;
+	}
+
+	/**
+	 * Parse a program nested DEPTH deep, and walk down it with loops to check every level made it in
+	 * @return Whether or not every level is there
+	 */
+	private static boolean deep() {
+		Program p = new Parser(new DfaScanner(nested(DEPTH).getBytes()), true).program();
+
+		// main's body is the assignment to a, then the nested statements
+		Statement s = p.functions().get("main").body().member(1);
+		int statements = 0;
+		while (!(s instanceof Assignment)) {
+			if (s instanceof Conditional)
+				s = ((Conditional) s).thenBranch();
+			else if (s instanceof Loop)
+				s = ((Loop) s).body();
+			else
+				s = ((Block) s).member(0);
+			statements++;
+		}
+
+		Expression e = ((Assignment) s).source();
+		int expressions = 0;
+		while (e instanceof Unary || e instanceof Binary || e instanceof Call) {
+			if (e instanceof Unary)
+				e = ((Unary) e).term();
+			else if (e instanceof Binary)
+				e = ((Binary) e).term2();
+			else
+				e = ((Call) e).argument(0);
+			expressions++;
+		}
+
+		if (statements == DEPTH && expressions == DEPTH)
+			return true;
+		System.out.println("-deep lost levels of a program nested " + DEPTH + " deep: "
+				+ statements + " statements and " + expressions + " expressions made it in");
+		return false;
+	}
+
+	/**
+	 * Make up a program whose main nests ifs, whiles and blocks, and then an expression
+	 * that nests unary operators, casts, calls and binary operators, each to the given depth
+	 * @param depth Number of levels of statements, and of expressions
+	 * @return Source of the program
+	 */
+	private static String nested(int depth) {
+		StringBuilder out = new StringBuilder("int f(int x) {\n\treturn x;\n}\n\nint main() {\n\tint a;\n\ta = 1;\n\t");
+		for (int i = 0; i < depth; i++)
+			out.append(i % 3 == 0 ? "if (a > 0) " : i % 3 == 1 ? "while (a < 0) " : "{ ");
+		out.append("a = ");
+		for (int i = 0; i < depth; i++)
+			out.append(i % 4 == 0 ? "-" : i % 4 == 1 ? "int(" : i % 4 == 2 ? "f(" : "1 + (");
+		out.append("a");
+		for (int i = depth - 1; i >= 0; i--)
+			if (i % 4 != 0)
+				out.append(")");
+		out.append(";");
+		for (int i = depth - 1; i >= 0; i--)
+			if (i % 3 == 2)
+				out.append(" }");
+		out.append("\n}\n");
+		return out.toString();
+	}
+}
@@ -0,0 +1,100 @@
+package clite.parser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the parallel parser (-parallel) builds the same trees as the sequential
+ * parser and reports the same syntax errors, with function bodies spread over a pool
+ * with several workers as well as over the common pool.
+ *
+ * Run it from the root of the project.
+ */
+public class ParallelParserTest {
+	/** Pool with more workers than this machine might have cores, so bodies really do overlap */
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 * @throws IOException if a sample program can't be read
+	 */
+	public static void main(String args[]) throws IOException {
+		int checks = 0;
+		int failures = 0;
+
+		for (String file : ParserCases.programs()) {
+			checks++;
+			if (!sameTree(file, Files.readAllBytes(Paths.get(file))))
+				failures++;
+		}
+		for (int functions : new int[] { 1, 50, 2000 }) {
+			checks++;
+			if (!sameTree(functions + " generated functions", ParserCases.generate(functions)))
+				failures++;
+		}
+
+		for (String[] c : ParserCases.ERRORS) {
+			checks++;
+			if (!sameError(c[0], c[1]))
+				failures++;
+		}
+		checks += 2;
+		if (!sameError("errors in functions 100 and 300 of 500", broken(broken(new String(ParserCases.generate(500)), 300), 100)))
+			failures++;
+		if (!sameError("a function declared inside another, then again at the top level",
+				new String(ParserCases.generate(50)).replace("int main()", "int g5(int m) {\n\treturn m;\n}\n\nint main()")))
+			failures++;
+
+		POOL.shutdown();
+		System.out.println("ParallelParserTest: " + checks + " checks, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Parse a source sequentially and in parallel on both pools, and print it if the trees don't match
+	 * @param name Name of the source, for the message
+	 * @param source Source to parse
+	 * @return Whether or not the trees match
+	 */
+	private static boolean sameTree(String name, byte[] source) {
+		String expected = ParserCases.display(ParserCases.parse(source));
+		for (ForkJoinPool pool : new ForkJoinPool[] { POOL, ForkJoinPool.commonPool() }) {
+			String actual = ParserCases.display(Parser.parallel(new DfaScanner(source), false, pool).program());
+			if (!expected.equals(actual)) {
+				System.out.println("-parallel doesn't build the same tree for " + name + " on " + pool);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Run a broken source through Runner with and without -parallel, and print it if the errors don't match
+	 * @param description What's wrong with the source
+	 * @param source Source to run
+	 * @return Whether or not the errors match
+	 */
+	private static boolean sameError(String description, String source) {
+		String expected = ParserCases.runner(null, source);
+		String actual = ParserCases.runner("-parallel", source);
+		if (expected.equals(actual))
+			return true;
+		System.out.println("-parallel doesn't report the same error on " + description);
+		System.out.println("sequential:\n" + expected);
+		System.out.println("-parallel:\n" + actual);
+		return false;
+	}
+
+	/**
+	 * Put a syntax error in the return statement of one of the generated functions
+	 * @param source Source made by ParserCases.generate()
+	 * @param function Number of the function to break
+	 * @return Source with the error in it
+	 */
+	private static String broken(String source, int function) {
+		int at = source.indexOf("return a + b;", source.indexOf("int f" + function + "("));
+		return source.substring(0, at) + "return a + ;" + source.substring(at + "return a + b;".length());
+	}
+}
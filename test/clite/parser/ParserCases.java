@@ -0,0 +1,156 @@
+package clite.parser;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import clite.syntax.Program;
+
+/**
+ * Sources and helpers shared by the tests of the parser's modes, which check
+ * each mode against the plain recursive parser.
+ */
+public class ParserCases {
+	/** Sources with a syntax error, each described and then its source */
+	public static final String[][] ERRORS = {
+		{ "a missing semicolon in main",
+			"int main() {\n\tint a;\n\ta = 1\n}\n" },
+
+		{ "a missing semicolon in the first of several functions",
+			"int f(int x) {\n\treturn x\n}\n\nint g(int x) {\n\treturn x;\n}\n\nint main() {\n\tint a;\n\ta = f(1);\n}\n" },
+
+		{ "errors in two functions, where only the first should be reported",
+			"int f(int x) {\n\treturn (x;\n}\n\nint g(int x) {\n\tx = ;\n}\n\nint main() {\n\tint a;\n\ta = f(1);\n}\n" },
+
+		{ "an error in a later function after good ones",
+			"int f(int x) {\n\treturn x;\n}\n\nint g(int x) {\n\tif (x > 0 {\n\t\tx = 1;\n\t}\n\treturn x;\n}\n\nint main() {\n\tint a;\n\ta = f(1);\n}\n" },
+
+		{ "a function defined twice",
+			"int f(int x) {\n\treturn x;\n}\n\nint f(int y) {\n\treturn y;\n}\n\nint main() {\n\tint a;\n\ta = f(1);\n}\n" },
+
+		{ "a variable declared twice",
+			"int g;\nint g;\n\nint main() {\n\tg = 1;\n}\n" },
+
+		{ "an identifier that isn't followed by = or (",
+			"int main() {\n\tint a;\n\ta;\n}\n" },
+
+		{ "a body that's never closed",
+			"int f(int x) {\n\treturn x;\n}\n\nint main() {\n\tint a;\n\ta = f(1);\n" },
+
+		{ "an unbalanced parenthesis deep in an expression",
+			"int main() {\n\tint a;\n\ta = ((1 + (2 * (3 - 4))) + 5;\n}\n" },
+	};
+
+	/**
+	 * @param p Program
+	 * @return What the program's display() prints
+	 */
+	public static String display(Program p) {
+		PrintStream out = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			p.display();
+		} finally {
+			System.setOut(out);
+		}
+		return bytes.toString();
+	}
+
+	/**
+	 * Parse a source with the plain recursive parser
+	 * @param source Source to parse
+	 * @return Program
+	 */
+	public static Program parse(byte[] source) {
+		return new Parser(new DfaScanner(source)).program();
+	}
+
+	/**
+	 * Run Runner on a source in its own JVM, since a syntax error makes it exit
+	 * @param flag Flag to give Runner (null for none)
+	 * @param source Source to run
+	 * @return What Runner printed, followed by its exit code
+	 */
+	public static String runner(String flag, String source) {
+		try {
+			File file = File.createTempFile("clite", ".cpp");
+			try {
+				Files.write(file.toPath(), source.getBytes());
+				ArrayList<String> command = new ArrayList<String>(Arrays.asList(
+						new File(System.getProperty("java.home"), "bin/java").getPath(),
+						// -parallel skips a common pool with one worker, so give it several even on one core
+						"-Djava.util.concurrent.ForkJoinPool.common.parallelism=4",
+						"-cp", System.getProperty("java.class.path"), "clite.Runner"));
+				if (flag != null)
+					command.add(flag);
+				command.add(file.getPath());
+
+				Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+				String printed = read(process.getInputStream());
+				return printed + "exit " + process.waitFor();
+			} finally {
+				file.delete();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param in Stream to read
+	 * @return Everything left in the stream
+	 * @throws IOException if the stream can't be read
+	 */
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+			bytes.write(buffer, 0, n);
+		return bytes.toString();
+	}
+
+	/**
+	 * @return Every sample program that parses, in order
+	 */
+	public static ArrayList<String> programs() {
+		ArrayList<String> files = new ArrayList<String>();
+		for (String dir : new String[] { "programs", "programs/f" }) {
+			String[] names = new File(dir).list();
+			Arrays.sort(names);
+			for (String name : names)
+				if (name.endsWith(".cpp"))
+					files.add(dir + "/" + name);
+		}
+		return files;
+	}
+
+	/**
+	 * Make up a program with lots of functions, each with a bit of every kind of statement,
+	 * some with a function declared inside them
+	 * @param functions Number of functions
+	 * @return Source of the program
+	 */
+	public static byte[] generate(int functions) {
+		StringBuilder out = new StringBuilder("int total;\nfloat scale;\n\n");
+		for (int i = 0; i < functions; i++) {
+			out.append("int f").append(i).append("(int n, float x) {\n\tint a, b;\n\tchar c;\n");
+			if (i % 10 == 5)
+				out.append("\tint g").append(i).append("(int m) {\n\t\treturn m * 2;\n\t}\n");
+			out.append("\ta = n * ").append(i % 7).append(" + (n - 1) / 2;\n");
+			out.append("\tc = 'q';\n\tb = int(x * scale) + int(c);\n");
+			out.append("\twhile (a > 0 && !(b < 0)) {\n\t\ta = a - 1;\n\t\tif (a == 3 || b != 2)\n\t\t\tb = b + 1;\n\t\telse {\n\t\t\tb = -b;\n\t\t}\n\t}\n");
+			if (i > 0)
+				out.append("\tb = f").append(i - 1).append("(a, x + 1.0);\n");
+			out.append("\treturn a + b;\n}\n\n");
+		}
+		out.append("int main() {\n\tscale = 1.5;\n\ttotal = f").append(functions - 1).append("(7, 2.0);\n}\n");
+		return out.toString().getBytes();
+	}
+}
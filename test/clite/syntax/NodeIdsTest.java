@@ -0,0 +1,146 @@
+package clite.syntax;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import clite.interpreter.Resolver;
+import clite.parser.DfaScanner;
+import clite.parser.Parser;
+import clite.parser.ParserCases;
+import clite.syntax.expression.Binary;
+import clite.syntax.expression.Unary;
+import clite.syntax.function.Call;
+import clite.syntax.function.Function;
+import clite.syntax.function.Return;
+import clite.syntax.statement.Assignment;
+import clite.syntax.statement.Block;
+import clite.syntax.statement.Conditional;
+import clite.syntax.statement.Loop;
+import clite.typing.TypeCheckTransformer;
+
+/**
+ * Checks that every parsed and every resolved program has its nodes numbered from 0
+ * with no gaps or repeats, in the same order however it was parsed, and that parsing
+ * or resolving one program doesn't change the IDs of another.
+ *
+ * Run it from the root of the project.
+ */
+public class NodeIdsTest {
+	/**
+	 * Main method
+	 * @param args Ignored
+	 * @throws IOException if a sample program can't be read
+	 */
+	public static void main(String args[]) throws IOException {
+		int checks = 0;
+		int failures = 0;
+
+		ArrayList<String> names = new ArrayList<String>(ParserCases.programs());
+		ArrayList<byte[]> sources = new ArrayList<byte[]>();
+		for (String file : names)
+			sources.add(Files.readAllBytes(Paths.get(file)));
+		names.add("500 generated functions");
+		sources.add(ParserCases.generate(500));
+		names.add("an implicit conversion ahead of an if with no else");
+		sources.add(("float f;\n\nint main() {\n\tint i;\n\ti = 2;\n\tf = f * i;\n\tif (f > 1.0)\n\t\ti = 1;\n}\n").getBytes());
+
+		for (int i = 0; i < sources.size(); i++) {
+			byte[] source = sources.get(i);
+			Program parsed = ParserCases.parse(source);
+			ArrayList<Integer> ids = ids(parsed);
+
+			checks += 3;
+			if (!dense(names.get(i) + " as parsed", ids))
+				failures++;
+			if (!ids.equals(ids(ParserCases.parse(source)))) {
+				failures++;
+				System.out.println(names.get(i) + " parsed twice got different IDs");
+			}
+			if (!ids.equals(ids(new Parser(new DfaScanner(source), true).program()))
+					|| !ids.equals(ids(Parser.parallel(new DfaScanner(source), false, ForkJoinPool.commonPool()).program()))) {
+				failures++;
+				System.out.println(names.get(i) + " got different IDs from -deep or -parallel");
+			}
+
+			Program resolved;
+			try {
+				resolved = Resolver.resolve(TypeCheckTransformer.checked(parsed));
+			} catch (TypeCheckTransformer.TypeError e) {
+				continue;
+			}
+			checks++;
+			if (!dense(names.get(i) + " once resolved", ids(resolved)) || !ids.equals(ids(parsed))) {
+				failures++;
+				System.out.println(names.get(i) + " had its IDs changed by resolving it");
+			}
+		}
+
+		System.out.println("NodeIdsTest: " + checks + " checks, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Check that a program's IDs are 0 up to the number of nodes, each used once
+	 * @param name Name of the program, for the message
+	 * @param ids IDs of the program's nodes
+	 * @return Whether or not they are
+	 */
+	private static boolean dense(String name, ArrayList<Integer> ids) {
+		boolean[] seen = new boolean[ids.size()];
+		for (int id : ids) {
+			if (id < 0 || id >= seen.length || seen[id]) {
+				System.out.println(name + " has " + ids.size() + " nodes, and one of them has ID " + id);
+				return false;
+			}
+			seen[id] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * @param p Program
+	 * @return ID of every statement and compound expression in the program, depth first
+	 */
+	private static ArrayList<Integer> ids(Program p) {
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		ArrayList<Object> todo = new ArrayList<Object>();
+		for (Function f : p.functions().values()) {
+			todo.add(f.body());
+			while (!todo.isEmpty()) {
+				Object node = todo.remove(todo.size() - 1);
+				if (!(node instanceof Numbered))
+					continue;
+				ids.add(((Numbered) node).id());
+				if (node instanceof Block) {
+					Block b = (Block) node;
+					for (int i = b.size() - 1; i >= 0; i--)
+						todo.add(b.member(i));
+				} else if (node instanceof Assignment) {
+					todo.add(((Assignment) node).source());
+				} else if (node instanceof Conditional) {
+					Conditional c = (Conditional) node;
+					todo.add(c.elseBranch());
+					todo.add(c.thenBranch());
+					todo.add(c.test());
+				} else if (node instanceof Loop) {
+					todo.add(((Loop) node).body());
+					todo.add(((Loop) node).test());
+				} else if (node instanceof Return) {
+					todo.add(((Return) node).result());
+				} else if (node instanceof Call) {
+					Call c = (Call) node;
+					for (int i = c.argumentCount() - 1; i >= 0; i--)
+						todo.add(c.argument(i));
+				} else if (node instanceof Binary) {
+					todo.add(((Binary) node).term2());
+					todo.add(((Binary) node).term1());
+				} else if (node instanceof Unary) {
+					todo.add(((Unary) node).term());
+				}
+			}
+		}
+		return ids;
+	}
+}
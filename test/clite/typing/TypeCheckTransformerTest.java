@@ -0,0 +1,129 @@
+package clite.typing;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import clite.parser.ParserCases;
+import clite.syntax.Program;
+
+/**
+ * Checks that type checking and transforming functions on a pool gives the same
+ * program as doing them one at a time, reports the same (first) type error, and
+ * leaves the program it was given alone.
+ *
+ * Run it from the root of the project.
+ */
+public class TypeCheckTransformerTest {
+	/** Pool with more workers than this machine might have cores, so functions really do overlap */
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	/** Number of times each program with type errors is checked on the pool */
+	private static final int REPEATS = 20;
+
+	/** Type errors to put into generated functions, each replacing that function's return */
+	private static final String[] ERRORS = {
+		"return a + true;",
+		"return undeclared;",
+		"return a + missing(a);",
+		"return f0(a);",
+		"return x;",
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 * @throws IOException if a sample program can't be read
+	 */
+	public static void main(String args[]) throws IOException {
+		int checks = 0;
+		int failures = 0;
+
+		for (String file : ParserCases.programs()) {
+			checks++;
+			if (!same(file, Files.readAllBytes(Paths.get(file))))
+				failures++;
+		}
+		for (int functions : new int[] { 1, 50, 2000 }) {
+			checks++;
+			if (!same(functions + " generated functions", ParserCases.generate(functions)))
+				failures++;
+		}
+
+		// errors spread out, so later functions with errors are often done before earlier ones
+		String source = new String(ParserCases.generate(2000));
+		int[] at = { 1900, 1200, 700, 300, 150 };
+		for (int i = 0; i < at.length; i++) {
+			source = broken(source, at[i], ERRORS[i]);
+			for (int r = 0; r < REPEATS; r++) {
+				checks++;
+				if (!same("errors in functions " + at[i] + " and after of 2000", source.getBytes()))
+					failures++;
+			}
+		}
+
+		checks++;
+		if (!untouched())
+			failures++;
+
+		POOL.shutdown();
+		System.out.println("TypeCheckTransformerTest: " + checks + " checks, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Check and transform a program one function at a time and on the pool, and print it if the results differ
+	 * @param name Name of the source, for the message
+	 * @param source Source of program
+	 * @return Whether or not the results match
+	 */
+	private static boolean same(String name, byte[] source) {
+		String expected = outcome(ParserCases.parse(source), null);
+		String actual = outcome(ParserCases.parse(source), POOL);
+		if (expected.equals(actual))
+			return true;
+		System.out.println("Checking on a pool doesn't match checking in order on " + name);
+		System.out.println("in order:\n" + expected);
+		System.out.println("on a pool:\n" + actual);
+		return false;
+	}
+
+	/**
+	 * @param p Program as it was parsed
+	 * @param pool Pool to check it on (null to check one function at a time)
+	 * @return What the transformed program's display() prints, or the type error
+	 */
+	private static String outcome(Program p, ForkJoinPool pool) {
+		try {
+			return ParserCases.display(TypeCheckTransformer.checked(p, StaticTypeCheck.typing(p.globals()), pool));
+		} catch (TypeCheckTransformer.TypeError e) {
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * Check that checking a program on the pool doesn't change the program it was given
+	 * @return Whether or not the program is unchanged
+	 */
+	private static boolean untouched() {
+		Program p = ParserCases.parse(ParserCases.generate(500));
+		String before = ParserCases.display(p);
+		TypeCheckTransformer.checked(p, StaticTypeCheck.typing(p.globals()), POOL);
+		if (before.equals(ParserCases.display(p)))
+			return true;
+		System.out.println("Checking on a pool changed the program it was given");
+		return false;
+	}
+
+	/**
+	 * Put a type error in the return statement of one of the generated functions
+	 * @param source Source made by ParserCases.generate()
+	 * @param function Number of the function to break
+	 * @param error Statement to put in place of its return
+	 * @return Source with the error in it
+	 */
+	private static String broken(String source, int function, String error) {
+		int at = source.indexOf("return a + b;", source.indexOf("int f" + function + "("));
+		return source.substring(0, at) + error + source.substring(at + "return a + b;".length());
+	}
+}
@@ -0,0 +1,55 @@
+package clite.vm;
+
+import clite.EngineCases;
+import clite.interpreter.State;
+import clite.syntax.Program;
+
+/**
+ * Checks that programs run on the register VM end the same way as interpreted ones,
+ * on every case in EngineCases and on a few that pick at how the VM keeps its registers.
+ */
+public class VirtualMachineTest {
+	/** Cases that only the VM has reason to worry about, each described and then its source */
+	private static final String[][] CASES = {
+		{ "recursion deep enough to grow the register files, passing an undefined value down",
+			"int g;\n\n"
+			+ "int down(int n, int carry) {\n\tif (n > 0)\n\t\tcarry = down(n - 1, carry);\n\treturn carry;\n}\n\n"
+			+ "int main() {\n\tint u, r;\n\tr = down(400, u);\n\tg = down(400, 7);\n}\n" },
+
+		{ "an int cast of an undefined char, which is a move that has to end up defined",
+			"int g;\n\n"
+			+ "int code(char c) {\n\treturn int(c);\n}\n\n"
+			+ "int main() {\n\tchar c;\n\tint i;\n\ti = int(c);\n\tg = code(c);\n}\n" },
+
+		{ "a global copied to a global, through a register",
+			"int g;\nint h;\nint k;\n\n"
+			+ "int main() {\n\th = g;\n\tg = 2;\n\tk = g;\n}\n" },
+
+		{ "call statements on int functions, whose results go nowhere",
+			"int g;\n\n"
+			+ "int bump(int x) {\n\tg = g + x;\n\treturn g;\n}\n\n"
+			+ "int main() {\n\tint a;\n\tg = 0;\n\tbump(2);\n\tbump(bump(3));\n\ta = g;\n}\n" },
+	};
+
+	/** Compiles a program for the VM and runs it */
+	private static final EngineCases.Engine ENGINE = new EngineCases.Engine() {
+		public State run(Program p) {
+			return VirtualMachine.run(p);
+		}
+	};
+
+	/**
+	 * Main method
+	 * @param args Ignored
+	 */
+	public static void main(String args[]) {
+		int failures = EngineCases.check("-vm", ENGINE);
+		for (String[] c : CASES)
+			if (!EngineCases.same("-vm", ENGINE, c[0], c[1]))
+				failures++;
+
+		int checks = EngineCases.CASES.length + CASES.length;
+		System.out.println("VirtualMachineTest: " + checks + " programs, " + failures + " failures");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}